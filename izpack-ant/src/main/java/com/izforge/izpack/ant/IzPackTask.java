@@ -87,6 +87,11 @@ public class IzPackTask extends Task implements PackagerListener
      */
     private int compressionLevel;
 
+    /**
+     * Holds value of property cacheDir.
+     */
+    private String cacheDir;
+
     /**
      * Holds value of property installerType.
      */
@@ -222,9 +227,10 @@ public class IzPackTask extends Task implements PackagerListener
 			Class<?> runableClass = urlClassLoader.loadClass(IzpackAntRunnable.class.getName());
             Constructor<?> constructor = runableClass.getConstructor(String.class, String.class,
             		String.class, String.class, String.class, String.class, Boolean.TYPE, Integer.TYPE, Properties.class,
-            		Boolean.class, Map.class, String.class, Handler.class);
+            		Boolean.class, Map.class, String.class, String.class, Handler.class);
             Runnable instance = (Runnable)constructor.newInstance(compression, kind, input, configText, basedir, output, mkdirs,
-                    compressionLevel, properties, inheritAll, getProject().getProperties(), izPackDir, logHandler);
+                    compressionLevel, properties, inheritAll, getProject().getProperties(), izPackDir, cacheDir,
+                    logHandler);
             Thread.currentThread().setContextClassLoader(urlClassLoader);
             instance.run();
         }
@@ -372,6 +378,17 @@ public class IzPackTask extends Task implements PackagerListener
         this.compressionLevel = compressionLevel;
     }
 
+    /**
+     * Setter for property cacheDir.
+     *
+     * @param cacheDir The build cache directory. When set, compressed pack files are reused by subsequent builds
+     *                 if their sources haven't changed.
+     */
+    public void setCacheDir(String cacheDir)
+    {
+        this.cacheDir = cacheDir;
+    }
+
 
     /**
      * Ant will call this for each &lt;property&gt; tag to the IzPack task.
@@ -26,9 +26,10 @@ public class IzpackAntRunnable implements Runnable
     public IzpackAntRunnable(String compression, String kind, String input, String configText, String basedir,
                              String output, boolean mkdirs, int compressionLevel, Properties properties,
                              Boolean inheritAll, Map<String, Object> antProjectProperties, String izPackDir,
-                             Handler logHandler)
+                             String cacheDir, Handler logHandler)
     {
         this.compilerData = new CompilerData(compression, kind, input, configText, basedir, output, mkdirs, compressionLevel);
+        this.compilerData.setCacheDir(cacheDir);
         this.input = input;
         this.properties = properties;
         this.inheritAll = inheritAll;
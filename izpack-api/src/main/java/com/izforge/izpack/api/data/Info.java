@@ -136,6 +136,11 @@ public class Info implements Serializable
 
     private String compressionFormat = PackCompression.DEFAULT.toName();
 
+    /**
+     * The no. of threads used to write unpacked files. If {@code 1}, files are unpacked serially
+     */
+    private int unpackThreads = 1;
+
     private boolean requirePrivilegedExecution = false;
 
     private boolean requirePrivilegedExecutionUninstaller = false;
@@ -438,6 +443,29 @@ public class Info implements Serializable
         this.compressionFormat = compression.toName();
     }
 
+    /**
+     * Returns the no. of threads used to write unpacked files.
+     *
+     * @return the no. of threads. If {@code 1}, files are unpacked serially
+     */
+    public int getUnpackThreads()
+    {
+        return unpackThreads;
+    }
+
+    /**
+     * Sets the no. of threads used to write unpacked files.
+     * <p/>
+     * With more than one thread, small files are read from the pack stream into memory and written to disk
+     * concurrently.
+     *
+     * @param unpackThreads the no. of threads. Values {@code <= 1} unpack serially
+     */
+    public void setUnpackThreads(int unpackThreads)
+    {
+        this.unpackThreads = Math.max(1, unpackThreads);
+    }
+
     /**
      * This class represents an author.
      *
@@ -57,6 +57,11 @@ public interface InstallData
      */
     String MODIFY_INSTALLATION = "modify.izpack.install";
 
+    /**
+     * Determines if files identical to those already installed are skipped, rather than extracted again.
+     */
+    String UPDATE_INSTALLATION = "update.izpack.install";
+
     /**
      * Installation information file name.
      */
@@ -21,6 +21,7 @@ package com.izforge.izpack.api.data;
 
 import com.izforge.izpack.api.data.binding.OsModel;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.text.DecimalFormat;
 import java.util.*;
@@ -158,6 +159,20 @@ public class Pack implements Serializable
      */
     private boolean hidden;
 
+    /**
+     * The SHA-256 digest of the pack jar retrieved by web installers, as a hexadecimal string. May be {@code null}
+     */
+    private String digest;
+
+    /**
+     * {@link PackInfoFormat} flags.
+     */
+    private static final int LOOSE = 1;
+    private static final int UNINSTALL = 2;
+    private static final int REQUIRED = 4;
+    private static final int PRESELECTED = 8;
+    private static final int HIDDEN = 16;
+
     /**
      * Used for conversions.
      */
@@ -213,6 +228,41 @@ public class Pack implements Serializable
         this.onDeselectPacks = new HashMap<String, String>();
     }
 
+    /**
+     * Constructs a <tt>Pack</tt> from its {@link PackInfoFormat} encoding.
+     *
+     * @param decoder the decoder
+     * @throws IOException if the encoding is invalid
+     */
+    Pack(PackInfoFormat.Decoder decoder) throws IOException
+    {
+        name = decoder.readString();
+        langPackId = decoder.readString();
+        description = decoder.readString();
+        int flags = decoder.readInt();
+        loose = (flags & LOOSE) != 0;
+        uninstall = (flags & UNINSTALL) != 0;
+        required = (flags & REQUIRED) != 0;
+        preselected = (flags & PRESELECTED) != 0;
+        hidden = (flags & HIDDEN) != 0;
+        installGroups.addAll(decoder.readStrings());
+        excludeGroup = decoder.readString();
+        group = decoder.readString();
+        osConstraints = decoder.readOsModels();
+        condition = decoder.readString();
+        dependencies = decoder.readStrings();
+        dependants = decoder.readStrings();
+        onSelectPacks = decoder.readStringMap();
+        onDeselectPacks = decoder.readStringMap();
+        size = decoder.readLong();
+        fileSize = decoder.readLong();
+        parent = decoder.readString();
+        children.addAll(decoder.readStrings());
+        imageId = decoder.readString();
+        validators.addAll(decoder.readStrings());
+        digest = decoder.readString();
+    }
+
     /**
      * Returns the pack name. This uniquely identifies the pack.
      *
@@ -588,6 +638,26 @@ public class Pack implements Serializable
         return imageId;
     }
 
+    /**
+     * Sets the SHA-256 digest of the pack jar retrieved by web installers.
+     *
+     * @param digest the digest, as a hexadecimal string. May be {@code null}
+     */
+    public void setDigest(String digest)
+    {
+        this.digest = digest;
+    }
+
+    /**
+     * Returns the SHA-256 digest of the pack jar retrieved by web installers.
+     *
+     * @return the digest, as a hexadecimal string, or {@code null} if the pack isn't written to a separate jar
+     */
+    public String getDigest()
+    {
+        return digest;
+    }
+
     /**
      * Sets a condition that must be fulfilled for the pack to be installed.
      *
@@ -747,4 +817,35 @@ public class Pack implements Serializable
     {
         return super.equals(obj) || obj instanceof Pack && name.equals(((Pack) obj).getName());
     }
+
+    /**
+     * Writes this to a {@link PackInfoFormat} encoder.
+     *
+     * @param encoder the encoder
+     * @throws IOException for any I/O error
+     */
+    void write(PackInfoFormat.Encoder encoder) throws IOException
+    {
+        encoder.writeString(name);
+        encoder.writeString(langPackId);
+        encoder.writeString(description);
+        encoder.writeInt((loose ? LOOSE : 0) | (uninstall ? UNINSTALL : 0) | (required ? REQUIRED : 0)
+                                 | (preselected ? PRESELECTED : 0) | (hidden ? HIDDEN : 0));
+        encoder.writeStrings(new ArrayList<String>(installGroups));
+        encoder.writeString(excludeGroup);
+        encoder.writeString(group);
+        encoder.writeOsModels(osConstraints);
+        encoder.writeString(condition);
+        encoder.writeStrings(dependencies);
+        encoder.writeStrings(dependants);
+        encoder.writeStringMap(onSelectPacks);
+        encoder.writeStringMap(onDeselectPacks);
+        encoder.writeLong(size);
+        encoder.writeLong(fileSize);
+        encoder.writeString(parent);
+        encoder.writeStrings(children);
+        encoder.writeString(imageId);
+        encoder.writeStrings(validators);
+        encoder.writeString(digest);
+    }
 }
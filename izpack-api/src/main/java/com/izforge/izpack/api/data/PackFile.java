@@ -44,6 +44,14 @@ public class PackFile implements Serializable
 {
     private static final long serialVersionUID = -834377078706854909L;
 
+    /**
+     * {@link PackInfoFormat} flags.
+     */
+    static final int DIRECTORY = 1;
+    static final int PACK200 = 2;
+    static final int LINKED = 4;
+    static final int ARCHIVED = 8;
+
     @SuppressWarnings("unused")
     private static AtomicInteger nextInstanceId = new AtomicInteger(0);
     private final int instanceId;
@@ -85,6 +93,11 @@ public class PackFile implements Serializable
      */
     private long mtime = -1;
 
+    /**
+     * The CRC-32C checksum of the file content, or {@code -1} if it is unknown.
+     */
+    private long checksum = -1;
+
     /**
      * True if file is a directory (length should be 0 or ignored)
      */
@@ -165,12 +178,33 @@ public class PackFile implements Serializable
                     String overrideRenameTo, Blockable blockable, Map additionals, Map<String, String> pack200Properties)
             throws FileNotFoundException
     {
-        instanceId = nextInstanceId.getAndIncrement();
-        if (!src.exists()) // allows cleaner client co
-        {
-            throw new FileNotFoundException("No such file: " + src);
-        }
+        this(requireExists(src), relativeSourcePath, target, src.isDirectory(), src.length(), src.lastModified(),
+             osList, override, overrideRenameTo, blockable, additionals, pack200Properties);
+    }
 
+    /**
+     * Constructs and initializes from the attributes of the content to install.
+     * <p/>
+     * This is used for content that isn't read from a file of its own, such as an entry of an archive.
+     *
+     * @param src                file which this PackFile describes. May be {@code null}
+     * @param relativeSourcePath the path relative to the compiletime's basedirectory. May be {@code null}
+     * @param target             the path to install the file to
+     * @param directory          if {@code true}, the content is a directory
+     * @param length             the length of the content. Ignored for directories
+     * @param mtime              the last-modification time of the content
+     * @param osList             OS constraints
+     * @param override           what to do when the file already exists
+     * @param overrideRenameTo   the glob mapper expression for renaming the file on override. May be {@code null}
+     * @param blockable          whether the file might be blocked by the operating system
+     * @param additionals        additional attributes
+     * @param pack200Properties  the Pack200 packer settings, or {@code null} if Pack200 isn't used
+     */
+    protected PackFile(File src, String relativeSourcePath, String target, boolean directory, long length, long mtime,
+                       List<OsModel> osList, OverrideType override, String overrideRenameTo, Blockable blockable,
+                       Map additionals, Map<String, String> pack200Properties)
+    {
+        instanceId = nextInstanceId.getAndIncrement();
         if ('/' != File.separatorChar)
         {
             target = target.replace(File.separatorChar, '/');
@@ -189,12 +223,14 @@ public class PackFile implements Serializable
         this.overrideRenameTo = overrideRenameTo;
         this.blockable = blockable;
 
-        this.mtime = src.lastModified();
-        this.isDirectory = src.isDirectory();
-        if (!this.isDirectory())
+        this.mtime = mtime;
+        this.isDirectory = directory;
+        // File.length is undefined for directories - we don't add any data, so don't skip
+        // any please!
+        if (!isDirectory)
         {
-            this.length = src.length();
-            this.size = this.length;
+            this.length = length;
+            this.size = length;
         }
         this.additionals = additionals;
         if (pack200Properties != null)
@@ -202,13 +238,6 @@ public class PackFile implements Serializable
             this.pack200Jar = true;
             this.pack200Properties = pack200Properties;
         }
-
-        // File.length is undefined for directories - we don't add any data, so don't skip
-        // any please!
-        if (isDirectory)
-        {
-            length = 0;
-        }
     }
 
     /**
@@ -230,6 +259,72 @@ public class PackFile implements Serializable
                 additionals, pack200Properties);
     }
 
+    /**
+     * Constructs a <tt>PackFile</tt> from its {@link PackInfoFormat} encoding.
+     *
+     * @param flags        the {@link PackInfoFormat} flags
+     * @param targetPath   the path to install the file to
+     * @param length       the length of the file
+     * @param size         the size of the file in the pack
+     * @param mtime        the last-modification time of the file
+     * @param streamOffset the offset of the file in the pack stream
+     * @param checksum     the checksum of the file content, or {@code -1} if it is unknown
+     * @param attributes   the decoder of the remaining attributes
+     * @throws IOException if the encoding is invalid
+     */
+    PackFile(int flags, String targetPath, long length, long size, long mtime, long streamOffset, long checksum,
+             PackInfoFormat.Decoder attributes) throws IOException
+    {
+        instanceId = nextInstanceId.getAndIncrement();
+        this.isDirectory = (flags & DIRECTORY) != 0;
+        this.pack200Jar = (flags & PACK200) != 0;
+        this.targetPath = targetPath;
+        this.length = length;
+        this.size = size;
+        this.mtime = mtime;
+        this.streamOffset = streamOffset;
+        this.checksum = checksum;
+        relativePath = attributes.readPath();
+        String path = attributes.readPath();
+        packedFile = (path != null) ? new File(path) : null;
+        override = attributes.readEnum(OverrideType.class);
+        overrideRenameTo = attributes.readString();
+        blockable = attributes.readEnum(Blockable.class);
+        condition = attributes.readString();
+        streamResourceName = attributes.readString();
+        osConstraints = attributes.readOsModels();
+        additionals = attributes.readMap();
+        pack200Properties = attributes.readStringMap();
+        if ((flags & LINKED) != 0)
+        {
+            linkedPackFile = read(attributes);
+        }
+    }
+
+    /**
+     * Creates a <tt>PackFile</tt> or {@link XPackFile} from its {@link PackInfoFormat} encoding.
+     *
+     * @param flags        the {@link PackInfoFormat} flags
+     * @param targetPath   the path to install the file to
+     * @param length       the length of the file
+     * @param size         the size of the file in the pack
+     * @param mtime        the last-modification time of the file
+     * @param streamOffset the offset of the file in the pack stream
+     * @param checksum     the checksum of the file content, or {@code -1} if it is unknown
+     * @param attributes   the decoder of the remaining attributes
+     * @return a new pack file
+     * @throws IOException if the encoding is invalid
+     */
+    static PackFile create(int flags, String targetPath, long length, long size, long mtime, long streamOffset,
+                           long checksum, PackInfoFormat.Decoder attributes) throws IOException
+    {
+        if ((flags & ARCHIVED) != 0)
+        {
+            return new XPackFile(flags, targetPath, length, size, mtime, streamOffset, checksum, attributes);
+        }
+        return new PackFile(flags, targetPath, length, size, mtime, streamOffset, checksum, attributes);
+    }
+
     /**
      * Get the unique ID compiled into this object
      * @return the unique ID
@@ -251,6 +346,7 @@ public class PackFile implements Serializable
         // update packed size and offset in order for unpacking to work correctly
         size = linkedPackFile.size;
         streamOffset = linkedPackFile.streamOffset;
+        checksum = linkedPackFile.checksum;
     }
 
     public String getStreamResourceName()
@@ -322,6 +418,28 @@ public class PackFile implements Serializable
         return mtime;
     }
 
+    /**
+     * Returns the CRC-32C checksum of the file content, recorded when the file was added to the pack.
+     * <p/>
+     * This is the checksum of the content as packed, before any variables are replaced at installation.
+     *
+     * @return the checksum, or {@code -1} if it is unknown
+     */
+    public final long getChecksum()
+    {
+        return checksum;
+    }
+
+    /**
+     * Sets the CRC-32C checksum of the file content.
+     *
+     * @param checksum the checksum, or {@code -1} if it is unknown
+     */
+    public void setChecksum(long checksum)
+    {
+        this.checksum = checksum;
+    }
+
     /**
      * Whether or not this file is going to override any existing ones
      */
@@ -429,6 +547,106 @@ public class PackFile implements Serializable
         }
     }
 
+    /**
+     * Writes this as a row of a {@link PackInfoFormat} file table.
+     * <p/>
+     * The attributes the installer needs for every file are written first, followed by the remaining attributes as a
+     * nested record, which {@link PackFileTable} retains in its encoded form.
+     *
+     * @param encoder the encoder
+     * @throws IOException for any I/O error
+     */
+    void writeRow(PackInfoFormat.Encoder encoder) throws IOException
+    {
+        writeColumns(encoder);
+        encoder.beginRecord();
+        writeAttributes(encoder);
+        encoder.endRecord();
+    }
+
+    /**
+     * Returns the {@link PackInfoFormat} flags of this.
+     *
+     * @return the flags
+     */
+    int getFormatFlags()
+    {
+        return (isDirectory ? DIRECTORY : 0) | (pack200Jar ? PACK200 : 0) | (linkedPackFile != null ? LINKED : 0);
+    }
+
+    /**
+     * Writes the attributes that aren't written by {@link #writeColumns}.
+     *
+     * @param encoder the encoder
+     * @throws IOException for any I/O error
+     */
+    void writeAttributes(PackInfoFormat.Encoder encoder) throws IOException
+    {
+        encoder.writePath(relativePath);
+        encoder.writePath(packedFile != null ? packedFile.getPath() : null);
+        encoder.writeEnum(override);
+        encoder.writeString(overrideRenameTo);
+        encoder.writeEnum(blockable);
+        encoder.writeString(condition);
+        encoder.writeString(streamResourceName);
+        encoder.writeOsModels(osConstraints);
+        encoder.writeMap(additionals);
+        encoder.writeStringMap(pack200Properties);
+        if (linkedPackFile != null)
+        {
+            linkedPackFile.writeColumns(encoder);
+            linkedPackFile.writeAttributes(encoder);
+        }
+    }
+
+    /**
+     * Writes the attributes held in the columns of a {@link PackFileTable}.
+     *
+     * @param encoder the encoder
+     * @throws IOException for any I/O error
+     */
+    private void writeColumns(PackInfoFormat.Encoder encoder) throws IOException
+    {
+        encoder.writeInt(getFormatFlags());
+        encoder.writePath(targetPath);
+        encoder.writeLong(length);
+        encoder.writeLong(size);
+        encoder.writeLong(mtime);
+        encoder.writeLong(streamOffset);
+        encoder.writeLong(checksum);
+    }
+
+    /**
+     * Reads a <tt>PackFile</tt> written by {@link #writeColumns} and {@link #writeAttributes}.
+     *
+     * @param decoder the decoder
+     * @return a new pack file
+     * @throws IOException if the encoding is invalid
+     */
+    private static PackFile read(PackInfoFormat.Decoder decoder) throws IOException
+    {
+        int flags = decoder.readInt();
+        String targetPath = decoder.readPath();
+        return create(flags, targetPath, decoder.readLong(), decoder.readLong(), decoder.readLong(),
+                      decoder.readLong(), decoder.readLong(), decoder);
+    }
+
+    /**
+     * Verifies that a source file exists.
+     *
+     * @param src the source file
+     * @return the source file
+     * @throws FileNotFoundException if the file does not exist
+     */
+    private static File requireExists(File src) throws FileNotFoundException
+    {
+        if (!src.exists()) // allows cleaner client co
+        {
+            throw new FileNotFoundException("No such file: " + src);
+        }
+        return src;
+    }
+
     @Override
     public String toString()
     {
@@ -0,0 +1,180 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.data;
+
+import com.izforge.izpack.api.exception.IzPackException;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * The files of a pack, as read by {@link PackInfoFormat#readFiles}.
+ * <p/>
+ * Rather than holding a {@link PackFile} per file, the attributes are held in columns: the sizes, offsets and
+ * modification times in primitive arrays, and the target paths as references to a string table shared by all files
+ * of the pack, split into parent and name so that files in the same directory share their parent.
+ * The remaining attributes are retained in their encoded form.
+ * <p/>
+ * {@link #get(int)} creates a new {@link PackFile} on each invocation, so callers iterating the table don't retain
+ * the files they have processed.
+ */
+public final class PackFileTable extends AbstractList<PackFile> implements RandomAccess
+{
+    /**
+     * The string table.
+     */
+    private final String[] strings;
+
+    /**
+     * The collections referred to by the files.
+     */
+    private final Object[] shared;
+
+    /**
+     * The {@link PackInfoFormat} flags of each file.
+     */
+    private final int[] flags;
+
+    /**
+     * The references to the parent of each target path.
+     */
+    private final int[] targetDirs;
+
+    /**
+     * The references to the name of each target path.
+     */
+    private final int[] targetNames;
+
+    /**
+     * The file lengths.
+     */
+    private final long[] lengths;
+
+    /**
+     * The file sizes in the pack.
+     */
+    private final long[] sizes;
+
+    /**
+     * The file modification times.
+     */
+    private final long[] mtimes;
+
+    /**
+     * The file offsets in the pack stream.
+     */
+    private final long[] offsets;
+
+    /**
+     * The file checksums.
+     */
+    private final long[] checksums;
+
+    /**
+     * The encoded remaining attributes of all files.
+     */
+    private final byte[] attributes;
+
+    /**
+     * The offset of the attributes of each file in {@link #attributes}, followed by the total length.
+     */
+    private final int[] attributeOffsets;
+
+    /**
+     * Constructs a <tt>PackFileTable</tt>.
+     *
+     * @param strings          the string table
+     * @param shared           the collections referred to by the files
+     * @param flags            the {@link PackInfoFormat} flags of each file
+     * @param targetDirs       the references to the parent of each target path
+     * @param targetNames      the references to the name of each target path
+     * @param lengths          the file lengths
+     * @param sizes            the file sizes in the pack
+     * @param mtimes           the file modification times
+     * @param offsets          the file offsets in the pack stream
+     * @param checksums        the file checksums
+     * @param attributes       the encoded remaining attributes of all files
+     * @param attributeOffsets the offset of the attributes of each file, followed by the total length
+     */
+    PackFileTable(String[] strings, Object[] shared, int[] flags, int[] targetDirs, int[] targetNames,
+                  long[] lengths, long[] sizes, long[] mtimes, long[] offsets, long[] checksums, byte[] attributes,
+                  int[] attributeOffsets)
+    {
+        this.strings = strings;
+        this.shared = shared;
+        this.flags = flags;
+        this.targetDirs = targetDirs;
+        this.targetNames = targetNames;
+        this.lengths = lengths;
+        this.sizes = sizes;
+        this.mtimes = mtimes;
+        this.offsets = offsets;
+        this.checksums = checksums;
+        this.attributes = attributes;
+        this.attributeOffsets = attributeOffsets;
+    }
+
+    /**
+     * Creates the file at the specified index.
+     *
+     * @param index the file index
+     * @return a new pack file
+     * @throws IzPackException if the file attributes are invalid
+     */
+    @Override
+    public PackFile get(int index)
+    {
+        int offset = attributeOffsets[index];
+        PackInfoFormat.Decoder decoder = new PackInfoFormat.Decoder(strings, shared, attributes, offset,
+                                                                    attributeOffsets[index + 1] - offset);
+        try
+        {
+            return PackFile.create(flags[index], getTargetPath(index), lengths[index], sizes[index], mtimes[index],
+                                   offsets[index], checksums[index], decoder);
+        }
+        catch (IOException exception)
+        {
+            throw new IzPackException("Failed to read pack file " + getTargetPath(index), exception);
+        }
+    }
+
+    /**
+     * Returns the target path of a file, without creating it.
+     *
+     * @param index the file index
+     * @return the target path
+     */
+    public String getTargetPath(int index)
+    {
+        return PackInfoFormat.Decoder.getPath(strings, targetDirs[index], targetNames[index]);
+    }
+
+    /**
+     * Returns the no. of files.
+     *
+     * @return the no. of files
+     */
+    @Override
+    public int size()
+    {
+        return flags.length;
+    }
+}
@@ -22,12 +22,15 @@
 package com.izforge.izpack.api.data;
 
 import com.izforge.izpack.api.data.binding.OsModel;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * Temporary holding place for Pack information as the Packager is built. The packager is used by
@@ -58,6 +61,11 @@ public class PackInfo implements Serializable
      */
     private final Map<PackFile, File> files = new LinkedHashMap<PackFile, File>();
 
+    /**
+     * Reads the files of the pack, when read by {@link PackInfoFormat}. May be {@code null}.
+     */
+    private transient Supplier<List<PackFile>> fileLoader;
+
     /**
      * Parsables files in this Pack.
      */
@@ -94,6 +102,49 @@ public class PackInfo implements Serializable
         colour = PackColor.WHITE;
     }
 
+    /**
+     * Constructs a <tt>PackInfo</tt> from its {@link PackInfoFormat} encoding.
+     *
+     * @param decoder the decoder
+     * @throws IOException if the encoding is invalid
+     */
+    PackInfo(PackInfoFormat.Decoder decoder) throws IOException
+    {
+        pack = new Pack(decoder);
+        colour = PackColor.WHITE;
+        int count = decoder.readInt();
+        for (int i = 0; i < count; ++i)
+        {
+            ParsableFile parsable = new ParsableFile(decoder.readString(), decoder.readEnum(SubstitutionType.class),
+                                                     decoder.readString(), decoder.readOsModels());
+            parsable.setCondition(decoder.readString());
+            parsables.add(parsable);
+        }
+        count = decoder.readInt();
+        for (int i = 0; i < count; ++i)
+        {
+            ExecutableFile executable = new ExecutableFile();
+            executable.path = decoder.readString();
+            executable.executionStage = decoder.readInt();
+            executable.mainClass = decoder.readString();
+            executable.type = decoder.readInt();
+            executable.onFailure = decoder.readInt();
+            executable.argList = decoder.readStrings();
+            executable.osList = decoder.readOsModels();
+            executable.keepFile = decoder.readBoolean();
+            executable.setCondition(decoder.readString());
+            executables.add(executable);
+        }
+        count = decoder.readInt();
+        for (int i = 0; i < count; ++i)
+        {
+            List<String> includes = decoder.readStrings();
+            List<String> excludes = decoder.readStrings();
+            updateChecks.add(new UpdateCheck(includes != null ? new ArrayList<String>(includes) : null,
+                                             excludes != null ? new ArrayList<String>(excludes) : null));
+        }
+    }
+
     public void setOsConstraints(List<OsModel> osConstraints)
     {
         pack.setOsConstraints(osConstraints);
@@ -159,7 +210,19 @@ public class PackInfo implements Serializable
                                          additionals, pack200Properties);
         packFile.setLoosePackInfo(pack.isLoose());
         packFile.setCondition(condition);
-        files.put(packFile, file);
+        getFiles().put(packFile, file);
+    }
+
+    /**
+     * Adds a file or directory to be installed, whose content may not be read from a file of its own, such as an
+     * entry of an archive.
+     *
+     * @param packFile the file to add
+     */
+    public void addFile(PackFile packFile)
+    {
+        packFile.setLoosePackInfo(pack.isLoose());
+        getFiles().put(packFile, packFile.getFile());
     }
 
     /**
@@ -167,7 +230,26 @@ public class PackInfo implements Serializable
      */
     public Set<PackFile> getPackFiles()
     {
-        return files.keySet();
+        return getFiles().keySet();
+    }
+
+    /**
+     * Returns the files of the pack, without retaining them.
+     * <p/>
+     * For packs read by {@link PackInfoFormat}, each invocation reads the files from the installer into a
+     * {@link PackFileTable}, which can be discarded once the pack has been processed. This is preferable to
+     * {@link #getPackFiles()} when the files only need to be iterated.
+     *
+     * @return the files of the pack
+     */
+    public List<PackFile> readPackFiles()
+    {
+        Supplier<List<PackFile>> loader;
+        synchronized (this)
+        {
+            loader = fileLoader;
+        }
+        return (loader != null) ? loader.get() : new ArrayList<PackFile>(getFiles().keySet());
     }
 
     /**
@@ -176,7 +258,7 @@ public class PackInfo implements Serializable
      */
     public Map<PackFile, File> getPackFilesMap()
     {
-        return files;
+        return getFiles();
     }
 
     /**
@@ -185,7 +267,7 @@ public class PackInfo implements Serializable
      */
     public File getFile(PackFile packFile)
     {
-        return files.get(packFile);
+        return getFiles().get(packFile);
     }
 
     /**
@@ -309,4 +391,83 @@ public class PackInfo implements Serializable
     {
         pack.setOnDeselect(name, condition);
     }
+
+    /**
+     * Sets the loader of the files of the pack, invoked on first access to the files.
+     *
+     * @param loader the file loader
+     */
+    void setFileLoader(Supplier<List<PackFile>> loader)
+    {
+        fileLoader = loader;
+    }
+
+    /**
+     * Writes this to a {@link PackInfoFormat} encoder. The files are written separately.
+     *
+     * @param encoder the encoder
+     * @throws IOException for any I/O error
+     */
+    void write(PackInfoFormat.Encoder encoder) throws IOException
+    {
+        pack.write(encoder);
+        encoder.writeInt(parsables.size());
+        for (ParsableFile parsable : parsables)
+        {
+            encoder.writeString(parsable.getPath());
+            encoder.writeEnum(parsable.getType());
+            encoder.writeString(parsable.getEncoding());
+            encoder.writeOsModels(parsable.getOsConstraints());
+            encoder.writeString(parsable.getCondition());
+        }
+        encoder.writeInt(executables.size());
+        for (ExecutableFile executable : executables)
+        {
+            encoder.writeString(executable.path);
+            encoder.writeInt(executable.executionStage);
+            encoder.writeString(executable.mainClass);
+            encoder.writeInt(executable.type);
+            encoder.writeInt(executable.onFailure);
+            encoder.writeStrings(executable.argList);
+            encoder.writeOsModels(executable.osList);
+            encoder.writeBoolean(executable.keepFile);
+            encoder.writeString(executable.getCondition());
+        }
+        encoder.writeInt(updateChecks.size());
+        for (UpdateCheck check : updateChecks)
+        {
+            encoder.writeStrings(check.includesList);
+            encoder.writeStrings(check.excludesList);
+        }
+    }
+
+    /**
+     * Returns the files of the pack, loading them if required.
+     *
+     * @return the files
+     */
+    private synchronized Map<PackFile, File> getFiles()
+    {
+        if (fileLoader != null)
+        {
+            for (PackFile file : fileLoader.get())
+            {
+                files.put(file, file.getFile());
+            }
+            fileLoader = null;
+        }
+        return files;
+    }
+
+    /**
+     * Loads the files before serialization.
+     *
+     * @param stream the stream to write to
+     * @throws IOException for any I/O error
+     */
+    private void writeObject(ObjectOutputStream stream) throws IOException
+    {
+        getFiles();
+        stream.defaultWriteObject();
+    }
 }
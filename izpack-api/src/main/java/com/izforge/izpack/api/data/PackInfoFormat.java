@@ -0,0 +1,840 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.data;
+
+import com.izforge.izpack.api.data.binding.OsModel;
+import com.izforge.izpack.api.exception.IzPackException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Reads and writes the <em>packs.info</em> installer resource, and the file tables of each pack.
+ * <p/>
+ * This is a versioned binary format, replacing the Java serialisation of the list of {@link PackInfo}s.
+ * <em>packs.info</em> consists of:
+ * <ul>
+ * <li>a header: the magic no. and format version</li>
+ * <li>a string table. Strings are written once, and referred to by index, so that repeated names and conditions
+ * are shared when read</li>
+ * <li>the pack records</li>
+ * </ul>
+ * The files of each pack are written to a separate resource, named by {@link #getFilesResourceName(String)}, with
+ * the same header and its own string table. This is only read when the files of the pack are accessed, into a
+ * {@link PackFileTable}.
+ * <p/>
+ * Values of types without a specific encoding, such as those in {@link PackFile#getAdditionals()}, fall back to Java
+ * serialisation.
+ */
+public final class PackInfoFormat
+{
+    /**
+     * The magic no., "IZPI".
+     */
+    private static final int MAGIC = 0x495A5049;
+
+    /**
+     * The format version.
+     */
+    private static final int VERSION = 4;
+
+    /**
+     * The prefix of the pack file table resource names.
+     */
+    private static final String FILES_RESOURCE_PREFIX = "packs/files-";
+
+    private PackInfoFormat()
+    {
+    }
+
+    /**
+     * Returns the name of the resource holding the files of a pack, relative to the installer resources.
+     *
+     * @param pack the pack name
+     * @return the resource name
+     */
+    public static String getFilesResourceName(String pack)
+    {
+        return FILES_RESOURCE_PREFIX + pack;
+    }
+
+    /**
+     * Writes packs. The files of each pack must be written separately, using {@link #writeFiles}.
+     *
+     * @param packs the packs to write
+     * @param out   the stream to write to. This is not closed
+     * @throws IOException for any I/O error
+     */
+    public static void write(List<PackInfo> packs, OutputStream out) throws IOException
+    {
+        Encoder encoder = new Encoder();
+        List<byte[]> records = new ArrayList<byte[]>();
+        for (PackInfo pack : packs)
+        {
+            pack.write(encoder);
+            records.add(encoder.finish());
+        }
+
+        DataOutputStream data = writeHeader(encoder, out);
+        writeVarInt(data, packs.size());
+        for (byte[] record : records)
+        {
+            writeBytes(data, record);
+        }
+        data.flush();
+    }
+
+    /**
+     * Writes the files of a pack.
+     *
+     * @param pack the pack
+     * @param out  the stream to write to. This is not closed
+     * @throws IOException for any I/O error
+     */
+    public static void writeFiles(PackInfo pack, OutputStream out) throws IOException
+    {
+        Encoder encoder = new Encoder();
+        Collection<PackFile> files = pack.getPackFiles();
+        encoder.writeInt(files.size());
+        for (PackFile file : files)
+        {
+            file.writeRow(encoder);
+        }
+        byte[] table = encoder.finish();
+
+        DataOutputStream data = writeHeader(encoder, out);
+        data.write(table);
+        data.flush();
+    }
+
+    /**
+     * Reads packs.
+     * <p/>
+     * The files of each pack are read from their own resource when first accessed.
+     *
+     * @param in        the stream to read from. This is not closed
+     * @param resources returns the stream to a resource, given its name
+     * @return the packs
+     * @throws IOException for any I/O error, or if the stream isn't in a supported format
+     */
+    public static List<PackInfo> read(InputStream in, Function<String, InputStream> resources) throws IOException
+    {
+        DataInputStream data = new DataInputStream(in);
+        String[] strings = readHeader(data);
+        int size = readVarInt(data);
+        List<PackInfo> result = new ArrayList<PackInfo>(size);
+        for (int i = 0; i < size; ++i)
+        {
+            byte[] record = readBytes(data);
+            Decoder decoder = new Decoder(strings, new DataInputStream(new ByteArrayInputStream(record)));
+            decoder.readShared();
+            PackInfo pack = new PackInfo(decoder);
+            String name = getFilesResourceName(pack.getPack().getName());
+            pack.setFileLoader(() -> readFiles(resources, name));
+            result.add(pack);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the files of a pack.
+     *
+     * @param in the stream to read from. This is not closed
+     * @return the files
+     * @throws IOException for any I/O error, or if the stream isn't in a supported format
+     */
+    public static PackFileTable readFiles(InputStream in) throws IOException
+    {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        String[] strings = readHeader(data);
+        Decoder decoder = new Decoder(strings, data);
+        Object[] shared = decoder.readShared();
+        int count = decoder.readInt();
+        int[] flags = new int[count];
+        int[] targetDirs = new int[count];
+        int[] targetNames = new int[count];
+        long[] lengths = new long[count];
+        long[] sizes = new long[count];
+        long[] mtimes = new long[count];
+        long[] offsets = new long[count];
+        long[] checksums = new long[count];
+        int[] attributeOffsets = new int[count + 1];
+        ByteArrayOutputStream attributes = new ByteArrayOutputStream();
+        for (int i = 0; i < count; ++i)
+        {
+            flags[i] = decoder.readInt();
+            targetDirs[i] = decoder.readStringReference();
+            targetNames[i] = decoder.readStringReference();
+            lengths[i] = decoder.readLong();
+            sizes[i] = decoder.readLong();
+            mtimes[i] = decoder.readLong();
+            offsets[i] = decoder.readLong();
+            checksums[i] = decoder.readLong();
+            attributes.write(decoder.readBytes());
+            attributeOffsets[i + 1] = attributes.size();
+        }
+        return new PackFileTable(strings, shared, flags, targetDirs, targetNames, lengths, sizes, mtimes, offsets,
+                                 checksums, attributes.toByteArray(), attributeOffsets);
+    }
+
+    /**
+     * Reads the files of a pack from its resource.
+     *
+     * @param resources returns the stream to a resource, given its name
+     * @param name      the resource name
+     * @return the files
+     * @throws IzPackException if the files cannot be read
+     */
+    private static PackFileTable readFiles(Function<String, InputStream> resources, String name)
+    {
+        try (InputStream in = resources.apply(name))
+        {
+            return readFiles(in);
+        }
+        catch (IOException exception)
+        {
+            throw new IzPackException("Failed to read pack files from " + name, exception);
+        }
+    }
+
+    private static DataOutputStream writeHeader(Encoder encoder, OutputStream out) throws IOException
+    {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        List<String> strings = encoder.getStrings();
+        writeVarInt(data, strings.size());
+        for (String string : strings)
+        {
+            writeBytes(data, string.getBytes(StandardCharsets.UTF_8));
+        }
+        return data;
+    }
+
+    private static String[] readHeader(DataInputStream data) throws IOException
+    {
+        if (data.readInt() != MAGIC)
+        {
+            throw new IOException("Invalid pack meta-data resource");
+        }
+        int version = data.readUnsignedShort();
+        if (version != VERSION)
+        {
+            throw new IOException("Unsupported pack meta-data version: " + version);
+        }
+        String[] strings = new String[readVarInt(data)];
+        for (int i = 0; i < strings.length; ++i)
+        {
+            strings[i] = new String(readBytes(data), StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException
+    {
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException
+    {
+        byte[] result = new byte[readVarInt(in)];
+        in.readFully(result);
+        return result;
+    }
+
+    /**
+     * Writes an unsigned value, 7 bits at a time.
+     *
+     * @param out   the stream to write to
+     * @param value the value to write
+     * @throws IOException for any I/O error
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException
+    {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException
+    {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return result;
+            }
+        }
+        throw new IOException("Malformed variable length value");
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException
+    {
+        return (int) readVarLong(in);
+    }
+
+    /**
+     * Encodes records, collecting their strings into a string table.
+     * <p/>
+     * Collections are written once per record, in a section preceding it, and referred to by index, so that
+     * collections shared by several files are shared when read.
+     */
+    static final class Encoder
+    {
+        private static final int VALUE_NULL = 0;
+        private static final int VALUE_STRING = 1;
+        private static final int VALUE_BOOLEAN = 2;
+        private static final int VALUE_INTEGER = 3;
+        private static final int VALUE_LONG = 4;
+        private static final int VALUE_SERIALIZED = 5;
+
+        private static final int SHARED_STRINGS = 1;
+        private static final int SHARED_STRING_MAP = 2;
+        private static final int SHARED_OS_MODELS = 3;
+        private static final int SHARED_MAP = 4;
+
+        private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+        private final List<String> strings = new ArrayList<String>();
+
+        /**
+         * The collections referred to by the current record, and their indexes.
+         */
+        private final Map<Object, Integer> shared = new IdentityHashMap<Object, Integer>();
+        private final List<Object> sharedValues = new ArrayList<Object>();
+        private final List<Integer> sharedTypes = new ArrayList<Integer>();
+
+        /**
+         * The buffers of the enclosing records.
+         */
+        private final Deque<ByteArrayOutputStream> enclosing = new ArrayDeque<ByteArrayOutputStream>();
+
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private DataOutputStream out = new DataOutputStream(buffer);
+
+        /**
+         * Returns the record written since the last invocation, preceded by the collections it refers to.
+         *
+         * @return the encoded record
+         * @throws IOException for any I/O error
+         */
+        byte[] finish() throws IOException
+        {
+            byte[] body = buffer.toByteArray();
+            buffer.reset();
+            writeVarInt(out, sharedValues.size());
+            for (int i = 0; i < sharedValues.size(); ++i)
+            {
+                int type = sharedTypes.get(i);
+                out.writeByte(type);
+                writeSharedValue(type, sharedValues.get(i));
+            }
+            out.write(body);
+            byte[] result = buffer.toByteArray();
+            buffer.reset();
+            shared.clear();
+            sharedValues.clear();
+            sharedTypes.clear();
+            return result;
+        }
+
+        List<String> getStrings()
+        {
+            return strings;
+        }
+
+        /**
+         * Starts a nested record. Everything written until {@link #endRecord()} is written as a single
+         * length-prefixed value, so that it can be skipped or retained without being decoded.
+         */
+        void beginRecord()
+        {
+            enclosing.push(buffer);
+            buffer = new ByteArrayOutputStream();
+            out = new DataOutputStream(buffer);
+        }
+
+        /**
+         * Ends a nested record.
+         *
+         * @throws IOException for any I/O error
+         */
+        void endRecord() throws IOException
+        {
+            byte[] record = buffer.toByteArray();
+            buffer = enclosing.pop();
+            out = new DataOutputStream(buffer);
+            writeBytes(out, record);
+        }
+
+        void writeBoolean(boolean value) throws IOException
+        {
+            out.writeBoolean(value);
+        }
+
+        void writeInt(int value) throws IOException
+        {
+            writeVarLong(out, ((long) value << 1) ^ ((long) value >> 63));
+        }
+
+        void writeLong(long value) throws IOException
+        {
+            writeVarLong(out, (value << 1) ^ (value >> 63));
+        }
+
+        void writeString(String value) throws IOException
+        {
+            if (value == null)
+            {
+                writeVarInt(out, 0);
+            }
+            else
+            {
+                Integer index = indexes.get(value);
+                if (index == null)
+                {
+                    index = strings.size();
+                    strings.add(value);
+                    indexes.put(value, index);
+                }
+                writeVarInt(out, index + 1);
+            }
+        }
+
+        /**
+         * Writes a path as its parent and name, so that the parent is shared with paths in the same directory.
+         *
+         * @param path the path. May be {@code null}
+         * @throws IOException for any I/O error
+         */
+        void writePath(String path) throws IOException
+        {
+            int index = (path != null) ? Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) : -1;
+            writeString(index != -1 ? path.substring(0, index + 1) : null);
+            writeString(index != -1 ? path.substring(index + 1) : path);
+        }
+
+        void writeEnum(Enum<?> value) throws IOException
+        {
+            writeVarInt(out, value != null ? value.ordinal() + 1 : 0);
+        }
+
+        void writeStrings(List<String> values) throws IOException
+        {
+            writeShared(SHARED_STRINGS, values);
+        }
+
+        void writeStringMap(Map<String, String> values) throws IOException
+        {
+            writeShared(SHARED_STRING_MAP, values);
+        }
+
+        void writeOsModels(List<OsModel> values) throws IOException
+        {
+            writeShared(SHARED_OS_MODELS, values);
+        }
+
+        void writeMap(Map<?, ?> values) throws IOException
+        {
+            writeShared(SHARED_MAP, values);
+        }
+
+        void writeValue(Object value) throws IOException
+        {
+            if (value == null)
+            {
+                out.writeByte(VALUE_NULL);
+            }
+            else if (value instanceof String)
+            {
+                out.writeByte(VALUE_STRING);
+                writeString((String) value);
+            }
+            else if (value instanceof Boolean)
+            {
+                out.writeByte(VALUE_BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            }
+            else if (value instanceof Integer)
+            {
+                out.writeByte(VALUE_INTEGER);
+                writeInt((Integer) value);
+            }
+            else if (value instanceof Long)
+            {
+                out.writeByte(VALUE_LONG);
+                writeLong((Long) value);
+            }
+            else
+            {
+                out.writeByte(VALUE_SERIALIZED);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream stream = new ObjectOutputStream(bytes))
+                {
+                    stream.writeObject(value);
+                }
+                writeBytes(out, bytes.toByteArray());
+            }
+        }
+
+        /**
+         * Writes a reference to a collection.
+         *
+         * @param type  the collection type
+         * @param value the collection. May be {@code null}
+         * @throws IOException for any I/O error
+         */
+        private void writeShared(int type, Object value) throws IOException
+        {
+            if (value == null)
+            {
+                writeVarInt(out, 0);
+            }
+            else
+            {
+                Integer index = shared.get(value);
+                if (index == null)
+                {
+                    index = sharedValues.size();
+                    shared.put(value, index);
+                    sharedValues.add(value);
+                    sharedTypes.add(type);
+                }
+                writeVarInt(out, index + 1);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void writeSharedValue(int type, Object value) throws IOException
+        {
+            switch (type)
+            {
+                case SHARED_STRINGS:
+                    List<String> list = (List<String>) value;
+                    writeVarInt(out, list.size());
+                    for (String string : list)
+                    {
+                        writeString(string);
+                    }
+                    break;
+                case SHARED_STRING_MAP:
+                    Map<String, String> strings = (Map<String, String>) value;
+                    writeVarInt(out, strings.size());
+                    for (Map.Entry<String, String> entry : strings.entrySet())
+                    {
+                        writeString(entry.getKey());
+                        writeString(entry.getValue());
+                    }
+                    break;
+                case SHARED_OS_MODELS:
+                    List<OsModel> models = (List<OsModel>) value;
+                    writeVarInt(out, models.size());
+                    for (OsModel model : models)
+                    {
+                        writeString(model.getArch());
+                        writeString(model.getFamily());
+                        writeString(model.getJre());
+                        writeString(model.getName());
+                        writeString(model.getVersion());
+                    }
+                    break;
+                default:
+                    Map<?, ?> map = (Map<?, ?>) value;
+                    writeVarInt(out, map.size());
+                    for (Map.Entry<?, ?> entry : map.entrySet())
+                    {
+                        writeValue(entry.getKey());
+                        writeValue(entry.getValue());
+                    }
+            }
+        }
+    }
+
+    /**
+     * Decodes records written by an {@link Encoder}.
+     */
+    static final class Decoder
+    {
+        private final String[] strings;
+        private Object[] shared;
+        private final DataInputStream in;
+
+        /**
+         * Constructs a <tt>Decoder</tt>. {@link #readShared()} must be invoked before reading the record.
+         *
+         * @param strings the string table
+         * @param in      the stream to read from
+         */
+        Decoder(String[] strings, DataInputStream in)
+        {
+            this.strings = strings;
+            this.in = in;
+            this.shared = new Object[0];
+        }
+
+        /**
+         * Constructs a <tt>Decoder</tt> for a nested record.
+         *
+         * @param strings the string table
+         * @param shared  the collections of the enclosing record
+         * @param bytes   the buffer containing the nested record
+         * @param offset  the offset of the nested record in the buffer
+         * @param length  the length of the nested record
+         */
+        Decoder(String[] strings, Object[] shared, byte[] bytes, int offset, int length)
+        {
+            this.strings = strings;
+            this.shared = shared;
+            this.in = new DataInputStream(new ByteArrayInputStream(bytes, offset, length));
+        }
+
+        /**
+         * Reads the collections that the record refers to.
+         *
+         * @return the collections
+         * @throws IOException for any I/O error
+         */
+        Object[] readShared() throws IOException
+        {
+            shared = new Object[readVarInt(in)];
+            for (int i = 0; i < shared.length; ++i)
+            {
+                shared[i] = readSharedValue(in.readUnsignedByte());
+            }
+            return shared;
+        }
+
+        boolean readBoolean() throws IOException
+        {
+            return in.readBoolean();
+        }
+
+        int readInt() throws IOException
+        {
+            return (int) readLong();
+        }
+
+        long readLong() throws IOException
+        {
+            long value = readVarLong(in);
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        byte[] readBytes() throws IOException
+        {
+            return PackInfoFormat.readBytes(in);
+        }
+
+        /**
+         * Reads a reference to a string, without resolving it.
+         *
+         * @return the string reference, or {@code 0} if the string is {@code null}
+         * @throws IOException for any I/O error
+         */
+        int readStringReference() throws IOException
+        {
+            int reference = readVarInt(in);
+            if (reference > strings.length)
+            {
+                throw new EOFException("Invalid string reference: " + reference);
+            }
+            return reference;
+        }
+
+        String readString() throws IOException
+        {
+            return getString(strings, readStringReference());
+        }
+
+        String readPath() throws IOException
+        {
+            return getPath(strings, readStringReference(), readStringReference());
+        }
+
+        <T extends Enum<T>> T readEnum(Class<T> type) throws IOException
+        {
+            int ordinal = readVarInt(in);
+            return ordinal != 0 ? type.getEnumConstants()[ordinal - 1] : null;
+        }
+
+        List<String> readStrings() throws IOException
+        {
+            return getShared();
+        }
+
+        Map<String, String> readStringMap() throws IOException
+        {
+            return getShared();
+        }
+
+        List<OsModel> readOsModels() throws IOException
+        {
+            return getShared();
+        }
+
+        Map<Object, Object> readMap() throws IOException
+        {
+            return getShared();
+        }
+
+        Object readValue() throws IOException
+        {
+            int type = in.readUnsignedByte();
+            switch (type)
+            {
+                case Encoder.VALUE_NULL:
+                    return null;
+                case Encoder.VALUE_STRING:
+                    return readString();
+                case Encoder.VALUE_BOOLEAN:
+                    return in.readBoolean();
+                case Encoder.VALUE_INTEGER:
+                    return readInt();
+                case Encoder.VALUE_LONG:
+                    return readLong();
+                case Encoder.VALUE_SERIALIZED:
+                    try (ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(readBytes())))
+                    {
+                        return stream.readObject();
+                    }
+                    catch (ClassNotFoundException exception)
+                    {
+                        throw new IOException(exception);
+                    }
+                default:
+                    throw new IOException("Invalid value type: " + type);
+            }
+        }
+
+        /**
+         * Resolves a string reference.
+         *
+         * @param strings   the string table
+         * @param reference the string reference
+         * @return the corresponding string. May be {@code null}
+         */
+        static String getString(String[] strings, int reference)
+        {
+            return (reference != 0) ? strings[reference - 1] : null;
+        }
+
+        /**
+         * Resolves a path written by {@link Encoder#writePath(String)}.
+         *
+         * @param strings the string table
+         * @param parent  the reference to the parent
+         * @param name    the reference to the name
+         * @return the path. May be {@code null}
+         */
+        static String getPath(String[] strings, int parent, int name)
+        {
+            String result = getString(strings, name);
+            if (parent != 0 && result != null)
+            {
+                result = strings[parent - 1].concat(result);
+            }
+            return result;
+        }
+
+        private Object readSharedValue(int type) throws IOException
+        {
+            int size = readVarInt(in);
+            switch (type)
+            {
+                case Encoder.SHARED_STRINGS:
+                    List<String> list = new ArrayList<String>(size);
+                    for (int i = 0; i < size; ++i)
+                    {
+                        list.add(readString());
+                    }
+                    return list;
+                case Encoder.SHARED_STRING_MAP:
+                    Map<String, String> strings = new LinkedHashMap<String, String>();
+                    for (int i = 0; i < size; ++i)
+                    {
+                        strings.put(readString(), readString());
+                    }
+                    return strings;
+                case Encoder.SHARED_OS_MODELS:
+                    List<OsModel> models = new ArrayList<OsModel>(size);
+                    for (int i = 0; i < size; ++i)
+                    {
+                        models.add(new OsModel(readString(), readString(), readString(), readString(), readString()));
+                    }
+                    return models;
+                case Encoder.SHARED_MAP:
+                    Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+                    for (int i = 0; i < size; ++i)
+                    {
+                        map.put(readValue(), readValue());
+                    }
+                    return map;
+                default:
+                    throw new IOException("Invalid collection type: " + type);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T getShared() throws IOException
+        {
+            int reference = readVarInt(in);
+            if (reference == 0)
+            {
+                return null;
+            }
+            if (reference > shared.length)
+            {
+                throw new EOFException("Invalid collection reference: " + reference);
+            }
+            return (T) shared[reference - 1];
+        }
+    }
+}
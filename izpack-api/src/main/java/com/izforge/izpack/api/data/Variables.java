@@ -189,4 +189,18 @@ public interface Variables
      * @return the variables overrides
      */
     Overrides getOverrides();
+
+    /**
+     * Returns the version of the variables.
+     * <p/>
+     * The version changes whenever the value of a variable set via {@link #set} changes, or when the overrides are
+     * replaced. Callers may use it to reuse values derived from the variables while it is unchanged.
+     * Changes made directly to the {@link #getProperties() properties} are not tracked.
+     *
+     * @return the version, or {@code 0} if changes aren't tracked
+     */
+    default long getVersion()
+    {
+        return 0;
+    }
 }
\ No newline at end of file
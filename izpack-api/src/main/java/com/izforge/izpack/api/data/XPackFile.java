@@ -68,12 +68,33 @@ public class XPackFile extends PackFile implements Comparable<XPackFile>
      */
     public XPackFile(PackFile file) throws IOException
     {
-        super(file.getFile(), file.getRelativeSourcePath(), file.getTargetPath(), file.osConstraints(),
-              file.override(), file.overrideRenameTo(), file.blockable(), file.getAdditionals(), null);
+        super(file.getFile(), file.getRelativeSourcePath(), file.getTargetPath(), file.isDirectory(), file.length(),
+              file.lastModified(), file.osConstraints(), file.override(), file.overrideRenameTo(), file.blockable(),
+              file.getAdditionals(), null);
         this.position = 0;
         this.setCondition(file.getCondition());
     }
 
+    /**
+     * Constructs an <tt>XPackFile</tt> from its {@link PackInfoFormat} encoding.
+     *
+     * @param flags        the {@link PackInfoFormat} flags
+     * @param targetPath   the path to install the file to
+     * @param length       the length of the file
+     * @param size         the size of the file in the pack
+     * @param mtime        the last-modification time of the file
+     * @param streamOffset the offset of the file in the pack stream
+     * @param checksum     the checksum of the file content, or {@code -1} if it is unknown
+     * @param attributes   the decoder of the remaining attributes
+     * @throws IOException if the encoding is invalid
+     */
+    XPackFile(int flags, String targetPath, long length, long size, long mtime, long streamOffset, long checksum,
+              PackInfoFormat.Decoder attributes) throws IOException
+    {
+        super(flags, targetPath, length, size, mtime, streamOffset, checksum, attributes);
+        this.position = attributes.readLong();
+    }
+
     /**
      * Returns the position of the file in the archive.
      *
@@ -94,6 +115,19 @@ public class XPackFile extends PackFile implements Comparable<XPackFile>
         this.position = position;
     }
 
+    @Override
+    int getFormatFlags()
+    {
+        return super.getFormatFlags() | ARCHIVED;
+    }
+
+    @Override
+    void writeAttributes(PackInfoFormat.Encoder encoder) throws IOException
+    {
+        super.writeAttributes(encoder);
+        encoder.writeLong(position);
+    }
+
     public int compareTo(XPackFile arg0)
     {
         return this.getTargetPath().compareTo(arg0.getTargetPath());
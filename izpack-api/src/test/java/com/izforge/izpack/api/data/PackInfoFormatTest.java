@@ -0,0 +1,301 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.data;
+
+import com.izforge.izpack.api.data.binding.OsModel;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the {@link PackInfoFormat} class.
+ */
+public class PackInfoFormatTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that packs and their files survive a write/read round trip.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        File dir = temporaryFolder.getRoot();
+        File a = createFile(dir, "a.txt", "some content");
+        File b = createFile(dir, "b.txt", "more content");
+        List<OsModel> unix = Collections.singletonList(new OsModel(null, "unix", null, null, null));
+
+        PackInfo core = new PackInfo("Core", "core.id", "The core", true, false, null, true, 100);
+        core.setOsConstraints(unix);
+        core.addInstallGroup("group1");
+        core.addDependency("Other");
+        core.addOnSelect("Other", "cond1");
+        core.setCondition("cond2");
+        core.getPack().setDigest("0123456789abcdef");
+        Map<String, Object> additionals = new HashMap<String, Object>();
+        additionals.put("key", "value");
+        additionals.put("count", 3);
+        core.addFile(dir, a, "$INSTALL_PATH/a.txt", unix, OverrideType.OVERRIDE_UPDATE, null,
+                     Blockable.BLOCKABLE_AUTO, additionals, "cond3", null);
+        core.addFile(dir, b, "$INSTALL_PATH/b.txt", unix, OverrideType.OVERRIDE_TRUE, "*.bak",
+                     Blockable.BLOCKABLE_NONE, null, null, null);
+        ParsableFile parsable = new ParsableFile("$INSTALL_PATH/a.txt", SubstitutionType.TYPE_JAVA_PROPERTIES,
+                                                 "UTF-8", unix);
+        parsable.setCondition("cond4");
+        core.addParsable(parsable);
+        core.addExecutable(new ExecutableFile("$INSTALL_PATH/b.txt", ExecutableFile.BIN, null,
+                                              ExecutableFile.POSTINSTALL, ExecutableFile.WARN,
+                                              Arrays.asList("-x", "-y"), unix, true));
+        core.addUpdateCheck(new UpdateCheck(new ArrayList<String>(Collections.singletonList("**/*.txt")), null));
+
+        PackInfo other = new PackInfo("Other", null, null, false, true, "exclude", false, 0);
+        other.setHidden(true);
+
+        List<PackInfo> packs = read(write(Arrays.asList(core, other)));
+        assertEquals(2, packs.size());
+
+        Pack pack = packs.get(0).getPack();
+        assertEquals("Core", pack.getName());
+        assertEquals("core.id", pack.getLangPackId());
+        assertEquals("The core", pack.getDescription());
+        assertTrue(pack.isRequired());
+        assertTrue(pack.isUninstall());
+        assertFalse(pack.isLoose());
+        assertEquals(100, pack.getSize());
+        assertEquals("unix", pack.getOsConstraints().get(0).getFamily());
+        assertTrue(pack.getInstallGroups().contains("group1"));
+        assertEquals(Collections.singletonList("Other"), pack.getDependencies());
+        assertEquals("cond1", pack.getOnSelect().get("Other"));
+        assertEquals("cond2", pack.getCondition());
+        assertEquals("0123456789abcdef", pack.getDigest());
+
+        List<PackFile> files = new ArrayList<PackFile>(packs.get(0).getPackFiles());
+        assertEquals(2, files.size());
+        PackFile file = files.get(0);
+        assertEquals("$INSTALL_PATH/a.txt", file.getTargetPath());
+        assertEquals("a.txt", file.getRelativeSourcePath());
+        assertEquals(a, file.getFile());
+        assertEquals(a, packs.get(0).getFile(file));
+        assertEquals(a.length(), file.length());
+        assertEquals(a.lastModified(), file.lastModified());
+        assertEquals(OverrideType.OVERRIDE_UPDATE, file.override());
+        assertEquals(Blockable.BLOCKABLE_AUTO, file.blockable());
+        assertEquals("cond3", file.getCondition());
+        assertEquals("value", file.getAdditionals().get("key"));
+        assertEquals(3, file.getAdditionals().get("count"));
+        assertEquals("*.bak", files.get(1).overrideRenameTo());
+        assertEquals(-1, file.getChecksum());
+
+        // the OS constraints are shared by both files, so should be read once
+        assertSame(file.osConstraints(), files.get(1).osConstraints());
+
+        ParsableFile readParsable = packs.get(0).getParsables().get(0);
+        assertEquals(SubstitutionType.TYPE_JAVA_PROPERTIES, readParsable.getType());
+        assertEquals("UTF-8", readParsable.getEncoding());
+        assertEquals("cond4", readParsable.getCondition());
+
+        ExecutableFile executable = packs.get(0).getExecutables().get(0);
+        assertEquals("$INSTALL_PATH/b.txt", executable.path);
+        assertEquals(ExecutableFile.WARN, executable.onFailure);
+        assertEquals(Arrays.asList("-x", "-y"), executable.argList);
+        assertTrue(executable.keepFile);
+
+        UpdateCheck check = packs.get(0).getUpdateChecks().get(0);
+        assertEquals(Collections.singletonList("**/*.txt"), check.includesList);
+        assertNull(check.excludesList);
+
+        Pack otherPack = packs.get(1).getPack();
+        assertTrue(otherPack.isLoose());
+        assertTrue(otherPack.isHidden());
+        assertEquals("exclude", otherPack.getExcludeGroup());
+        assertNull(otherPack.getLangPackId());
+        assertNull(otherPack.getDigest());
+        assertTrue(packs.get(1).getPackFiles().isEmpty());
+    }
+
+    /**
+     * Verifies that back references, checksums and archive positions are preserved.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testLinkedAndArchiveFiles() throws Exception
+    {
+        File dir = temporaryFolder.getRoot();
+        File a = createFile(dir, "a.txt", "same");
+        File b = createFile(dir, "b.txt", "same");
+
+        PackFile original = new PackFile(dir, a, "$INSTALL_PATH/a.txt", null, OverrideType.OVERRIDE_TRUE, null,
+                                         Blockable.BLOCKABLE_NONE, null);
+        original.setStreamResourceName("packs/pack-Core");
+        original.setStreamOffset(42);
+        original.setSize(10);
+        original.setChecksum(0xCAFEBABEL);
+        PackFile copy = new PackFile(dir, b, "$INSTALL_PATH/b.txt", null, OverrideType.OVERRIDE_TRUE, null,
+                                     Blockable.BLOCKABLE_NONE, null);
+        copy.setLinkedPackFile(original);
+        XPackFile archived = new XPackFile(original);
+        archived.setArchiveFilePosition(1234);
+
+        PackInfo info = new PackInfo("Core", null, null, true, false, null, true, 0);
+        info.getPackFilesMap().put(original, a);
+        info.getPackFilesMap().put(copy, b);
+        info.getPackFilesMap().put(archived, a);
+
+        List<PackFile> files = new ArrayList<PackFile>(read(write(Collections.singletonList(info))).get(0)
+                                                               .getPackFiles());
+        PackFile readCopy = files.get(1);
+        assertTrue(readCopy.isBackReference());
+        assertEquals("packs/pack-Core", readCopy.getLinkedPackFile().getStreamResourceName());
+        assertEquals(42, readCopy.getLinkedPackFile().getStreamOffset());
+        assertEquals(10, readCopy.getLinkedPackFile().size());
+        assertEquals(42, readCopy.getStreamOffset());
+        assertEquals(0xCAFEBABEL, readCopy.getLinkedPackFile().getChecksum());
+        assertEquals(0xCAFEBABEL, readCopy.getChecksum());
+
+        assertTrue(files.get(2) instanceof XPackFile);
+        assertEquals(1234, ((XPackFile) files.get(2)).getArchiveFilePosition());
+    }
+
+    /**
+     * Verifies that the files of a pack are only read when accessed, and that {@link PackInfo#readPackFiles()}
+     * doesn't retain them.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testReadPackFiles() throws Exception
+    {
+        File dir = temporaryFolder.newFolder("lib");
+        File a = createFile(dir, "a.jar", "a");
+        File b = createFile(dir, "b.jar", "b");
+        PackInfo info = new PackInfo("Core", null, null, true, false, null, true, 0);
+        info.addFile(dir, a, "$INSTALL_PATH/lib/a.jar", null, OverrideType.OVERRIDE_TRUE, null,
+                     Blockable.BLOCKABLE_NONE, null, null, null);
+        info.addFile(dir, b, "$INSTALL_PATH/lib/b.jar", null, OverrideType.OVERRIDE_TRUE, null,
+                     Blockable.BLOCKABLE_NONE, null, null, null);
+
+        Map<String, byte[]> resources = write(Collections.singletonList(info));
+        assertTrue(resources.containsKey(PackInfoFormat.getFilesResourceName("Core")));
+        List<String> reads = new ArrayList<String>();
+        List<PackInfo> packs = PackInfoFormat.read(
+                new ByteArrayInputStream(resources.get("packs.info")), name -> {
+                    reads.add(name);
+                    return new ByteArrayInputStream(resources.get(name));
+                });
+        assertTrue(reads.isEmpty());
+
+        List<PackFile> files = packs.get(0).readPackFiles();
+        assertTrue(files instanceof PackFileTable);
+        assertEquals(1, reads.size());
+        assertEquals(2, files.size());
+        assertEquals("$INSTALL_PATH/lib/b.jar", ((PackFileTable) files).getTargetPath(1));
+        assertEquals("$INSTALL_PATH/lib/b.jar", files.get(1).getTargetPath());
+        assertEquals(b.length(), files.get(1).length());
+        assertNotSame(files.get(0), files.get(0));
+
+        // each invocation reads the files again
+        packs.get(0).readPackFiles();
+        assertEquals(2, reads.size());
+    }
+
+    /**
+     * Verifies that a stream that isn't in the format is rejected.
+     */
+    @Test
+    public void testInvalidStream()
+    {
+        try
+        {
+            PackInfoFormat.read(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6}), name -> null);
+            fail("Expected IOException");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Writes packs and their files.
+     *
+     * @param packs the packs to write
+     * @return the written resources, keyed on name
+     * @throws IOException for any I/O error
+     */
+    private Map<String, byte[]> write(List<PackInfo> packs) throws IOException
+    {
+        Map<String, byte[]> result = new HashMap<String, byte[]>();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        PackInfoFormat.write(packs, stream);
+        result.put("packs.info", stream.toByteArray());
+        for (PackInfo pack : packs)
+        {
+            stream = new ByteArrayOutputStream();
+            PackInfoFormat.writeFiles(pack, stream);
+            result.put(PackInfoFormat.getFilesResourceName(pack.getPack().getName()), stream.toByteArray());
+        }
+        return result;
+    }
+
+    /**
+     * Reads packs written by {@link #write(List)}.
+     *
+     * @param resources the resources
+     * @return the packs
+     * @throws IOException for any I/O error
+     */
+    private List<PackInfo> read(Map<String, byte[]> resources) throws IOException
+    {
+        return PackInfoFormat.read(new ByteArrayInputStream(resources.get("packs.info")),
+                                   name -> new ByteArrayInputStream(resources.get(name)));
+    }
+
+    private File createFile(File dir, String name, String content) throws IOException
+    {
+        File file = new File(dir, name);
+        Files.write(file.toPath(), content.getBytes("UTF-8"));
+        return file;
+    }
+}
@@ -42,6 +42,7 @@ import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.data.PropertyManager;
 import com.izforge.izpack.compiler.helper.AssertionHelper;
+import com.izforge.izpack.compiler.helper.ArchiveFileSet;
 import com.izforge.izpack.compiler.helper.TargetFileSet;
 import com.izforge.izpack.compiler.helper.XmlCompilerHelper;
 import com.izforge.izpack.compiler.listener.CompilerListener;
@@ -50,6 +51,7 @@ import com.izforge.izpack.compiler.packager.IPackager;
 import com.izforge.izpack.compiler.resource.ResourceFinder;
 import com.izforge.izpack.compiler.util.AntPathMatcher;
 import com.izforge.izpack.compiler.util.CompilerClassLoader;
+import com.izforge.izpack.compiler.util.compress.ArchiveEntryPackFile;
 import com.izforge.izpack.compiler.util.compress.ArchiveStreamFactory;
 import com.izforge.izpack.compiler.xml.*;
 import com.izforge.izpack.core.data.DynamicInstallerRequirementValidatorImpl;
@@ -1665,7 +1667,11 @@ public class CompilerConfig extends Thread
     }
 
     /**
-     * Add files in an archive to a pack
+     * Add files in an archive to a pack.
+     * <p/>
+     * The archive isn't extracted: its entries are added as {@link ArchiveEntryPackFile}s, whose content is streamed
+     * from the archive when the pack is written, and nested <tt>archivefileset</tt> elements are applied to the entry
+     * names. Only entries to be compressed using Pack200 are extracted, as Pack200 requires a jar file.
      *
      * @param archive     the archive file to unpack
      * @param targetDir   the target directory where the content of the archive will be installed
@@ -1705,9 +1711,55 @@ public class CompilerConfig extends Thread
         {
             archiveInputStream = new ArchiveStreamFactory().createArchiveInputStream(archive, uncompressedInputStream);
 
-            // file is an archive (incl. ZIP archive) - unpack recursively
-            baseTempDir = com.izforge.izpack.util.file.FileUtils.createTempDirectory("izpack", TEMP_DIR);
+            // file is an archive (incl. ZIP archive) - add the entries selected by the file sets
+            List<ArchiveFileSet> fileSets = new ArrayList<ArchiveFileSet>();
+            if (hasNoFileSet)
+            {
+                ArchiveFileSet fs = new ArchiveFileSet();
+                fs.setDefaultexcludes(false);
+                fs.setTargetDir(targetDir);
+                fs.setOsList(osList);
+                fs.setOverride(override);
+                fs.setOverrideRenameTo(overrideRenameTo);
+                fs.setBlockable(blockable);
+                fs.setAdditionals(additionals);
+                fs.setCondition(condition);
+                fs.setPack200Properties(pack200Properties);
+                fileSets.add(fs);
+            }
+            else
+            {
+                for (IXMLElement fileSetNode : filesetNodes)
+                {
+                    ArchiveFileSet fs = readArchiveFileSet(fileSetNode, targetDir);
+                    if (osList != null && !osList.isEmpty())
+                    {
+                        // get list of OS constraints safisfiying both parent's and fs's
+                        try
+                        {
+                            List<OsModel> commonOsList = OsConstraintHelper.commonOsList(osList, fs.getOsList());
+                            logCombineOsLists(osList, fs.getOsList(), commonOsList);
+                            fs.setOsList(commonOsList);
+                        }
+                        catch (OsConstraintHelper.UnsatisfiableOsConstraintsException ex)
+                        {
+                            throw new CompilerException(ex.getMessage());
+                        }
+                    }
+                    fileSets.add(fs);
+                }
+            }
+
+            for (ArchiveFileSet fs : fileSets)
+            {
+                if (fs.getPack200Properties() != null)
+                {
+                    baseTempDir = com.izforge.izpack.util.file.FileUtils.createTempDirectory("izpack", TEMP_DIR);
+                    break;
+                }
+            }
 
+            int index = 0;
             while (true)
             {
                 ArchiveEntry entry = archiveInputStream.getNextEntry();
@@ -1715,49 +1767,16 @@ public class CompilerConfig extends Thread
                 {
                     break;
                 }
-                String entryName = entry.getName();
-                if (entry.isDirectory())
-                {
-                    String dName = FilenameUtils.normalizeNoEndSeparator(entryName);
-                    File tempDir = new File(baseTempDir, dName);
-                    FileUtils.forceMkdir(tempDir);
-                    updateLastModifiedDate(tempDir, entry);
-                    if (hasNoFileSet)
-                    {
-                        String target = targetDir + "/" + dName;
-                        logAddingFile(dName + " (" + archiveName + ")", target);
-                        pack.addFile(baseTempDir, tempDir, target, osList, override, overrideRenameTo, blockable, additionals, condition, null);
-                    }
-                }
-                else
-                {
-                    FileOutputStream tempFileStream = null;
-                    try
-                    {
-                        File tempFile = new File(baseTempDir, entryName);
-                        tempFileStream = FileUtils.openOutputStream(tempFile);
-                        IOUtils.copy(archiveInputStream, tempFileStream);
-                        tempFileStream.close();
-                        updateLastModifiedDate(tempFile, entry);
-                        if (hasNoFileSet)
-                        {
-                            String target = targetDir + "/" + entryName;
-                            logAddingFile(entryName + " (" + archiveName + ")", target);
-                            pack.addFile(baseTempDir, tempFile, target, osList, override, overrideRenameTo, blockable, additionals, condition, pack200Properties);
-                        }
-                    }
-                    finally
-                    {
-                        IOUtils.closeQuietly(tempFileStream);
-                    }
-                }
+                addArchiveEntry(archive, archiveInputStream, entry, index++, fileSets, baseTempDir, pack);
             }
 
-            if (!hasNoFileSet)
+            for (int i = 0; i < fileSets.size(); i++)
             {
-                for (IXMLElement fileSetNode : filesetNodes)
+                ArchiveFileSet fs = fileSets.get(i);
+                if (!fs.isArchiveDirFound())
                 {
-                    processFileSetChildren(readArchiveFileSet(fileSetNode, baseTempDir, targetDir), baseTempDir, osList, pack);
+                    assertionHelper.parseError(filesetNodes.get(i),
+                                               "Archive does not contain a base directory " + fs.getArchiveDir());
                 }
             }
         }
@@ -1800,6 +1819,87 @@ public class CompilerConfig extends Thread
         }
     }
 
+    /**
+     * Adds an archive entry to a pack, for each file set that selects it.
+     *
+     * @param archive     the archive
+     * @param in          the archive stream, positioned at the start of the entry content
+     * @param entry       the archive entry
+     * @param index       the position of the entry in the archive
+     * @param fileSets    the file sets selecting the entries to add
+     * @param baseTempDir the directory to extract entries compressed using Pack200 to. May be {@code null} if no
+     *                    file set uses Pack200
+     * @param pack        the pack to add to
+     * @throws IOException for any I/O error
+     */
+    private void addArchiveEntry(File archive, ArchiveInputStream in, ArchiveEntry entry, int index,
+                                 List<ArchiveFileSet> fileSets, File baseTempDir, PackInfo pack) throws IOException
+    {
+        String entryName = entry.getName();
+        Map<ArchiveFileSet, String> selected = new LinkedHashMap<ArchiveFileSet, String>();
+        boolean extract = false;
+        for (ArchiveFileSet fs : fileSets)
+        {
+            String path = fs.getSelectedPath(entryName);
+            if (path != null)
+            {
+                selected.put(fs, path);
+                extract |= !entry.isDirectory() && fs.getPack200Properties() != null;
+            }
+        }
+        if (selected.isEmpty())
+        {
+            return;
+        }
+
+        File tempFile = null;
+        long length = 0;
+        if (extract)
+        {
+            tempFile = new File(baseTempDir, entryName);
+            FileOutputStream tempFileStream = FileUtils.openOutputStream(tempFile);
+            try
+            {
+                length = IOUtils.copyLarge(in, tempFileStream);
+            }
+            finally
+            {
+                tempFileStream.close();
+            }
+            updateLastModifiedDate(tempFile, entry);
+        }
+        else if (!entry.isDirectory())
+        {
+            length = entry.getSize();
+            if (length == ArchiveEntry.SIZE_UNKNOWN)
+            {
+                // the size of entries followed by a data descriptor is only known once they have been read
+                length = IOUtils.consume(in);
+            }
+        }
+
+        for (Map.Entry<ArchiveFileSet, String> selection : selected.entrySet())
+        {
+            ArchiveFileSet fs = selection.getKey();
+            String target = fs.getTargetDir() + "/" + selection.getValue();
+            logAddingFile(entryName + " (" + archive.getName() + ")", target);
+            if (tempFile != null && fs.getPack200Properties() != null)
+            {
+                pack.addFile(baseTempDir, tempFile, target, fs.getOsList(), fs.getOverride(),
+                             fs.getOverrideRenameTo(), fs.getBlockable(), fs.getAdditionals(), fs.getCondition(),
+                             fs.getPack200Properties());
+            }
+            else
+            {
+                ArchiveEntryPackFile packFile = new ArchiveEntryPackFile(
+                        archive, entry, index, length, target, fs.getOsList(), fs.getOverride(),
+                        fs.getOverrideRenameTo(), fs.getBlockable(), fs.getAdditionals());
+                packFile.setCondition(fs.getCondition());
+                pack.addFile(packFile);
+            }
+        }
+    }
+
     private void updateLastModifiedDate(File target, ArchiveEntry entry)
     {
         target.setLastModified(entry.getLastModifiedDate().getTime());
@@ -2620,6 +2720,12 @@ public class CompilerConfig extends Thread
             logger.info("Pack compression method: " + compression.toName());
         }
 
+        IXMLElement unpackThreads = root.getFirstChildNamed("unpack-threads");
+        if (unpackThreads != null)
+        {
+            info.setUnpackThreads(xmlCompilerHelper.requireIntContent(unpackThreads));
+        }
+
         // Add the path for the summary log file if specified
         IXMLElement slfPath = root.getFirstChildNamed("summarylogfilepath");
         if (slfPath != null)
@@ -3805,26 +3911,33 @@ public class CompilerConfig extends Thread
         return readFileSet(fileSetNode, extractedBaseDir, targetDir);
     }
 
-    private TargetFileSet readArchiveFileSet(IXMLElement fileSetNode, File baseDir, String targetDir) throws CompilerException
+    private ArchiveFileSet readArchiveFileSet(IXMLElement fileSetNode, String targetDir) throws CompilerException
     {
-        String dir_attr = getDirSubstitutedAttributeValue(fileSetNode);
-        File extractedBaseDir = baseDir;
-        if (dir_attr != null)
-        {
-            extractedBaseDir = new File(baseDir, dir_attr);
-            if (!extractedBaseDir.exists()) {
-                assertionHelper.parseError(fileSetNode, "Archive does not contain a base directory " + dir_attr);
-            }
-        }
-
-        return readFileSet(fileSetNode, extractedBaseDir, targetDir);
+        ArchiveFileSet fs = new ArchiveFileSet();
+        fs.setArchiveDir(getDirSubstitutedAttributeValue(fileSetNode));
+        readFileSet(fileSetNode, fs, targetDir);
+        return fs;
     }
 
-
     private TargetFileSet readFileSet(IXMLElement fileSetNode, File baseDir, String targetDir) throws CompilerException
     {
         TargetFileSet fs = new TargetFileSet();
 
+        try
+        {
+            fs.setDir(baseDir);
+        }
+        catch (Exception e)
+        {
+            throw new CompilerException(getMessage(e) + " while processing fileset " + fileSetNode.getName());
+        }
+
+        readFileSet(fileSetNode, fs, targetDir);
+        return fs;
+    }
+
+    private void readFileSet(IXMLElement fileSetNode, TargetFileSet fs, String targetDir) throws CompilerException
+    {
         fs.setTargetDir(targetDir);
         List<OsModel> osList = OsConstraintHelper.getOsList(fileSetNode);
         fs.setOsList(osList);
@@ -3838,15 +3951,6 @@ public class CompilerConfig extends Thread
             fs.setCondition(conditionId);
         }
 
-        try
-        {
-            fs.setDir(baseDir);
-        }
-        catch (Exception e)
-        {
-            throw new CompilerException(getMessage(e) + " while processing fileset " + fileSetNode.getName());
-        }
-
         String attr = fileSetNode.getAttribute("includes");
         if (attr != null)
         {
@@ -3881,8 +3985,6 @@ public class CompilerConfig extends Thread
 
         readAndAddIncludes(fileSetNode, fs);
         readAndAddExcludes(fileSetNode, fs);
-
-        return fs;
     }
 
     private String getMessage(Exception e)
@@ -22,8 +22,8 @@ package com.izforge.izpack.compiler.container.provider;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.izforge.izpack.compiler.data.CompilerData;
+import com.izforge.izpack.util.compress.ZipArchiveJarOutputStream;
 
-import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -56,7 +56,8 @@ public class JarOutputStreamProvider implements Provider<JarOutputStream>
             {
                 Files.createDirectories(file.getParent());
             }
-            JarOutputStream jarOutputStream =  new JarOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+            // written via commons-compress, so that merged jar entries can be copied without recompressing them
+            JarOutputStream jarOutputStream = new ZipArchiveJarOutputStream(file);
             int level = compilerData.getComprLevel();
             if (level >= 0 && level < 10)
             {
@@ -85,6 +85,11 @@ public class CompilerData
      */
     private int comprLevel = -1;
 
+    /**
+     * The build cache directory, or {@code null} if outputs aren't cached across compilations.
+     */
+    private String cacheDir;
+
     /**
      * External Information
      */
@@ -236,6 +241,29 @@ public class CompilerData
         this.comprLevel = comprLevel;
     }
 
+    /**
+     * Returns the build cache directory.
+     * <p/>
+     * When set, compressed pack files and Pack200 outputs are cached in this directory, and reused by subsequent
+     * compilations if their sources haven't changed.
+     *
+     * @return the build cache directory, or {@code null} if outputs aren't cached
+     */
+    public String getCacheDir()
+    {
+        return cacheDir;
+    }
+
+    /**
+     * Sets the build cache directory.
+     *
+     * @param cacheDir the build cache directory. May be {@code null} to disable caching
+     */
+    public void setCacheDir(String cacheDir)
+    {
+        this.cacheDir = cacheDir;
+    }
+
     public Info getExternalInfo()
     {
         return this.externalInfo;
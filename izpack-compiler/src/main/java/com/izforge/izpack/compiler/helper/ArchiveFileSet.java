@@ -0,0 +1,137 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.helper;
+
+import com.izforge.izpack.util.file.DirectoryScanner;
+
+/**
+ * A file set selecting entries of an archive.
+ * <p/>
+ * The include and exclude patterns are applied to the entry names, so the archive needn't be extracted.
+ */
+public class ArchiveFileSet extends TargetFileSet
+{
+    /**
+     * The directory in the archive that the patterns are relative to, or {@code null} for the archive root.
+     */
+    private String archiveDir;
+
+    /**
+     * Determines if an entry was found in {@link #archiveDir}.
+     */
+    private boolean archiveDirFound;
+
+    /**
+     * The scanner used to match entry names, created on first use.
+     */
+    private DirectoryScanner scanner;
+
+    /**
+     * Sets the directory in the archive that the patterns are relative to.
+     *
+     * @param archiveDir the directory, or {@code null} for the archive root
+     */
+    public void setArchiveDir(String archiveDir)
+    {
+        this.archiveDir = (archiveDir != null) ? normalize(archiveDir) : null;
+        if (this.archiveDir != null && this.archiveDir.isEmpty())
+        {
+            this.archiveDir = null;
+        }
+    }
+
+    /**
+     * Returns the directory in the archive that the patterns are relative to.
+     *
+     * @return the directory, or {@code null} for the archive root
+     */
+    public String getArchiveDir()
+    {
+        return archiveDir;
+    }
+
+    /**
+     * Determines if any entry passed to {@link #getSelectedPath(String)} was in the archive directory.
+     *
+     * @return {@code true} if the archive contains the archive directory
+     */
+    public boolean isArchiveDirFound()
+    {
+        return archiveDir == null || archiveDirFound;
+    }
+
+    /**
+     * Returns the path of an archive entry relative to the archive directory, if the entry is selected.
+     *
+     * @param entryName the entry name
+     * @return the relative path of the entry, or {@code null} if it isn't selected
+     */
+    public String getSelectedPath(String entryName)
+    {
+        String path = normalize(entryName);
+        if (archiveDir != null)
+        {
+            if (path.equals(archiveDir))
+            {
+                // the directory itself is never selected
+                archiveDirFound = true;
+                return null;
+            }
+            if (!path.startsWith(archiveDir + "/"))
+            {
+                return null;
+            }
+            archiveDirFound = true;
+            path = path.substring(archiveDir.length() + 1);
+        }
+        if (path.isEmpty())
+        {
+            return null;
+        }
+        if (scanner == null)
+        {
+            scanner = new DirectoryScanner();
+            setupDirectoryScanner(scanner);
+        }
+        return scanner.isIncludedPath(path) ? path : null;
+    }
+
+    /**
+     * Normalizes a path to use '/' separators, without leading or trailing separators, or a leading "./".
+     *
+     * @param path the path
+     * @return the normalized path
+     */
+    private static String normalize(String path)
+    {
+        path = path.replace('\\', '/');
+        int start = 0;
+        int end = path.length();
+        while (start < end && (path.charAt(start) == '/' || path.startsWith("./", start)))
+        {
+            start += (path.charAt(start) == '/') ? 1 : 2;
+        }
+        while (end > start && path.charAt(end - 1) == '/')
+        {
+            end--;
+        }
+        return path.substring(start, end);
+    }
+}
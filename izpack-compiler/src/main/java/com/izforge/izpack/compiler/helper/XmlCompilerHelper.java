@@ -77,6 +77,26 @@ public class XmlCompilerHelper
         return url;
     }
 
+    /**
+     * Call getContent on an element, producing a meaningful error message if not present, or empty,
+     * or not parseable as an int. It is an error for 'element' to be null.
+     *
+     * @param element The element to get content of
+     */
+    public int requireIntContent(IXMLElement element) throws CompilerException
+    {
+        String content = requireContent(element);
+        try
+        {
+            return Integer.parseInt(content.trim());
+        }
+        catch (NumberFormatException x)
+        {
+            assertionHelper.parseError(element, "<" + element.getName() + "> must be an integer");
+        }
+        return 0; // never happens
+    }
+
     /**
      * Call getFirstChildNamed on the parent, producing a meaningful error message on failure. It is
      * an error for 'parent' to be null.
@@ -32,6 +32,10 @@ import java.util.Map;
 
 /**
  * <p>CompilerListener for file and directory permissions.</p>
+ * <p/>
+ * The <tt>permission.dir</tt> and <tt>permission.file</tt> additional data are octal or decimal modes. The
+ * <tt>permission.owner</tt> and <tt>permission.group</tt> additional data are user and group names, and are
+ * passed through unchanged.
  *
  * @author Klaus Bartz
  */
@@ -55,6 +59,16 @@ public class ChmodCompilerListener extends SimpleCompilerListener
         }
         for (IXMLElement data : dataList)
         {
+            String[] ownerKeys = {"permission.owner", "permission.group"};
+            for (String ownerKey : ownerKeys)
+            {
+                String key = data.getAttribute("key");
+                String value = data.getAttribute("value");
+                if (key.equalsIgnoreCase(ownerKey) && value != null && value.trim().length() != 0)
+                {
+                    retval.put(ownerKey, value.trim());
+                }
+            }
             String[] relevantKeys = {"permission.dir", "permission.file"};
             for (String relevantKey : relevantKeys)
             {
@@ -76,4 +76,19 @@ public interface PackagerListener
      * Called when the packager stops.
      */
     public void packagerStop();
+
+    /**
+     * Called with the build cache statistics, once the packs have been written.
+     * <p/>
+     * By default, the statistics are reported as a message.
+     *
+     * @param hits        the no. of outputs copied from the cache
+     * @param misses      the no. of outputs that were produced and added to the cache
+     * @param reusedBytes the no. of bytes copied from the cache
+     */
+    public default void packagerCacheStatistics(long hits, long misses, long reusedBytes)
+    {
+        packagerMsg("Build cache: " + hits + " hit" + (hits != 1 ? "s" : "") + ", " + misses + " miss"
+                            + (misses != 1 ? "es" : "") + ", " + reusedBytes + " bytes reused");
+    }
 }
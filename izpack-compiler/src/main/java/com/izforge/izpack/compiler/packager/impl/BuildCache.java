@@ -0,0 +1,242 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Persistent cache of compiler outputs, shared across compilations.
+ * <p/>
+ * Entries are keyed on the SHA-256 digest of the source file content and of the parameters that determine the
+ * output, such as the target path and the compression format. An entry whose key matches can be copied into the
+ * installer instead of being produced again.
+ * <p/>
+ * Entries are written to a temporary file and then moved into place, so concurrent writers, including other
+ * compilations sharing the cache directory, never see a partially written entry.
+ */
+class BuildCache
+{
+    private static final Logger logger = Logger.getLogger(BuildCache.class.getName());
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    /**
+     * The version of the cache layout. Changing it invalidates all existing entries.
+     */
+    private static final String VERSION = "1";
+
+    /**
+     * The cache directory.
+     */
+    private final Path dir;
+
+    /**
+     * The no. of lookups that found an entry.
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * The no. of lookups that didn't find an entry.
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * The no. of bytes copied from the cache.
+     */
+    private final AtomicLong reusedBytes = new AtomicLong();
+
+    /**
+     * Constructs a <tt>BuildCache</tt>.
+     *
+     * @param dir the cache directory. Created if it doesn't exist
+     * @throws IOException if the directory cannot be created
+     */
+    BuildCache(Path dir) throws IOException
+    {
+        this.dir = Files.createDirectories(dir);
+    }
+
+    /**
+     * Returns the key of an entry.
+     *
+     * @param file       the source file
+     * @param parameters the parameters that determine the output
+     * @return the key
+     * @throws IOException for any I/O error
+     */
+    public String getKey(Path file, String... parameters) throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException exception)
+        {
+            throw new IOException(exception);
+        }
+        update(digest, VERSION);
+        for (String parameter : parameters)
+        {
+            update(digest, parameter);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream input = Files.newInputStream(file))
+        {
+            int read;
+            while ((read = input.read(buffer)) != -1)
+            {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder result = new StringBuilder();
+        for (byte b : digest.digest())
+        {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns an entry.
+     *
+     * @param key the entry key
+     * @return the entry, or {@code null} if there is no entry with the key
+     */
+    public Path get(String key)
+    {
+        Path entry = getPath(key);
+        if (Files.isRegularFile(entry))
+        {
+            hits.incrementAndGet();
+            try
+            {
+                reusedBytes.addAndGet(Files.size(entry));
+            }
+            catch (IOException exception)
+            {
+                logger.fine("Failed to determine size of cache entry " + entry + ": " + exception.getMessage());
+            }
+            return entry;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Creates a temporary file to write a new entry to. Pass it to {@link #put} once written.
+     *
+     * @return a new temporary file
+     * @throws IOException for any I/O error
+     */
+    public Path createTempFile() throws IOException
+    {
+        return Files.createTempFile(dir, "entry", ".tmp");
+    }
+
+    /**
+     * Adds an entry.
+     *
+     * @param key  the entry key
+     * @param file the entry content, written to a file returned by {@link #createTempFile()}. This is moved into
+     *             the cache
+     * @throws IOException for any I/O error
+     */
+    public void put(String key, Path file) throws IOException
+    {
+        Path entry = getPath(key);
+        Files.createDirectories(entry.getParent());
+        try
+        {
+            Files.move(file, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException exception)
+        {
+            Files.move(file, entry, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Returns the no. of lookups that found an entry.
+     *
+     * @return the no. of cache hits
+     */
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Returns the no. of lookups that didn't find an entry.
+     *
+     * @return the no. of cache misses
+     */
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Returns the no. of bytes copied from the cache.
+     *
+     * @return the no. of bytes reused
+     */
+    public long getReusedBytes()
+    {
+        return reusedBytes.get();
+    }
+
+    /**
+     * Returns the path of an entry. Entries are spread over sub-directories named by the first two characters of
+     * their key.
+     *
+     * @param key the entry key
+     * @return the entry path
+     */
+    private Path getPath(String key)
+    {
+        return dir.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    /**
+     * Adds a parameter to a digest, prefixed by its length so that parameters cannot run into each other.
+     *
+     * @param digest    the digest
+     * @param parameter the parameter. May be {@code null}
+     */
+    private static void update(MessageDigest digest, String parameter)
+    {
+        byte[] bytes = (parameter != null) ? parameter.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int length = (parameter != null) ? bytes.length : -1;
+        digest.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8),
+                (byte) length});
+        digest.update(bytes);
+    }
+}
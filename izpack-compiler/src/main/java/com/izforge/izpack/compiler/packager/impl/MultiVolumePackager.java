@@ -29,20 +29,24 @@ import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.merge.CompilerPathResolver;
+import com.izforge.izpack.compiler.util.compress.ArchiveEntryPackFile;
+import com.izforge.izpack.compiler.util.compress.ArchiveEntryReader;
 import com.izforge.izpack.core.io.FileSpanningOutputStream;
 import com.izforge.izpack.api.data.PackInfo;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
+import com.izforge.izpack.util.FileChecksum;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectOutputStream;
 import java.util.*;
 import java.util.jar.JarOutputStream;
 import java.util.logging.Logger;
+import java.util.zip.CheckedInputStream;
 import java.util.zip.ZipEntry;
 
 
@@ -187,7 +191,8 @@ public class MultiVolumePackager extends PackagerBase
         logger.fine("Subsequent volume size: " + maxVolumeSize);
 
         File volume = new File(getInfo().getInstallerBase() + ".pak").getAbsoluteFile();
-        int volumes = writePacks(installerJar, packs, volume);
+        FileSpanningOutputStream written = writePacks(installerJar, packs, volume);
+        int volumes = written.getVolumes();
 
         // write metadata for reading in volumes
         logger.fine("Written " + volumes + " volumes");
@@ -196,15 +201,12 @@ public class MultiVolumePackager extends PackagerBase
         ObjectOutputStream out = new ObjectOutputStream(installerJar);
         out.writeInt(volumes);
         out.writeUTF(volume.getName());
+        written.getIndex().write(out);
         out.flush();
         installerJar.closeEntry();
 
         // Now that we know sizes, write pack metadata to primary jar.
-        installerJar.putNextEntry(new ZipEntry(PACKSINFO_RESOURCE_PATH));
-        out = new ObjectOutputStream(installerJar);
-        out.writeObject(packs);
-        out.flush();
-        installerJar.closeEntry();
+        writePacksInfo(packs);
     }
 
     /**
@@ -212,9 +214,10 @@ public class MultiVolumePackager extends PackagerBase
      *
      * @param packs  the packs to write
      * @param volume the first volume
-     * @return the no. of volumes written
+     * @return the closed volumes stream, providing the no. of volumes written and the block index
      */
-    private int writePacks(JarOutputStream installerJar, List<PackInfo> packs, File volume) throws IOException
+    private FileSpanningOutputStream writePacks(JarOutputStream installerJar, List<PackInfo> packs, File volume)
+            throws IOException
     {
         FileSpanningOutputStream volumes = new FileSpanningOutputStream(volume, maxFirstVolumeSize, maxVolumeSize);
         File targetDir = volume.getParentFile();
@@ -223,14 +226,17 @@ public class MultiVolumePackager extends PackagerBase
             throw new IOException("Cannot determine parent directory of " + volume);
         }
 
-        for (PackInfo packInfo : packs)
+        try (ArchiveEntryReader archives = new ArchiveEntryReader())
         {
-            writePack(installerJar, packInfo, volumes, targetDir);
+            for (PackInfo packInfo : packs)
+            {
+                writePack(installerJar, packInfo, volumes, targetDir, archives);
+            }
         }
 
         volumes.flush();
         volumes.close();
-        return volumes.getVolumes();
+        return volumes;
     }
 
     /**
@@ -241,9 +247,11 @@ public class MultiVolumePackager extends PackagerBase
      * @param packInfo  the pack information
      * @param volumes   the volumes
      * @param targetDir the target directory for loosefiles
+     * @param archives  the reader of files streamed from archives
      * @throws IOException for any I/O error
      */
-    private void writePack(JarOutputStream installerJar, PackInfo packInfo, FileSpanningOutputStream volumes, File targetDir) throws IOException
+    private void writePack(JarOutputStream installerJar, PackInfo packInfo, FileSpanningOutputStream volumes,
+                           File targetDir, ArchiveEntryReader archives) throws IOException
     {
         Pack pack = packInfo.getPack();
         pack.setFileSize(0);
@@ -256,7 +264,7 @@ public class MultiVolumePackager extends PackagerBase
         installerJar.putNextEntry(entry);
         ObjectOutputStream packStream = new ObjectOutputStream(installerJar);
 
-        writePackFiles(packInfo, volumes, pack, packStream, targetDir);
+        writePackFiles(packInfo, volumes, pack, packStream, targetDir, archives);
 
         // Cleanup
         packStream.flush();
@@ -272,10 +280,12 @@ public class MultiVolumePackager extends PackagerBase
      * @param pack       the pack
      * @param packStream the stream to write the pack meta-data to
      * @param targetDir  the target directory for loose files
+     * @param archives   the reader of files streamed from archives
      * @throws IOException for any I/O error
      */
     private void writePackFiles(PackInfo packInfo, FileSpanningOutputStream volumes, Pack pack,
-                                ObjectOutputStream packStream, File targetDir) throws IOException
+                                ObjectOutputStream packStream, File targetDir, ArchiveEntryReader archives)
+            throws IOException
     {
         Set<PackFile> files = packInfo.getPackFiles();
         Map<PackFile, File> xFiles = new LinkedHashMap<PackFile, File>();
@@ -284,19 +294,25 @@ public class MultiVolumePackager extends PackagerBase
         {
             XPackFile pf = new XPackFile(packfile);
             File file = packInfo.getFile(packfile);
-            logger.fine("Next file: " + file.getAbsolutePath());
+            logger.fine("Next file: " + ((file != null) ? file.getAbsolutePath() : packfile));
 
             if (!pf.isDirectory())
             {
                 if (!pack.isLoose())
                 {
-                    writePackFile(file, volumes, pf);
+                    writePackFile(open(packfile, file, archives), volumes, pf);
                 }
-                else
+                else if (file != null)
                 {
                     // just copy the file to the target directory
                     FileUtils.copyFile(file, new File(targetDir, pf.getRelativeSourcePath()));
                 }
+                else
+                {
+                    File target = new File(targetDir, pf.getRelativeSourcePath());
+                    FileUtils.copyInputStreamToFile(open(packfile, null, archives), target);
+                    target.setLastModified(pf.lastModified());
+                }
             }
 
             xFiles.put(pf, file);
@@ -316,15 +332,33 @@ public class MultiVolumePackager extends PackagerBase
         }
     }
 
+    /**
+     * Opens the content of a pack file.
+     *
+     * @param packFile the pack file
+     * @param file     the file to read, or {@code null} if the pack file is streamed from an archive
+     * @param archives the reader of files streamed from archives
+     * @return the content of the pack file
+     * @throws IOException for any I/O error
+     */
+    private InputStream open(PackFile packFile, File file, ArchiveEntryReader archives) throws IOException
+    {
+        if (packFile instanceof ArchiveEntryPackFile)
+        {
+            return archives.open((ArchiveEntryPackFile) packFile);
+        }
+        return FileUtils.openInputStream(file);
+    }
+
     /**
      * Writes a pack file to the volumes.
      *
-     * @param file     the file to write
+     * @param in       the content to write. This is closed on completion
      * @param volumes  the volumes
      * @param packFile the pack file
      * @throws IOException for any I/O error
      */
-    private void writePackFile(File file, FileSpanningOutputStream volumes, XPackFile packFile) throws IOException
+    private void writePackFile(InputStream in, FileSpanningOutputStream volumes, XPackFile packFile) throws IOException
     {
         long beforePosition = volumes.getFilePointer();
         packFile.setArchiveFilePosition(beforePosition);
@@ -332,16 +366,16 @@ public class MultiVolumePackager extends PackagerBase
         // write the file to the volumes
         int volumeCount = volumes.getVolumes();
 
-        FileInputStream in = FileUtils.openInputStream(file);
         try
         {
-            long bytesWritten = IOUtils.copyLarge(in, volumes);
+            CheckedInputStream content = new CheckedInputStream(in, FileChecksum.create());
+            long bytesWritten = IOUtils.copyLarge(content, volumes);
             long afterPosition = volumes.getFilePointer();
-            logger.fine("File (" + packFile.getFile() + ") " + beforePosition + " <-> " + afterPosition);
+            logger.fine("File (" + packFile.getTargetPath() + ") " + beforePosition + " <-> " + afterPosition);
 
             if (volumes.getFilePointer() != (beforePosition + bytesWritten))
             {
-                logger.fine("file: " + file.getName());
+                logger.fine("file: " + packFile.getTargetPath());
                 logger.fine("(Filepos/BytesWritten/ExpectedNewFilePos/NewFilePointer) ("
                         + beforePosition + "/" + bytesWritten + "/" + (beforePosition + bytesWritten)
                         + "/" + volumes.getFilePointer() + ")");
@@ -351,8 +385,9 @@ public class MultiVolumePackager extends PackagerBase
 
             if (bytesWritten != packFile.length())
             {
-                throw new IOException("File size mismatch when reading " + file);
+                throw new IOException("File size mismatch when reading " + packFile.getTargetPath());
             }
+            packFile.setChecksum(content.getChecksum().getValue());
         }
         finally
         {
@@ -0,0 +1,435 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import com.izforge.izpack.api.data.PackCompression;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.util.FileChecksum;
+import com.izforge.izpack.util.NoCloseOutputStream;
+import com.izforge.izpack.util.StreamSupport;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+import org.apache.commons.io.output.TeeOutputStream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Checksum;
+
+/**
+ * Compresses pack files into a pack stream.
+ * <p/>
+ * Each file is compressed with its own compressor, so a pack stream is simply the concatenation of independently
+ * compressed segments. When more than one thread is configured, segments are compressed concurrently into memory
+ * (spilling to a temporary file for large files) and appended to the pack stream in the order they were added.
+ * The resulting stream, and the offsets and sizes recorded on each {@link PackFile}, are therefore identical to
+ * those produced by a single thread.
+ * <p/>
+ * If a {@link BuildCache} is supplied, segments are looked up in the cache before being compressed, and newly
+ * compressed segments are added to it.
+ * <p/>
+ * The {@link FileChecksum checksum} of each file's content is computed as it is compressed, and recorded on its
+ * {@link PackFile}.
+ */
+class PackFileCompressor implements Closeable
+{
+    private static final Logger logger = Logger.getLogger(PackFileCompressor.class.getName());
+
+    /**
+     * Segments larger than this are spilled to a temporary file rather than being held in memory.
+     */
+    private static final int SEGMENT_MEMORY_THRESHOLD = 4 * 1024 * 1024;
+
+    /**
+     * The time to wait for segments being compressed to complete on close, in seconds.
+     */
+    private static final int CLOSE_TIMEOUT = 60;
+
+    /**
+     * The compression format.
+     */
+    private final PackCompression format;
+
+    /**
+     * The no. of compression threads.
+     */
+    private final int threads;
+
+    /**
+     * The compression threads, or {@code null} if compressing serially.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The cache of compressed segments, or {@code null} if segments aren't cached.
+     */
+    private final BuildCache cache;
+
+    /**
+     * The segments waiting to be appended to the pack stream, in pack stream order.
+     */
+    private final Deque<PendingSegment> pending = new ArrayDeque<>();
+
+    /**
+     * The segments that have been created but not yet appended to the pack stream.
+     */
+    private final Set<DeferredFileOutputStream> segments = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Determines if the compressor has been closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Constructs a <tt>PackFileCompressor</tt>.
+     *
+     * @param format  the compression format
+     * @param threads the no. of compression threads. Values {@code <= 1} compress on the calling thread
+     */
+    PackFileCompressor(PackCompression format, int threads)
+    {
+        this(format, threads, null);
+    }
+
+    /**
+     * Constructs a <tt>PackFileCompressor</tt>.
+     *
+     * @param format  the compression format
+     * @param threads the no. of compression threads. Values {@code <= 1} compress on the calling thread
+     * @param cache   the cache of compressed segments. May be {@code null}
+     */
+    PackFileCompressor(PackCompression format, int threads, BuildCache cache)
+    {
+        this.format = format;
+        this.threads = Math.max(1, threads);
+        this.executor = (this.threads > 1) ? Executors.newFixedThreadPool(this.threads) : null;
+        this.cache = cache;
+    }
+
+    /**
+     * Compresses a file and appends it to a pack stream.
+     * <p/>
+     * When compressing concurrently, the pack file's stream offset and size are only set once its segment has been
+     * written; call {@link #flush(CountingOutputStream)} before relying on them.
+     *
+     * @param packFile   the pack file
+     * @param file       the file to compress
+     * @param packStream the pack stream
+     * @throws IOException for any I/O error
+     */
+    public void add(PackFile packFile, Path file, CountingOutputStream packStream) throws IOException
+    {
+        if (executor == null)
+        {
+            packFile.setStreamOffset(packStream.getByteCount());
+            CountingOutputStream proxyOutputStream = new CountingOutputStream(new NoCloseOutputStream(packStream));
+            compress(packFile, file, proxyOutputStream);
+            packFile.setSize(proxyOutputStream.getByteCount());
+            logAdded(packFile);
+        }
+        else
+        {
+            Future<DeferredFileOutputStream> future = executor.submit(() -> {
+                DeferredFileOutputStream segment = DeferredFileOutputStream.builder()
+                        .setThreshold(SEGMENT_MEMORY_THRESHOLD)
+                        .setPrefix("izpack-segment")
+                        .setSuffix(".tmp")
+                        .get();
+                segments.add(segment);
+                try
+                {
+                    compress(packFile, file, segment);
+                }
+                catch (IOException | RuntimeException exception)
+                {
+                    discard(segment);
+                    throw exception;
+                }
+                if (closed)
+                {
+                    // nothing will append the segment
+                    discard(segment);
+                }
+                return segment;
+            });
+            pending.addLast(new PendingSegment(packFile, future));
+
+            // bound the no. of segments held, to bound memory use
+            while (pending.size() > threads * 2)
+            {
+                write(pending.removeFirst(), packStream);
+            }
+        }
+    }
+
+    /**
+     * Compresses content that can only be read once, such as an archive entry, and appends it to a pack stream.
+     * <p/>
+     * The content is compressed on the calling thread once the pending segments have been appended, and isn't
+     * cached, so that it is read straight into the pack stream.
+     *
+     * @param packFile   the pack file
+     * @param input      the content to compress. This is not closed
+     * @param packStream the pack stream
+     * @throws IOException for any I/O error
+     */
+    public void add(PackFile packFile, InputStream input, CountingOutputStream packStream) throws IOException
+    {
+        flush(packStream);
+        packFile.setStreamOffset(packStream.getByteCount());
+        CountingOutputStream proxyOutputStream = new CountingOutputStream(new NoCloseOutputStream(packStream));
+        Checksum checksum = FileChecksum.create();
+        try (OutputStream finalStream = StreamSupport.compressedOutput(format, proxyOutputStream))
+        {
+            long bytesWritten = IOUtils.copyLarge(input, new CheckedOutputStream(finalStream, checksum));
+            if (bytesWritten != packFile.length())
+            {
+                throw new IOException("File size mismatch when reading " + packFile);
+            }
+        }
+        finally
+        {
+            // close even if the compressor couldn't be created
+            proxyOutputStream.close();
+        }
+        packFile.setChecksum(checksum.getValue());
+        packFile.setSize(proxyOutputStream.getByteCount());
+        logAdded(packFile);
+    }
+
+    /**
+     * Appends all pending segments to the pack stream.
+     *
+     * @param packStream the pack stream
+     * @throws IOException for any I/O error
+     */
+    public void flush(CountingOutputStream packStream) throws IOException
+    {
+        while (!pending.isEmpty())
+        {
+            write(pending.removeFirst(), packStream);
+        }
+    }
+
+    /**
+     * Stops the compression threads, discarding any pending segments.
+     * <p/>
+     * Cancellation has no effect on segments that have already been compressed, so any of these that were spilled to
+     * disk are deleted here.
+     */
+    @Override
+    public void close()
+    {
+        if (executor != null)
+        {
+            closed = true;
+            for (PendingSegment segment : pending)
+            {
+                segment.future.cancel(true);
+            }
+            pending.clear();
+            executor.shutdownNow();
+            try
+            {
+                // reading a file isn't interruptible, so wait for those segments being compressed
+                if (!executor.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS))
+                {
+                    logger.warning("Timed out waiting for compression threads to stop");
+                }
+            }
+            catch (InterruptedException exception)
+            {
+                Thread.currentThread().interrupt();
+            }
+            for (DeferredFileOutputStream segment : segments)
+            {
+                discard(segment);
+            }
+        }
+    }
+
+    /**
+     * Compresses a file to a stream, recording the checksum of its content.
+     *
+     * @param packFile the pack file
+     * @param file     the file to compress
+     * @param output   the stream to write to. This is closed on completion
+     * @throws IOException for any I/O error
+     */
+    private void compress(PackFile packFile, Path file, OutputStream output) throws IOException
+    {
+        String key = null;
+        Path entry = null;
+        if (cache != null)
+        {
+            key = cache.getKey(file, packFile.getTargetPath(), format.toName());
+            Path cached = cache.get(key);
+            if (cached != null)
+            {
+                try
+                {
+                    Files.copy(cached, output);
+                }
+                finally
+                {
+                    output.close();
+                }
+                packFile.setChecksum(FileChecksum.getChecksum(file.toFile()));
+                return;
+            }
+            entry = cache.createTempFile();
+            output = new TeeOutputStream(output, Files.newOutputStream(entry));
+        }
+        try
+        {
+            Checksum checksum = FileChecksum.create();
+            try (OutputStream finalStream = StreamSupport.compressedOutput(format, output))
+            {
+                long bytesWritten = Files.copy(file, new CheckedOutputStream(finalStream, checksum));
+                if (bytesWritten != packFile.length())
+                {
+                    throw new IOException("File size mismatch when reading " + file);
+                }
+            }
+            finally
+            {
+                // close even if the compressor couldn't be created
+                output.close();
+            }
+            packFile.setChecksum(checksum.getValue());
+            if (entry != null)
+            {
+                cache.put(key, entry);
+            }
+        }
+        finally
+        {
+            if (entry != null)
+            {
+                Files.deleteIfExists(entry);
+            }
+        }
+    }
+
+    /**
+     * Waits for a segment to be compressed, and appends it to the pack stream.
+     *
+     * @param segment    the segment
+     * @param packStream the pack stream
+     * @throws IOException for any I/O error
+     */
+    private void write(PendingSegment segment, CountingOutputStream packStream) throws IOException
+    {
+        DeferredFileOutputStream data = segment.get();
+        try
+        {
+            PackFile packFile = segment.packFile;
+            packFile.setStreamOffset(packStream.getByteCount());
+            data.writeTo(packStream);
+            packFile.setSize(data.getByteCount());
+            logAdded(packFile);
+        }
+        finally
+        {
+            discard(data);
+        }
+    }
+
+    /**
+     * Discards a segment, deleting its temporary file if it was spilled to disk.
+     *
+     * @param segment the segment
+     */
+    private void discard(DeferredFileOutputStream segment)
+    {
+        segments.remove(segment);
+        if (!segment.isInMemory())
+        {
+            try
+            {
+                Files.deleteIfExists(segment.getPath());
+            }
+            catch (IOException exception)
+            {
+                logger.warning("Failed to delete " + segment.getPath() + ": " + exception.getMessage());
+            }
+        }
+    }
+
+    private void logAdded(PackFile packFile)
+    {
+        logger.fine("File " + packFile.getTargetPath() + " added compressed as " + format.toName()
+                + " (" + packFile.length() + " -> " + packFile.size() + " bytes)");
+    }
+
+    /**
+     * A pack file whose segment is being compressed.
+     */
+    private static class PendingSegment
+    {
+        private final PackFile packFile;
+
+        private final Future<DeferredFileOutputStream> future;
+
+        PendingSegment(PackFile packFile, Future<DeferredFileOutputStream> future)
+        {
+            this.packFile = packFile;
+            this.future = future;
+        }
+
+        DeferredFileOutputStream get() throws IOException
+        {
+            try
+            {
+                return future.get();
+            }
+            catch (InterruptedException exception)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while compressing " + packFile.getFile());
+            }
+            catch (ExecutionException exception)
+            {
+                Throwable cause = exception.getCause();
+                if (cause instanceof IOException)
+                {
+                    throw (IOException) cause;
+                }
+                throw new IOException("Failed to compress " + packFile.getFile(), cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import com.izforge.izpack.api.data.PackFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the content of pack files already written to the installer, used to replace files with identical
+ * content by back references.
+ * <p/>
+ * Files are identified by their length and the SHA-256 digest of their content. Digests are only calculated when
+ * two files have the same length, so files of unique length are never read twice.
+ */
+class PackFileContentIndex
+{
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    /**
+     * The stored files, keyed on file length.
+     */
+    private final Map<Long, List<Entry>> entries = new HashMap<>();
+
+    /**
+     * The file most recently digested by {@link #find}, and its digest. This avoids reading the file again when it is
+     * subsequently added.
+     */
+    private Path lastFile;
+
+    private byte[] lastDigest;
+
+    /**
+     * Returns a stored pack file with the same content as that specified.
+     *
+     * @param packFile the pack file
+     * @param file     the pack file source
+     * @return a pack file with the same content, or {@code null} if none is found
+     * @throws IOException for any I/O error
+     */
+    public PackFile find(PackFile packFile, Path file) throws IOException
+    {
+        List<Entry> candidates = entries.get(packFile.length());
+        if (candidates != null)
+        {
+            byte[] digest = digest(file);
+            lastFile = file;
+            lastDigest = digest;
+            for (Entry candidate : candidates)
+            {
+                if (Arrays.equals(digest, candidate.getDigest()))
+                {
+                    return candidate.packFile;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a pack file that has been written to the installer.
+     *
+     * @param packFile the pack file
+     * @param file     the pack file source
+     */
+    public void add(PackFile packFile, Path file)
+    {
+        Entry entry = new Entry(packFile, file);
+        if (file.equals(lastFile))
+        {
+            entry.digest = lastDigest;
+        }
+        entries.computeIfAbsent(packFile.length(), length -> new ArrayList<>()).add(entry);
+    }
+
+    /**
+     * Calculates the digest of a file.
+     *
+     * @param file the file
+     * @return the digest of the file content
+     * @throws IOException for any I/O error
+     */
+    private static byte[] digest(Path file) throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException exception)
+        {
+            throw new IOException(exception);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream input = Files.newInputStream(file))
+        {
+            int read;
+            while ((read = input.read(buffer)) != -1)
+            {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * A stored pack file, and its lazily calculated digest.
+     */
+    private static class Entry
+    {
+        private final PackFile packFile;
+
+        private final Path file;
+
+        private byte[] digest;
+
+        Entry(PackFile packFile, Path file)
+        {
+            this.packFile = packFile;
+            this.file = file;
+        }
+
+        byte[] getDigest() throws IOException
+        {
+            if (digest == null)
+            {
+                digest = digest(file);
+            }
+            return digest;
+        }
+    }
+}
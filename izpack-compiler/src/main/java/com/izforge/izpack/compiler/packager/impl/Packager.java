@@ -31,28 +31,36 @@ import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.merge.CompilerPathResolver;
+import com.izforge.izpack.compiler.util.compress.ArchiveEntryPackFile;
+import com.izforge.izpack.compiler.util.compress.ArchiveEntryReader;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
 import com.izforge.izpack.util.NoCloseOutputStream;
-import com.izforge.izpack.util.StreamSupport;
 import org.apache.commons.compress.java.util.jar.Pack200;
 import org.apache.commons.io.output.CountingOutputStream;
 
 import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
 import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 
@@ -67,8 +75,23 @@ public class Packager extends PackagerBase
 {
     private static final Logger logger = Logger.getLogger(Packager.class.getName());
 
+    /**
+     * Configuration attribute name for the no. of threads used to compress pack files.
+     */
+    public static final String COMPRESSION_THREADS = "compressionthreads";
+
+    /**
+     * The algorithm of the digests of separate pack jars.
+     */
+    private static final String PACK_DIGEST_ALGORITHM = "SHA-256";
+
     private final CompilerData compilerData;
 
+    /**
+     * The no. of threads used to compress pack files. If {@code 1}, files are compressed serially.
+     */
+    private int compressionThreads = 1;
+
     /**
      * Constructs a <tt>Packager</tt>.
      *
@@ -95,7 +118,15 @@ public class Packager extends PackagerBase
         this.compilerData = compilerData;
     }
 
-    private JarOutputStream getJarOutputStream(Path jarFile) throws IOException
+    /**
+     * Creates a separate pack jar.
+     *
+     * @param jarFile the jar file
+     * @param digest  the digest to update with the jar content
+     * @return the jar output stream
+     * @throws IOException for any I/O error
+     */
+    private JarOutputStream getJarOutputStream(Path jarFile, MessageDigest digest) throws IOException
     {
         Files.deleteIfExists(jarFile);
         if (compilerData.isMkdirs())
@@ -103,7 +134,8 @@ public class Packager extends PackagerBase
             Files.createDirectories(jarFile.getParent());
         }
 
-        JarOutputStream jarOutputStream = new JarOutputStream(new BufferedOutputStream(Files.newOutputStream(jarFile)));
+        JarOutputStream jarOutputStream = new JarOutputStream(
+                new BufferedOutputStream(new DigestOutputStream(Files.newOutputStream(jarFile), digest)));
 
         int level = compilerData.getComprLevel();
         if (level >= 0 && level < 10)
@@ -117,6 +149,28 @@ public class Packager extends PackagerBase
         return jarOutputStream;
     }
 
+    /**
+     * Sets the no. of threads used to compress pack files.
+     * <p/>
+     * Packs written with several threads are byte-identical to those written with a single thread.
+     *
+     * @param threads the no. of threads. Values {@code <= 1} compress serially
+     */
+    public void setCompressionThreads(int threads)
+    {
+        this.compressionThreads = Math.max(1, threads);
+    }
+
+    /**
+     * Returns the no. of threads used to compress pack files.
+     *
+     * @return the no. of threads
+     */
+    public int getCompressionThreads()
+    {
+        return compressionThreads;
+    }
+
     /**
      * Write packs to the installer jar, or each to a separate jar.
      *
@@ -132,177 +186,356 @@ public class Packager extends PackagerBase
         // Map to remember pack number and bytes offsets of back references
         Map<Path, PackFile> storedFiles = new HashMap<>();
 
+        // Index of stored file content, to create back references to identical files from different paths
+        PackFileContentIndex storedContent = new PackFileContentIndex();
+        long deduplicatedFiles = 0;
+        long deduplicatedBytes = 0;
+
         List<PackFile> pack200Files = new ArrayList<>();
 
         // Force UTF-8 encoding in order to have proper ZipEntry names.
         int packNumber = 0;
         final IXMLElement root = new XMLElementImpl("packs");
 
-        for (PackInfo packInfo : packs)
+        // segments are only cached when files are compressed individually; otherwise they are the files themselves
+        BuildCache cache = createBuildCache();
+        PackCompression format = getInfo().getCompressionFormat();
+        try (PackFileCompressor compressor = new PackFileCompressor(format, compressionThreads,
+                                                                    format != PackCompression.DEFAULT ? cache : null);
+             ArchiveEntryReader archives = new ArchiveEntryReader())
+        {
+            for (PackInfo packInfo : packs)
+            {
+                for (PackFile packFile : writePack(installerJar, packInfo, packNumber, compressor, archives,
+                                                   storedFiles, storedContent, pack200Files, root))
+                {
+                    deduplicatedFiles++;
+                    deduplicatedBytes += packFile.length();
+                }
+                packNumber++;
+            }
+        }
+        if (deduplicatedFiles > 0)
         {
-            final Pack pack = packInfo.getPack();
-            pack.setFileSize(0);
+            sendMsg("Replaced " + deduplicatedFiles + " file" + (deduplicatedFiles > 1 ? "s" : "")
+                            + " with identical content by back references, saving " + deduplicatedBytes + " bytes");
+        }
 
-            sendMsg("Writing Pack " + packNumber + ": " + pack.getName(), PackagerListener.MSG_VERBOSE);
+        // Now that we know sizes, write pack metadata to primary jar.
+        writePacksInfo(packs);
 
-            final ZipEntry entry;
-            final String streamResourceName = "packs/pack-" + pack.getName();
-            final JarOutputStream packJar;
-            if (packSeparateJars())
+        for (PackFile pack200PackFile : pack200Files)
+        {
+            try
             {
-                // TODO REFACTOR : Use a mergeManager for each packages that will be added to the main merger
-                Path jarFile = Paths.get(getInfo().getInstallerBase() + ".pack-" + pack.getName() + ".jar");
-                packJar = getJarOutputStream(jarFile);
-                entry = new ZipEntry(streamResourceName);
+                installerJar.putNextEntry(new ZipEntry(RESOURCES_PATH + pack200PackFile.getStreamResourceName()));
+                writePack200(pack200PackFile, installerJar, cache);
             }
-            else
+            finally
             {
-                packJar = installerJar;
-                entry = new ZipEntry(RESOURCES_PATH + streamResourceName);
+                installerJar.closeEntry();
+                installerJar.flush();
             }
+        }
 
-            packJar.putNextEntry(entry);
-            packJar.flush(); // flush before we start counting
+        if (cache != null)
+        {
+            sendCacheStatistics(cache.getHits(), cache.getMisses(), cache.getReusedBytes());
+        }
+    }
 
-            try (CountingOutputStream packOutputStream = new CountingOutputStream(new NoCloseOutputStream(packJar)))
+    /**
+     * Compresses a jar using Pack200, and writes it to a stream.
+     *
+     * @param packFile the jar to compress
+     * @param out      the stream to write to
+     * @param cache    the build cache. May be {@code null}
+     * @throws IOException for any I/O error
+     */
+    private void writePack200(PackFile packFile, OutputStream out, BuildCache cache) throws IOException
+    {
+        String key = null;
+        if (cache != null)
+        {
+            Map<String, String> properties = packFile.getPack200Properties();
+            key = cache.getKey(packFile.getFile().toPath(), packFile.getTargetPath(), "pack200",
+                               (properties != null) ? new TreeMap<>(properties).toString() : null);
+            Path cached = cache.get(key);
+            if (cached != null)
             {
-                for (PackFile packFile : packInfo.getPackFiles())
-                {
-                    boolean addFile = !pack.isLoose();
-                    Path file = packInfo.getFile(packFile).toPath();
-
-                    boolean pack200 = packFile.isPack200Jar();
+                packFile.setSize(Files.copy(cached, out));
+                logger.fine("File " + packFile.getTargetPath() + " added compressed as Pack 200 from the build cache ("
+                        + packFile.length() + " -> " + packFile.size() + " bytes)");
+                return;
+            }
+        }
 
-                    // use a back reference if file was in previous pack, and in
-                    // same jar
-                    PackFile linkedPackFile = storedFiles.get(file);
+        Path tmpfile = (cache != null) ? cache.createTempFile() : Files.createTempFile("izpack-compress", ".pack200");
+        try
+        {
+            try (OutputStream tmpOut = Files.newOutputStream(tmpfile);
+                 BufferedOutputStream bufferedOut = new BufferedOutputStream(tmpOut))
+            {
+                CountingOutputStream proxyOutputStream = new CountingOutputStream(bufferedOut);
+                Pack200.Packer packer = createPack200Packer(packFile);
+                try (JarFile jar = new JarFile(packFile.getFile()))
+                {
+                    packer.pack(jar, proxyOutputStream);
+                }
+                packFile.setSize(proxyOutputStream.getByteCount());
+            }
 
-                    if (linkedPackFile != null && !packSeparateJars())
-                    {
-                        // Save backreference link
-                        logger.fine("File " + packFile.getTargetPath() + " is a backreference, linked to " + linkedPackFile.getTargetPath());
-                        packFile.setLinkedPackFile(linkedPackFile);
-                        addFile = false;
-                    }
+            Files.copy(tmpfile, out);
 
-                    if (addFile && !packFile.isDirectory())
-                    {
+            logger.fine("File " + packFile.getTargetPath() + " added compressed as Pack 200 ("
+                    + packFile.length() + " -> " + packFile.size() + " bytes)");
+            if (cache != null)
+            {
+                cache.put(key, tmpfile);
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(tmpfile);
+        }
+    }
 
-                        if (pack200)
-                        {
-                            /*
-                             * Warning!
-                             *
-                             * Pack200 archives must be stored in separated streams,
-                             * as the Pack200 unpacker reads the entire stream...
-                             *
-                             * See http://java.sun.com/javase/6/docs/api/java/util/jar/Pack200.Unpacker.html
-                             */
-                            packFile.setStreamResourceName("packs/pack200-" + packFile.getId());
-                            packFile.setStreamOffset(0);
-                            pack200Files.add(packFile);
-                        }
-                        else
-                        {
-                            packFile.setStreamResourceName(streamResourceName);
-                            packFile.setStreamOffset(packOutputStream.getByteCount()); // get the position
-
-                            PackCompression comprFormat = getInfo().getCompressionFormat();
-                            CountingOutputStream proxyOutputStream = new CountingOutputStream(new NoCloseOutputStream(packOutputStream));
-                            try (OutputStream finalStream = StreamSupport.compressedOutput(comprFormat, proxyOutputStream))
-                            {
-                                long bytesWritten = Files.copy(file, finalStream);
-                                if (bytesWritten != packFile.length())
-                                {
-                                    throw new IOException("File size mismatch when reading " + file);
-                                }
-                            }
-                            packFile.setSize(proxyOutputStream.getByteCount());
-                            logger.fine("File " + packFile.getTargetPath() + " added compressed as " + comprFormat.toName()
-                                    + " (" + packFile.length() + " -> " + packFile.size() + " bytes)");
-                        }
-
-                        storedFiles.put(file, packFile);
-                    }
+    /**
+     * Creates the build cache, if one is configured.
+     *
+     * @return the build cache, or {@code null} if outputs aren't cached
+     * @throws IOException if the cache directory cannot be created
+     */
+    private BuildCache createBuildCache() throws IOException
+    {
+        String dir = compilerData.getCacheDir();
+        return (dir != null && !dir.isEmpty()) ? new BuildCache(Paths.get(dir)) : null;
+    }
 
-                    // even if not written, it counts towards pack size
-                    pack.addFileSize(packFile.length());
-                }
+    /**
+     * Writes a pack to the installer jar, or to a separate jar.
+     *
+     * @param installerJar the installer jar
+     * @param packInfo     the pack to write
+     * @param packNumber   the pack number
+     * @param compressor   the pack file compressor
+     * @param archives      the reader of files streamed from archives
+     * @param storedFiles   the files written so far, used to create back references
+     * @param storedContent the content written so far, used to create back references to identical files
+     * @param pack200Files  collects the files to compress using Pack200
+     * @param root          the packs element to add the pack description to
+     * @return the files that were replaced by back references to identical content from a different path
+     * @throws IOException for any I/O error
+     */
+    private List<PackFile> writePack(JarOutputStream installerJar, PackInfo packInfo, int packNumber,
+                                     PackFileCompressor compressor, ArchiveEntryReader archives,
+                                     Map<Path, PackFile> storedFiles,
+                                     PackFileContentIndex storedContent, List<PackFile> pack200Files,
+                                     IXMLElement root) throws IOException
+    {
+        List<PackFile> deduplicated = new ArrayList<>();
+        final Pack pack = packInfo.getPack();
+        pack.setFileSize(0);
 
-                if (pack.getFileSize() > pack.getSize())
-                {
-                    pack.setSize(pack.getFileSize());
-                }
+        sendMsg("Writing Pack " + packNumber + ": " + pack.getName(), PackagerListener.MSG_VERBOSE);
 
-                // Cleanup
-                packOutputStream.flush();
-                packOutputStream.close();
-                packJar.closeEntry();
-            }
-            finally
+        final ZipEntry entry;
+        final String streamResourceName = "packs/pack-" + pack.getName();
+        final JarOutputStream packJar;
+        MessageDigest digest = null;
+        if (packSeparateJars())
+        {
+            // TODO REFACTOR : Use a mergeManager for each packages that will be added to the main merger
+            Path jarFile = Paths.get(getInfo().getInstallerBase() + ".pack-" + pack.getName() + ".jar");
+            try
             {
-                packJar.flush();
-                // close pack specific jar if required
-                if (packSeparateJars())
-                {
-                    packJar.close();
-                }
+                digest = MessageDigest.getInstance(PACK_DIGEST_ALGORITHM);
             }
-
-            IXMLElement child = new XMLElementImpl("pack", root);
-            child.setAttribute("name", pack.getName());
-            child.setAttribute("size", Long.toString(pack.getSize()));
-            child.setAttribute("fileSize", Long.toString(pack.getFileSize()));
-            if (pack.getLangPackId() != null)
+            catch (NoSuchAlgorithmException exception)
             {
-                child.setAttribute("id", pack.getLangPackId());
+                throw new IOException(exception);
             }
-            root.addChild(child);
-
-            packNumber++;
+            packJar = getJarOutputStream(jarFile, digest);
+            entry = new ZipEntry(streamResourceName);
+        }
+        else
+        {
+            packJar = installerJar;
+            entry = new ZipEntry(RESOURCES_PATH + streamResourceName);
         }
 
-        // Now that we know sizes, write pack metadata to primary jar.
-        installerJar.putNextEntry(new ZipEntry(PACKSINFO_RESOURCE_PATH));
-        try (ObjectOutputStream out = new ObjectOutputStream(new NoCloseOutputStream(installerJar)))
+        // Files compressed individually gain next to nothing from jar compression, so their pack stream is STORED.
+        // This lets the unpacker seek to the files it needs, rather than inflating the entry up to them
+        final boolean stored = getInfo().getCompressionFormat() != PackCompression.DEFAULT;
+        final CRC32 crc = new CRC32();
+        Path storedPack = null;
+        OutputStream packTarget;
+        if (stored)
         {
-            out.writeObject(packs);
+            storedPack = Files.createTempFile("izpack-pack", ".tmp");
+            packTarget = new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(storedPack)), crc);
+        }
+        else
+        {
+            packJar.putNextEntry(entry);
+            packJar.flush(); // flush before we start counting
+            packTarget = new NoCloseOutputStream(packJar);
         }
-        installerJar.closeEntry();
 
-        for (PackFile pack200PackFile : pack200Files)
+        // back references are linked once the pack has been written, as the stream offsets and sizes of
+        // files compressed concurrently are not known until then
+        Map<PackFile, PackFile> backReferences = new LinkedHashMap<>();
+
+        try (CountingOutputStream packOutputStream = new CountingOutputStream(packTarget))
         {
-            try
+            for (PackFile packFile : packInfo.getPackFiles())
             {
-                installerJar.putNextEntry(new ZipEntry(RESOURCES_PATH + pack200PackFile.getStreamResourceName()));
-                Path tmpfile = Files.createTempFile("izpack-compress", ".pack200");
-                try (OutputStream tmpOut = Files.newOutputStream(tmpfile);
-                     BufferedOutputStream bufferedOut = new BufferedOutputStream(tmpOut))
+                boolean addFile = !pack.isLoose();
+                if (packFile instanceof ArchiveEntryPackFile)
                 {
-                    CountingOutputStream proxyOutputStream = new CountingOutputStream(bufferedOut);
-                    Pack200.Packer packer = createPack200Packer(pack200PackFile);
-                    try (JarFile jar = new JarFile(pack200PackFile.getFile()))
+                    // streamed straight from the archive. As it can only be read once, it isn't deduplicated
+                    if (addFile && !packFile.isDirectory())
                     {
-                        packer.pack(jar, proxyOutputStream);
+                        packFile.setStreamResourceName(streamResourceName);
+                        compressor.add(packFile, archives.open((ArchiveEntryPackFile) packFile), packOutputStream);
                     }
-                    pack200PackFile.setSize(proxyOutputStream.getByteCount());
+                    pack.addFileSize(packFile.length());
+                    continue;
+                }
+                Path file = packInfo.getFile(packFile).toPath();
 
-                    Files.copy(tmpfile, installerJar);
+                boolean pack200 = packFile.isPack200Jar();
 
-                    logger.fine("File " + pack200PackFile.getTargetPath() + " added compressed as Pack 200 ("
-                            + pack200PackFile.length() + " -> " + pack200PackFile.size() + " bytes)");
+                // use a back reference if file was in previous pack, and in
+                // same jar
+                PackFile linkedPackFile = storedFiles.get(file);
+
+                if (linkedPackFile != null && !packSeparateJars())
+                {
+                    // Save backreference link
+                    logger.fine("File " + packFile.getTargetPath() + " is a backreference, linked to " + linkedPackFile.getTargetPath());
+                    backReferences.put(packFile, linkedPackFile);
+                    addFile = false;
                 }
-                finally
+                else if (addFile && !pack200 && !packFile.isDirectory() && !packSeparateJars())
                 {
-                    Files.deleteIfExists(tmpfile);
+                    // use a back reference if the same content was stored from a different path
+                    linkedPackFile = storedContent.find(packFile, file);
+                    if (linkedPackFile != null)
+                    {
+                        logger.fine("File " + packFile.getTargetPath() + " has the same content as "
+                                            + linkedPackFile.getTargetPath() + ", linked as backreference");
+                        backReferences.put(packFile, linkedPackFile);
+                        deduplicated.add(packFile);
+                        addFile = false;
+                    }
                 }
+
+                if (addFile && !packFile.isDirectory())
+                {
+
+                    if (pack200)
+                    {
+                        /*
+                         * Warning!
+                         *
+                         * Pack200 archives must be stored in separated streams,
+                         * as the Pack200 unpacker reads the entire stream...
+                         *
+                         * See http://java.sun.com/javase/6/docs/api/java/util/jar/Pack200.Unpacker.html
+                         */
+                        packFile.setStreamResourceName("packs/pack200-" + packFile.getId());
+                        packFile.setStreamOffset(0);
+                        pack200Files.add(packFile);
+                    }
+                    else
+                    {
+                        packFile.setStreamResourceName(streamResourceName);
+                        compressor.add(packFile, file, packOutputStream);
+                        storedContent.add(packFile, file);
+                    }
+
+                    storedFiles.put(file, packFile);
+                }
+
+                // even if not written, it counts towards pack size
+                pack.addFileSize(packFile.length());
             }
-            finally
+            compressor.flush(packOutputStream);
+
+            for (Map.Entry<PackFile, PackFile> backReference : backReferences.entrySet())
             {
-                installerJar.closeEntry();
-                installerJar.flush();
+                backReference.getKey().setLinkedPackFile(backReference.getValue());
+            }
+
+            if (pack.getFileSize() > pack.getSize())
+            {
+                pack.setSize(pack.getFileSize());
+            }
+
+            // Cleanup
+            packOutputStream.flush();
+            packOutputStream.close();
+            if (stored)
+            {
+                writeStoredEntry(packJar, entry, storedPack, packOutputStream.getByteCount(), crc.getValue());
+            }
+            else
+            {
+                packJar.closeEntry();
+            }
+        }
+        finally
+        {
+            if (storedPack != null)
+            {
+                Files.deleteIfExists(storedPack);
+            }
+            packJar.flush();
+            // close pack specific jar if required
+            if (packSeparateJars())
+            {
+                packJar.close();
             }
         }
+        if (digest != null)
+        {
+            // lets web installers verify the pack jar they download
+            pack.setDigest(HexFormat.of().formatHex(digest.digest()));
+        }
+
+        IXMLElement child = new XMLElementImpl("pack", root);
+        child.setAttribute("name", pack.getName());
+        child.setAttribute("size", Long.toString(pack.getSize()));
+        child.setAttribute("fileSize", Long.toString(pack.getFileSize()));
+        if (pack.getLangPackId() != null)
+        {
+            child.setAttribute("id", pack.getLangPackId());
+        }
+        root.addChild(child);
+        return deduplicated;
+    }
+
+    /**
+     * Writes a file to a jar as an uncompressed entry.
+     *
+     * @param jar   the jar
+     * @param entry the entry to write
+     * @param file  the file to write
+     * @param size  the file size
+     * @param crc   the CRC-32 of the file
+     * @throws IOException for any I/O error
+     */
+    private void writeStoredEntry(JarOutputStream jar, ZipEntry entry, Path file, long size, long crc)
+            throws IOException
+    {
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(size);
+        entry.setCompressedSize(size);
+        entry.setCrc(crc);
+        jar.putNextEntry(entry);
+        Files.copy(file, jar);
+        jar.closeEntry();
     }
 
     private Pack200.Packer createPack200Packer(PackFile packFile)
@@ -320,5 +553,9 @@ public class Packager extends PackagerBase
     @Override
     public void addConfigurationInformation(IXMLElement data)
     {
+        if (data != null)
+        {
+            setCompressionThreads(Integer.parseInt(data.getAttribute(COMPRESSION_THREADS, "1")));
+        }
     }
 }
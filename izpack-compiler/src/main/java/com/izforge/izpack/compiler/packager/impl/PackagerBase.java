@@ -29,6 +29,7 @@ import com.izforge.izpack.api.data.GUIPrefs;
 import com.izforge.izpack.api.data.Info;
 import com.izforge.izpack.api.data.InstallerRequirement;
 import com.izforge.izpack.api.data.PackInfo;
+import com.izforge.izpack.api.data.PackInfoFormat;
 import com.izforge.izpack.api.data.Panel;
 import com.izforge.izpack.api.exception.CompilerException;
 import com.izforge.izpack.api.rules.Condition;
@@ -515,6 +516,38 @@ public abstract class PackagerBase implements IPackager
         }
     }
 
+    /**
+     * Writes the pack meta-data to the installer jar. This is written once the pack sizes are known.
+     *
+     * @param packs the packs
+     * @throws IOException for any I/O error
+     */
+    protected final void writePacksInfo(List<PackInfo> packs) throws IOException
+    {
+        installerJar.putNextEntry(new ZipEntry(PACKSINFO_RESOURCE_PATH));
+        try
+        {
+            PackInfoFormat.write(packs, installerJar);
+        }
+        finally
+        {
+            installerJar.closeEntry();
+        }
+        for (PackInfo pack : packs)
+        {
+            installerJar.putNextEntry(
+                    new ZipEntry(RESOURCES_PATH + PackInfoFormat.getFilesResourceName(pack.getPack().getName())));
+            try
+            {
+                PackInfoFormat.writeFiles(pack, installerJar);
+            }
+            finally
+            {
+                installerJar.closeEntry();
+            }
+        }
+    }
+
     /**
      * Write the data referenced by URL to installer jar.
      *
@@ -580,6 +613,21 @@ public abstract class PackagerBase implements IPackager
         }
     }
 
+    /**
+     * Dispatches build cache statistics to the listeners.
+     *
+     * @param hits        the no. of outputs copied from the cache
+     * @param misses      the no. of outputs that were produced and added to the cache
+     * @param reusedBytes the no. of bytes copied from the cache
+     */
+    protected final void sendCacheStatistics(long hits, long misses, long reusedBytes)
+    {
+        if (listener != null)
+        {
+            listener.packagerCacheStatistics(hits, misses, reusedBytes);
+        }
+    }
+
     /**
      * Dispatches a start event to the listeners.
      */
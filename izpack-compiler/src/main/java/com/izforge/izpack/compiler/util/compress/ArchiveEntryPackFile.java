@@ -0,0 +1,118 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.util.compress;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.binding.OsModel;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link PackFile} whose content is an entry of an archive.
+ * <p/>
+ * The entry isn't extracted when the pack file is created; its content is streamed from the archive by an
+ * {@link ArchiveEntryReader} when the pack is written.
+ */
+public class ArchiveEntryPackFile extends PackFile
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The archive.
+     */
+    private final transient File archive;
+
+    /**
+     * The entry name.
+     */
+    private final transient String entryName;
+
+    /**
+     * The position of the entry in the archive, starting at {@code 0}.
+     */
+    private final transient int entryIndex;
+
+    /**
+     * Constructs an <tt>ArchiveEntryPackFile</tt>.
+     *
+     * @param archive          the archive
+     * @param entry            the archive entry
+     * @param entryIndex       the position of the entry in the archive, starting at {@code 0}
+     * @param length           the length of the entry content
+     * @param target           the path to install the file to
+     * @param osList           OS constraints
+     * @param override         what to do when the file already exists
+     * @param overrideRenameTo the glob mapper expression for renaming the file on override. May be {@code null}
+     * @param blockable        whether the file might be blocked by the operating system
+     * @param additionals      additional attributes
+     */
+    public ArchiveEntryPackFile(File archive, ArchiveEntry entry, int entryIndex, long length, String target,
+                                List<OsModel> osList, OverrideType override, String overrideRenameTo,
+                                Blockable blockable, Map additionals)
+    {
+        super(null, entry.getName(), target, entry.isDirectory(), length, entry.getLastModifiedDate().getTime(),
+              osList, override, overrideRenameTo, blockable, additionals, null);
+        this.archive = archive;
+        this.entryName = entry.getName();
+        this.entryIndex = entryIndex;
+    }
+
+    /**
+     * Returns the archive.
+     *
+     * @return the archive
+     */
+    public File getArchive()
+    {
+        return archive;
+    }
+
+    /**
+     * Returns the entry name.
+     *
+     * @return the entry name
+     */
+    public String getEntryName()
+    {
+        return entryName;
+    }
+
+    /**
+     * Returns the position of the entry in the archive.
+     *
+     * @return the position of the entry, starting at {@code 0}
+     */
+    public int getEntryIndex()
+    {
+        return entryIndex;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s!/%s (length=%s, size=%s, streamOffset=%s)", archive, entryName, length(), size(),
+                             getStreamOffset());
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.util.compress;
+
+import com.izforge.izpack.util.NoCloseInputStream;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the content of {@link ArchiveEntryPackFile}s from their archives.
+ * <p/>
+ * Archives can only be read sequentially, so the archive most recently read is kept open. Reading the entries of an
+ * archive in the order they appear in it reads the archive once; reading an entry that precedes the last one read
+ * reopens the archive.
+ */
+public class ArchiveEntryReader implements Closeable
+{
+    /**
+     * The archive being read, or {@code null} if none is open.
+     */
+    private File archive;
+
+    /**
+     * The stream of the archive file.
+     */
+    private InputStream input;
+
+    /**
+     * The archive stream.
+     */
+    private ArchiveInputStream<?> archiveInput;
+
+    /**
+     * The position of the current entry in the archive, or {@code -1} if no entry has been read.
+     */
+    private int index = -1;
+
+    /**
+     * Opens the content of an archive entry.
+     * <p/>
+     * The returned stream is only valid until the next invocation, and needn't be closed.
+     *
+     * @param packFile the pack file of the archive entry
+     * @return the content of the entry
+     * @throws IOException if the archive cannot be read, or no longer contains the entry
+     */
+    public InputStream open(ArchiveEntryPackFile packFile) throws IOException
+    {
+        File file = packFile.getArchive();
+        if (archiveInput == null || !file.equals(archive) || packFile.getEntryIndex() <= index)
+        {
+            close();
+            openArchive(file);
+        }
+        ArchiveEntry entry = null;
+        while (index < packFile.getEntryIndex())
+        {
+            entry = archiveInput.getNextEntry();
+            if (entry == null)
+            {
+                break;
+            }
+            index++;
+        }
+        if (entry == null || !entry.getName().equals(packFile.getEntryName()))
+        {
+            throw new IOException("Entry " + packFile.getEntryName() + " not found in " + file
+                                          + ". Was the archive modified?");
+        }
+        return new NoCloseInputStream(archiveInput);
+    }
+
+    /**
+     * Closes the archive being read.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            IOUtils.close(archiveInput, input);
+        }
+        finally
+        {
+            archive = null;
+            archiveInput = null;
+            input = null;
+            index = -1;
+        }
+    }
+
+    /**
+     * Opens an archive, which may be compressed.
+     *
+     * @param file the archive
+     * @throws IOException if the file cannot be read, or is not an archive
+     */
+    private void openArchive(File file) throws IOException
+    {
+        InputStream in = IOUtils.buffer(FileUtils.openInputStream(file));
+        try
+        {
+            try
+            {
+                in = IOUtils.buffer(new CompressorStreamFactory().createCompressorInputStream(in));
+            }
+            catch (CompressorException ignore)
+            {
+                // not compressed
+            }
+            archiveInput = new ArchiveStreamFactory().createArchiveInputStream(file, in);
+        }
+        catch (ArchiveException exception)
+        {
+            IOUtils.closeQuietly(in);
+            throw new IOException("No archiving format detected for file " + file, exception);
+        }
+        archive = file;
+        input = in;
+        index = -1;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.helper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Tests the {@link ArchiveFileSet}.
+ */
+public class ArchiveFileSetTest
+{
+    /**
+     * Verifies that include and exclude patterns are applied to entry names.
+     */
+    @Test
+    public void testPatterns()
+    {
+        ArchiveFileSet fs = new ArchiveFileSet();
+        fs.setIncludes("bin/**,lib/*.jar");
+        fs.setExcludes("**/*.bak");
+
+        assertEquals("bin/java", fs.getSelectedPath("bin/java"));
+        assertEquals("bin/sub/tool", fs.getSelectedPath("./bin/sub/tool"));
+        assertEquals("lib/rt.jar", fs.getSelectedPath("lib/rt.jar"));
+        assertNull(fs.getSelectedPath("lib/ext/x.jar"));
+        assertNull(fs.getSelectedPath("bin/java.bak"));
+        assertNull(fs.getSelectedPath("README"));
+    }
+
+    /**
+     * Verifies that default excludes are applied unless disabled.
+     */
+    @Test
+    public void testDefaultExcludes()
+    {
+        ArchiveFileSet fs = new ArchiveFileSet();
+        assertNull(fs.getSelectedPath("src/.svn/entries"));
+        assertEquals("src/Main.java", fs.getSelectedPath("src/Main.java"));
+
+        ArchiveFileSet all = new ArchiveFileSet();
+        all.setDefaultexcludes(false);
+        assertEquals("src/.svn/entries", all.getSelectedPath("src/.svn/entries"));
+    }
+
+    /**
+     * Verifies that paths are relative to the archive directory, and that entries outside it aren't selected.
+     */
+    @Test
+    public void testArchiveDir()
+    {
+        ArchiveFileSet fs = new ArchiveFileSet();
+        fs.setArchiveDir("jdk/");
+        fs.setIncludes("bin/*");
+        assertFalse(fs.isArchiveDirFound());
+
+        assertNull(fs.getSelectedPath("other/bin/java"));
+        assertFalse(fs.isArchiveDirFound());
+        assertNull(fs.getSelectedPath("jdk/"));
+        assertTrue(fs.isArchiveDirFound());
+        assertEquals("bin/java", fs.getSelectedPath("jdk/bin/java"));
+        assertNull(fs.getSelectedPath("jdk/lib/rt.jar"));
+    }
+}
@@ -19,29 +19,68 @@
 
 package com.izforge.izpack.compiler.packager.impl;
 
+import com.izforge.izpack.api.adaptator.IXMLElement;
+import com.izforge.izpack.api.adaptator.impl.XMLElementImpl;
 import com.izforge.izpack.api.data.Blockable;
 import com.izforge.izpack.api.data.Info;
 import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackCompression;
+import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.api.data.PackInfo;
+import com.izforge.izpack.api.data.PackInfoFormat;
 import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.compiler.data.CompilerData;
+import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.merge.CompilerPathResolver;
 import com.izforge.izpack.compiler.packager.IPackager;
+import com.izforge.izpack.compiler.util.compress.ArchiveEntryPackFile;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
 import com.izforge.izpack.test.util.TestHelper;
+import com.izforge.izpack.util.FileChecksum;
+import com.izforge.izpack.util.StreamSupport;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 /**
  * Tests the {@link Packager}.
@@ -101,6 +140,341 @@ public class PackagerTest extends AbstractPackagerTest
         System.out.println("Writing pack of " + packSize + " KiB took " + timeDiff + "ms");
     }
 
+    /**
+     * Verifies that packs compressed on several threads are identical to those compressed on a single thread.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testParallelCompressionIsByteIdentical() throws Exception
+    {
+        File dir = temporaryFolder.newFolder("files");
+        File[] files = new File[200];
+        for (int i = 0; i < files.length; ++i)
+        {
+            // mix of small files and a few larger ones, to vary the time taken to compress each segment
+            files[i] = TestHelper.createFile(dir, "f" + i + ".dat", (i % 50 == 0) ? 512 * 1024 : 1024 + i);
+        }
+
+        File serialJar = createInstaller("serial.jar", 1, files);
+        File parallelJar = createInstaller("parallel.jar", 4, files);
+
+        assertArrayEquals(readEntry(serialJar, "resources/packs/pack-Core"),
+                          readEntry(parallelJar, "resources/packs/pack-Core"));
+
+        List<PackFile> serialFiles = readPackFiles(serialJar);
+        List<PackFile> parallelFiles = readPackFiles(parallelJar);
+        assertEquals(serialFiles.size(), parallelFiles.size());
+        for (int i = 0; i < serialFiles.size(); ++i)
+        {
+            assertEquals(serialFiles.get(i).getStreamOffset(), parallelFiles.get(i).getStreamOffset());
+            assertEquals(serialFiles.get(i).size(), parallelFiles.get(i).size());
+            assertEquals(FileChecksum.getChecksum(files[i]), parallelFiles.get(i).getChecksum());
+        }
+    }
+
+    /**
+     * Verifies that the no. of compression threads can be configured via the packager options.
+     */
+    @Test
+    public void testCompressionThreadsConfiguration()
+    {
+        Packager packager = (Packager) createPackager(mock(JarOutputStream.class), mock(MergeManager.class));
+        assertEquals(1, packager.getCompressionThreads());
+
+        IXMLElement options = new XMLElementImpl("options");
+        options.setAttribute(Packager.COMPRESSION_THREADS, "3");
+        packager.addConfigurationInformation(options);
+        assertEquals(3, packager.getCompressionThreads());
+    }
+
+    /**
+     * Verifies that files with identical content from different paths are stored once, with back references.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testIdenticalContentIsStoredOnce() throws Exception
+    {
+        File original = TestHelper.createFile(temporaryFolder.newFolder("a"), "lib.jar", 64 * 1024);
+        File copy = new File(temporaryFolder.newFolder("b"), "lib.jar");
+        FileUtils.copyFile(original, copy);
+        File other = TestHelper.createFile(temporaryFolder.newFolder("c"), "other.jar", 64 * 1024);
+
+        File installerJar = temporaryFolder.newFile("dedup.jar");
+        JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(installerJar));
+        IPackager packager = createPackager(jarOutputStream, mock(MergeManager.class));
+        packager.addPack(createPackInfo("Core", original, other));
+        packager.addPack(createPackInfo("Extra", copy));
+        packager.createInstaller();
+
+        List<PackInfo> packs = readPacks(installerJar);
+        PackFile stored = packs.get(0).getPackFiles().iterator().next();
+        PackFile linked = packs.get(1).getPackFiles().iterator().next();
+        assertFalse(stored.isBackReference());
+        assertTrue(linked.isBackReference());
+        assertEquals(stored.getStreamResourceName(), linked.getLinkedPackFile().getStreamResourceName());
+        assertEquals(stored.getStreamOffset(), linked.getStreamOffset());
+        assertEquals(FileChecksum.getChecksum(original), stored.getChecksum());
+        assertEquals(stored.getChecksum(), linked.getChecksum());
+        assertEquals(0, readEntry(installerJar, "resources/packs/pack-Extra").length);
+    }
+
+    /**
+     * Verifies that the pack stream of a compressed pack is stored uncompressed, so that files can be read by
+     * seeking to their offset.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCompressedPackStreamIsStored() throws Exception
+    {
+        File dir = temporaryFolder.newFolder("stored");
+        File[] files = new File[3];
+        for (int i = 0; i < files.length; ++i)
+        {
+            files[i] = TestHelper.createFile(dir, "f" + i + ".dat", 32 * 1024);
+        }
+        File installerJar = createInstaller("stored.jar", 1, files);
+
+        PackFile last = readPackFiles(installerJar).get(2);
+        try (JarFile jarFile = new JarFile(installerJar))
+        {
+            JarEntry entry = jarFile.getJarEntry("resources/packs/pack-Core");
+            assertEquals(ZipEntry.STORED, entry.getMethod());
+            try (InputStream input = jarFile.getInputStream(entry))
+            {
+                assertEquals(last.getStreamOffset(), input.skip(last.getStreamOffset()));
+                InputStream segment = new ByteArrayInputStream(IOUtils.toByteArray(input, last.size()));
+                byte[] content = IOUtils.toByteArray(StreamSupport.compressedInput(PackCompression.DEFLATE, segment));
+                assertArrayEquals(FileUtils.readFileToByteArray(files[2]), content);
+            }
+        }
+    }
+
+    /**
+     * Verifies that compressed files are reused from the build cache by subsequent compilations, and that changed
+     * files are compressed again.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testBuildCache() throws Exception
+    {
+        File dir = temporaryFolder.newFolder("cached");
+        File[] files = new File[3];
+        for (int i = 0; i < files.length; ++i)
+        {
+            files[i] = TestHelper.createFile(dir, "f" + i + ".dat", 32 * 1024);
+        }
+        File cacheDir = new File(temporaryFolder.getRoot(), "cache");
+
+        PackagerListener first = mock(PackagerListener.class);
+        File firstJar = createInstaller("first.jar", 1, cacheDir, first, files);
+        verify(first).packagerCacheStatistics(0, 3, 0);
+
+        PackagerListener second = mock(PackagerListener.class);
+        File secondJar = createInstaller("second.jar", 2, cacheDir, second, files);
+        verify(second).packagerCacheStatistics(eq(3L), eq(0L), anyLong());
+        assertArrayEquals(readEntry(firstJar, "resources/packs/pack-Core"),
+                          readEntry(secondJar, "resources/packs/pack-Core"));
+        List<PackFile> cachedFiles = readPackFiles(secondJar);
+        for (int i = 0; i < files.length; ++i)
+        {
+            assertEquals(FileChecksum.getChecksum(files[i]), cachedFiles.get(i).getChecksum());
+        }
+
+        FileUtils.writeStringToFile(files[1], "changed", StandardCharsets.UTF_8);
+        PackagerListener third = mock(PackagerListener.class);
+        File thirdJar = createInstaller("third.jar", 1, cacheDir, third, files);
+        verify(third).packagerCacheStatistics(eq(2L), eq(1L), anyLong());
+        assertArrayEquals(readEntry(createInstaller("uncached.jar", 1, files), "resources/packs/pack-Core"),
+                          readEntry(thirdJar, "resources/packs/pack-Core"));
+    }
+
+    /**
+     * Verifies that archive entries are streamed from the archive into the pack, whatever their order in the pack.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testArchiveEntriesAreStreamed() throws Exception
+    {
+        File dir = temporaryFolder.newFolder("archived");
+        File plain = TestHelper.createFile(dir, "plain.dat", 16 * 1024);
+        File[] contents = {TestHelper.createFile(dir, "a.dat", 32 * 1024),
+                TestHelper.createFile(dir, "c.dat", 1024),
+                TestHelper.createFile(dir, "d.dat", 64 * 1024)};
+        File archive = new File(dir, "bundle.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive)))
+        {
+            out.putNextEntry(new ZipEntry("a.dat"));
+            FileUtils.copyFile(contents[0], out);
+            out.putNextEntry(new ZipEntry("b/"));
+            out.putNextEntry(new ZipEntry("b/c.dat"));
+            FileUtils.copyFile(contents[1], out);
+            out.putNextEntry(new ZipEntry("d.dat"));
+            FileUtils.copyFile(contents[2], out);
+        }
+
+        // add the entries out of archive order, and mixed with plain files
+        List<ArchiveEntryPackFile> entries = createArchivePackFiles(archive);
+        PackInfo packInfo = createPackInfo("Core", plain);
+        packInfo.addFile(entries.get(3));
+        packInfo.addFile(entries.get(1));
+        packInfo.addFile(entries.get(0));
+        packInfo.addFile(entries.get(2));
+        File installerJar = createInstaller("archived.jar", 4, null, null, packInfo);
+
+        List<PackFile> packFiles = readPackFiles(installerJar);
+        assertEquals(5, packFiles.size());
+        assertEquals("$INSTALL_DIR/d.dat", packFiles.get(1).getTargetPath());
+        assertTrue(packFiles.get(2).isDirectory());
+        assertEquals("$INSTALL_DIR/b/c.dat", packFiles.get(4).getTargetPath());
+        byte[] pack = readEntry(installerJar, "resources/packs/pack-Core");
+        assertArrayEquals(FileUtils.readFileToByteArray(plain), readSegment(pack, packFiles.get(0)));
+        assertArrayEquals(FileUtils.readFileToByteArray(contents[2]), readSegment(pack, packFiles.get(1)));
+        assertArrayEquals(FileUtils.readFileToByteArray(contents[0]), readSegment(pack, packFiles.get(3)));
+        assertArrayEquals(FileUtils.readFileToByteArray(contents[1]), readSegment(pack, packFiles.get(4)));
+        assertEquals(FileChecksum.getChecksum(contents[2]), packFiles.get(1).getChecksum());
+    }
+
+    /**
+     * Verifies that segments spilled to temporary files are deleted if compressing a pack fails.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSpilledSegmentsDeletedOnFailure() throws Exception
+    {
+        File dir = temporaryFolder.newFolder("files");
+        File[] files = new File[4];
+        files[0] = TestHelper.createFile(dir, "missing.dat", 1024);
+        for (int i = 1; i < files.length; ++i)
+        {
+            // random data doesn't compress, so these segments are spilled to disk
+            files[i] = TestHelper.createFile(dir, "f" + i + ".dat", 5 * 1024 * 1024);
+        }
+        PackInfo packInfo = createPackInfo("Core", files);
+        assertTrue(files[0].delete());
+
+        Set<Path> before = getSegmentFiles();
+        try
+        {
+            createInstaller("failed.jar", 4, null, null, packInfo);
+            fail("Expected the build to fail");
+        }
+        catch (Exception expected)
+        {
+            // expected
+        }
+        Set<Path> after = getSegmentFiles();
+        after.removeAll(before);
+        assertEquals(Collections.<Path>emptySet(), after);
+    }
+
+    private Set<Path> getSegmentFiles() throws IOException
+    {
+        Set<Path> result = new HashSet<>();
+        Path tmpDir = Paths.get(System.getProperty("java.io.tmpdir"));
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(tmpDir, "izpack-segment*.tmp"))
+        {
+            for (Path path : stream)
+            {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+
+    private File createInstaller(String name, int threads, File... files) throws Exception
+    {
+        return createInstaller(name, threads, null, null, files);
+    }
+
+    private File createInstaller(String name, int threads, File cacheDir, PackagerListener listener, File... files)
+            throws Exception
+    {
+        return createInstaller(name, threads, cacheDir, listener, createPackInfo("Core", files));
+    }
+
+    private File createInstaller(String name, int threads, File cacheDir, PackagerListener listener,
+                                 PackInfo packInfo) throws Exception
+    {
+        File installerJar = temporaryFolder.newFile(name);
+        JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(installerJar));
+        CompilerData data = new CompilerData("", "", "", true);
+        if (cacheDir != null)
+        {
+            data.setCacheDir(cacheDir.getPath());
+        }
+        Packager packager = new Packager(new Properties(), listener, jarOutputStream, mock(MergeManager.class),
+                                         mock(CompilerPathResolver.class), mock(MergeableResolver.class), data,
+                                         mock(RulesEngine.class));
+        packager.setInfo(new Info());
+        packager.getInfo().setCompressionFormat(PackCompression.DEFLATE);
+        packager.setCompressionThreads(threads);
+        packager.addPack(packInfo);
+        packager.createInstaller();
+        return installerJar;
+    }
+
+    private List<ArchiveEntryPackFile> createArchivePackFiles(File archive) throws IOException
+    {
+        List<ArchiveEntryPackFile> result = new ArrayList<>();
+        try (ZipArchiveInputStream input = new ZipArchiveInputStream(new FileInputStream(archive)))
+        {
+            ArchiveEntry entry;
+            int index = 0;
+            while ((entry = input.getNextEntry()) != null)
+            {
+                long length = IOUtils.consume(input);
+                result.add(new ArchiveEntryPackFile(archive, entry, index++, length, "$INSTALL_DIR/" + entry.getName(),
+                                                    null, OverrideType.OVERRIDE_TRUE, "", Blockable.BLOCKABLE_NONE,
+                                                    Collections.emptyMap()));
+            }
+        }
+        return result;
+    }
+
+    private byte[] readSegment(byte[] pack, PackFile packFile) throws IOException
+    {
+        InputStream segment = new ByteArrayInputStream(pack, (int) packFile.getStreamOffset(), (int) packFile.size());
+        return IOUtils.toByteArray(StreamSupport.compressedInput(PackCompression.DEFLATE, segment));
+    }
+
+    private List<PackFile> readPackFiles(File jar) throws Exception
+    {
+        return new ArrayList<>(readPacks(jar).get(0).getPackFiles());
+    }
+
+    private List<PackInfo> readPacks(File jar) throws Exception
+    {
+        return PackInfoFormat.read(new ByteArrayInputStream(readEntry(jar, "resources/packs.info")), name -> {
+            try
+            {
+                return new ByteArrayInputStream(readEntry(jar, "resources/" + name));
+            }
+            catch (IOException exception)
+            {
+                throw new UncheckedIOException(exception);
+            }
+        });
+    }
+
+    private byte[] readEntry(File jar, String name) throws IOException
+    {
+        try (JarFile jarFile = new JarFile(jar))
+        {
+            JarEntry entry = jarFile.getJarEntry(name);
+            assertNotNull("Failed to find jar entry: " + name, entry);
+            try (InputStream input = jarFile.getInputStream(entry))
+            {
+                return IOUtils.toByteArray(input);
+            }
+        }
+    }
+
     private PackInfo createPackInfo(String name, File... files) throws IOException {
 
         PackInfo packInfo = new PackInfo(name, null, "", true, false, null, true, calculateTotalSize(files));
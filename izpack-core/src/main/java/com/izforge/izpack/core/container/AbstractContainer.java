@@ -32,6 +32,12 @@ import com.izforge.izpack.api.exception.IzPackClassNotFoundException;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 
 
@@ -50,6 +56,17 @@ public abstract class AbstractContainer implements Container {
     private Injector parent;
     private Injector injector;
 
+    /**
+     * Named component instances registered after the injector was created, when the container is flat.
+     * These aren't bound in any injector, so they can only be retrieved via {@link #getComponent(String, Class)}.
+     */
+    private final Map<Key<?>, Object> instances = new ConcurrentHashMap<>();
+
+    /**
+     * Determines if late named component instances are held by the container. See {@link #setFlat(boolean)}.
+     */
+    private boolean flat;
+
     /**
      * Constructs an <tt>AbstractContainer</tt>.
      * <p/>
@@ -140,8 +157,22 @@ public abstract class AbstractContainer implements Container {
         addSimpleModule(componentKey, binder -> binder.toInstance(implementation));
     }
 
+    /**
+     * Register a named component instance.
+     * <p/>
+     * If the container is {@link #setFlat flat} and the injector has been created, the instance is held by the
+     * container rather than bound, so it is not available for injection.
+     *
+     * @param componentKey   the component name
+     * @param type           the component type
+     * @param implementation the component instance
+     */
     @Override
     public <T, U extends T> void addComponent(String componentKey, Class<T> type, U implementation) {
+        if (flat && injector != null) {
+            instances.put(Key.get(type, Names.named(componentKey)), implementation);
+            return;
+        }
         addSimpleModule(type, binder -> binder
                 .annotatedWith(Names.named(componentKey))
                 .toInstance(implementation));
@@ -205,7 +236,80 @@ public abstract class AbstractContainer implements Container {
      */
     @Override
     public <T> T getComponent(String key, Class<T> type) {
-        return getInjector().getInstance(Key.get(type, Names.named(key)));
+        Key<T> componentKey = Key.get(type, Names.named(key));
+        Object instance = instances.get(componentKey);
+        if (instance != null) {
+            return type.cast(instance);
+        }
+        return getInjector().getInstance(componentKey);
+    }
+
+    /**
+     * Determines if named component instances registered after the injector has been created are held by the
+     * container, rather than by a new child injector.
+     * <p/>
+     * By default, registering a component after the injector has been created makes the injector the parent of a
+     * new child injector holding the component. Alternately registering and retrieving components therefore builds a
+     * chain of injectors, which slows down each lookup. The installer containers register a named instance for each
+     * panel in this way.
+     * <p/>
+     * A flat container only avoids this for {@link #addComponent(String, Class, Object)}. Such instances:
+     * <ul>
+     * <li>can only be retrieved via {@link #getComponent(String, Class)} on this container</li>
+     * <li>are not injected into other components, and are not visible to child containers</li>
+     * </ul>
+     * All other registrations made after the injector has been created still create a child injector, so they
+     * should be made before the first lookup.
+     *
+     * @param flat if {@code true}, hold late named component instances in the container
+     */
+    protected void setFlat(boolean flat) {
+        this.flat = flat;
+    }
+
+    /**
+     * Creates components in parallel.
+     * <p/>
+     * This may be used to create expensive singletons up front, as Guice does in {@link Stage#PRODUCTION}, but on
+     * several threads. The components must be safe to create outside the calling thread.
+     *
+     * @param types the component types
+     * @throws ContainerException if a component cannot be created
+     */
+    protected void createComponents(List<Class<?>> types) {
+        Injector current = getInjector();
+        int threads = Math.min(types.size(), Runtime.getRuntime().availableProcessors());
+        if (threads <= 1) {
+            for (Class<?> type : types) {
+                current.getInstance(type);
+            }
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "IzPack-Container");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Class<?> type : types) {
+                futures.add(executor.submit(() -> current.getInstance(type)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new ContainerException(exception);
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ContainerException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     private Injector getInjector() {
@@ -256,6 +360,7 @@ public abstract class AbstractContainer implements Container {
     @Override
     public void dispose() {
         modules.clear();
+        instances.clear();
         injector = null;
     }
 
@@ -34,6 +34,7 @@ import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
 import com.izforge.izpack.core.variable.utils.ValueUtils;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -76,6 +77,10 @@ public class DefaultVariables implements Variables
      */
     private transient Map<String, Deque<Object>> blockedVariableNameStacks = new HashMap<String, Deque<Object>>();
 
+    /**
+     * The version of the variables, incremented on each change.
+     */
+    private final AtomicLong version = new AtomicLong(1);
 
     /**
      * The logger.
@@ -124,19 +129,26 @@ public class DefaultVariables implements Variables
     {
         // Prevent from re-applying when pressing Previous button in panel
         // but preserve user values made at the panel where Previous has been pressed
-        if (overrides != null)
+        if (overrides != null && overrides.containsKey(name))
         {
             overrides.remove(name);
+            version.incrementAndGet();
         }
 
         if (value != null)
         {
-            properties.setProperty(name, value);
+            if (!value.equals(properties.setProperty(name, value)))
+            {
+                version.incrementAndGet();
+            }
             logger.fine("Dynamic variable '" + name + "' set to '" + value + "'");
         }
         else
         {
-            properties.remove(name);
+            if (properties.remove(name) != null)
+            {
+                version.incrementAndGet();
+            }
             logger.fine("Dynamic variable '" + name + "' unset");
         }
     }
@@ -315,6 +327,9 @@ public class DefaultVariables implements Variables
     public synchronized void refresh() throws InstallerException
     {
         logger.fine("Refreshing dynamic variables");
+        boolean statistics = logger.isLoggable(Level.FINE);
+        int resolved = statistics ? getResolveCount() : 0;
+        int reused = statistics ? getReuseCount() : 0;
         Set<DynamicVariable> checkedVariables = new HashSet<DynamicVariable>();
         Set<String> unsetVariables = new HashSet<String>();
         Set<String> setVariables = new HashSet<String>();
@@ -404,6 +419,50 @@ public class DefaultVariables implements Variables
         {
             variable.setChecked();
         }
+
+        if (statistics)
+        {
+            resolved = getResolveCount() - resolved;
+            reused = getReuseCount() - reused;
+            logger.fine("Refreshed " + dynamicVariables.size() + " dynamic variables: " + resolved
+                                + " values resolved, " + reused + " reused as their inputs were unchanged");
+        }
+    }
+
+    /**
+     * Returns the no. of times dynamic variable values have been resolved.
+     *
+     * @return the no. of times dynamic variable values have been resolved
+     */
+    public synchronized int getResolveCount()
+    {
+        int result = 0;
+        for (DynamicVariable variable : dynamicVariables)
+        {
+            if (variable instanceof DynamicVariableImpl)
+            {
+                result += ((DynamicVariableImpl) variable).getResolveCount();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the no. of times resolving a dynamic variable value was skipped, as its inputs were unchanged.
+     *
+     * @return the no. of times a previously resolved value was reused
+     */
+    public synchronized int getReuseCount()
+    {
+        int result = 0;
+        for (DynamicVariable variable : dynamicVariables)
+        {
+            if (variable instanceof DynamicVariableImpl)
+            {
+                result += ((DynamicVariableImpl) variable).getReuseCount();
+            }
+        }
+        return result;
     }
 
     /**
@@ -427,6 +486,7 @@ public class DefaultVariables implements Variables
     public void setOverrides(Overrides overrides)
     {
         this.overrides = overrides;
+        version.incrementAndGet();
     }
 
     @Override
@@ -435,6 +495,20 @@ public class DefaultVariables implements Variables
         return this.overrides;
     }
 
+    /**
+     * Returns the version of the variables.
+     * <p/>
+     * This starts at {@code 1}, and is incremented each time {@link #set} changes a value, or the overrides are
+     * replaced. Setting a variable to its current value doesn't change the version.
+     *
+     * @return the version
+     */
+    @Override
+    public long getVersion()
+    {
+        return version.get();
+    }
+
     @Override
     public void registerBlockedVariableNames(Set<String> names, Object blocker)
     {
@@ -23,9 +23,11 @@
 
 package com.izforge.izpack.core.data;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,6 +38,7 @@ import com.izforge.izpack.api.rules.Condition;
 import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.variable.PlainValue;
+import com.izforge.izpack.core.variable.ValueImpl;
 
 public class DynamicVariableImpl implements DynamicVariable
 {
@@ -60,6 +63,26 @@ public class DynamicVariableImpl implements DynamicVariable
     private transient String currentValue;
     private transient boolean checked = false;
 
+    /**
+     * The inputs the value was last resolved from, or {@code null} if it hasn't been resolved, or isn't reusable.
+     */
+    private transient List<Object> resolvedInputs;
+
+    /**
+     * The value last resolved from {@link #resolvedInputs}.
+     */
+    private transient String resolvedValue;
+
+    /**
+     * The no. of times the value has been resolved.
+     */
+    private transient int resolveCount;
+
+    /**
+     * The no. of times a previously resolved value has been reused, as its inputs were unchanged.
+     */
+    private transient int reuseCount;
+
     public DynamicVariableImpl() {}
 
     public DynamicVariableImpl(String name, String value) {
@@ -142,7 +165,7 @@ public class DynamicVariableImpl implements DynamicVariable
 
         try
         {
-            newValue = value.resolve(substitutors);
+            newValue = resolve(substitutors);
 
             if (checkonce)
             {
@@ -167,6 +190,71 @@ public class DynamicVariableImpl implements DynamicVariable
         return newValue;
     }
 
+    /**
+     * Resolves the value, reusing the previously resolved value if its inputs are unchanged.
+     * <p/>
+     * The inputs are the substituted values of the variables the value references, and any
+     * {@link ValueImpl#getResolutionState state} the value depends on. Values that don't provide a state, such as
+     * exec and registry values, are always resolved unless the variable is <tt>checkonce</tt>.
+     *
+     * @param substitutors the variable substitutors
+     * @return the resolved value. May be {@code null}
+     * @throws Exception if the value cannot be resolved
+     */
+    private String resolve(VariableSubstitutor... substitutors) throws Exception
+    {
+        List<?> state = (value instanceof ValueImpl) ? ((ValueImpl) value).getResolutionState(substitutors) : null;
+        if (state == null)
+        {
+            resolveCount++;
+            return value.resolve(substitutors);
+        }
+
+        List<Object> inputs = new ArrayList<Object>(state);
+        for (String name : new TreeSet<String>(value.getVarRefs()))
+        {
+            String reference = "${" + name + "}";
+            for (VariableSubstitutor substitutor : substitutors)
+            {
+                reference = substitutor.substitute(reference);
+            }
+            inputs.add(reference);
+        }
+        if (inputs.equals(resolvedInputs))
+        {
+            reuseCount++;
+            logger.fine("Dynamic variable '" + name + "' inputs unchanged, reusing resolved value");
+            return resolvedValue;
+        }
+
+        resolvedInputs = null;
+        resolveCount++;
+        resolvedValue = value.resolve(substitutors);
+        resolvedInputs = inputs;
+        return resolvedValue;
+    }
+
+    /**
+     * Returns the no. of times the value has been resolved.
+     *
+     * @return the no. of times the value has been resolved
+     */
+    public int getResolveCount()
+    {
+        return resolveCount;
+    }
+
+    /**
+     * Returns the no. of times resolving the value was skipped, as its inputs were unchanged since it was last
+     * resolved.
+     *
+     * @return the no. of times a previously resolved value was reused
+     */
+    public int getReuseCount()
+    {
+        return reuseCount;
+    }
+
     /**
      * @return the name
      */
@@ -0,0 +1,513 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.handler;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.event.ProgressListener;
+
+
+/**
+ * A {@link ProgressListener} that coalesces progress notifications, and publishes them to another listener at a fixed
+ * rate.
+ * <p/>
+ * {@link #progress(int, String)} only records the latest sub-step, so it may be invoked for every file without cost.
+ * The latest sub-step is published by a scheduled task, at most once per period. All other notifications are
+ * published immediately, after any pending sub-step, so the listener sees them in order.
+ * <p/>
+ * Notifications are published via an {@link Executor}, e.g. {@code SwingUtilities::invokeLater} for listeners that
+ * update a GUI.
+ * <p/>
+ * The rate of progress and remaining time are estimated from the pack sizes, if supplied via {@link #setPacks},
+ * otherwise from the no. of steps and sub-steps. These estimates don't lock the bus, so they may be queried from the
+ * published notifications.
+ */
+public class ProgressBus implements ProgressListener
+{
+    /**
+     * The default period between publishing progress, in milliseconds, i.e. 30 Hz.
+     */
+    public static final long DEFAULT_PERIOD = 1000 / 30;
+
+    /**
+     * The listener to publish to.
+     */
+    private final ProgressListener listener;
+
+    /**
+     * The executor to publish with.
+     */
+    private final Executor executor;
+
+    /**
+     * The period between publishing progress, in milliseconds.
+     */
+    private final long period;
+
+    /**
+     * The latest progress not yet published. May be {@code null}.
+     */
+    private final AtomicReference<Progress> pending = new AtomicReference<Progress>();
+
+    /**
+     * The cumulative sizes of the steps. Element {@code i} is the size of steps {@code 1..i}. May be {@code null}.
+     */
+    private volatile long[] sizes;
+
+    /**
+     * The no. of steps in the current action.
+     */
+    private volatile int steps;
+
+    /**
+     * The current step, or {@code 0} if no step has started.
+     */
+    private volatile int step;
+
+    /**
+     * The no. of sub-steps in the current step.
+     */
+    private volatile int subSteps;
+
+    /**
+     * The latest sub-step.
+     */
+    private volatile int subStep;
+
+    /**
+     * The time the action started, in nanoseconds.
+     */
+    private volatile long start;
+
+    /**
+     * The scheduler that publishes progress. Non-null while an action is running.
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(ProgressBus.class.getName());
+
+
+    /**
+     * Constructs a <tt>ProgressBus</tt> that publishes progress at 30 Hz.
+     *
+     * @param listener the listener to publish to
+     * @param executor the executor to publish with
+     */
+    public ProgressBus(ProgressListener listener, Executor executor)
+    {
+        this(listener, executor, DEFAULT_PERIOD);
+    }
+
+    /**
+     * Constructs a <tt>ProgressBus</tt>.
+     *
+     * @param listener the listener to publish to
+     * @param executor the executor to publish with
+     * @param period   the period between publishing progress, in milliseconds
+     */
+    public ProgressBus(ProgressListener listener, Executor executor, long period)
+    {
+        this.listener = listener;
+        this.executor = executor;
+        this.period = period;
+    }
+
+    /**
+     * Sets the packs that correspond to the steps of the action, so that progress can be estimated in bytes.
+     *
+     * @param packs the packs. May be {@code null}
+     */
+    public void setPacks(List<Pack> packs)
+    {
+        if (packs == null)
+        {
+            sizes = null;
+        }
+        else
+        {
+            long[] result = new long[packs.size() + 1];
+            for (int i = 0; i < packs.size(); ++i)
+            {
+                result[i + 1] = result[i] + Math.max(0, packs.get(i).getSize());
+            }
+            sizes = result;
+        }
+    }
+
+    /**
+     * Determines if the rate of progress is measured in bytes.
+     *
+     * @return <tt>true</tt> if the packs have been supplied, otherwise <tt>false</tt>
+     */
+    public boolean isRateInBytes()
+    {
+        return sizes != null;
+    }
+
+    /**
+     * Returns the rate of progress.
+     *
+     * @return the bytes per second if the packs have been supplied, otherwise the sub-steps (or steps) per second
+     */
+    public double getRate()
+    {
+        return getRate(sizes);
+    }
+
+    /**
+     * Returns the estimated time remaining.
+     *
+     * @return the time remaining, in milliseconds, or {@code -1} if it cannot yet be estimated
+     */
+    public long getRemainingTime()
+    {
+        long[] sizes = this.sizes;
+        double rate = getRate(sizes);
+        if (rate <= 0)
+        {
+            return -1;
+        }
+        return Math.round(Math.max(0, getTotal(sizes) - getCompleted(sizes)) / rate * 1000);
+    }
+
+    /**
+     * Invoked when an action starts.
+     *
+     * @param name  the name of the action
+     * @param steps the number of steps the action consists of
+     */
+    @Override
+    public synchronized void startAction(final String name, final int steps)
+    {
+        reset(steps);
+        publish(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                listener.startAction(name, steps);
+            }
+        });
+        startScheduler();
+    }
+
+    /**
+     * Invoked when an action finishes.
+     * <p/>
+     * This publishes any pending progress, and stops the scheduled task.
+     */
+    @Override
+    public synchronized void stopAction()
+    {
+        flush();
+        publish(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                listener.stopAction();
+            }
+        });
+        if (scheduler != null)
+        {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Invoked when an action step starts.
+     *
+     * @param stepName the name of the step
+     * @param step     the step number
+     * @param subSteps the number of sub-steps the step consists of
+     */
+    @Override
+    public synchronized void nextStep(final String stepName, final int step, final int subSteps)
+    {
+        flush();
+        this.step = step;
+        this.subSteps = subSteps;
+        this.subStep = 0;
+        publish(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                listener.nextStep(stepName, step, subSteps);
+            }
+        });
+    }
+
+    /**
+     * Sets the number of sub-steps.
+     *
+     * @param subSteps the number of sub-steps
+     */
+    @Override
+    public synchronized void setSubStepNo(final int subSteps)
+    {
+        flush();
+        this.subSteps = subSteps;
+        publish(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                listener.setSubStepNo(subSteps);
+            }
+        });
+    }
+
+    /**
+     * Invoked to notify progress.
+     * <p/>
+     * As this increments the current step of the listener, it is published immediately.
+     *
+     * @param message a message describing the step
+     */
+    @Override
+    public synchronized void progress(final String message)
+    {
+        flush();
+        publish(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                listener.progress(message);
+            }
+        });
+    }
+
+    /**
+     * Invoked to notify progress.
+     * <p/>
+     * This only records the progress. It is published by the scheduled task, unless superseded before then.
+     *
+     * @param subStep the sub-step which will be performed next
+     * @param message an additional message describing the sub-step
+     */
+    @Override
+    public void progress(int subStep, String message)
+    {
+        this.subStep = subStep;
+        pending.set(new Progress(subStep, message));
+    }
+
+    /**
+     * Invoked when an action restarts.
+     *
+     * @param name           the name of the action
+     * @param overallMessage a message describing the overall progress
+     * @param tip            a tip describing the current progress
+     * @param steps          the number of steps the action consists of
+     */
+    @Override
+    public synchronized void restartAction(final String name, final String overallMessage, final String tip,
+                                           final int steps)
+    {
+        reset(steps);
+        publish(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                listener.restartAction(name, overallMessage, tip, steps);
+            }
+        });
+        startScheduler();
+    }
+
+    /**
+     * Publishes any pending progress.
+     */
+    protected synchronized void flush()
+    {
+        final Progress progress = pending.getAndSet(null);
+        if (progress != null)
+        {
+            publish(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    listener.progress(progress.subStep, progress.message);
+                }
+            });
+        }
+    }
+
+    /**
+     * Resets the state for a new action.
+     *
+     * @param steps the number of steps the action consists of
+     */
+    private void reset(int steps)
+    {
+        pending.set(null);
+        this.steps = steps;
+        step = 0;
+        subSteps = 0;
+        subStep = 0;
+        start = System.nanoTime();
+    }
+
+    /**
+     * Starts the scheduled task that publishes progress, if it isn't already running.
+     */
+    private void startScheduler()
+    {
+        if (scheduler == null)
+        {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "IzPack - Progress");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleAtFixedRate(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        flush();
+                    }
+                    catch (Throwable exception)
+                    {
+                        logger.log(Level.WARNING, "Failed to publish progress: " + exception.getMessage(), exception);
+                    }
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Publishes a notification.
+     *
+     * @param notification the notification
+     */
+    private void publish(Runnable notification)
+    {
+        executor.execute(notification);
+    }
+
+    /**
+     * Returns the rate of progress.
+     *
+     * @param sizes the cumulative sizes of the steps. May be {@code null}
+     * @return the bytes per second if the sizes are supplied, otherwise the sub-steps (or steps) per second
+     */
+    private double getRate(long[] sizes)
+    {
+        double seconds = (System.nanoTime() - start) / 1.0e9;
+        return (seconds > 0) ? getCompleted(sizes) / seconds : 0;
+    }
+
+    /**
+     * Returns the work completed.
+     *
+     * @param sizes the cumulative sizes of the steps. May be {@code null}
+     * @return the bytes completed if the sizes are supplied, otherwise the sub-steps (or steps) completed
+     */
+    private double getCompleted(long[] sizes)
+    {
+        int step = this.step;
+        double fraction = (subSteps > 0) ? Math.min(1.0, (double) subStep / subSteps) : 0;
+        if (sizes != null)
+        {
+            if (step <= 0)
+            {
+                return 0;
+            }
+            int index = Math.min(step, sizes.length - 1);
+            return sizes[index - 1] + (sizes[index] - sizes[index - 1]) * fraction;
+        }
+        // without steps, the sub-steps measure the progress of the action
+        return (step <= 0) ? subStep : (step - 1) + fraction;
+    }
+
+    /**
+     * Returns the total work.
+     *
+     * @param sizes the cumulative sizes of the steps. May be {@code null}
+     * @return the total bytes if the sizes are supplied, otherwise the no. of steps
+     */
+    private double getTotal(long[] sizes)
+    {
+        return (sizes != null) ? sizes[sizes.length - 1] : steps;
+    }
+
+    /**
+     * Formats a duration as <em>[h:]mm:ss</em>.
+     *
+     * @param millis the duration, in milliseconds
+     * @return the formatted duration
+     */
+    public static String formatTime(long millis)
+    {
+        long seconds = (millis + 500) / 1000;
+        long hours = seconds / 3600;
+        long minutes = (seconds / 60) % 60;
+        seconds %= 60;
+        return (hours > 0) ? String.format("%d:%02d:%02d", hours, minutes, seconds)
+                           : String.format("%d:%02d", minutes, seconds);
+    }
+
+    /**
+     * The latest progress.
+     */
+    private static final class Progress
+    {
+        /**
+         * The sub-step.
+         */
+        private final int subStep;
+
+        /**
+         * The message.
+         */
+        private final String message;
+
+        /**
+         * Constructs a <tt>Progress</tt>.
+         *
+         * @param subStep the sub-step
+         * @param message the message
+         */
+        Progress(int subStep, String message)
+        {
+            this.subStep = subStep;
+            this.message = message;
+        }
+    }
+}
@@ -18,20 +18,26 @@
 
 package com.izforge.izpack.core.io;
 
-import org.apache.commons.io.IOUtils;
-
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.GZIPInputStream;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 
 /**
  * An <tt>InputStream</tt> which transparently spans over multiple volumes.
+ * <p/>
+ * The volumes are read using the {@link VolumeIndex} produced by the {@link FileSpanningOutputStream} that wrote them.
+ * Skipping and seeking simply move the file pointer; only the block holding the data being read is decompressed, so
+ * volumes holding skipped data are never opened.
  *
  * @author Dennis Reil, <Dennis.Reil@reddot.de>
  * @author Tim Anderson
@@ -40,14 +46,34 @@ import java.util.zip.GZIPInputStream;
 public class FileSpanningInputStream extends InputStream
 {
     /**
-     * The spanning input stream. This sits between the volume file input stream and {@link #zippedInputStream}.
+     * The volumes.
+     */
+    private final Volumes volumes;
+
+    /**
+     * The block index.
+     */
+    private final VolumeIndex index;
+
+    /**
+     * The decompressor.
+     */
+    private final Inflater inflater = new Inflater(true);
+
+    /**
+     * The uncompressed data of the current block.
      */
-    private final SpanningInputStream spanningInputStream;
+    private byte[] data = new byte[0];
 
     /**
-     * The sip stream.
+     * The compressed data of the current block.
      */
-    private GZIPInputStream zippedInputStream;
+    private byte[] compressed = new byte[0];
+
+    /**
+     * The current block, or {@code null} if no block has been read.
+     */
+    private VolumeIndex.Block current;
 
     /**
      * The absolute offset into the volumes.
@@ -66,13 +92,14 @@ public class FileSpanningInputStream extends InputStream
      *
      * @param volume  the first volume to read
      * @param volumes the no. of volumes
+     * @param index   the index of the blocks in the volumes
      * @throws CorruptVolumeException if the volume magic no. cannot be read
      * @throws IOException            for any other I/O exception
      */
-    public FileSpanningInputStream(File volume, int volumes) throws IOException
+    public FileSpanningInputStream(File volume, int volumes, VolumeIndex index) throws IOException
     {
-        spanningInputStream = new SpanningInputStream(volume, volumes);
-        zippedInputStream = new GZIPInputStream(spanningInputStream);
+        this.volumes = new Volumes(volume, volumes);
+        this.index = index;
     }
 
     /**
@@ -82,18 +109,22 @@ public class FileSpanningInputStream extends InputStream
      */
     public void setLocator(VolumeLocator locator)
     {
-        spanningInputStream.setLocator(locator);
+        volumes.setLocator(locator);
     }
 
     /**
-     * (non-Javadoc)
+     * Returns the no. of bytes that can be read without decompressing another block.
      *
      * @see java.io.InputStream#available()
      */
     @Override
     public int available() throws IOException
     {
-        return zippedInputStream.available();
+        if (current != null && filePointer >= current.getPosition() && filePointer < current.getEnd())
+        {
+            return (int) (current.getEnd() - filePointer);
+        }
+        return 0;
     }
 
     /**
@@ -104,8 +135,8 @@ public class FileSpanningInputStream extends InputStream
     @Override
     public void close() throws IOException
     {
-        zippedInputStream.close();
-        spanningInputStream.close();
+        inflater.end();
+        volumes.close();
     }
 
     /**
@@ -116,12 +147,11 @@ public class FileSpanningInputStream extends InputStream
     @Override
     public int read() throws IOException
     {
-        int read = zippedInputStream.read();
-        if (read != -1)
+        if (!load())
         {
-            ++filePointer;
+            return -1;
         }
-        return read;
+        return data[(int) (filePointer++ - current.getPosition())] & 0xFF;
     }
 
     /**
@@ -133,51 +163,50 @@ public class FileSpanningInputStream extends InputStream
     public int read(byte[] b, int off, int len) throws IOException
     {
         int count = -1;
-        while (len != 0)
-        {
-            int read = zippedInputStream.read(b, off, len);
-            if (read == -1)
-            {
-                break;
-            }
-            else
-            {
-                off += read;
-                len -= read;
-                count = (count == -1) ? read : count + read;
-            }
-        }
-        if (count != -1)
+        while (len != 0 && load())
         {
-            filePointer += count;
+            int pos = (int) (filePointer - current.getPosition());
+            int read = Math.min(len, current.getSize() - pos);
+            System.arraycopy(data, pos, b, off, read);
+            off += read;
+            len -= read;
+            filePointer += read;
+            count = (count == -1) ? read : count + read;
         }
         return count;
     }
 
     /**
-     * (non-Javadoc)
+     * Skips bytes.
+     * <p/>
+     * No data is read or decompressed.
      *
      * @see java.io.InputStream#skip(long)
      */
     @Override
     public long skip(long n) throws IOException
     {
-        long skipped = zippedInputStream.skip(n);
-        long count = skipped;
-        while (skipped != -1 && skipped < n)
-        {
-            n -= skipped;
-            skipped = zippedInputStream.skip(n);
-            if (skipped != -1)
-            {
-                count += skipped;
-            }
-        }
-        if (count != -1)
+        long count = Math.max(0, Math.min(n, index.getLength() - filePointer));
+        filePointer += count;
+        return count;
+    }
+
+    /**
+     * Moves the file pointer to an absolute offset into the volumes.
+     * <p/>
+     * No data is read or decompressed.
+     *
+     * @param position the position
+     * @throws IOException if the position is beyond the end of the volumes
+     */
+    public void seek(long position) throws IOException
+    {
+        if (position < 0 || position > index.getLength())
         {
-            filePointer += count;
+            throw new IOException("Cannot seek to " + position + ": volumes contain " + index.getLength()
+                                          + " bytes");
         }
-        return count;
+        filePointer = position;
     }
 
     /**
@@ -187,7 +216,7 @@ public class FileSpanningInputStream extends InputStream
      */
     public File getVolume()
     {
-        return spanningInputStream.getVolume();
+        return volumes.getVolume();
     }
 
     /**
@@ -201,28 +230,132 @@ public class FileSpanningInputStream extends InputStream
         return filePointer;
     }
 
-    private static final class SpanningInputStream extends InputStream
+    /**
+     * Ensures that the block holding the file pointer has been decompressed.
+     *
+     * @return <tt>true</tt> if the block is available, or <tt>false</tt> if the end of the volumes has been reached
+     * @throws IOException for any I/O error
+     */
+    private boolean load() throws IOException
     {
+        if (current != null && filePointer >= current.getPosition() && filePointer < current.getEnd())
+        {
+            return true;
+        }
+        int number = index.find(filePointer);
+        if (number == -1)
+        {
+            return false;
+        }
+        VolumeIndex.Block block = index.get(number);
+        current = null;
+        try
+        {
+            inflate(block, number);
+        }
+        catch (CorruptVolumeException exception)
+        {
+            // the data may have been misread. Re-read it from the volume, and if that fails, try and locate
+            // another copy of the volume
+            logger.warning(exception.getMessage() + ". Re-reading block");
+            volumes.reopen();
+            try
+            {
+                inflate(block, number);
+            }
+            catch (CorruptVolumeException second)
+            {
+                if (!volumes.replace(block.getVolume()))
+                {
+                    throw second;
+                }
+                inflate(block, number);
+            }
+        }
+        current = block;
+        return true;
+    }
 
-        /**
-         * The current volume stream.
-         */
-        private InputStream stream;
+    /**
+     * Reads and decompresses a block.
+     *
+     * @param block  the block
+     * @param number the block number, for error reporting
+     * @throws CorruptVolumeException if the block is corrupt
+     * @throws IOException            for any other I/O error
+     */
+    private void inflate(VolumeIndex.Block block, int number) throws IOException
+    {
+        if (compressed.length < block.getCompressedSize())
+        {
+            compressed = new byte[block.getCompressedSize()];
+        }
+        if (data.length < block.getSize())
+        {
+            data = new byte[block.getSize()];
+        }
+        volumes.read(block, compressed);
 
-        /**
-         * The base path to each volume.
-         */
-        private String basePath;
+        CRC32C checksum = new CRC32C();
+        checksum.update(compressed, 0, block.getCompressedSize());
+        if ((int) checksum.getValue() != block.getChecksum())
+        {
+            throw corrupt("Checksum mismatch in block " + number, block);
+        }
+        try
+        {
+            inflater.reset();
+            inflater.setInput(compressed, 0, block.getCompressedSize());
+            int size = 0;
+            while (size < block.getSize() && !inflater.finished())
+            {
+                int count = inflater.inflate(data, size, block.getSize() - size);
+                if (count == 0 && inflater.needsInput())
+                {
+                    break;
+                }
+                size += count;
+            }
+            if (size != block.getSize() || !inflater.finished())
+            {
+                throw corrupt("Unexpected size of block " + number, block);
+            }
+        }
+        catch (DataFormatException exception)
+        {
+            throw corrupt("Failed to decompress block " + number + ": " + exception.getMessage(), block);
+        }
+    }
 
+    /**
+     * Creates an exception for a corrupt block.
+     *
+     * @param message the message
+     * @param block   the block
+     * @return a new exception
+     */
+    private CorruptVolumeException corrupt(String message, VolumeIndex.Block block)
+    {
+        String path = volumes.getPath(block.getVolume());
+        return new CorruptVolumeException(message + " in volume " + path, path);
+    }
+
+    /**
+     * Provides positional access to the volumes.
+     * <p/>
+     * Only one volume is open at a time, so that volumes on removable media may be exchanged.
+     */
+    private static final class Volumes
+    {
         /**
-         * The index of the current volume.
+         * The base path to each volume.
          */
-        private int index = 0;
+        private final String basePath;
 
         /**
-         * The total no. of volumes.
+         * The volumes, or {@code null} for those not yet located.
          */
-        private final int volumes;
+        private final File[] files;
 
         /**
          * The first volume magic number. All subsequent volumes must start with this.
@@ -235,30 +368,36 @@ public class FileSpanningInputStream extends InputStream
         private VolumeLocator locator;
 
         /**
-         * The current volume.
+         * The index of the open volume.
          */
-        private File current;
+        private int index;
+
+        /**
+         * The open volume. May be {@code null}.
+         */
+        private FileChannel channel;
 
 
         /**
-         * Constructs a <tt>SpanningInputStream</tt>.
+         * Constructs a <tt>Volumes</tt>.
          *
          * @param volume  the first volume
          * @param volumes the number of volumes
          * @throws IOException for any I/O error
          */
-        public SpanningInputStream(File volume, int volumes) throws IOException
+        public Volumes(File volume, int volumes) throws IOException
         {
             basePath = volume.getAbsolutePath();
-            stream = new FileInputStream(volume);
-            current = volume;
-            this.volumes = volumes;
+            files = new File[volumes];
+            files[0] = volume;
+            channel = FileChannel.open(volume.toPath(), StandardOpenOption.READ);
 
             // read magic number
             magicNumber = new byte[FileSpanningOutputStream.MAGIC_NUMBER_LENGTH];
-            if (stream.read(magicNumber) != FileSpanningOutputStream.MAGIC_NUMBER_LENGTH)
+            ByteBuffer buffer = ByteBuffer.wrap(magicNumber);
+            if (channel.read(buffer, 0) != FileSpanningOutputStream.MAGIC_NUMBER_LENGTH)
             {
-                IOUtils.closeQuietly(stream);
+                close();
                 throw new CorruptVolumeException();
             }
             if (logger.isLoggable(Level.FINE))
@@ -278,177 +417,207 @@ public class FileSpanningInputStream extends InputStream
         }
 
         /**
-         * Reads up to <code>len</code> bytes of data from the input stream into an array of bytes.
+         * Reads the compressed data of a block.
          * <p/>
-         * An attempt is made to read as many as <code>len</code> bytes, but a smaller number may be read.
+         * The data continues into the following volume(s) if it doesn't fit in the volume it starts in.
          *
-         * @param b   the buffer into which the data is read.
-         * @param off the start offset in array <code>b</code> at which the data is written.
-         * @param len the maximum number of bytes to read.
-         * @return the total number of bytes read into the buffer, or  <code>-1</code> if there is no more data because
-         *         the end of the stream has been reached.
+         * @param block  the block
+         * @param buffer the buffer to read into
          * @throws IOException for any I/O error
          */
-        @Override
-        public int read(byte[] b, int off, int len) throws IOException
+        public void read(VolumeIndex.Block block, byte[] buffer) throws IOException
         {
-            int count = -1;
-            while (len != 0)
+            int volume = block.getVolume();
+            long offset = block.getOffset();
+            ByteBuffer target = ByteBuffer.wrap(buffer, 0, block.getCompressedSize());
+            while (target.hasRemaining())
             {
-                int read = stream.read(b, off, len);
+                if (volume >= files.length)
+                {
+                    throw new CorruptVolumeException("Unexpected end of volume " + getPath(files.length - 1),
+                                                     getPath(files.length - 1));
+                }
+                int read = open(volume).read(target, offset);
                 if (read == -1)
                 {
-                    if (!openNextVolume())
-                    {
-                        break;
-                    }
+                    ++volume;
+                    offset = FileSpanningOutputStream.MAGIC_NUMBER_LENGTH;
                 }
                 else
                 {
-                    off += read;
-                    len -= read;
-                    count = (count == -1) ? read : count + read;
+                    offset += read;
                 }
             }
-            return count;
         }
 
         /**
-         * Reads the next byte of data from the input stream.
+         * Returns the volume being read.
+         *
+         * @return the volume being read
+         */
+        public File getVolume()
+        {
+            return files[index];
+        }
+
+        /**
+         * Returns the path of a volume.
          *
-         * @return the next byte of data, or <code>-1</code> if the end of the stream is reached.
-         * @throws java.io.IOException if an I/O error occurs.
+         * @param volume the volume index
+         * @return the volume path
          */
-        @Override
-        public int read() throws IOException
+        public String getPath(int volume)
         {
-            int read = stream.read();
-            if (read == -1 && openNextVolume())
-            {
-                // read from the next volume
-                read = stream.read();
-            }
-            return read;
+            return (files[volume] != null) ? files[volume].getAbsolutePath() : getDefaultPath(volume);
         }
 
         /**
-         * Returns the volume being read.
+         * Closes the open volume, so that it is re-opened when next read.
          *
-         * @return the volume being read
+         * @throws IOException for any I/O error
          */
-        public File getVolume()
+        public void reopen() throws IOException
+        {
+            close();
+        }
+
+        /**
+         * Asks the locator for a replacement of a corrupt volume.
+         *
+         * @param volume the volume index
+         * @return <tt>true</tt> if the locator provided a replacement, <tt>false</tt> if there is no locator
+         * @throws IOException for any I/O error
+         */
+        public boolean replace(int volume) throws IOException
         {
-            return current;
+            if (locator == null)
+            {
+                return false;
+            }
+            close();
+            files[volume] = locator.getVolume(getPath(volume), true);
+            return true;
         }
 
         /**
-         * Closes this input stream and releases any system resources associated
-         * with the stream.
+         * Closes the open volume.
          *
-         * @throws IOException if an I/O error occurs
+         * @throws IOException for any I/O error
          */
-        @Override
         public void close() throws IOException
         {
-            stream.close();
+            if (channel != null)
+            {
+                try
+                {
+                    channel.close();
+                }
+                finally
+                {
+                    channel = null;
+                }
+            }
         }
 
         /**
-         * Opens the next volume.
+         * Opens a volume, closing any other open volume.
          *
-         * @return <tt>true</tt> if the next volume was opened, or <tt>false</tt> if there are no more volumes
-         * @throws CorruptVolumeException  if the magic no. of the next volume does not match that expected
-         * @throws VolumeNotFoundException if the next volume was not found
+         * @param volume the volume index
+         * @return the volume channel
+         * @throws CorruptVolumeException  if the magic no. of the volume does not match that expected
+         * @throws VolumeNotFoundException if the volume was not found
+         * @throws IOException             for any other I/O error
          */
-        private boolean openNextVolume() throws IOException
+        private FileChannel open(int volume) throws IOException
         {
-            boolean result;
-            if (index + 1 >= volumes)
+            if (channel != null && index == volume)
             {
-                logger.fine("Last volume reached");
-                result = false;
+                return channel;
             }
-            else
+            close();
+            File file = (files[volume] != null) ? files[volume] : new File(getDefaultPath(volume));
+            while (channel == null)
             {
-                // the next volume name
-                String volumePath = basePath + "." + (index + 1);
-                File volume = new File(volumePath);
-                boolean found = false;
-                while (!found)
+                if (file.exists())
                 {
-                    if (volume.exists())
+                    FileChannel opened = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                    try
                     {
-                        try
-                        {
-                            // try to open new stream to next volume
-                            IOUtils.closeQuietly(stream);
-                            stream = new FileInputStream(volume);
-                            current = volume;
-                            checkMagicNumber();
-                            found = true;
-                        }
-                        catch (CorruptVolumeException exception)
-                        {
-                            if (locator == null)
-                            {
-                                throw exception;
-                            }
-                            else
-                            {
-                                volume = locator.getVolume(volume.getAbsolutePath(), true);
-                            }
-                        }
+                        checkMagicNumber(opened, file);
+                        channel = opened;
                     }
-                    else if (locator != null)
+                    catch (CorruptVolumeException exception)
                     {
-                        volume = locator.getVolume(volume.getAbsolutePath(), false);
+                        opened.close();
+                        if (locator == null)
+                        {
+                            throw exception;
+                        }
+                        file = locator.getVolume(file.getAbsolutePath(), true);
                     }
-                    else
+                    catch (IOException exception)
                     {
-                        throw new VolumeNotFoundException("Volume not found: " + volume.getAbsolutePath(),
-                                                          volume.getAbsolutePath());
+                        opened.close();
+                        throw exception;
                     }
                 }
-
-                ++index;
-                result = true;
+                else if (locator != null)
+                {
+                    file = locator.getVolume(file.getAbsolutePath(), false);
+                }
+                else
+                {
+                    throw new VolumeNotFoundException("Volume not found: " + file.getAbsolutePath(),
+                                                      file.getAbsolutePath());
+                }
             }
-            return result;
+            files[volume] = file;
+            index = volume;
+            return channel;
         }
 
         /**
-         * Checks if the magic number if the current volume is valid.
+         * Returns the default path of a volume.
          *
+         * @param volume the volume index
+         * @return the volume path
+         */
+        private String getDefaultPath(int volume)
+        {
+            return (volume == 0) ? basePath : basePath + "." + volume;
+        }
+
+        /**
+         * Checks if the magic number of a volume is valid.
+         *
+         * @param channel the volume channel
+         * @param volume  the volume
          * @throws CorruptVolumeException if the magic number doesn't match that expected
          * @throws IOException            for any I/O error
          */
-        private void checkMagicNumber() throws IOException
+        private void checkMagicNumber(FileChannel channel, File volume) throws IOException
         {
             logger.fine("Trying to read magic number");
-            byte[] volumeMagicNo = new byte[FileSpanningOutputStream.MAGIC_NUMBER_LENGTH];
-            try
+            ByteBuffer volumeMagicNo = ByteBuffer.allocate(FileSpanningOutputStream.MAGIC_NUMBER_LENGTH);
+            while (volumeMagicNo.hasRemaining() && channel.read(volumeMagicNo, volumeMagicNo.position()) > 0)
             {
-                if (stream.read(volumeMagicNo) != volumeMagicNo.length)
-                {
-                    logger.fine("Failed to read magic number");
-                    throw new CorruptVolumeException();
-                }
-
-                if (logger.isLoggable(Level.FINE))
-                {
-                    logger.fine("Magic number is " + FileSpanningOutputStream.formatMagic(volumeMagicNo));
-                    if (!Arrays.equals(magicNumber, volumeMagicNo))
-                    {
-                        throw new CorruptVolumeException();
-                    }
-                }
+                // read until full, or the end of the volume
+            }
+            if (volumeMagicNo.hasRemaining())
+            {
+                logger.fine("Failed to read magic number");
+                throw new CorruptVolumeException("Failed to read magic number of volume " + volume.getAbsolutePath(),
+                                                 volume.getAbsolutePath());
             }
-            catch (IOException exception)
+            if (logger.isLoggable(Level.FINE))
             {
-                IOUtils.closeQuietly(stream);
-                throw exception;
+                logger.fine("Magic number is " + FileSpanningOutputStream.formatMagic(volumeMagicNo.array()));
+            }
+            if (!Arrays.equals(magicNumber, volumeMagicNo.array()))
+            {
+                throw new CorruptVolumeException("Magic number mismatch in volume " + volume.getAbsolutePath(),
+                                                 volume.getAbsolutePath());
             }
         }
-
     }
 }
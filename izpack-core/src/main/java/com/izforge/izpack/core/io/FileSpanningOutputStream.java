@@ -25,11 +25,15 @@ import java.io.OutputStream;
 import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
 
 /**
  * An <tt>OutputStream</tt> which transparently spans over multiple volumes. The size of the volumes and an
  * additional space for the first volume can be specified.
+ * <p/>
+ * The data is compressed in independent blocks, recorded in a {@link VolumeIndex}. The index must be supplied to the
+ * {@link FileSpanningInputStream} reading the volumes, so that it can seek without decompressing the data skipped.
  *
  * @author Dennis Reil, <Dennis.Reil@reddot.de>
  * @author Tim Anderson
@@ -52,6 +56,11 @@ public class FileSpanningOutputStream extends OutputStream
      */
     public static final long DEFAULT_VOLUME_SIZE = 650 * MB;
 
+    /**
+     * The default no. of uncompressed bytes in each block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
     /**
      * The no. of bytes allocated to the magic number written at the start of each volume.
      */
@@ -68,15 +77,40 @@ public class FileSpanningOutputStream extends OutputStream
     private SpanningOutputStream spanningOutputStream;
 
     /**
-     * The stream that .
+     * The uncompressed data of the current block.
+     */
+    private final byte[] block;
+
+    /**
+     * The no. of bytes in the current block.
      */
-    private GZIPOutputStream gzipOutputStream;
+    private int blockLength;
+
+    /**
+     * The compressor.
+     */
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+    /**
+     * The buffer for compressed data.
+     */
+    private final byte[] buffer = new byte[64 * 1024];
+
+    /**
+     * The index of the blocks written.
+     */
+    private final VolumeIndex index = new VolumeIndex();
 
     /**
      * The current offset in the (uncompressed) output stream.
      */
     private long filePointer;
 
+    /**
+     * Determines if the stream has been closed.
+     */
+    private boolean closed;
+
     /**
      * The logger.
      */
@@ -126,18 +160,51 @@ public class FileSpanningOutputStream extends OutputStream
      */
     public FileSpanningOutputStream(File volume, long maxFirstVolumeSize, long maxVolumeSize) throws IOException
     {
+        this(volume, maxFirstVolumeSize, maxVolumeSize, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Constructs a <tt>FileSpanningOutputStream</tt> with specified initial volume, a maximum size for the first
+     * volume, a maximum volume size for all subsequent volumes, and a block size.
+     *
+     * @param volume             the first volume
+     * @param maxFirstVolumeSize the maximum size of the first volume
+     * @param maxVolumeSize      the maximum volume size for subsequent volumes
+     * @param blockSize          the no. of uncompressed bytes in each block
+     * @throws IOException for any I/O error
+     */
+    public FileSpanningOutputStream(File volume, long maxFirstVolumeSize, long maxVolumeSize, int blockSize)
+            throws IOException
+    {
+        if (blockSize <= 0)
+        {
+            throw new IllegalArgumentException("Argument 'blockSize' is invalid: " + blockSize);
+        }
         spanningOutputStream = new SpanningOutputStream(volume, maxFirstVolumeSize, maxVolumeSize);
-        gzipOutputStream = new GZIPOutputStream(spanningOutputStream);
+        block = new byte[blockSize];
     }
 
     /**
+     * Writes the last block, and closes the current volume.
+     *
      * @see java.io.OutputStream#close()
      */
     @Override
     public void close() throws IOException
     {
-        flush();
-        gzipOutputStream.close();
+        if (!closed)
+        {
+            closed = true;
+            try
+            {
+                writeBlock();
+            }
+            finally
+            {
+                deflater.end();
+                spanningOutputStream.close();
+            }
+        }
     }
 
     /**
@@ -146,9 +213,20 @@ public class FileSpanningOutputStream extends OutputStream
     @Override
     public void write(byte[] b, int off, int len) throws IOException
     {
-        gzipOutputStream.write(b, off, len);
-        // increase filePointer by written bytes
-        filePointer += len;
+        while (len > 0)
+        {
+            int count = Math.min(len, block.length - blockLength);
+            System.arraycopy(b, off, block, blockLength, count);
+            blockLength += count;
+            off += count;
+            len -= count;
+            // increase filePointer by written bytes
+            filePointer += count;
+            if (blockLength == block.length)
+            {
+                writeBlock();
+            }
+        }
     }
 
     /**
@@ -170,20 +248,26 @@ public class FileSpanningOutputStream extends OutputStream
     @Override
     public void write(int b) throws IOException
     {
-        gzipOutputStream.write(b);
+        block[blockLength++] = (byte) b;
         // increase filePointer by written byte
         filePointer++;
+        if (blockLength == block.length)
+        {
+            writeBlock();
+        }
     }
 
     /**
-     * (non Javadoc)
+     * Flushes the current volume.
+     * <p/>
+     * The current block is only written once it is full, or the stream is closed.
      *
      * @see java.io.OutputStream#flush()
      */
     @Override
     public void flush() throws IOException
     {
-        gzipOutputStream.flush();
+        spanningOutputStream.flush();
     }
 
     /**
@@ -206,6 +290,50 @@ public class FileSpanningOutputStream extends OutputStream
         return filePointer;
     }
 
+    /**
+     * Returns the index of the blocks written.
+     * <p/>
+     * This is only complete once the stream has been closed.
+     *
+     * @return the block index
+     */
+    public VolumeIndex getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * Compresses the current block, and writes it to the volumes.
+     *
+     * @throws IOException for any I/O error
+     */
+    private void writeBlock() throws IOException
+    {
+        if (blockLength == 0)
+        {
+            return;
+        }
+        spanningOutputStream.startBlock();
+        int volume = spanningOutputStream.getVolumes() - 1;
+        long offset = spanningOutputStream.getByteCount();
+        CRC32C checksum = new CRC32C();
+        long compressedSize = 0;
+
+        deflater.reset();
+        deflater.setInput(block, 0, blockLength);
+        deflater.finish();
+        while (!deflater.finished())
+        {
+            int count = deflater.deflate(buffer);
+            spanningOutputStream.write(buffer, 0, count);
+            checksum.update(buffer, 0, count);
+            compressedSize += count;
+        }
+        index.add(new VolumeIndex.Block(volume, offset, filePointer - blockLength, (int) compressedSize, blockLength,
+                                        (int) checksum.getValue()));
+        blockLength = 0;
+    }
+
     /**
      * Helper to format the volume magic number.
      *
@@ -227,7 +355,7 @@ public class FileSpanningOutputStream extends OutputStream
     }
 
     /**
-     * The <tt>SpanningOutputStream</tt> sits between the <tt>GZIPOutputStream</tt> and the volume
+     * The <tt>SpanningOutputStream</tt> receives the compressed blocks, and writes them to the volume
      * <tt>FileOutputStream</tt>. When a volume fills, it is closed and a new one opened and written to.
      */
     private static class SpanningOutputStream extends ByteCountingOutputStream
@@ -332,6 +460,19 @@ public class FileSpanningOutputStream extends OutputStream
             super.write(b);
         }
 
+        /**
+         * Invoked before a block is written, to ensure that the block starts in the volume it is recorded against.
+         *
+         * @throws IOException for any I/O error
+         */
+        public void startBlock() throws IOException
+        {
+            if (getAvailable() <= 0)
+            {
+                createNextVolume();
+            }
+        }
+
         /**
          * Closes the current volume and creates the next.
          *
@@ -0,0 +1,522 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Reads and writes the <em>install.log</em> uninstaller resource, which lists the installation path and the installed
+ * files.
+ * <p/>
+ * This is a versioned binary format, consisting of:
+ * <ul>
+ * <li>a header: the magic no., format version, the optional fields present, and the installation path</li>
+ * <li>directory records. Each distinct parent directory is written once, front-coded against the previous
+ * directory, i.e. as the length of the prefix it shares with it, followed by the remaining characters. Directories
+ * are numbered in the order they are written</li>
+ * <li>file records, referring to their parent by directory no., with the name front-coded against the previous
+ * name, and optionally the file size and checksum</li>
+ * <li>an end record</li>
+ * </ul>
+ * A directory record precedes the first file record that refers to it, so the log can be written and read in a
+ * single pass, holding only the directory table in memory.
+ */
+public final class InstallLogFormat
+{
+    /**
+     * The magic no., "IZIL".
+     */
+    private static final int MAGIC = 0x495A494C;
+
+    /**
+     * The format version.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Flag indicating file records include the file size.
+     */
+    private static final int SIZES = 1;
+
+    /**
+     * Flag indicating file records include the file checksum.
+     */
+    private static final int CHECKSUMS = 2;
+
+    /**
+     * The end record.
+     */
+    private static final int RECORD_END = 0;
+
+    /**
+     * The directory record.
+     */
+    private static final int RECORD_DIRECTORY = 1;
+
+    /**
+     * The file record.
+     */
+    private static final int RECORD_FILE = 2;
+
+
+    /**
+     * Default constructor.
+     */
+    private InstallLogFormat()
+    {
+    }
+
+    /**
+     * An installed file.
+     */
+    public static final class Entry
+    {
+        /**
+         * The file path.
+         */
+        private final String path;
+
+        /**
+         * The file size, or {@code -1} if it is unknown.
+         */
+        private final long size;
+
+        /**
+         * The file checksum, or {@code -1} if it is unknown.
+         */
+        private final long checksum;
+
+        /**
+         * Constructs an <tt>Entry</tt>.
+         *
+         * @param path     the file path
+         * @param size     the file size, or {@code -1} if it is unknown
+         * @param checksum the file checksum, or {@code -1} if it is unknown
+         */
+        public Entry(String path, long size, long checksum)
+        {
+            this.path = path;
+            this.size = size;
+            this.checksum = checksum;
+        }
+
+        public String getPath()
+        {
+            return path;
+        }
+
+        /**
+         * Returns the size of the file when it was installed.
+         *
+         * @return the file size, or {@code -1} if it is unknown or the file is a directory
+         */
+        public long getSize()
+        {
+            return size;
+        }
+
+        /**
+         * Returns the CRC-32C checksum of the file when it was installed.
+         *
+         * @return the file checksum, or {@code -1} if it is unknown or the file is a directory
+         */
+        public long getChecksum()
+        {
+            return checksum;
+        }
+    }
+
+    /**
+     * Writes an <em>install.log</em>.
+     */
+    public static final class Writer implements Closeable
+    {
+        /**
+         * The stream to write to.
+         */
+        private final DataOutputStream out;
+
+        /**
+         * Determines if file sizes are written.
+         */
+        private final boolean sizes;
+
+        /**
+         * Determines if file checksums are written.
+         */
+        private final boolean checksums;
+
+        /**
+         * The numbers of the directories written, keyed on path.
+         */
+        private final Map<String, Integer> directories = new HashMap<String, Integer>();
+
+        /**
+         * The previous directory written.
+         */
+        private String previousDirectory = "";
+
+        /**
+         * The previous file name written.
+         */
+        private String previousName = "";
+
+        /**
+         * Determines if the end record has been written.
+         */
+        private boolean finished;
+
+        /**
+         * Constructs a <tt>Writer</tt>, and writes the header.
+         *
+         * @param out         the stream to write to
+         * @param installPath the installation path
+         * @param sizes       if <tt>true</tt>, write file sizes
+         * @param checksums   if <tt>true</tt>, write file checksums
+         * @throws IOException for any I/O error
+         */
+        public Writer(OutputStream out, String installPath, boolean sizes, boolean checksums) throws IOException
+        {
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+            this.sizes = sizes;
+            this.checksums = checksums;
+            this.out.writeInt(MAGIC);
+            this.out.writeShort(VERSION);
+            this.out.writeByte((sizes ? SIZES : 0) | (checksums ? CHECKSUMS : 0));
+            writeString(this.out, installPath);
+        }
+
+        /**
+         * Writes a file, with unknown size and checksum.
+         *
+         * @param path the file path
+         * @throws IOException for any I/O error
+         */
+        public void add(String path) throws IOException
+        {
+            add(path, -1, -1);
+        }
+
+        /**
+         * Writes a file.
+         *
+         * @param path     the file path
+         * @param size     the file size, or {@code -1} if it is unknown. Ignored if sizes aren't being written
+         * @param checksum the file checksum, or {@code -1} if it is unknown. Ignored if checksums aren't being written
+         * @throws IOException for any I/O error
+         */
+        public void add(String path, long size, long checksum) throws IOException
+        {
+            int index = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1;
+            String directory = path.substring(0, index);
+            String name = path.substring(index);
+
+            Integer number = directories.get(directory);
+            if (number == null)
+            {
+                number = directories.size();
+                directories.put(directory, number);
+                out.writeByte(RECORD_DIRECTORY);
+                writeFrontCoded(directory, previousDirectory);
+                previousDirectory = directory;
+            }
+            out.writeByte(RECORD_FILE);
+            writeVarLong(out, number);
+            writeFrontCoded(name, previousName);
+            previousName = name;
+            if (sizes)
+            {
+                writeVarLong(out, size + 1);
+            }
+            if (checksums)
+            {
+                writeVarLong(out, checksum + 1);
+            }
+        }
+
+        /**
+         * Writes the end record, and flushes the stream without closing it.
+         *
+         * @throws IOException for any I/O error
+         */
+        public void finish() throws IOException
+        {
+            if (!finished)
+            {
+                finished = true;
+                out.writeByte(RECORD_END);
+                out.flush();
+            }
+        }
+
+        /**
+         * Finishes the log, and closes the underlying stream.
+         *
+         * @throws IOException for any I/O error
+         */
+        @Override
+        public void close() throws IOException
+        {
+            finish();
+            out.close();
+        }
+
+        /**
+         * Writes a string, front-coded against the previous string.
+         *
+         * @param value    the string to write
+         * @param previous the previous string
+         * @throws IOException for any I/O error
+         */
+        private void writeFrontCoded(String value, String previous) throws IOException
+        {
+            int shared = getSharedPrefix(value, previous);
+            writeVarLong(out, shared);
+            writeString(out, value.substring(shared));
+        }
+    }
+
+    /**
+     * Reads an <em>install.log</em> one file at a time.
+     */
+    public static final class Reader implements Closeable
+    {
+        /**
+         * The stream to read from.
+         */
+        private final DataInputStream in;
+
+        /**
+         * The installation path.
+         */
+        private final String installPath;
+
+        /**
+         * Determines if file sizes are present.
+         */
+        private final boolean sizes;
+
+        /**
+         * Determines if file checksums are present.
+         */
+        private final boolean checksums;
+
+        /**
+         * The directories read, by number.
+         */
+        private final List<String> directories = new ArrayList<String>();
+
+        /**
+         * The previous directory read.
+         */
+        private String previousDirectory = "";
+
+        /**
+         * The previous file name read.
+         */
+        private String previousName = "";
+
+        /**
+         * Determines if the end record has been read.
+         */
+        private boolean finished;
+
+        /**
+         * Constructs a <tt>Reader</tt>, and reads the header.
+         *
+         * @param in the stream to read from
+         * @throws IOException if the stream isn't an <em>install.log</em>, or for any I/O error
+         */
+        public Reader(InputStream in) throws IOException
+        {
+            this.in = new DataInputStream(new BufferedInputStream(in));
+            if (this.in.readInt() != MAGIC)
+            {
+                throw new IOException("Invalid install log");
+            }
+            int version = this.in.readUnsignedShort();
+            if (version != VERSION)
+            {
+                throw new IOException("Unsupported install log version: " + version);
+            }
+            int flags = this.in.readUnsignedByte();
+            sizes = (flags & SIZES) != 0;
+            checksums = (flags & CHECKSUMS) != 0;
+            installPath = readString(this.in);
+        }
+
+        /**
+         * Returns the installation path.
+         *
+         * @return the installation path
+         */
+        public String getInstallPath()
+        {
+            return installPath;
+        }
+
+        /**
+         * Reads the next file.
+         *
+         * @return the next file, or {@code null} if there are no more files
+         * @throws IOException if the log is corrupt, or for any I/O error
+         */
+        public Entry next() throws IOException
+        {
+            while (!finished)
+            {
+                int record = in.readUnsignedByte();
+                switch (record)
+                {
+                    case RECORD_END:
+                        finished = true;
+                        break;
+                    case RECORD_DIRECTORY:
+                        previousDirectory = readFrontCoded(previousDirectory);
+                        directories.add(previousDirectory);
+                        break;
+                    case RECORD_FILE:
+                        long number = readVarLong(in);
+                        if (number >= directories.size())
+                        {
+                            throw new IOException("Invalid directory reference: " + number);
+                        }
+                        previousName = readFrontCoded(previousName);
+                        long size = sizes ? readVarLong(in) - 1 : -1;
+                        long checksum = checksums ? readVarLong(in) - 1 : -1;
+                        return new Entry(directories.get((int) number) + previousName, size, checksum);
+                    default:
+                        throw new IOException("Invalid install log record: " + record);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
+
+        /**
+         * Reads a string, front-coded against the previous string.
+         *
+         * @param previous the previous string
+         * @return the string
+         * @throws IOException if the string is corrupt, or for any I/O error
+         */
+        private String readFrontCoded(String previous) throws IOException
+        {
+            long shared = readVarLong(in);
+            if (shared > previous.length())
+            {
+                throw new IOException("Invalid install log prefix length: " + shared);
+            }
+            return previous.substring(0, (int) shared) + readString(in);
+        }
+    }
+
+    /**
+     * Returns the length of the prefix shared by two strings, excluding any trailing high surrogate, so that the
+     * remainder is valid UTF-16.
+     *
+     * @param value    the string
+     * @param previous the string to compare with
+     * @return the length of the shared prefix
+     */
+    static int getSharedPrefix(String value, String previous)
+    {
+        int length = Math.min(value.length(), previous.length());
+        int shared = 0;
+        while (shared < length && value.charAt(shared) == previous.charAt(shared))
+        {
+            ++shared;
+        }
+        if (shared > 0 && Character.isHighSurrogate(value.charAt(shared - 1)))
+        {
+            --shared;
+        }
+        return shared;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        long length = readVarLong(in);
+        if (length > Integer.MAX_VALUE)
+        {
+            throw new IOException("Invalid install log string length: " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes an unsigned value, 7 bits at a time.
+     *
+     * @param out   the stream to write to
+     * @param value the value to write
+     * @throws IOException for any I/O error
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException
+    {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return result;
+            }
+        }
+        throw new IOException("Malformed variable length value");
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * The index of the compressed blocks written by a {@link FileSpanningOutputStream}.
+ * <p/>
+ * Each block records the volume and offset its compressed data starts at, and the range of the uncompressed stream
+ * it holds, so that a {@link FileSpanningInputStream} can seek to any position by decompressing a single block.
+ */
+public class VolumeIndex
+{
+    /**
+     * The blocks, in stream order.
+     */
+    private final List<Block> blocks = new ArrayList<Block>();
+
+    /**
+     * Adds a block.
+     *
+     * @param block the block. It must start where the previous block ends
+     */
+    void add(Block block)
+    {
+        blocks.add(block);
+    }
+
+    /**
+     * Returns the no. of blocks.
+     *
+     * @return the no. of blocks
+     */
+    public int size()
+    {
+        return blocks.size();
+    }
+
+    /**
+     * Returns a block.
+     *
+     * @param index the block index
+     * @return the block
+     */
+    public Block get(int index)
+    {
+        return blocks.get(index);
+    }
+
+    /**
+     * Returns the length of the uncompressed stream.
+     *
+     * @return the length of the uncompressed stream
+     */
+    public long getLength()
+    {
+        return blocks.isEmpty() ? 0 : blocks.get(blocks.size() - 1).getEnd();
+    }
+
+    /**
+     * Finds the block holding a position in the uncompressed stream.
+     *
+     * @param position the position
+     * @return the index of the block, or {@code -1} if the position is at or beyond the end of the stream
+     */
+    public int find(long position)
+    {
+        int low = 0;
+        int high = blocks.size() - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            Block block = blocks.get(mid);
+            if (position < block.getPosition())
+            {
+                high = mid - 1;
+            }
+            else if (position >= block.getEnd())
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the index.
+     *
+     * @param out the output to write to
+     * @throws IOException for any I/O error
+     */
+    public void write(DataOutput out) throws IOException
+    {
+        out.writeInt(blocks.size());
+        for (Block block : blocks)
+        {
+            out.writeInt(block.volume);
+            out.writeLong(block.offset);
+            out.writeLong(block.position);
+            out.writeInt(block.compressedSize);
+            out.writeInt(block.size);
+            out.writeInt(block.checksum);
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #write}.
+     *
+     * @param in the input to read from
+     * @return the index
+     * @throws IOException for any I/O error
+     */
+    public static VolumeIndex read(DataInput in) throws IOException
+    {
+        VolumeIndex result = new VolumeIndex();
+        int count = in.readInt();
+        for (int i = 0; i < count; ++i)
+        {
+            result.add(new Block(in.readInt(), in.readLong(), in.readLong(), in.readInt(), in.readInt(),
+                                 in.readInt()));
+        }
+        return result;
+    }
+
+    /**
+     * A compressed block.
+     */
+    public static final class Block
+    {
+        /**
+         * The index of the volume the compressed data starts in.
+         */
+        private final int volume;
+
+        /**
+         * The offset of the compressed data in the volume.
+         */
+        private final long offset;
+
+        /**
+         * The position of the block in the uncompressed stream.
+         */
+        private final long position;
+
+        /**
+         * The size of the compressed data.
+         */
+        private final int compressedSize;
+
+        /**
+         * The size of the uncompressed data.
+         */
+        private final int size;
+
+        /**
+         * The CRC-32C checksum of the compressed data.
+         */
+        private final int checksum;
+
+        /**
+         * Constructs a <tt>Block</tt>.
+         *
+         * @param volume         the index of the volume the compressed data starts in
+         * @param offset         the offset of the compressed data in the volume
+         * @param position       the position of the block in the uncompressed stream
+         * @param compressedSize the size of the compressed data
+         * @param size           the size of the uncompressed data
+         * @param checksum       the CRC-32C checksum of the compressed data
+         */
+        Block(int volume, long offset, long position, int compressedSize, int size, int checksum)
+        {
+            this.volume = volume;
+            this.offset = offset;
+            this.position = position;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.checksum = checksum;
+        }
+
+        public int getVolume()
+        {
+            return volume;
+        }
+
+        public long getOffset()
+        {
+            return offset;
+        }
+
+        public long getPosition()
+        {
+            return position;
+        }
+
+        /**
+         * Returns the position in the uncompressed stream following the block.
+         *
+         * @return the end position
+         */
+        public long getEnd()
+        {
+            return position + size;
+        }
+
+        public int getCompressedSize()
+        {
+            return compressedSize;
+        }
+
+        public int getSize()
+        {
+            return size;
+        }
+
+        public int getChecksum()
+        {
+            return checksum;
+        }
+    }
+}
@@ -50,6 +50,7 @@ import java.io.OutputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 
@@ -76,6 +77,57 @@ public class RulesEngineImpl implements RulesEngine
 
     private final ConditionContainer container;
 
+    /**
+     * The maximum no. of parsed condition expressions to cache.
+     */
+    private static final int MAX_CACHED_EXPRESSIONS = 256;
+
+    /**
+     * The maximum no. of condition results to cache.
+     */
+    private static final int MAX_CACHED_RESULTS = 1024;
+
+    /**
+     * The maximum depth of a condition whose result may be cached.
+     */
+    private static final int MAX_CACHED_DEPTH = 32;
+
+    /**
+     * Caches conditions parsed from expressions that aren't condition ids, keyed on expression.
+     */
+    private final Map<String, Condition> expressionCache = new LinkedHashMap<String, Condition>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Condition> eldest)
+        {
+            return size() > MAX_CACHED_EXPRESSIONS;
+        }
+    };
+
+    /**
+     * Caches the results of conditions that depend only on variables, keyed on condition.
+     */
+    private final Map<Condition, Result> resultCache = new LinkedHashMap<Condition, Result>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Condition, Result> eldest)
+        {
+            return size() > MAX_CACHED_RESULTS;
+        }
+    };
+
+    private final AtomicLong expressionHits = new AtomicLong();
+
+    private final AtomicLong expressionMisses = new AtomicLong();
+
+    private final AtomicLong resultHits = new AtomicLong();
+
+    private final AtomicLong resultMisses = new AtomicLong();
+
+    private final AtomicLong evaluations = new AtomicLong();
+
+    private final AtomicLong evaluationTime = new AtomicLong();
+
     private static final Logger logger = Logger.getLogger(RulesEngineImpl.class.getName());
 
     /**
@@ -136,6 +188,7 @@ public class RulesEngineImpl implements RulesEngine
                 resolveBuiltinConditions(condition);
             }
         }
+        clearCaches();
     }
 
     /**
@@ -202,6 +255,7 @@ public class RulesEngineImpl implements RulesEngine
         {
             refCondition.resolveReference();
         }
+        clearCaches();
     }
 
     /**
@@ -237,6 +291,7 @@ public class RulesEngineImpl implements RulesEngine
                     }
                 }
             }
+            clearCaches();
 
             List<IXMLElement> panelconditionels = conditionsSpec
                     .getChildrenNamed("panelcondition");
@@ -275,6 +330,8 @@ public class RulesEngineImpl implements RulesEngine
      * A condition ID as defined in the install.xml
      * A simple expression with !,+,|,\
      * A complex expression with !,&&,||,\\ - must begin with char @
+     * <p/>
+     * Conditions parsed from expressions are cached, so that the same expression isn't parsed on each call.
      *
      * @param id ID to find in the conditionMap
      * @return the condition. May be <tt>null</tt>
@@ -285,13 +342,32 @@ public class RulesEngineImpl implements RulesEngine
         Condition result = conditionsMap.get(id);
         if (result == null)
         {
-            if (id.startsWith("@"))
+            synchronized (expressionCache)
             {
-                result = parseComplexCondition(id.substring(1));
+                result = expressionCache.get(id);
+            }
+            if (result != null)
+            {
+                expressionHits.incrementAndGet();
             }
             else
             {
-                result = getConditionByExpr(new StringBuffer(id));
+                expressionMisses.incrementAndGet();
+                if (id.startsWith("@"))
+                {
+                    result = parseComplexCondition(id.substring(1));
+                }
+                else
+                {
+                    result = getConditionByExpr(new StringBuffer(id));
+                }
+                if (result != null)
+                {
+                    synchronized (expressionCache)
+                    {
+                        expressionCache.put(id, result);
+                    }
+                }
             }
         }
         return result;
@@ -341,7 +417,7 @@ public class RulesEngineImpl implements RulesEngine
         {
             cond.setInstallData(this.installData);
         }
-        return cond.isTrue();
+        return evaluate(cond);
     }
 
     /**
@@ -361,7 +437,7 @@ public class RulesEngineImpl implements RulesEngine
             return true;
         }
         Condition condition = getCondition(this.panelConditions.get(panelId));
-        boolean b = condition.isTrue();
+        boolean b = evaluate(condition);
         logger.fine("Panel " + panelId + ": activation depends on condition "
                             + condition.getId() + " -> " + b);
         return b;
@@ -412,7 +488,7 @@ public class RulesEngineImpl implements RulesEngine
             return true;
         }
         Condition condition = getCondition(this.packConditions.get(packid));
-        boolean b = condition.isTrue();
+        boolean b = evaluate(condition);
         logger.fine("Package " + packid + ": installation depends on condition "
                 + condition.getId() + " -> " + b);
         return b;
@@ -457,6 +533,7 @@ public class RulesEngineImpl implements RulesEngine
             else
             {
                 conditionsMap.put(id, condition);
+                clearCaches();
             }
         }
         else
@@ -465,6 +542,66 @@ public class RulesEngineImpl implements RulesEngine
         }
     }
 
+    /**
+     * Returns the no. of times a condition parsed from an expression was found in the cache.
+     *
+     * @return the no. of expression cache hits
+     */
+    public long getExpressionCacheHits()
+    {
+        return expressionHits.get();
+    }
+
+    /**
+     * Returns the no. of times an expression had to be parsed, as it wasn't in the cache.
+     *
+     * @return the no. of expression cache misses
+     */
+    public long getExpressionCacheMisses()
+    {
+        return expressionMisses.get();
+    }
+
+    /**
+     * Returns the no. of times a condition result was reused, as the variables it depends on were unchanged.
+     *
+     * @return the no. of result cache hits
+     */
+    public long getResultCacheHits()
+    {
+        return resultHits.get();
+    }
+
+    /**
+     * Returns the no. of times a cacheable condition result had to be evaluated.
+     *
+     * @return the no. of result cache misses
+     */
+    public long getResultCacheMisses()
+    {
+        return resultMisses.get();
+    }
+
+    /**
+     * Returns the no. of times a condition has been evaluated.
+     *
+     * @return the no. of evaluations
+     */
+    public long getEvaluations()
+    {
+        return evaluations.get();
+    }
+
+    /**
+     * Returns the total time spent evaluating conditions.
+     *
+     * @return the evaluation time, in nanoseconds
+     */
+    public long getEvaluationTime()
+    {
+        return evaluationTime.get();
+    }
+
     @Override
     public void writeRulesXML(OutputStream out)
     {
@@ -862,6 +999,121 @@ public class RulesEngineImpl implements RulesEngine
         return result;
     }
 
+    /**
+     * Evaluates a condition.
+     * <p/>
+     * If the condition depends only on variables of a single {@link InstallData}, its result is cached, and reused
+     * until the {@link Variables#getVersion() version} of the variables changes.
+     *
+     * @param condition the condition
+     * @return the result of the condition
+     */
+    private boolean evaluate(Condition condition)
+    {
+        Set<InstallData> installData = Collections.newSetFromMap(new IdentityHashMap<InstallData, Boolean>());
+        Variables variables = null;
+        long version = 0;
+        if (isCacheable(condition, installData, 0) && installData.size() == 1)
+        {
+            variables = installData.iterator().next().getVariables();
+            version = (variables != null) ? variables.getVersion() : 0;
+        }
+        if (version > 0)
+        {
+            Result result;
+            synchronized (resultCache)
+            {
+                result = resultCache.get(condition);
+            }
+            if (result != null && result.variables == variables && result.version == version)
+            {
+                resultHits.incrementAndGet();
+                return result.value;
+            }
+            resultMisses.incrementAndGet();
+        }
+        long start = System.nanoTime();
+        boolean value = condition.isTrue();
+        evaluationTime.addAndGet(System.nanoTime() - start);
+        evaluations.incrementAndGet();
+        if (version > 0)
+        {
+            synchronized (resultCache)
+            {
+                resultCache.put(condition, new Result(variables, version, value));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Determines if the result of a condition may be cached.
+     * <p/>
+     * This is only the case for the built-in logical, variable and comparison conditions, as their results depend
+     * only on variables. Subclasses of these are excluded, as they may depend on anything else.
+     * The {@link Condition#getVarRefs()} of a condition aren't sufficient to determine its dependencies, as these
+     * exclude variables referenced by values.
+     *
+     * @param condition   the condition
+     * @param installData collects the installation data that the condition reads variables from
+     * @param depth       the depth of the condition
+     * @return {@code true} if the result of the condition may be cached, otherwise {@code false}
+     */
+    private boolean isCacheable(Condition condition, Set<InstallData> installData, int depth)
+    {
+        if (condition == null || depth > MAX_CACHED_DEPTH)
+        {
+            return false;
+        }
+        Class<?> type = condition.getClass();
+        if (type == StaticCondition.class)
+        {
+            return true;
+        }
+        else if (type == VariableCondition.class || type == CompareNumericsCondition.class
+                || type == CompareVersionsCondition.class || type == CompareVersionsMajorCondition.class)
+        {
+            InstallData data = condition.getInstallData();
+            if (data == null)
+            {
+                return false;
+            }
+            installData.add(data);
+            return true;
+        }
+        else if (type == AndCondition.class || type == OrCondition.class || type == XorCondition.class)
+        {
+            for (Condition operand : ((ConditionWithMultipleOperands) condition).getOperands())
+            {
+                if (!isCacheable(operand, installData, depth + 1))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        else if (type == NotCondition.class || type == RefCondition.class)
+        {
+            return isCacheable(((ConditionReference) condition).getReferencedCondition(), installData, depth + 1);
+        }
+        return false;
+    }
+
+    /**
+     * Clears the cached expressions and results, as conditions have changed.
+     */
+    private void clearCaches()
+    {
+        synchronized (expressionCache)
+        {
+            expressionCache.clear();
+        }
+        synchronized (resultCache)
+        {
+            resultCache.clear();
+        }
+    }
+
     /**
      * Recursively replaces any built-in conditions referenced by the supplied condition with those held by this.
      *
@@ -944,4 +1196,32 @@ public class RulesEngineImpl implements RulesEngine
         }
 
     }
+
+    /**
+     * A cached condition result.
+     */
+    private static class Result
+    {
+        /**
+         * The variables the result was evaluated against.
+         */
+        private final Variables variables;
+
+        /**
+         * The version of the variables when the result was evaluated.
+         */
+        private final long version;
+
+        /**
+         * The result.
+         */
+        private final boolean value;
+
+        public Result(Variables variables, long version, boolean value)
+        {
+            this.variables = variables;
+            this.version = version;
+            this.value = value;
+        }
+    }
 }
@@ -21,16 +21,41 @@ import com.izforge.izpack.api.substitutor.SubstitutionType;
 import com.izforge.izpack.util.IoHelper;
 
 import java.io.IOException;
-import java.io.PushbackReader;
 import java.io.Reader;
-import java.nio.CharBuffer;
 
 /**
  * An input reader which resolves IzPack variables on the fly
+ * <p/>
+ * The source is read in blocks. Runs of characters that can't start a variable are copied to the caller in bulk;
+ * only variables themselves are parsed a character at a time.
  */
 public class VariableSubstitutorReader extends Reader
 {
-    private PushbackReader pushbackReader = null;
+    /**
+     * The size of the source buffer.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The source reader.
+     */
+    private final Reader source;
+
+    /**
+     * The source buffer.
+     */
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    /**
+     * The position of the next character to read from the buffer.
+     */
+    private int position = 0;
+
+    /**
+     * The no. of characters in the buffer.
+     */
+    private int limit = 0;
+
     /**
      * The replacement variables
      */
@@ -59,7 +84,7 @@ public class VariableSubstitutorReader extends Reader
 
     public VariableSubstitutorReader(Reader source, Variables variables, SubstitutionType type)
     {
-        this.pushbackReader = new PushbackReader(source);
+        this.source = source;
         this.variables = variables;
         this.type = type;
         if (type == null)
@@ -105,11 +130,6 @@ public class VariableSubstitutorReader extends Reader
     }
 
 
-    @Override
-    public int read(CharBuffer target) throws IOException {
-        throw new RuntimeException("Operation Not Supported");
-    }
-
     @Override
     public int read() throws IOException
     {
@@ -123,17 +143,17 @@ public class VariableSubstitutorReader extends Reader
             }
         }
 
-        int data = pushbackReader.read();
+        int data = next();
         if(data != variable_start) return data;
 
-        data = pushbackReader.read();
+        data = next();
         if (data == '{')
         {
             inBraces = true;
         }
         else if (bracesRequired)
         {
-            pushbackReader.unread(data);
+            unread(data);
             return variable_start;
         }
 
@@ -144,7 +164,7 @@ public class VariableSubstitutorReader extends Reader
             varNameBuffer.append((char) data);
         }
 
-        data = pushbackReader.read();
+        data = next();
         while (
                 data >= ' ' && (inBraces && data != '}')
                 || (inBraces && ((data == '[') || (data == ']')))
@@ -152,7 +172,7 @@ public class VariableSubstitutorReader extends Reader
         )
         {
             varNameBuffer.append((char) data);
-            data = pushbackReader.read();
+            data = next();
         }
 
         boolean variable = wasItPlausibleVariableName(data);
@@ -190,7 +210,7 @@ public class VariableSubstitutorReader extends Reader
         {
             if (data != -1)
             {
-                pushbackReader.unread(data);
+                unread(data);
             }
             unclosedBraces = true;
         } else if (
@@ -198,7 +218,7 @@ public class VariableSubstitutorReader extends Reader
                 || (!isAllowedCharInVariableName(data) && data != '}' && data != variable_end)
                 )
         {
-            pushbackReader.unread(data);
+            unread(data);
         }
 
         if(varValue == null)
@@ -235,7 +255,7 @@ public class VariableSubstitutorReader extends Reader
             {
                 return false;
             }
-            int nextData = pushbackReader.read();
+            int nextData = next();
             if (nextData == -1)
             {
                 return false;
@@ -244,7 +264,7 @@ public class VariableSubstitutorReader extends Reader
             {
                 return true;
             }
-            pushbackReader.unread(nextData);
+            unread(nextData);
             return false;
         }
         return variable_end == data;
@@ -257,24 +277,53 @@ public class VariableSubstitutorReader extends Reader
 
     @Override
     public int read(char cbuf[], int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
         int charsRead = 0;
-        for(int i=0; i<len; i++){
-            int nextChar = read();
-            if(nextChar == -1) {
-                if(charsRead == 0){
-                    charsRead = -1;
+        while (charsRead < len) {
+            if (varValue != null) {
+                // copy the remainder of the current variable value
+                int count = Math.min(len - charsRead, varValue.length() - varValueIndex);
+                varValue.getChars(varValueIndex, varValueIndex + count, cbuf, off + charsRead);
+                charsRead += count;
+                varValueIndex += count;
+                if (varValueIndex == varValue.length()) {
+                    varValue = null;
+                    varValueIndex = 0;
                 }
+                continue;
+            }
+            if (position == limit && (charsRead > 0 || !fill())) {
+                // return what is available rather than block on the source
                 break;
             }
-            charsRead = i + 1;
-            cbuf[off + i] = (char) nextChar;
+
+            // copy the run of characters up to the next possible variable
+            int start = position;
+            int end = Math.min(limit, position + len - charsRead);
+            while (position < end && buffer[position] != variable_start) {
+                position++;
+            }
+            int count = position - start;
+            System.arraycopy(buffer, start, cbuf, off + charsRead, count);
+            charsRead += count;
+
+            if (position < end) {
+                // parse the variable
+                int nextChar = read();
+                if (nextChar == -1) {
+                    break;
+                }
+                cbuf[off + charsRead++] = (char) nextChar;
+            }
         }
-        return charsRead;
+        return (charsRead == 0) ? -1 : charsRead;
     }
 
     @Override
     public void close() throws IOException {
-        this.pushbackReader.close();
+        source.close();
     }
 
     @Override
@@ -284,7 +333,7 @@ public class VariableSubstitutorReader extends Reader
 
     @Override
     public boolean ready() throws IOException {
-        return this.pushbackReader.ready();
+        return varValue != null || position < limit || source.ready();
     }
 
     @Override
@@ -302,6 +351,56 @@ public class VariableSubstitutorReader extends Reader
         throw new RuntimeException("Operation Not Supported");
     }
 
+    /**
+     * Reads the next character from the source.
+     *
+     * @return the next character, or {@code -1} if the end of the source has been reached
+     * @throws IOException for any I/O error
+     */
+    private int next() throws IOException
+    {
+        if (position == limit && !fill())
+        {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    /**
+     * Pushes back the last character returned by {@link #next()}.
+     *
+     * @param c the character, or {@code -1} if the end of the source was reached
+     */
+    private void unread(int c)
+    {
+        if (c != -1)
+        {
+            position--;
+        }
+    }
+
+    /**
+     * Refills the buffer from the source, once it has been consumed.
+     *
+     * @return {@code true} if characters were read, {@code false} if the end of the source has been reached
+     * @throws IOException for any I/O error
+     */
+    private boolean fill() throws IOException
+    {
+        int read;
+        do
+        {
+            read = source.read(buffer, 0, buffer.length);
+        }
+        while (read == 0);
+        if (read == -1)
+        {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
 
     private static boolean isAllowedCharInVariableName(int c)
     {
@@ -25,6 +25,7 @@ import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 
 import java.io.FileInputStream;
 import java.io.Serializable;
+import java.util.List;
 import java.util.Set;
 
 public class PlainConfigFileValue extends ConfigFileValue implements Serializable
@@ -80,6 +81,23 @@ public class PlainConfigFileValue extends ConfigFileValue implements Serializabl
         return resolve(new FileInputStream(_location_), substitutors);
     }
 
+    /**
+     * The value read is reused while the referenced variables and the configuration file are unchanged.
+     *
+     * @param substitutors the variable substitutors
+     * @return the state of the configuration file
+     */
+    @Override
+    public List<?> getResolutionState(VariableSubstitutor... substitutors)
+    {
+        String _location_ = location;
+        for (VariableSubstitutor substitutor : substitutors)
+        {
+            _location_ = substitutor.substitute(_location_);
+        }
+        return getFileState(_location_);
+    }
+
     @Override
     public Set<String> getVarRefs()
     {
@@ -21,6 +21,9 @@
 
 package com.izforge.izpack.core.variable;
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.data.Value;
@@ -52,6 +55,27 @@ public abstract class ValueImpl implements Value
         this.installData = installData;
     }
 
+    /**
+     * Returns the state, other than the variables returned by {@link #getVarRefs()}, that the resolved value
+     * depends on.
+     * <p/>
+     * Values that are expensive to resolve may return a non-null state, to allow a previously resolved value to be
+     * reused while the referenced variables and the state are unchanged.
+     * <p/>
+     * Only values whose state can be observed cheaply should do so, such as config file values, which depend on the
+     * file's modification time and length. Exec and registry values can't observe what their result depends on, so
+     * they return {@code null}. They are only memoised via <tt>checkonce</tt>, and are otherwise resolved each time
+     * the dynamic variables are refreshed.
+     *
+     * @param substitutors the variable substitutors
+     * @return the state, an empty list if the value depends only on its referenced variables, or {@code null} if the
+     *         value must be resolved every time. This implementation returns {@code null}
+     */
+    public List<?> getResolutionState(VariableSubstitutor... substitutors)
+    {
+        return null;
+    }
+
     @Override
     public String toString()
     {
@@ -72,4 +96,16 @@ public abstract class ValueImpl implements Value
     {
         return ValueUtils.parseUnresolvedVariableNames(strings);
     }
+
+    /**
+     * Returns the state of a file, for {@link #getResolutionState}.
+     *
+     * @param path the file path
+     * @return the path, last modification time and length of the file
+     */
+    protected static List<?> getFileState(String path)
+    {
+        File file = new File(path);
+        return Arrays.asList(path, file.lastModified(), file.length());
+    }
 }
@@ -20,6 +20,7 @@
 package com.izforge.izpack.core.variable;
 
 import java.io.InputStream;
+import java.util.List;
 import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
@@ -117,6 +118,23 @@ public class ZipEntryConfigFileValue extends ConfigFileValue
         }
     }
 
+    /**
+     * The value read is reused while the referenced variables and the archive are unchanged.
+     *
+     * @param substitutors the variable substitutors
+     * @return the state of the archive
+     */
+    @Override
+    public List<?> getResolutionState(VariableSubstitutor... substitutors)
+    {
+        String _filename_ = this.filename;
+        for (VariableSubstitutor substitutor : substitutors)
+        {
+            _filename_ = substitutor.substitute(_filename_);
+        }
+        return getFileState(_filename_);
+    }
+
     @Override
     public Set<String> getVarRefs()
     {
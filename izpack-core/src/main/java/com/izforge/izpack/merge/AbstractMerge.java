@@ -20,9 +20,9 @@
 package com.izforge.izpack.merge;
 
 import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 import com.izforge.izpack.api.merge.Mergeable;
 
@@ -34,13 +34,13 @@ import com.izforge.izpack.api.merge.Mergeable;
  */
 public abstract class AbstractMerge implements Mergeable
 {
-    protected Map<OutputStream, List<String>> mergeContent;
+    protected Map<OutputStream, Set<String>> mergeContent;
 
-    protected List<String> getMergeList(OutputStream outputStream)
+    protected Set<String> getMergeList(OutputStream outputStream)
     {
         if (!mergeContent.containsKey(outputStream))
         {
-            mergeContent.put(outputStream, new ArrayList<String>());
+            mergeContent.put(outputStream, new LinkedHashSet<String>());
         }
         return mergeContent.get(outputStream);
     }
@@ -30,6 +30,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.zip.ZipOutputStream;
 
 /**
@@ -44,12 +45,12 @@ public class FileMerge extends AbstractMerge
 
     private final String destination;
 
-    public FileMerge(URL url, Map<OutputStream, List<String>> mergeContent)
+    public FileMerge(URL url, Map<OutputStream, Set<String>> mergeContent)
     {
         this(url, "", mergeContent);
     }
 
-    public FileMerge(URL url, String destination, Map<OutputStream, List<String>> mergeContent)
+    public FileMerge(URL url, String destination, Map<OutputStream, Set<String>> mergeContent)
     {
         this.mergeContent = mergeContent;
         this.sourceToCopy = FileUtil.convertUrlToFile(url);
@@ -155,12 +156,11 @@ public class FileMerge extends AbstractMerge
         else
         {
             String entryName = resolveName(fileToCopy, this.destination);
-            List<String> mergeList = getMergeList(outputStream);
-            if (mergeList.contains(entryName))
+            Set<String> mergeList = getMergeList(outputStream);
+            if (!mergeList.add(entryName))
             {
                 return;
             }
-            mergeList.add(entryName);
             FileInputStream inputStream = new FileInputStream(fileToCopy);
             IoHelper.copyStreamToJar(inputStream, outputStream, entryName, fileToCopy.lastModified());
             inputStream.close();
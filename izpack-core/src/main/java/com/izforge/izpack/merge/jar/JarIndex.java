@@ -0,0 +1,185 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.merge.jar;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Index of the entry names of a jar, used to look up the entries under a path without scanning the whole jar.
+ * <p/>
+ * Names are held sorted, so the entries under a path are found by binary search for the first name with the path as
+ * prefix. Entries are returned in jar order.
+ * <p/>
+ * Indexes are cached and shared by all {@link JarMerge} instances for a jar, so a jar is scanned once no matter how
+ * many paths are merged from it. A cached index is discarded if the jar is modified.
+ */
+class JarIndex
+{
+    /**
+     * The maximum no. of cached indexes.
+     */
+    private static final int MAX_CACHED = 32;
+
+    /**
+     * The cached indexes, keyed on jar path, in least recently used order.
+     */
+    private static final Map<String, JarIndex> cache = new LinkedHashMap<String, JarIndex>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, JarIndex> eldest)
+        {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    /**
+     * The jar last modified timestamp, when it was indexed.
+     */
+    private final long lastModified;
+
+    /**
+     * The jar length, when it was indexed.
+     */
+    private final long length;
+
+    /**
+     * The entry names, in jar order.
+     */
+    private final String[] names;
+
+    /**
+     * The positions of the entries in {@link #names}, sorted on entry name.
+     */
+    private final Integer[] sorted;
+
+    /**
+     * Constructs a <tt>JarIndex</tt>.
+     *
+     * @param jar the jar to index
+     * @throws IOException for any I/O error
+     */
+    private JarIndex(File jar) throws IOException
+    {
+        lastModified = jar.lastModified();
+        length = jar.length();
+        List<String> entries = new ArrayList<String>();
+        try (JarFile jarFile = new JarFile(jar))
+        {
+            Enumeration<JarEntry> jarEntries = jarFile.entries();
+            while (jarEntries.hasMoreElements())
+            {
+                entries.add(jarEntries.nextElement().getName());
+            }
+        }
+        names = entries.toArray(new String[0]);
+        sorted = new Integer[names.length];
+        for (int i = 0; i < sorted.length; ++i)
+        {
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer o1, Integer o2)
+            {
+                int result = names[o1].compareTo(names[o2]);
+                return (result != 0) ? result : o1.compareTo(o2);
+            }
+        });
+    }
+
+    /**
+     * Returns the index of a jar.
+     *
+     * @param jarPath the jar path
+     * @return the index
+     * @throws IOException for any I/O error
+     */
+    public static synchronized JarIndex get(String jarPath) throws IOException
+    {
+        File jar = new File(jarPath);
+        JarIndex index = cache.get(jarPath);
+        if (index == null || index.lastModified != jar.lastModified() || index.length != jar.length())
+        {
+            index = new JarIndex(jar);
+            cache.put(jarPath, index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns all entry names.
+     *
+     * @return the entry names, in jar order
+     */
+    public List<String> getNames()
+    {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * Returns the names of the entries that start with a prefix.
+     *
+     * @param prefix the prefix
+     * @return the entry names, in jar order
+     */
+    public List<String> getNames(String prefix)
+    {
+        // find the first name >= prefix; all names starting with prefix follow it
+        int low = 0;
+        int high = sorted.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (names[sorted[mid]].compareTo(prefix) < 0)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        List<Integer> matches = new ArrayList<Integer>();
+        for (int i = low; i < sorted.length && names[sorted[i]].startsWith(prefix); ++i)
+        {
+            matches.add(sorted[i]);
+        }
+        Collections.sort(matches);
+
+        List<String> result = new ArrayList<String>(matches.size());
+        for (Integer match : matches)
+        {
+            result.add(names[match]);
+        }
+        return result;
+    }
+}
@@ -24,17 +24,21 @@ import com.izforge.izpack.api.exception.MergeException;
 import com.izforge.izpack.merge.AbstractMerge;
 import com.izforge.izpack.util.FileUtil;
 import com.izforge.izpack.util.IoHelper;
+import com.izforge.izpack.util.compress.ZipArchiveJarOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 
 import java.io.*;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.ZipException;
 import java.util.zip.ZipOutputStream;
 
 /**
@@ -44,9 +48,17 @@ import java.util.zip.ZipOutputStream;
  */
 public class JarMerge extends AbstractMerge
 {
+    /**
+     * Matches signature files.
+     */
+    private static final Pattern SIGNATURE = Pattern.compile("/?META-INF/(.*\\.(SF|DSA|RSA)|SIG-.*)");
+
     private final String jarPath;
 
-    private final String regexp;
+    /**
+     * The path inside the jar. Entries starting with this path are merged.
+     */
+    private final String path;
     private final String destination;
 
 
@@ -57,52 +69,31 @@ public class JarMerge extends AbstractMerge
      * @param jarPath      Path to the jar to merge
      * @param mergeContent map linking outputstream to their content to avoir duplication
      */
-    public JarMerge(URL resource, String jarPath, Map<OutputStream, List<String>> mergeContent)
+    public JarMerge(URL resource, String jarPath, Map<OutputStream, Set<String>> mergeContent)
     {
         this.jarPath = jarPath;
         this.mergeContent = mergeContent;
         destination = FileUtil.convertUrlToFilePath(resource).replace(this.jarPath, "").replaceAll("file:",
                                                                                                       "").replaceAll(
                 "!/?", "").replaceAll("//", "/");
-
-        // make sure any $ characters are escaped, otherwise inner classes won't be merged
-        StringBuilder builder = new StringBuilder(destination.replace("$", "\\$"));
-
-        if (destination.endsWith("/"))
-        {
-            builder.append("+(.*)");
-        }
-        else
-        {
-            builder.append("/*(.*)");
-        }
-        regexp = builder.toString();
+        path = destination;
     }
 
     /**
      * Create a new JarMerge with a destination
      *
      * @param jarPath       Path to the jar to merge
-     * @param pathInsideJar Inside path of the jar to merge. Can be a package or a file. Needed to build the regexp
+     * @param pathInsideJar Inside path of the jar to merge. Can be a package or a file
      * @param destination   Destination of the package
      * @param mergeContent  map linking outputstream to their content to avoir duplication
      */
     public JarMerge(String jarPath, String pathInsideJar, String destination,
-                    Map<OutputStream, List<String>> mergeContent)
+                    Map<OutputStream, Set<String>> mergeContent)
     {
         this.jarPath = jarPath;
         this.destination = destination;
         this.mergeContent = mergeContent;
-        StringBuilder builder = new StringBuilder().append(pathInsideJar);
-        if (pathInsideJar.endsWith("/"))
-        {
-            builder.append("+(.*)");
-        }
-        else
-        {
-            builder.append("/*(.*)");
-        }
-        regexp = builder.toString();
+        this.path = pathInsideJar;
     }
 
 
@@ -110,7 +101,7 @@ public class JarMerge extends AbstractMerge
     {
         try
         {
-            ArrayList<String> fileNameInZip = getFileNameInJar();
+            List<String> fileNameInZip = JarIndex.get(jarPath).getNames();
             for (String fileName : fileNameInZip)
             {
                 File file = new File(jarPath + "!/" + fileName);
@@ -131,7 +122,7 @@ public class JarMerge extends AbstractMerge
     {
         try
         {
-            ArrayList<String> fileNameInZip = getFileNameInJar();
+            List<String> fileNameInZip = JarIndex.get(jarPath).getNames();
             ArrayList<File> result = new ArrayList<File>();
             ArrayList<File> filteredResult = new ArrayList<File>();
             for (String fileName : fileNameInZip)
@@ -153,84 +144,114 @@ public class JarMerge extends AbstractMerge
         }
     }
 
-    private ArrayList<String> getFileNameInJar() throws IOException
-    {
-        JarFile jarFile = new JarFile(jarPath);
-        ArrayList<String> arrayList = new ArrayList<String>();
-        Enumeration<JarEntry> jarEntries = jarFile.entries();
-        while (jarEntries.hasMoreElements())
-        {
-            JarEntry jarEntry = jarEntries.nextElement();
-            arrayList.add(jarEntry.getName());
-        }
-        return arrayList;
-    }
-
-
     public void merge(ZipOutputStream outputStream)
     {
         mergeImpl(outputStream);
     }
 
+    /**
+     * Merges the entries under {@link #path} to the output stream.
+     * <p/>
+     * The entries are looked up in the {@link JarIndex} of the jar, rather than by scanning the jar.
+     *
+     * @param outputStream the output stream
+     */
     private void mergeImpl(OutputStream outputStream)
     {
-        Pattern pattern = Pattern.compile(regexp);
-        List<String> mergeList = getMergeList(outputStream);
-        JarFile jarFile = null;
-        JarEntry jarEntry;
+        Set<String> mergeList = getMergeList(outputStream);
         try
         {
-            jarFile = new JarFile(jarPath);
-            Enumeration<JarEntry> jarFileEntries = jarFile.entries();
-
-            while (jarFileEntries.hasMoreElements())
+            // the names of the entries to merge, and their destinations
+            Map<String, String> entries = new LinkedHashMap<String, String>();
+            for (String name : JarIndex.get(jarPath).getNames(path))
             {
-                jarEntry = jarFileEntries.nextElement();
-
-                if (isManifest(jarEntry.getName())) {
+                if (isManifest(name)) {
                     // Skip the JAR's manifest file to avoid
                     // overwriting it in the target JAR
                     continue;
                 }
 
-                Matcher matcher = pattern.matcher(jarEntry.getName());
-                if (matcher.matches() && !isSignature(jarEntry.getName()))
+                if (isSignature(name) || !mergeList.add(name))
                 {
-                    if (mergeList.contains(jarEntry.getName()))
-                    {
-                        continue;
-                    }
-                    mergeList.add(jarEntry.getName());
+                    continue;
+                }
 
-                    String matchFile = matcher.group(1);
-                    StringBuilder dest = new StringBuilder(destination);
-                    if (matchFile != null && matchFile.length() > 0)
+                String matchFile = stripLeadingSlashes(name.substring(path.length()));
+                StringBuilder dest = new StringBuilder(destination);
+                if (matchFile.length() > 0)
+                {
+                    if (dest.length() > 0 && dest.charAt(dest.length() - 1) != '/')
                     {
-                        if (dest.length() > 0 && dest.charAt(dest.length() - 1) != '/')
-                        {
-                            dest.append('/');
-                        }
-                        dest.append(matchFile);
+                        dest.append('/');
                     }
-
-                    InputStream inputStream = jarFile.getInputStream(jarEntry);
-                    IoHelper.copyStreamToJar(inputStream, (ZipOutputStream) outputStream, dest.toString().replaceAll("//", "/"),
-                            jarEntry.getTime());
+                    dest.append(matchFile);
                 }
+                entries.put(name, dest.toString().replaceAll("//", "/"));
+            }
+
+            if (entries.isEmpty())
+            {
+                return;
+            }
+            if (outputStream instanceof ZipArchiveJarOutputStream)
+            {
+                copyRaw(entries, (ZipArchiveJarOutputStream) outputStream);
+            }
+            else
+            {
+                copy(entries, (ZipOutputStream) outputStream);
             }
         }
         catch (IOException e)
         {
             throw new IzPackException("Error accessing file: " + jarPath, e);
         }
-        finally {
-            if (jarFile != null)
+    }
+
+    /**
+     * Copies entries from the jar, decompressing and recompressing them.
+     *
+     * @param entries      the names of the entries to copy, and their destinations
+     * @param outputStream the output stream
+     * @throws IOException for any I/O error
+     */
+    private void copy(Map<String, String> entries, ZipOutputStream outputStream) throws IOException
+    {
+        try (JarFile jarFile = new JarFile(jarPath))
+        {
+            for (Map.Entry<String, String> entry : entries.entrySet())
+            {
+                JarEntry jarEntry = jarFile.getJarEntry(entry.getKey());
+                try (InputStream inputStream = jarFile.getInputStream(jarEntry))
+                {
+                    IoHelper.copyStreamToJar(inputStream, outputStream, entry.getValue(), jarEntry.getTime());
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies entries from the jar without decompressing them.
+     *
+     * @param entries      the names of the entries to copy, and their destinations
+     * @param outputStream the output stream
+     * @throws IOException for any I/O error
+     */
+    private void copyRaw(Map<String, String> entries, ZipArchiveJarOutputStream outputStream) throws IOException
+    {
+        try (ZipFile zipFile = ZipFile.builder().setFile(jarPath).get())
+        {
+            for (Map.Entry<String, String> entry : entries.entrySet())
             {
+                ZipArchiveEntry zipEntry = zipFile.getEntry(entry.getKey());
                 try
                 {
-                    jarFile.close();
+                    outputStream.copyEntry(zipFile, zipEntry, entry.getValue(), zipEntry.getTime());
+                }
+                catch (ZipException ignore)
+                {
+                    // duplicate entry, as per IoHelper.copyStreamToJar()
                 }
-                catch (IOException ignored) {}
             }
         }
     }
@@ -240,7 +261,7 @@ public class JarMerge extends AbstractMerge
     {
         return "JarMerge{" +
                 "jarPath='" + jarPath + '\'' +
-                ", regexp='" + regexp + '\'' +
+                ", path='" + path + '\'' +
                 ", destination='" + destination + '\'' +
                 '}';
     }
@@ -256,7 +277,23 @@ public class JarMerge extends AbstractMerge
      */
     private boolean isSignature(String name)
     {
-        return name.matches("/?META-INF/.*\\.(SF|DSA|RSA)") || name.matches("/?META-INF/SIG-.*");
+        return SIGNATURE.matcher(name).matches();
+    }
+
+    /**
+     * Removes any leading slashes from a path.
+     *
+     * @param path the path
+     * @return the path without leading slashes
+     */
+    private static String stripLeadingSlashes(String path)
+    {
+        int start = 0;
+        while (start < path.length() && path.charAt(start) == '/')
+        {
+            ++start;
+        }
+        return path.substring(start);
     }
 
     /**
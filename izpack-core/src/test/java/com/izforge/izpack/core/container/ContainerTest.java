@@ -0,0 +1,153 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.container;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import com.google.inject.ConfigurationException;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import org.junit.Test;
+
+/**
+ * Tests the {@link AbstractContainer}.
+ */
+public class ContainerTest
+{
+
+    /**
+     * Verifies that a flat container keeps its injector when named instances are registered after the first lookup.
+     */
+    @Test
+    public void testFlat()
+    {
+        FlatContainer container = new FlatContainer();
+        Component component = container.getComponent(Component.class);
+
+        container.addComponent("a", Object.class, "A");
+        container.addComponent("b", Object.class, "B");
+
+        assertSame(component, container.getComponent(Component.class));
+        assertSame("A", container.getComponent("a", Object.class));
+        assertSame("B", container.getComponent("b", Object.class));
+    }
+
+    /**
+     * Verifies that named instances registered after the first lookup of a flat container aren't injected.
+     */
+    @Test
+    public void testFlatNamedInstanceNotInjected()
+    {
+        FlatContainer container = new FlatContainer();
+        container.getComponent(Component.class);
+
+        container.addComponent("a", Object.class, "A");
+        try
+        {
+            container.getComponent(NamedConsumer.class);
+            fail("Expected ConfigurationException");
+        }
+        catch (ConfigurationException expected)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Verifies that other registrations after the first lookup of a flat container are still available, along with
+     * the existing singletons and named instances.
+     */
+    @Test
+    public void testFlatLateRegistration()
+    {
+        FlatContainer container = new FlatContainer();
+        Component component = container.getComponent(Component.class);
+        container.addComponent("a", Object.class, "A");
+
+        container.addComponent(Late.class);
+        Late late = container.getComponent(Late.class);
+        assertSame(component, late.component);
+        assertSame(component, container.getComponent(Component.class));
+        assertSame("A", container.getComponent("a", Object.class));
+    }
+
+    /**
+     * Verifies that components created in parallel are the singletons subsequently returned by the container.
+     */
+    @Test
+    public void testCreateComponents()
+    {
+        FlatContainer container = new FlatContainer();
+        container.createComponents(Arrays.<Class<?>>asList(Component.class, Dependency.class));
+
+        Component component = container.getComponent(Component.class);
+        assertNotNull(component);
+        assertSame(container.getComponent(Dependency.class), component.dependency);
+    }
+
+    private static class FlatContainer extends AbstractContainer
+    {
+        @Override
+        protected void fillContainer()
+        {
+            setFlat(true);
+            addComponent(Dependency.class);
+            addComponent(Component.class);
+        }
+    }
+
+    public static class Dependency
+    {
+    }
+
+    public static class NamedConsumer
+    {
+        @Inject
+        public NamedConsumer(@Named("a") Object a)
+        {
+        }
+    }
+
+    public static class Late
+    {
+        private final Component component;
+
+        @Inject
+        public Late(Component component)
+        {
+            this.component = component;
+        }
+    }
+
+    public static class Component
+    {
+        private final Dependency dependency;
+
+        @Inject
+        public Component(Dependency dependency)
+        {
+            this.dependency = dependency;
+        }
+    }
+}
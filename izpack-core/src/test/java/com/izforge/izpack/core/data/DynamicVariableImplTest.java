@@ -1,15 +1,19 @@
 package com.izforge.izpack.core.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeFalse;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Properties;
 
 import com.izforge.izpack.api.data.Variables;
+import org.apache.commons.io.FileUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -19,6 +23,7 @@ import com.izforge.izpack.api.data.ValueFilter;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
 import com.izforge.izpack.core.variable.ConfigFileValue;
+import com.izforge.izpack.core.variable.ExecValue;
 import com.izforge.izpack.core.variable.PlainConfigFileValue;
 import com.izforge.izpack.core.variable.PlainValue;
 import com.izforge.izpack.core.variable.filters.LocationFilter;
@@ -111,4 +116,69 @@ public class DynamicVariableImplTest
             fail(e.toString());
         }
     }
+
+    @Test
+    public void testConfigFileValueIsReusedWhileInputsAreUnchanged() throws Exception
+    {
+        File configFile = folder.newFile("app.properties");
+        FileUtils.writeStringToFile(configFile, "home=/opt/app\nport=80\n", StandardCharsets.ISO_8859_1);
+
+        Variables variables = new DefaultVariables(new Properties());
+        variables.set("CONFIG", configFile.getPath());
+        variables.set("KEY", "home");
+        VariableSubstitutor subst = new VariableSubstitutorImpl(variables);
+
+        DynamicVariableImpl dynvar = new DynamicVariableImpl();
+        dynvar.setName("value");
+        dynvar.setValue(new PlainConfigFileValue("${CONFIG}", ConfigFileValue.CONFIGFILE_TYPE_OPTIONS, null,
+                                                 "${KEY}", false));
+
+        assertEquals("/opt/app", dynvar.evaluate(subst));
+        assertEquals("/opt/app", dynvar.evaluate(subst));
+        assertEquals(1, dynvar.getResolveCount());
+        assertEquals(1, dynvar.getReuseCount());
+
+        // a referenced variable changes
+        variables.set("KEY", "port");
+        assertEquals("80", dynvar.evaluate(subst));
+        assertEquals(2, dynvar.getResolveCount());
+
+        // the file changes
+        FileUtils.writeStringToFile(configFile, "home=/opt/app\nport=8080\n", StandardCharsets.ISO_8859_1);
+        assertTrue(configFile.setLastModified(configFile.lastModified() + 2000));
+        assertEquals("8080", dynvar.evaluate(subst));
+        assertEquals(3, dynvar.getResolveCount());
+        assertEquals(1, dynvar.getReuseCount());
+    }
+
+    @Test
+    public void testPlainValueIsAlwaysResolved() throws Exception
+    {
+        Variables variables = new DefaultVariables(new Properties());
+        variables.set("NAME", "app");
+        DynamicVariableImpl dynvar = new DynamicVariableImpl("value", "${NAME}");
+        VariableSubstitutor subst = new VariableSubstitutorImpl(variables);
+
+        assertEquals("app", dynvar.evaluate(subst));
+        assertEquals("app", dynvar.evaluate(subst));
+        assertEquals(2, dynvar.getResolveCount());
+        assertEquals(0, dynvar.getReuseCount());
+    }
+
+    @Test
+    public void testExecValueIsAlwaysResolved() throws Exception
+    {
+        assumeFalse(File.separatorChar == '\\');
+        Variables variables = new DefaultVariables(new Properties());
+        DynamicVariableImpl dynvar = new DynamicVariableImpl();
+        dynvar.setName("value");
+        dynvar.setValue(new ExecValue(new String[]{"echo", "app"}, null, false, false));
+        VariableSubstitutor subst = new VariableSubstitutorImpl(variables);
+
+        // the output of a command may change between evaluations, so it is only reused if checkonce is set
+        assertEquals("app", dynvar.evaluate(subst).trim());
+        assertEquals("app", dynvar.evaluate(subst).trim());
+        assertEquals(2, dynvar.getResolveCount());
+        assertEquals(0, dynvar.getReuseCount());
+    }
 }
@@ -0,0 +1,245 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.event.ProgressListener;
+
+
+/**
+ * Tests the {@link ProgressBus}.
+ */
+public class ProgressBusTest
+{
+
+    /**
+     * Verifies that progress is coalesced, and that other notifications are published in order, after any pending
+     * progress.
+     */
+    @Test
+    public void testCoalesce()
+    {
+        Recorder recorder = new Recorder();
+        ProgressBus bus = new ProgressBus(recorder, Runnable::run, 60 * 60 * 1000);
+
+        bus.startAction("Unpacking", 2);
+        bus.nextStep("pack1", 1, 1000);
+        for (int i = 0; i < 1000; ++i)
+        {
+            bus.progress(i, "file" + i);
+        }
+        bus.nextStep("pack2", 2, 10);
+        bus.progress(0, "a");
+        bus.progress("message");
+        bus.progress(1, "b");
+        bus.stopAction();
+
+        assertEquals(Arrays.asList("startAction Unpacking 2", "nextStep pack1 1 1000", "progress 999 file999",
+                                   "nextStep pack2 2 10", "progress 0 a", "progress message", "progress 1 b",
+                                   "stopAction"), recorder.getEvents());
+    }
+
+    /**
+     * Verifies that the scheduled task publishes the latest progress.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testScheduledPublish() throws Exception
+    {
+        Recorder recorder = new Recorder();
+        ProgressBus bus = new ProgressBus(recorder, Runnable::run, 10);
+        bus.startAction("Unpacking", 1);
+        bus.nextStep("pack1", 1, 10);
+        bus.progress(5, "file5");
+
+        long end = System.currentTimeMillis() + 5000;
+        while (recorder.getEvents().size() < 3 && System.currentTimeMillis() < end)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals("progress 5 file5", recorder.getEvents().get(2));
+        bus.stopAction();
+        assertEquals(Arrays.asList("startAction Unpacking 1", "nextStep pack1 1 10", "progress 5 file5",
+                                   "stopAction"), recorder.getEvents());
+    }
+
+    /**
+     * Verifies the rate and remaining time are estimated from the pack sizes.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testRate() throws Exception
+    {
+        Pack pack1 = new Pack("pack1", null, null, null, null, true, false, false, null, true, 1000);
+        Pack pack2 = new Pack("pack2", null, null, null, null, true, false, false, null, true, 3000);
+
+        ProgressBus bus = new ProgressBus(new Recorder(), Runnable::run, 60 * 60 * 1000);
+        bus.setPacks(Arrays.asList(pack1, pack2));
+        assertTrue(bus.isRateInBytes());
+        bus.startAction("Unpacking", 2);
+        assertEquals(-1, bus.getRemainingTime());
+
+        bus.nextStep("pack1", 1, 10);
+        bus.progress(5, "file5");
+        Thread.sleep(100);
+
+        // 500 of 4000 bytes are complete, so 7 times the elapsed time remains
+        double rate = bus.getRate();
+        long remaining = bus.getRemainingTime();
+        assertTrue(rate > 0);
+        assertEquals(3500 / rate * 1000, remaining, 100);
+
+        bus.nextStep("pack2", 2, 10);
+        assertTrue(bus.getRate() >= 1000 / 10.0);
+        bus.stopAction();
+
+        bus.setPacks(null);
+        assertFalse(bus.isRateInBytes());
+    }
+
+    /**
+     * Verifies that the rate and remaining time can be queried while the bus is publishing, as they don't lock it.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testEstimatesDontLock() throws Exception
+    {
+        final ProgressBus bus = new ProgressBus(new Recorder(), Runnable::run, 60 * 60 * 1000);
+        bus.startAction("Unpacking", 2);
+        bus.nextStep("pack1", 1, 10);
+        bus.progress(5, "file5");
+
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            Future<?> holder = executor.submit(() -> {
+                synchronized (bus)
+                {
+                    locked.countDown();
+                    release.await();
+                }
+                return null;
+            });
+            assertTrue(locked.await(10, TimeUnit.SECONDS));
+            bus.getRate();
+            bus.getRemainingTime();
+            bus.isRateInBytes();
+            release.countDown();
+            holder.get(10, TimeUnit.SECONDS);
+        }
+        finally
+        {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        bus.stopAction();
+    }
+
+    /**
+     * Tests {@link ProgressBus#formatTime(long)}.
+     */
+    @Test
+    public void testFormatTime()
+    {
+        assertEquals("0:00", ProgressBus.formatTime(0));
+        assertEquals("0:42", ProgressBus.formatTime(42000));
+        assertEquals("2:05", ProgressBus.formatTime(125000));
+        assertEquals("1:00:01", ProgressBus.formatTime(3601000));
+    }
+
+    /**
+     * Records the notifications published to it.
+     */
+    private static class Recorder implements ProgressListener
+    {
+        private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+        public List<String> getEvents()
+        {
+            synchronized (events)
+            {
+                return new ArrayList<String>(events);
+            }
+        }
+
+        @Override
+        public void startAction(String name, int steps)
+        {
+            events.add("startAction " + name + " " + steps);
+        }
+
+        @Override
+        public void stopAction()
+        {
+            events.add("stopAction");
+        }
+
+        @Override
+        public void nextStep(String stepName, int step, int subSteps)
+        {
+            events.add("nextStep " + stepName + " " + step + " " + subSteps);
+        }
+
+        @Override
+        public void setSubStepNo(int subSteps)
+        {
+            events.add("setSubStepNo " + subSteps);
+        }
+
+        @Override
+        public void progress(String message)
+        {
+            events.add("progress " + message);
+        }
+
+        @Override
+        public void progress(int subStep, String message)
+        {
+            events.add("progress " + subStep + " " + message);
+        }
+
+        @Override
+        public void restartAction(String name, String overallMessage, String tip, int steps)
+        {
+            events.add("restartAction " + name);
+        }
+    }
+}
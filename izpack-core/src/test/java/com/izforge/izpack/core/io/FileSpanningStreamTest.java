@@ -24,12 +24,17 @@ package com.izforge.izpack.core.io;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.Random;
 
+import org.apache.commons.io.FileUtils;
+
 import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
@@ -71,7 +76,8 @@ public class FileSpanningStreamTest
         assertTrue(volumes > 2);
         checkVolumes(basePath, maxSize, volumes);
 
-        FileSpanningInputStream spanningInputStream = new FileSpanningInputStream(volume, volumes);
+        FileSpanningInputStream spanningInputStream = new FileSpanningInputStream(volume, volumes,
+                                                                                  spanningOutputStream.getIndex());
         for (int i = 0; i < 1000; ++i)
         {
             assertEquals(i, spanningInputStream.getFilePointer());
@@ -108,7 +114,8 @@ public class FileSpanningStreamTest
         assertTrue(volumes > 2);
         checkVolumes(basePath, maxSize, volumes);
 
-        FileSpanningInputStream spanningInputStream = new FileSpanningInputStream(volume, volumes);
+        FileSpanningInputStream spanningInputStream = new FileSpanningInputStream(volume, volumes,
+                                                                                  spanningOutputStream.getIndex());
         byte[] read = new byte[written.length];
         assertEquals(written.length, spanningInputStream.read(read));
         assertArrayEquals(written, read);
@@ -137,7 +144,8 @@ public class FileSpanningStreamTest
 
         // open the volumes
         int volumes = spanningOutputStream.getVolumes();
-        FileSpanningInputStream spanningInputStream = new FileSpanningInputStream(volume, volumes);
+        FileSpanningInputStream spanningInputStream = new FileSpanningInputStream(volume, volumes,
+                                                                                  spanningOutputStream.getIndex());
         assertEquals(0, spanningInputStream.getFilePointer());
 
         // skip half of the data
@@ -161,6 +169,139 @@ public class FileSpanningStreamTest
         spanningInputStream.close();
     }
 
+    /**
+     * Verifies that {@link FileSpanningInputStream#skip(long)} and {@link FileSpanningInputStream#seek(long)} only
+     * access the volumes holding the data read.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testSeekWithoutIntermediateVolumes() throws IOException
+    {
+        File volume = new File(temporaryFolder.getRoot(), "volume");
+        String basePath = volume.getPath();
+        FileSpanningOutputStream spanningOutputStream = new FileSpanningOutputStream(volume, 1024, 1024, 4096);
+
+        byte[] written = new byte[100000];
+        new Random().nextBytes(written);
+        spanningOutputStream.write(written);
+        spanningOutputStream.close();
+
+        int volumes = spanningOutputStream.getVolumes();
+        VolumeIndex index = spanningOutputStream.getIndex();
+        assertEquals(25, index.size());
+        assertEquals(written.length, index.getLength());
+
+        // remove all volumes between the first, and that holding the last block
+        VolumeIndex.Block last = index.get(index.size() - 1);
+        assertTrue(last.getVolume() > 2);
+        for (int i = 1; i < last.getVolume(); ++i)
+        {
+            assertTrue(new File(basePath + "." + i).delete());
+        }
+
+        FileSpanningInputStream spanningInputStream = new FileSpanningInputStream(volume, volumes, index);
+        int skip = (int) last.getPosition() + 10;
+        assertEquals(skip, spanningInputStream.skip(skip));
+        assertEquals(written[skip], (byte) spanningInputStream.read());
+
+        // seek backwards within the block
+        spanningInputStream.seek(last.getPosition());
+        byte[] read = new byte[last.getSize()];
+        assertEquals(read.length, spanningInputStream.read(read));
+        for (int i = 0; i < read.length; ++i)
+        {
+            assertEquals(written[i + (int) last.getPosition()], read[i]);
+        }
+        assertEquals(-1, spanningInputStream.read());
+        assertEquals(0, spanningInputStream.skip(10));
+
+        // seeking to a block in a removed volume fails when read
+        spanningInputStream.seek(index.get(index.size() / 2).getPosition());
+        try
+        {
+            spanningInputStream.read();
+            fail("Expected VolumeNotFoundException");
+        }
+        catch (VolumeNotFoundException expected)
+        {
+            // expected behaviour
+        }
+        spanningInputStream.close();
+    }
+
+    /**
+     * Verifies that a corrupt block is detected, and re-read from the volume supplied by the {@link VolumeLocator}.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testCorruptBlock() throws IOException
+    {
+        File volume = new File(temporaryFolder.getRoot(), "volume");
+        FileSpanningOutputStream spanningOutputStream = new FileSpanningOutputStream(volume, 2048, 2048, 4096);
+
+        byte[] written = new byte[50000];
+        new Random().nextBytes(written);
+        spanningOutputStream.write(written);
+        spanningOutputStream.close();
+
+        int volumes = spanningOutputStream.getVolumes();
+        VolumeIndex index = spanningOutputStream.getIndex();
+        VolumeIndex.Block block = index.get(5);
+        final File corrupt = new File(volume.getPath() + "." + block.getVolume());
+        final File copy = temporaryFolder.newFile("copy");
+        FileUtils.copyFile(corrupt, copy);
+
+        // corrupt the first byte of the block
+        RandomAccessFile file = new RandomAccessFile(corrupt, "rw");
+        file.seek(block.getOffset());
+        int b = file.read();
+        file.seek(block.getOffset());
+        file.write(~b);
+        file.close();
+
+        FileSpanningInputStream spanningInputStream = new FileSpanningInputStream(volume, volumes, index);
+        spanningInputStream.seek(block.getPosition());
+        try
+        {
+            spanningInputStream.read();
+            fail("Expected CorruptVolumeException");
+        }
+        catch (CorruptVolumeException expected)
+        {
+            assertEquals(corrupt.getAbsolutePath(), expected.getVolumename());
+        }
+
+        // blocks before the corrupt block can still be read
+        spanningInputStream.seek(0);
+        assertEquals(written[0], (byte) spanningInputStream.read());
+
+        // now supply an uncorrupted copy of the volume
+        final boolean[] located = {false};
+        spanningInputStream.setLocator(new VolumeLocator()
+        {
+            @Override
+            public File getVolume(String path, boolean corrupted)
+            {
+                assertEquals(corrupt.getAbsolutePath(), path);
+                assertTrue(corrupted);
+                located[0] = true;
+                return copy;
+            }
+        });
+        assertFalse(located[0]);
+        spanningInputStream.seek(block.getPosition());
+        byte[] read = new byte[written.length - (int) block.getPosition()];
+        assertEquals(read.length, spanningInputStream.read(read));
+        assertTrue(located[0]);
+        for (int i = 0; i < read.length; ++i)
+        {
+            assertEquals(written[i + (int) block.getPosition()], read[i]);
+        }
+        spanningInputStream.close();
+    }
+
     /**
      * Writes 10GB of random data and verifies it can be read back in.
      *
@@ -191,7 +332,8 @@ public class FileSpanningStreamTest
         System.out.println("Volume: " + volume.getPath() + ", compressed size=" + volume.length());
 
         int volumes = spanningOutputStream.getVolumes();
-        FileSpanningInputStream spanningInputStream = new FileSpanningInputStream(volume, volumes);
+        FileSpanningInputStream spanningInputStream = new FileSpanningInputStream(volume, volumes,
+                                                                                  spanningOutputStream.getIndex());
         byte[] read = new byte[written.length];
 
         for (int i = 0; i < count; ++i)
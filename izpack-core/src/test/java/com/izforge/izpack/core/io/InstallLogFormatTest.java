@@ -0,0 +1,143 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+
+/**
+ * Tests the {@link InstallLogFormat}.
+ */
+public class InstallLogFormatTest
+{
+
+    /**
+     * Verifies that files are read back in the order they were written, with their sizes and checksums.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testReadWrite() throws IOException
+    {
+        List<String> paths = Arrays.asList("/opt/app", "/opt/app/lib", "/opt/app/lib/a.jar", "/opt/app/lib/b.jar",
+                                           "/opt/app/bin/run.sh", "/opt/app/lib/c.jar", "C:\\app\\readme.txt",
+                                           "relative", "/opt/app/\uD83D\uDE00a", "/opt/app/\uD83D\uDE01b");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InstallLogFormat.Writer writer = new InstallLogFormat.Writer(bytes, "/opt/app", true, true);
+        for (int i = 0; i < paths.size(); ++i)
+        {
+            writer.add(paths.get(i), (i % 2 == 0) ? -1 : i * 1000, (i % 3 == 0) ? -1 : 0xFFFFFFFFL - i);
+        }
+        writer.close();
+
+        InstallLogFormat.Reader reader = new InstallLogFormat.Reader(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals("/opt/app", reader.getInstallPath());
+        for (int i = 0; i < paths.size(); ++i)
+        {
+            InstallLogFormat.Entry entry = reader.next();
+            assertEquals(paths.get(i), entry.getPath());
+            assertEquals((i % 2 == 0) ? -1 : i * 1000, entry.getSize());
+            assertEquals((i % 3 == 0) ? -1 : 0xFFFFFFFFL - i, entry.getChecksum());
+        }
+        assertNull(reader.next());
+        assertNull(reader.next());
+        reader.close();
+    }
+
+    /**
+     * Verifies that sizes and checksums are omitted when not requested, and that shared prefixes aren't repeated.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testFrontCoding() throws IOException
+    {
+        String dir = "/opt/some/very/long/installation/directory/";
+        List<String> paths = new ArrayList<String>();
+        int length = 0;
+        for (int i = 0; i < 100; ++i)
+        {
+            String path = dir + "sub" + (i / 10) + "/file-with-a-long-name-" + i;
+            paths.add(path);
+            length += path.getBytes(StandardCharsets.UTF_8).length;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InstallLogFormat.Writer writer = new InstallLogFormat.Writer(bytes, dir, false, false);
+        for (String path : paths)
+        {
+            writer.add(path, 123, 456);
+        }
+        writer.close();
+        assertTrue(bytes.size() < length / 10);
+
+        InstallLogFormat.Reader reader = new InstallLogFormat.Reader(new ByteArrayInputStream(bytes.toByteArray()));
+        for (String path : paths)
+        {
+            InstallLogFormat.Entry entry = reader.next();
+            assertEquals(path, entry.getPath());
+            assertEquals(-1, entry.getSize());
+            assertEquals(-1, entry.getChecksum());
+        }
+        assertNull(reader.next());
+    }
+
+    /**
+     * Verifies that a text log is rejected.
+     */
+    @Test
+    public void testInvalid()
+    {
+        try
+        {
+            new InstallLogFormat.Reader(new ByteArrayInputStream("/opt/app\n/opt/app/file\n".getBytes()));
+            fail("Expected IOException");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Tests {@link InstallLogFormat#getSharedPrefix(String, String)}.
+     */
+    @Test
+    public void testSharedPrefix()
+    {
+        assertEquals(0, InstallLogFormat.getSharedPrefix("abc", ""));
+        assertEquals(2, InstallLogFormat.getSharedPrefix("abc", "abd"));
+        assertEquals(3, InstallLogFormat.getSharedPrefix("abc", "abcd"));
+        // a surrogate pair isn't split
+        assertEquals(1, InstallLogFormat.getSharedPrefix("a\uD83D\uDE00", "a\uD83D\uDE01"));
+    }
+}
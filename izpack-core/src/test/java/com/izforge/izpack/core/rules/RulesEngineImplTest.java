@@ -676,6 +676,54 @@ public class RulesEngineImplTest
         assertTrue(rules2.isConditionTrue("izpack.windowsinstall.nt5OrHigher"));
     }
 
+    /**
+     * Verifies that conditions parsed from expressions are cached, and that the results of conditions depending only
+     * on variables are reused until the variables change.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCachedConditions() throws Exception
+    {
+        InstallData installData = new AutomatedInstallData(new DefaultVariables(), Platforms.LINUX);
+        RulesEngineImpl rules = (RulesEngineImpl) createRulesEngine(installData);
+        IXMLParser parser = new XMLParser();
+        rules.analyzeXml(parser.parse(getClass().getResourceAsStream("conditions.xml")));
+        rules.resolveConditions();
+
+        // expressions are parsed once
+        Condition condition = rules.getCondition("variable1+!variable2");
+        assertEquals(condition, rules.getCondition("variable1+!variable2"));
+        assertEquals(1, rules.getExpressionCacheMisses());
+        assertEquals(1, rules.getExpressionCacheHits());
+
+        // results are reused until a variable changes
+        installData.setVariable("setup.type", "standard");
+        assertTrue(rules.isConditionTrue("variable1+!variable2"));
+        assertTrue(rules.isConditionTrue("variable1+!variable2"));
+        assertEquals(1, rules.getResultCacheMisses());
+        assertEquals(1, rules.getResultCacheHits());
+        assertEquals(1, rules.getEvaluations());
+
+        // setting a variable to its current value doesn't invalidate results
+        installData.setVariable("setup.type", "standard");
+        assertTrue(rules.isConditionTrue("variable1+!variable2"));
+        assertEquals(2, rules.getResultCacheHits());
+
+        installData.setVariable("setup.type", "expert");
+        assertFalse(rules.isConditionTrue("variable1+!variable2"));
+        assertEquals(2, rules.getResultCacheMisses());
+        assertEquals(2, rules.getEvaluations());
+
+        // adding a condition clears the caches
+        VariableCondition expert = new VariableCondition("setup.type", "expert");
+        expert.setId("expert");
+        expert.setInstallData(installData);
+        rules.addCondition(expert);
+        assertTrue(rules.isConditionTrue("expert+!variable1"));
+        assertEquals(2, rules.getExpressionCacheMisses());
+    }
+
     /**
      * Checks conditions read from the test <em>conditions.xml</em> file.
      *
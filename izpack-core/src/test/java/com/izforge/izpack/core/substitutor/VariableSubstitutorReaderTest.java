@@ -0,0 +1,224 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.substitutor;
+
+import com.izforge.izpack.api.data.Variables;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.core.data.DefaultVariables;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Tests the {@link VariableSubstitutorReader}.
+ * <p/>
+ * Verifies that reading in blocks produces the same output as reading a character at a time, regardless of how the
+ * source and the destination are split.
+ */
+public class VariableSubstitutorReaderTest
+{
+    /**
+     * Inputs exercising variables at buffer boundaries, unterminated and malformed variables, and escaping.
+     */
+    private static final String[] CORPUS = {
+            "",
+            "no variables at all",
+            "$A",
+            "${A}",
+            "$A$B",
+            "${A}${B}",
+            "prefix $A suffix",
+            "prefix ${A} suffix ${B}",
+            "$UNDEFINED and ${UNDEFINED}",
+            "${A",
+            "${A ",
+            "$",
+            "$$",
+            "${",
+            "${}",
+            "$ {A}",
+            "%A %{B} %{C}%",
+            "@A@ @{B}@ @C @D",
+            "@{A}x@",
+            "@@",
+            "${SPECIAL}",
+            "$SPECIAL and %SPECIAL and @SPECIAL@",
+            "key=${SPECIAL}\nother=$A\n",
+            "<a b=\"${SPECIAL}\"/>",
+            "${ENV[IZPACK_UNDEFINED_ENVIRONMENT_VARIABLE]} ${SYSTEM[file.separator]}",
+            "${A}}",
+            "$A.B $A-B $A_B",
+            "${EMPTY}${EMPTY}$EMPTY",
+            "tab\t$A\ttab",
+            "end with $",
+            "end with ${",
+            "end with @",
+            "mixed $A ${B} %A %{B} @A@ @{B}@ unicode é€ $A"
+    };
+
+    /**
+     * The variables.
+     */
+    private Variables variables;
+
+    /**
+     * Sets up the test case.
+     */
+    @Before
+    public void setUp()
+    {
+        variables = new DefaultVariables();
+        variables.set("A", "value-a");
+        variables.set("B", "value b");
+        variables.set("C", "c");
+        variables.set("D", "");
+        variables.set("EMPTY", "");
+        variables.set("A.B", "dotted");
+        variables.set("SPECIAL", " <x> & 'y' \"z\"\t\\ \r\n");
+    }
+
+    /**
+     * Verifies that block reads give the same output as single character reads, for each substitution type.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testBlockReadsMatchCharacterReads() throws IOException
+    {
+        for (SubstitutionType type : SubstitutionType.values())
+        {
+            for (boolean bracesRequired : new boolean[]{false, true})
+            {
+                for (String input : CORPUS)
+                {
+                    checkInput(input, type, bracesRequired);
+                }
+                checkInput(largeInput(), type, bracesRequired);
+            }
+        }
+    }
+
+    /**
+     * Verifies the output of a simple substitution.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testSubstitution() throws IOException
+    {
+        assertEquals("prefix value-a suffix value b $UNDEFINED",
+                     readBlocks(new StringReader("prefix $A suffix ${B} $UNDEFINED"), SubstitutionType.TYPE_PLAIN,
+                                false, 4096));
+        variables.set("XML", "<a>");
+        assertEquals("&lt;a&gt;", readBlocks(new StringReader("${XML}"), SubstitutionType.TYPE_XML, false, 4096));
+    }
+
+    /**
+     * Verifies that an input produces the same output however it is read.
+     *
+     * @param input          the input
+     * @param type           the substitution type
+     * @param bracesRequired determines if braces are required
+     * @throws IOException for any I/O error
+     */
+    private void checkInput(String input, SubstitutionType type, boolean bracesRequired) throws IOException
+    {
+        String expected = readCharacters(new StringReader(input), type, bracesRequired);
+        String message = type + ", braces=" + bracesRequired + ": " + input;
+        for (int size : new int[]{1, 2, 3, 7, 4096})
+        {
+            assertEquals(message, expected, readBlocks(new StringReader(input), type, bracesRequired, size));
+            assertEquals(message, expected, readBlocks(new TrickleReader(input), type, bracesRequired, size));
+        }
+    }
+
+    /**
+     * Reads a source a character at a time.
+     */
+    private String readCharacters(Reader source, SubstitutionType type, boolean bracesRequired) throws IOException
+    {
+        StringBuilder result = new StringBuilder();
+        try (Reader reader = new VariableSubstitutorReader(source, variables, type, bracesRequired))
+        {
+            int c;
+            while ((c = reader.read()) != -1)
+            {
+                result.append((char) c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Reads a source in blocks of the specified size.
+     */
+    private String readBlocks(Reader source, SubstitutionType type, boolean bracesRequired, int size)
+            throws IOException
+    {
+        StringBuilder result = new StringBuilder();
+        char[] buffer = new char[size];
+        try (Reader reader = new VariableSubstitutorReader(source, variables, type, bracesRequired))
+        {
+            int read;
+            while ((read = reader.read(buffer, 0, size)) != -1)
+            {
+                result.append(buffer, 0, read);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Creates an input larger than the reader's buffer, so that variables straddle buffer boundaries.
+     */
+    private static String largeInput()
+    {
+        StringBuilder result = new StringBuilder();
+        int i = 0;
+        while (result.length() < 40000)
+        {
+            result.append(CORPUS[i++ % CORPUS.length]).append(' ');
+        }
+        return result.toString();
+    }
+
+    /**
+     * A reader that returns at most one character per read, to exercise buffer refills.
+     */
+    private static class TrickleReader extends StringReader
+    {
+        TrickleReader(String s)
+        {
+            super(s);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException
+        {
+            return super.read(cbuf, off, Math.min(len, 1));
+        }
+    }
+}
@@ -20,7 +20,10 @@
 package com.izforge.izpack.merge.jar;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 import java.io.File;
 import java.io.FileFilter;
@@ -31,10 +34,14 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 
 import com.google.inject.Inject;
+import org.apache.commons.io.IOUtils;
 import org.hamcrest.core.Is;
 import org.hamcrest.core.StringContains;
 import org.junit.Test;
@@ -50,6 +57,7 @@ import com.izforge.izpack.merge.resolve.PathResolver;
 import com.izforge.izpack.merge.resolve.ResolveUtils;
 import com.izforge.izpack.test.ContainerImport;
 import com.izforge.izpack.test.junit.GuiceRunner;
+import com.izforge.izpack.util.compress.ZipArchiveJarOutputStream;
 
 /**
  * Test for merge jar
@@ -189,7 +197,7 @@ public class JarMergeTest
         // now merge to a mocked JarOutputStream
         URL url = jar.toURI().toURL();
         String jarPath = ResolveUtils.processUrlToJarPath(url);
-        JarMerge merge = new JarMerge(url, jarPath, new HashMap<OutputStream, List<String>>());
+        JarMerge merge = new JarMerge(url, jarPath, new HashMap<OutputStream, Set<String>>());
         JarOutputStream output = Mockito.mock(JarOutputStream.class);
         merge.merge(output);
 
@@ -202,4 +210,86 @@ public class JarMergeTest
         assertEquals("META-INF/ok2", allValues.get(1).getName());
     }
 
+    /**
+     * Verifies that only the entries under a package are merged, in jar order, and that entries already merged to
+     * an output stream are skipped.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testMergePackage() throws IOException
+    {
+        File jar = File.createTempFile("pkgtest", ".jar");
+        FileOutputStream file = new FileOutputStream(jar);
+        JarOutputStream stream = new JarOutputStream(file);
+        stream.putNextEntry(new ZipEntry("com/a/sub/D.class"));  // should merge
+        stream.closeEntry();
+        stream.putNextEntry(new ZipEntry("com/ab/C.class"));     // not in package
+        stream.closeEntry();
+        stream.putNextEntry(new ZipEntry("com/a/B.class"));      // should merge
+        stream.closeEntry();
+        stream.putNextEntry(new ZipEntry("com/a/B$1.class"));    // should merge
+        stream.closeEntry();
+        stream.putNextEntry(new ZipEntry("com/z.txt"));          // not in package
+        stream.closeEntry();
+        stream.close();
+
+        HashMap<OutputStream, Set<String>> mergeContent = new HashMap<OutputStream, Set<String>>();
+        JarOutputStream output = Mockito.mock(JarOutputStream.class);
+        new JarMerge(jar.getAbsolutePath(), "com/a/", "dest/", mergeContent).merge(output);
+        new JarMerge(jar.getAbsolutePath(), "com/a/", "dest/", mergeContent).merge(output);
+
+        ArgumentCaptor<ZipEntry> captor = ArgumentCaptor.forClass(ZipEntry.class);
+        Mockito.verify(output, Mockito.times(3)).putNextEntry(captor.capture());
+        List<ZipEntry> allValues = captor.getAllValues();
+        assertEquals("dest/sub/D.class", allValues.get(0).getName());
+        assertEquals("dest/B.class", allValues.get(1).getName());
+        assertEquals("dest/B$1.class", allValues.get(2).getName());
+    }
+
+    /**
+     * Verifies that entries merged to a {@link ZipArchiveJarOutputStream} are copied without being recompressed.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testMergeRaw() throws IOException
+    {
+        byte[] content = new byte[64 * 1024];
+        for (int i = 0; i < content.length; ++i)
+        {
+            content[i] = (byte) (i % 7);
+        }
+        File jar = File.createTempFile("rawtest", ".jar");
+        JarOutputStream stream = new JarOutputStream(new FileOutputStream(jar));
+        stream.setLevel(Deflater.BEST_SPEED);
+        stream.putNextEntry(new ZipEntry("com/a/B.class"));
+        stream.write(content);
+        stream.closeEntry();
+        stream.putNextEntry(new ZipEntry("com/a/empty/"));
+        stream.closeEntry();
+        stream.close();
+
+        File installer = File.createTempFile("installer", ".jar");
+        HashMap<OutputStream, Set<String>> mergeContent = new HashMap<OutputStream, Set<String>>();
+        try (ZipArchiveJarOutputStream output = new ZipArchiveJarOutputStream(installer.toPath()))
+        {
+            output.setLevel(Deflater.BEST_COMPRESSION);
+            output.putNextEntry(new ZipEntry("dest/empty/"));   // already present, so not merged
+            output.closeEntry();
+            new JarMerge(jar.getAbsolutePath(), "com/a/", "dest/", mergeContent).merge(output);
+            new JarMerge(jar.getAbsolutePath(), "com/", "dest/", mergeContent).merge(output); // already merged
+        }
+
+        try (JarFile source = new JarFile(jar); JarFile target = new JarFile(installer))
+        {
+            ZipEntry expected = source.getEntry("com/a/B.class");
+            ZipEntry copied = target.getEntry("dest/B.class");
+            assertEquals(expected.getCompressedSize(), copied.getCompressedSize());
+            assertEquals(expected.getCrc(), copied.getCrc());
+            assertArrayEquals(content, IOUtils.toByteArray(target.getInputStream(copied)));
+            assertNotNull(target.getEntry("dest/empty/"));
+            assertNull(target.getEntry("dest/a/B.class"));
+        }
+    }
 }
@@ -22,24 +22,42 @@
 package com.izforge.izpack.event;
 
 import java.io.File;
+import java.util.List;
+import java.util.logging.Logger;
 
 import com.google.inject.Inject;
 import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.event.ProgressListener;
 import com.izforge.izpack.api.exception.InstallerException;
 import com.izforge.izpack.event.AbstractProgressInstallerListener;
-import com.izforge.izpack.util.FileExecutor;
 import com.izforge.izpack.util.OsVersion;
+import com.izforge.izpack.util.file.FilePermissions;
 
 /**
  * <p>InstallerListener for file and directory permissions
  * on Unix.</p>
+ * <p/>
+ * Permissions are set in-process where possible. Any that must be set by <tt>chmod</tt> are set by a single
+ * invocation for many files after the packs are installed.
+ * <p/>
+ * The owner and group are set from the <tt>permission.owner</tt> and <tt>permission.group</tt> additional data,
+ * if present. Likewise, those that can't be set in-process are set by batched <tt>chown</tt> invocations.
  *
  * @author Klaus Bartz
  */
 public class ChmodInstallerListener extends AbstractProgressInstallerListener
 {
+    /**
+     * Sets the permissions.
+     */
+    private final FilePermissions permissions = new FilePermissions();
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(ChmodInstallerListener.class.getName());
 
     /**
      * Constructs an {@code ChmodInstallerListener}.
@@ -83,6 +101,7 @@ public class ChmodInstallerListener extends AbstractProgressInstallerListener
         {
             chmod(filePath, fileVal);
         }
+        chown(filePath, pf);
     }
 
     /**
@@ -114,11 +133,28 @@ public class ChmodInstallerListener extends AbstractProgressInstallerListener
             }
             chmod(dirPath, dirVal);
         }
+        chown(dirPath, pf);
+    }
+
+    /**
+     * Sets any permissions and ownership that couldn't be set in-process.
+     *
+     * @param packs    the installed packs
+     * @param listener the progress listener
+     */
+    @Override
+    public void afterPacks(List<Pack> packs, ProgressListener listener)
+    {
+        List<String> failed = permissions.flush();
+        if (!failed.isEmpty())
+        {
+            logger.warning("Failed to set permissions or ownership of " + failed.size() + " files, including: "
+                                   + failed.get(0));
+        }
     }
 
-    private void chmod(File path, int permissions)
+    private void chmod(File path, int mode)
     {
-        String pathSep = System.getProperty("path.separator");
         if (OsVersion.IS_WINDOWS)
         {
             throw new InstallerException("Sorry, chmod not supported yet on windows; use this class OS dependant.");
@@ -128,10 +164,29 @@ public class ChmodInstallerListener extends AbstractProgressInstallerListener
         {
             return;
         }
-        String permStr = Integer.toOctalString(permissions);
-        String[] params = {"chmod", permStr, path.getAbsolutePath()};
-        String[] output = new String[2];
-        FileExecutor fe = new FileExecutor();
-        fe.executeCommand(params, output);
+        permissions.setPermissions(path, mode);
+    }
+
+    /**
+     * Sets the owner and group of a file, if specified by the <tt>permission.owner</tt> and
+     * <tt>permission.group</tt> additional data.
+     *
+     * @param path the file or directory
+     * @param pf   the pack file
+     */
+    private void chown(File path, PackFile pf)
+    {
+        Object owner = pf.getAdditionals().get("permission.owner");
+        Object group = pf.getAdditionals().get("permission.group");
+        if (path == null || (!(owner instanceof String) && !(group instanceof String)))
+        {
+            return;
+        }
+        if (OsVersion.IS_WINDOWS)
+        {
+            throw new InstallerException("Sorry, chown not supported yet on windows; use this class OS dependant.");
+        }
+        permissions.setOwner(path, (owner instanceof String) ? (String) owner : null,
+                             (group instanceof String) ? (String) group : null);
     }
 }
@@ -44,6 +44,7 @@ import java.net.URL;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 import java.util.logging.ConsoleHandler;
@@ -69,6 +70,11 @@ public class Installer
      */
     private static int installerMode = 0;
 
+    /**
+     * The time {@link #main} was invoked, in nanoseconds, until the first panel is shown.
+     */
+    private static final AtomicLong startTime = new AtomicLong();
+
     /*
      * The main method (program entry point).
      *
@@ -76,6 +82,7 @@ public class Installer
      */
     public static void main(String[] args)
     {
+        startTime.set(System.nanoTime());
         try
         {
             Installer installer = new Installer();
@@ -351,4 +358,18 @@ public class Installer
         return installerMode;
     }
 
+    /**
+     * Invoked when a panel is shown, to log the start-up time, i.e. the time from {@link #main} to the first panel.
+     * <p/>
+     * Subsequent invocations, and invocations when the installer wasn't started via {@link #main}, are ignored.
+     */
+    public static void panelShown()
+    {
+        long start = startTime.getAndSet(0);
+        if (start != 0)
+        {
+            logger.info("First panel shown " + (System.nanoTime() - start) / 1000000 + " ms after start");
+        }
+    }
+
 }
@@ -25,6 +25,7 @@ import java.util.List;
 
 import com.izforge.izpack.api.container.Container;
 import com.izforge.izpack.api.data.InstallData;
+import com.izforge.izpack.installer.bootstrap.Installer;
 import com.izforge.izpack.installer.panel.AbstractPanels;
 import com.izforge.izpack.installer.panel.Panels;
 
@@ -102,6 +103,7 @@ public class ConsolePanels extends AbstractPanels<ConsolePanelView, ConsolePanel
         newPanel.executePreActivationActions();
         if (action != null)
         {
+            Installer.panelShown();
             result = action.run(newPanel);
         }
 
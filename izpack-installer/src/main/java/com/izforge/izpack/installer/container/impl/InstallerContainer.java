@@ -35,6 +35,8 @@ import com.izforge.izpack.merge.resolve.MergeableResolver;
 import com.izforge.izpack.merge.resolve.PathResolver;
 import com.izforge.izpack.util.*;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 
 /**
@@ -43,6 +45,11 @@ import java.util.Properties;
 public abstract class InstallerContainer extends AbstractContainer
 {
 
+    /**
+     * System property to create the expensive singletons on several threads at start-up, rather than on first use.
+     */
+    public static final String EAGER = "izpack.installer.eager";
+
     /**
      * Sets the locale.
      *
@@ -63,8 +70,25 @@ public abstract class InstallerContainer extends AbstractContainer
     @Override
     protected void fillContainer()
     {
+        setFlat(true);
         registerComponents();
         resolveComponents();
+        if (Boolean.getBoolean(EAGER))
+        {
+            createComponents(getEagerComponents());
+        }
+    }
+
+    /**
+     * Returns the types of the components to create at start-up, if the {@link #EAGER} system property is set.
+     * <p/>
+     * These must be safe to create outside the event dispatch thread.
+     *
+     * @return the component types
+     */
+    protected List<Class<?>> getEagerComponents()
+    {
+        return Arrays.<Class<?>>asList(Resources.class, Locales.class, RulesEngine.class);
     }
 
     /**
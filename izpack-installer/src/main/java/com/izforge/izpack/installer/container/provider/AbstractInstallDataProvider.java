@@ -14,7 +14,6 @@ import org.apache.commons.io.IOUtils;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
 import java.net.InetAddress;
 import java.util.*;
 import java.util.logging.Level;
@@ -98,15 +97,14 @@ public abstract class AbstractInstallDataProvider<T> implements Provider<T>
 
         // We read the packs data
         InputStream in = resources.getInputStream("packs.info");
-        ObjectInputStream objIn = new ObjectInputStream(in);
         List<PackInfo> packs;
         try
         {
-            packs = (List<PackInfo>) objIn.readObject();
+            packs = PackInfoFormat.read(in, resources::getInputStream);
         }
         finally
         {
-            IOUtils.closeQuietly(objIn);
+            IOUtils.closeQuietly(in);
         }
 
         List<Pack> availablePacks = new ArrayList<Pack>();
@@ -4,12 +4,18 @@ import com.google.inject.Inject;
 import com.izforge.izpack.api.data.ExecutableFile;
 import com.izforge.izpack.api.merge.Mergeable;
 import com.izforge.izpack.api.rules.RulesEngine;
+import com.izforge.izpack.core.io.InstallLogFormat;
 import com.izforge.izpack.data.CustomData;
 import com.izforge.izpack.merge.resolve.PathResolver;
 import com.izforge.izpack.util.IoHelper;
 import org.apache.commons.io.IOUtils;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -264,6 +270,10 @@ public class UninstallDataWriter
 
     /**
      * Writes the file log.
+     * <p/>
+     * The log in the uninstaller jar is written in the {@link InstallLogFormat}, with the size of each installed file
+     * so that the uninstaller can detect files modified since installation. The external log, if any, lists one path
+     * per line.
      *
      * @param extLogWriter the external log writer. May be <tt>null</tt>
      * @throws IOException for any I/O error
@@ -271,44 +281,57 @@ public class UninstallDataWriter
     private void writeFilesLog(BufferedWriter extLogWriter) throws IOException
     {
         List<String> files = uninstallData.getUninstalableFilesList();
+        String jarPath = uninstallData.getUninstallerJarFilename();
 
         jar.putNextEntry(new JarEntry("install.log"));
-        BufferedWriter logWriter = new BufferedWriter(new OutputStreamWriter(jar));
-        logWriter.write(installData.getInstallPath());
-        logWriter.newLine();
+        InstallLogFormat.Writer logWriter = new InstallLogFormat.Writer(jar, installData.getInstallPath(), true,
+                                                                        false);
         Iterator<String> iter = files.iterator();
-        if (extLogWriter != null)
+        while (iter.hasNext())
         {
-            // Write intern (in uninstaller.jar) and extern log file.
-            while (iter.hasNext())
+            String txt = iter.next();
+            // the uninstaller jar is still being written, so its size isn't known
+            logWriter.add(txt, txt.equals(jarPath) ? -1 : getSize(txt), -1);
+            if (extLogWriter != null)
             {
-                String txt = iter.next();
-                logWriter.write(txt);
                 extLogWriter.write(txt);
                 if (iter.hasNext())
                 {
-                    logWriter.newLine();
                     extLogWriter.newLine();
                 }
             }
-            logWriter.flush();
+        }
+        logWriter.finish();
+        if (extLogWriter != null)
+        {
             extLogWriter.flush();
             extLogWriter.close();
         }
-        else
+        jar.closeEntry();
+    }
+
+    /**
+     * Returns the size of an installed file.
+     *
+     * @param path the file path
+     * @return the file size, or {@code -1} if the file is a directory or doesn't exist
+     */
+    private long getSize(String path)
+    {
+        try
         {
-            while (iter.hasNext())
-            {
-                String txt = iter.next();
-                logWriter.write(txt);
-                if (iter.hasNext())
-                {
-                    logWriter.newLine();
-                }
-            }
-            logWriter.flush();
+            BasicFileAttributes attributes = Files.readAttributes(Paths.get(path), BasicFileAttributes.class,
+                                                                  LinkOption.NOFOLLOW_LINKS);
+            return attributes.isRegularFile() ? attributes.size() : -1;
+        }
+        catch (IOException exception)
+        {
+            return -1;
+        }
+        catch (InvalidPathException exception)
+        {
+            return -1;
         }
-        jar.closeEntry();
     }
 
     /**
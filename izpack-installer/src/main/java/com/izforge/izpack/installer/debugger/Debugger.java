@@ -34,6 +34,8 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.util.Enumeration;
 import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.prefs.Preferences;
 
 import javax.swing.BorderFactory;
@@ -53,6 +55,7 @@ import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.data.Panel;
 import com.izforge.izpack.api.rules.Condition;
 import com.izforge.izpack.api.rules.RulesEngine;
+import com.izforge.izpack.core.rules.RulesEngineImpl;
 import com.izforge.izpack.gui.ButtonFactory;
 import com.izforge.izpack.gui.IconsDatabase;
 
@@ -75,6 +78,8 @@ public class Debugger extends WindowAdapter
 
     private Properties lasttimevariables;
 
+    private static final Logger logger = Logger.getLogger(Debugger.class.getName());
+
     public Debugger(InstallData installdata, IconsDatabase icons, RulesEngine rules, Color buttonsHColor)
     {
         idata = installdata;
@@ -121,6 +126,21 @@ public class Debugger extends WindowAdapter
             conditionhistorymodel.setValue(condition, rules.isConditionTrue(condition), comment);
         }
         conditionhistorymodel.fireTableDataChanged();
+        logConditionStatistics();
+    }
+
+    private void logConditionStatistics()
+    {
+        if (rules instanceof RulesEngineImpl && logger.isLoggable(Level.FINE))
+        {
+            RulesEngineImpl impl = (RulesEngineImpl) rules;
+            logger.fine("Conditions: " + impl.getEvaluations() + " evaluations in "
+                                + (impl.getEvaluationTime() / 1000000) + "ms, results reused "
+                                + impl.getResultCacheHits() + "/"
+                                + (impl.getResultCacheHits() + impl.getResultCacheMisses())
+                                + ", expressions reused " + impl.getExpressionCacheHits() + "/"
+                                + (impl.getExpressionCacheHits() + impl.getExpressionCacheMisses()));
+        }
     }
 
     private Properties getChangedVariables(Panel nextpanelmetadata, Panel lastpanelmetadata)
@@ -38,6 +38,7 @@ import com.izforge.izpack.gui.EtchedLineBorder;
 import com.izforge.izpack.gui.IconsDatabase;
 import com.izforge.izpack.gui.log.Log;
 import com.izforge.izpack.installer.base.InstallerBase;
+import com.izforge.izpack.installer.bootstrap.Installer;
 import com.izforge.izpack.installer.data.GUIInstallData;
 import com.izforge.izpack.installer.data.UninstallData;
 import com.izforge.izpack.installer.data.UninstallDataWriter;
@@ -632,6 +633,7 @@ public class InstallerFrame extends JFrame implements InstallerBase, InstallerVi
             String displayHiddenCondition = panel.getDisplayHiddenCondition();
             newView.panelActivate();
             panelsContainer.setVisible(true);
+            Installer.panelShown();
             if (iconLabel != null)
             {
                 if (!"UNKNOWN".equals(newPanel.getPanelId()))
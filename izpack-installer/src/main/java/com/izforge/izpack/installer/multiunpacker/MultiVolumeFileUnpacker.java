@@ -84,35 +84,13 @@ public class MultiVolumeFileUnpacker extends FileUnpacker
         long position = ((XPackFile) packFile).getArchiveFilePosition();
 
         long filePointer = volumes.getFilePointer();
-        if (filePointer < position)
+        if (filePointer != position)
         {
-            // need to skip to the correct position
-            logger.fine("Skipping bytes to get to file " + target.getName()
-                                + " (" + filePointer + "<" + position
-                                + ") target is: " + (position - filePointer));
-            skip(position - filePointer);
-        }
-
-        if (volumes.getFilePointer() > position)
-        {
-            throw new IOException("Error, can't access file in pack.");
+            // seek to the correct position. This only decompresses the block holding the file
+            logger.fine("Seeking to file " + target.getName() + " (" + filePointer + "->" + position + ")");
+            volumes.seek(position);
         }
 
         copy(packFile, volumes, target);
     }
-
-    /**
-     * Skips bytes in a stream.
-     *
-     * @param bytes the no. of bytes to skip
-     * @throws IOException for any I/O error, or if the no. of bytes skipped doesn't match that expected
-     */
-    protected void skip(long bytes) throws IOException
-    {
-        long skipped = volumes.skip(bytes);
-        if (skipped != bytes)
-        {
-            throw new IOException("Expected to skip: " + bytes + " in stream but skipped: " + skipped);
-        }
-    }
 }
@@ -34,6 +34,7 @@ import com.izforge.izpack.api.handler.Prompt;
 import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.io.FileSpanningInputStream;
+import com.izforge.izpack.core.io.VolumeIndex;
 import com.izforge.izpack.core.io.VolumeLocator;
 import com.izforge.izpack.installer.data.UninstallData;
 import com.izforge.izpack.installer.event.InstallerListeners;
@@ -131,6 +132,7 @@ public class MultiVolumeUnpacker extends UnpackerBase
             objectIn = new ObjectInputStream(in);
             int volumeCount = objectIn.readInt();
             String volumeName = objectIn.readUTF();
+            VolumeIndex index = VolumeIndex.read(objectIn);
             logger.fine("Reading from " + volumeCount + " volumes with basename " + volumeName + " ");
 
             String mediaPath = getInstallData().getMediaPath();
@@ -144,7 +146,7 @@ public class MultiVolumeUnpacker extends UnpackerBase
             {
                 volume = locator.getVolume(volume.getAbsolutePath(), false);
             }
-            volumes = new FileSpanningInputStream(volume, volumeCount);
+            volumes = new FileSpanningInputStream(volume, volumeCount, index);
             volumes.setLocator(locator);
         }
         catch (IOException exception)
@@ -184,6 +186,13 @@ public class MultiVolumeUnpacker extends UnpackerBase
         return unpacker;
     }
 
+    @Override
+    protected boolean isConcurrentWriteSupported(PackFile packFile, Pack pack, FileQueue queue)
+    {
+        // files are read from the volumes, not the pack stream
+        return false;
+    }
+
     @Override
     protected void skip(PackFile file, Pack pack, InputStream packInputStream) throws IOException
     {
@@ -22,12 +22,29 @@
 package com.izforge.izpack.installer.unpacker;
 
 import com.izforge.izpack.api.data.InstallData;
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.event.ProgressListener;
 import com.izforge.izpack.api.exception.ResourceException;
 import com.izforge.izpack.api.exception.ResourceInterruptedException;
 import com.izforge.izpack.api.exception.ResourceNotFoundException;
 import com.izforge.izpack.api.resource.Resources;
+import com.izforge.izpack.installer.web.PackDownloadManager;
+import com.izforge.izpack.util.IoHelper;
+import org.apache.commons.io.IOUtils;
 
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 
 /**
@@ -42,6 +59,11 @@ public abstract class AbstractPackResources implements PackResources
      */
     protected static final String WEB_TEMP_SUB_PATH = "/IzpackWebTemp";
 
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(AbstractPackResources.class.getName());
+
     /**
      * The resources.
      */
@@ -52,6 +74,16 @@ public abstract class AbstractPackResources implements PackResources
      */
     private final InstallData installData;
 
+    /**
+     * The web pack download manager, created on first use.
+     */
+    private PackDownloadManager downloads;
+
+    /**
+     * The listener to notify of download progress. May be {@code null}.
+     */
+    private volatile ProgressListener listener;
+
     /**
      * Constructs an {@code AbstractPackResources}.
      *
@@ -91,6 +123,30 @@ public abstract class AbstractPackResources implements PackResources
         return result;
     }
 
+    /**
+     * Starts downloading the web packs that aren't available next to the installer.
+     *
+     * @param packs    the packs to be installed
+     * @param listener the listener to notify of download progress
+     */
+    @Override
+    public void prefetch(List<Pack> packs, ProgressListener listener)
+    {
+        this.listener = listener;
+        String webDirURL = installData.getInfo().getWebDirURL();
+        if (webDirURL != null)
+        {
+            for (Pack pack : packs)
+            {
+                if (getLocalWebPack(pack.getName()) != null)
+                {
+                    continue;
+                }
+                getDownloads().prefetch(getWebPackURL(pack.getName(), webDirURL), pack.getDigest());
+            }
+        }
+    }
+
     /**
      * Returns the stream to a resource.
      *
@@ -119,6 +175,9 @@ public abstract class AbstractPackResources implements PackResources
 
     /**
      * Returns the stream to a web-based pack resource.
+     * <p/>
+     * The pack is read from the same directory as the installer if it is present, otherwise it is streamed as it
+     * downloads, so that it can be extracted while the rest of it is still being retrieved.
      *
      * @param name      the resource name
      * @param webDirURL the web URL to load the resource from
@@ -126,7 +185,41 @@ public abstract class AbstractPackResources implements PackResources
      * @throws ResourceNotFoundException    if the resource cannot be found
      * @throws ResourceInterruptedException if resource retrieval is interrupted
      */
-    protected abstract InputStream getWebPackStream(String name, String webDirURL);
+    protected InputStream getWebPackStream(String name, String webDirURL)
+    {
+        File packFile = getLocalWebPack(name);
+        if (packFile != null)
+        {
+            logger.info("Found local pack " + packFile.getAbsolutePath());
+            try
+            {
+                URL url = new URL("jar:" + packFile.toURI().toURL() + "!/packs/pack-" + name);
+                return url.openStream();
+            }
+            catch (IOException exception)
+            {
+                throw new ResourceException("Failed to read pack", exception);
+            }
+        }
+
+        final PackDownloadManager manager = getDownloads();
+        URL url = getWebPackURL(name, webDirURL);
+        InputStream jar = manager.openStream(url, getDigest(name), () -> notifyProgress(manager));
+        try
+        {
+            return openPackEntry(jar, "packs/pack-" + name);
+        }
+        catch (InterruptedIOException exception)
+        {
+            IOUtils.closeQuietly(jar);
+            throw new ResourceInterruptedException("Retrieval of " + url + " interrupted", exception);
+        }
+        catch (IOException exception)
+        {
+            IOUtils.closeQuietly(jar);
+            throw new ResourceException("Failed to read " + url, exception);
+        }
+    }
 
     /**
      * Returns the installation data.
@@ -138,4 +231,157 @@ public abstract class AbstractPackResources implements PackResources
         return installData;
     }
 
+    /**
+     * Returns the stream to the pack entry of a pack jar.
+     * <p/>
+     * The jar is read sequentially, as it may still be downloading. Closing the returned stream reads the remainder
+     * of the jar, so that a download that fails verification is reported.
+     *
+     * @param jar       the pack jar stream
+     * @param entryName the pack entry name
+     * @return the stream to the pack entry
+     * @throws ResourceNotFoundException if the jar doesn't contain the entry
+     * @throws IOException               for any I/O error
+     */
+    private static InputStream openPackEntry(final InputStream jar, String entryName) throws IOException
+    {
+        ZipInputStream zip = new ZipInputStream(jar);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null)
+        {
+            if (entry.getName().equals(entryName))
+            {
+                return new FilterInputStream(zip)
+                {
+                    @Override
+                    public void close() throws IOException
+                    {
+                        try
+                        {
+                            IOUtils.consume(jar);
+                        }
+                        finally
+                        {
+                            jar.close();
+                        }
+                    }
+                };
+            }
+        }
+        jar.close();
+        throw new ResourceNotFoundException("Pack entry " + entryName + " not found");
+    }
+
+    /**
+     * Returns the download manager, creating it if required.
+     *
+     * @return the download manager
+     */
+    private synchronized PackDownloadManager getDownloads()
+    {
+        if (downloads == null)
+        {
+            String cacheDir = IoHelper.translatePath(installData.getInfo().getUninstallerPath() + WEB_TEMP_SUB_PATH,
+                                                     installData.getVariables());
+            downloads = new PackDownloadManager(new File(cacheDir), PackDownloadManager.DEFAULT_THREADS);
+            downloads.setConnectionHandler(createConnectionHandler());
+        }
+        return downloads;
+    }
+
+    /**
+     * Creates a handler to be notified when a connection to the web pack server is refused.
+     * <p/>
+     * This implementation returns {@code null}, so refused connections fail.
+     *
+     * @return the handler. May be {@code null}
+     */
+    protected PackDownloadManager.ConnectionHandler createConnectionHandler()
+    {
+        return null;
+    }
+
+    /**
+     * Returns the file name of a web pack.
+     *
+     * @param name the pack name
+     * @return the pack file name
+     */
+    private String getWebPackFileName(String name)
+    {
+        String baseName = installData.getInfo().getInstallerBase();
+        baseName = baseName.substring(baseName.lastIndexOf(baseName.contains("\\") ? '\\' : '/') + 1);
+        return baseName + ".pack-" + name + ".jar";
+    }
+
+    /**
+     * Returns a web pack located in the same directory as the installer.
+     *
+     * @param name the pack name
+     * @return the pack, or {@code null} if it isn't present
+     */
+    private File getLocalWebPack(String name)
+    {
+        File installerDir = new File(installData.getInfo().getInstallerBase()).getParentFile();
+        File file = new File(installerDir, getWebPackFileName(name));
+        return (file.exists() && file.canRead()) ? file : null;
+    }
+
+    /**
+     * Returns the URL of a web pack.
+     *
+     * @param name      the pack name
+     * @param webDirURL the web URL to load the pack from
+     * @return the pack URL
+     * @throws ResourceException if the URL is invalid
+     */
+    private URL getWebPackURL(String name, String webDirURL)
+    {
+        String url = webDirURL + "/" + getWebPackFileName(name);
+        try
+        {
+            return new URI(null, url, null).toURL();
+        }
+        catch (URISyntaxException | MalformedURLException exception)
+        {
+            throw new ResourceException("Malformed URL: " + url, exception);
+        }
+    }
+
+    /**
+     * Returns the digest of a pack, as recorded by the compiler.
+     *
+     * @param name the pack name
+     * @return the pack digest, or {@code null} if it isn't known
+     */
+    private String getDigest(String name)
+    {
+        for (Pack pack : installData.getAllPacks())
+        {
+            if (pack.getName().equals(name))
+            {
+                return pack.getDigest();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Notifies the listener of download progress.
+     *
+     * @param manager the download manager
+     */
+    private void notifyProgress(PackDownloadManager manager)
+    {
+        ProgressListener current = listener;
+        if (current != null)
+        {
+            long total = manager.getTotal();
+            String message = installData.getMessages().get(
+                    "installer.downloading", Pack.toByteUnitsString(manager.getDownloaded()),
+                    total > 0 ? Pack.toByteUnitsString(total) : "?",
+                    Pack.toByteUnitsString(manager.getBytesPerSecond()));
+            current.progress(0, message);
+        }
+    }
 }
@@ -0,0 +1,287 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.data.PackFile;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+
+/**
+ * Writes unpacked files to disk on a pool of threads.
+ * <p/>
+ * The unpacking thread reads each file from the pack stream into memory, and hands it to this writer. Writer threads
+ * create, write and timestamp the target files concurrently.
+ * <p/>
+ * Completion callbacks are always invoked on the unpacking thread, in the order the files were submitted, once the
+ * corresponding file has been written. They are invoked as part of {@link #write} and {@link #flush()}.
+ */
+class ConcurrentFileWriter implements Closeable
+{
+    /**
+     * The maximum size of a file that is unpacked via memory. Larger files are unpacked directly.
+     */
+    static final int MAX_FILE_SIZE = 1024 * 1024;
+
+    /**
+     * The maximum no. of bytes held in memory waiting to be written.
+     */
+    private static final long MAX_PENDING_BYTES = 32L * 1024 * 1024;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(ConcurrentFileWriter.class.getName());
+
+    /**
+     * The writer threads.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The maximum no. of files waiting to be written.
+     */
+    private final int maxPending;
+
+    /**
+     * The files waiting to be written, in submission order.
+     */
+    private final Deque<PendingFile> pending = new ArrayDeque<>();
+
+    /**
+     * The targets of the pending files.
+     */
+    private final Set<File> pendingTargets = new HashSet<>();
+
+    /**
+     * The no. of bytes waiting to be written.
+     */
+    private long pendingBytes;
+
+    /**
+     * Constructs a <tt>ConcurrentFileWriter</tt>.
+     *
+     * @param threads the no. of writer threads
+     */
+    ConcurrentFileWriter(int threads)
+    {
+        this(Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "IzPack file writer");
+            thread.setDaemon(true);
+            return thread;
+        }), threads * 16);
+    }
+
+    /**
+     * Constructs a <tt>ConcurrentFileWriter</tt>.
+     *
+     * @param executor   the executor to write files with. This is shut down when the writer is closed
+     * @param maxPending the maximum no. of files waiting to be written
+     */
+    ConcurrentFileWriter(ExecutorService executor, int maxPending)
+    {
+        this.executor = executor;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Determines if a file can be unpacked via this writer.
+     *
+     * @param file the pack file
+     * @return {@code true} if the file is small enough to be held in memory
+     */
+    boolean isSupported(PackFile file)
+    {
+        return file.length() <= MAX_FILE_SIZE;
+    }
+
+    /**
+     * Determines if a target is waiting to be written.
+     * <p/>
+     * The same target must not be written twice concurrently, so callers should {@link #flush()} first.
+     *
+     * @param target the target file
+     * @return {@code true} if the target is waiting to be written
+     */
+    boolean isPending(File target)
+    {
+        return pendingTargets.contains(target);
+    }
+
+    /**
+     * Submits a file to be written.
+     * <p/>
+     * This blocks while too many files or bytes are waiting to be written.
+     *
+     * @param file       the pack file meta-data
+     * @param target     the file to write
+     * @param data       the file content
+     * @param completion invoked on the calling thread once the file has been written
+     * @throws IOException if a previously submitted file couldn't be written
+     */
+    void write(PackFile file, File target, byte[] data, Completion completion) throws IOException
+    {
+        if (isPending(target))
+        {
+            flush();
+        }
+        Future<?> future = executor.submit(() -> {
+            write(target, data, file.lastModified());
+            return null;
+        });
+        pending.addLast(new PendingFile(target, data.length, future, completion));
+        pendingTargets.add(target);
+        pendingBytes += data.length;
+
+        // complete the files that have already been written, and wait if too much is pending
+        while (!pending.isEmpty() && (pending.getFirst().future.isDone() || pending.size() > maxPending
+                || pendingBytes > MAX_PENDING_BYTES))
+        {
+            complete(pending.removeFirst());
+        }
+    }
+
+    /**
+     * Waits for all pending files to be written.
+     *
+     * @throws IOException if a file couldn't be written
+     */
+    void flush() throws IOException
+    {
+        while (!pending.isEmpty())
+        {
+            complete(pending.removeFirst());
+        }
+    }
+
+    /**
+     * Stops the writer threads, discarding any pending files.
+     */
+    @Override
+    public void close()
+    {
+        for (PendingFile file : pending)
+        {
+            file.future.cancel(true);
+        }
+        pending.clear();
+        pendingTargets.clear();
+        pendingBytes = 0;
+        executor.shutdownNow();
+    }
+
+    /**
+     * Waits for a file to be written, and invokes its completion callback.
+     *
+     * @param file the pending file
+     * @throws IOException if the file couldn't be written
+     */
+    private void complete(PendingFile file) throws IOException
+    {
+        pendingTargets.remove(file.target);
+        pendingBytes -= file.length;
+        try
+        {
+            file.future.get();
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing " + file.target);
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to write " + file.target, cause);
+        }
+        file.completion.completed();
+    }
+
+    /**
+     * Writes a file, and sets its last modified timestamp.
+     *
+     * @param target       the file to write
+     * @param data         the file content
+     * @param lastModified the last modified timestamp, or {@code -1} if it isn't set
+     * @throws IOException for any I/O error
+     */
+    private static void write(File target, byte[] data, long lastModified) throws IOException
+    {
+        try (OutputStream out = Files.newOutputStream(target.toPath()))
+        {
+            out.write(data);
+        }
+        if (lastModified >= 0 && !target.setLastModified(lastModified))
+        {
+            logger.warning("Failed to set last modified timestamp for: " + target);
+        }
+    }
+
+    /**
+     * Callback invoked once a file has been written.
+     */
+    interface Completion
+    {
+        /**
+         * Invoked on the unpacking thread, once the file has been written.
+         */
+        void completed();
+    }
+
+    /**
+     * A file waiting to be written.
+     */
+    private static class PendingFile
+    {
+        private final File target;
+
+        private final long length;
+
+        private final Future<?> future;
+
+        private final Completion completion;
+
+        PendingFile(File target, long length, Future<?> future, Completion completion)
+        {
+            this.target = target;
+            this.length = length;
+            this.future = future;
+            this.completion = completion;
+        }
+    }
+}
@@ -23,13 +23,7 @@ package com.izforge.izpack.installer.unpacker;
 
 import com.google.inject.Inject;
 import com.izforge.izpack.api.data.InstallData;
-import com.izforge.izpack.api.exception.ResourceException;
 import com.izforge.izpack.api.resource.Resources;
-import com.izforge.izpack.util.IoHelper;
-
-import java.io.*;
-import java.net.URL;
-import java.util.logging.Logger;
 
 /**
  * Console-based implementation of the {@link PackResources} interface.
@@ -38,11 +32,6 @@ import java.util.logging.Logger;
  */
 public class ConsolePackResources extends AbstractPackResources
 {
-    /**
-     * The logger.
-     */
-    private static final Logger logger = Logger.getLogger(ConsolePackResources.class.getName());
-
     /**
      * Constructs a {@code DefaultPackResources}.
      *
@@ -53,70 +42,4 @@ public class ConsolePackResources extends AbstractPackResources
     {
         super(resources, installData);
     }
-
-    @Override
-    protected InputStream getWebPackStream(String name, String webDirURL)
-    {
-        InputStream result;
-
-        InstallData installData = getInstallData();
-        String baseName = installData.getInfo().getInstallerBase();
-        File installerDir = new File(baseName).getParentFile();
-
-        if (baseName.contains("/"))
-            baseName = baseName.substring(baseName.lastIndexOf('/'));
-
-        String packFileName = baseName + ".pack-" + name + ".jar";
-
-        // Look first in same directory as primary jar, then download it if not found
-        File packLocalFile = new File(installerDir, packFileName);
-        if (packLocalFile.exists() && packLocalFile.canRead())
-        {
-            logger.info("Found local pack " + packLocalFile.getAbsolutePath());
-        }
-        else
-        {
-            String packURL = webDirURL + "/" + packFileName.replace(" ", "%20");
-            String tempFolder = IoHelper.translatePath(installData.getInfo().getUninstallerPath()
-                    + WEB_TEMP_SUB_PATH, installData.getVariables());
-            File tempDir = new File(tempFolder);
-            tempDir.mkdirs();
-
-            try
-            {
-                logger.info("Downloading remote pack " + packURL);
-                packLocalFile = File.createTempFile("izpacktempfile", "jar", new File(tempFolder));
-                InputStream webStream = new URL(packURL).openStream();
-                write(webStream, packLocalFile);
-            }
-            catch (IOException exception)
-            {
-                throw new ResourceException("Failed to read pack", exception);
-            }
-        }
-
-        try
-        {
-            URL url = new URL("jar:" + packLocalFile.toURI().toURL() + "!/packs/pack-" + name);
-            result = url.openStream();
-        }
-        catch (IOException exception)
-        {
-            throw new ResourceException("Failed to read pack", exception);
-        }
-        return result;
-    }
-
-    private static void write(InputStream input, File file) throws IOException
-    {
-        OutputStream output = new FileOutputStream(file);
-        int letter = 0;
-        byte[] buffer = new byte[1024];
-        while ((letter = input.read(buffer)) != -1)
-        {
-            output.write(buffer, 0, letter);
-        }
-        output.flush();
-        output.close();
-    }
 }
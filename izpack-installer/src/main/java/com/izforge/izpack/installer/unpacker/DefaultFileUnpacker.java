@@ -32,6 +32,9 @@ import java.io.InputStream;
 
 /**
  * Default file unpacker.
+ * <p/>
+ * This copies files stored as-is in the pack stream. Large files are copied using a buffer sized to the file, or
+ * transferred directly if the pack stream reads a file.
  *
  * @author Tim Anderson
  */
@@ -23,14 +23,23 @@ package com.izforge.izpack.installer.unpacker;
 
 import com.izforge.izpack.api.data.Blockable;
 import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.ParsableFile;
 import com.izforge.izpack.api.exception.InstallerException;
+import com.izforge.izpack.api.substitutor.VariableSubstitutor;
+import com.izforge.izpack.util.FileChecksum;
+import com.izforge.izpack.util.NoCloseInputStream;
 import com.izforge.izpack.util.os.FileQueue;
 import com.izforge.izpack.util.os.FileQueueMove;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.logging.Logger;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Checksum;
 
 
 /**
@@ -42,6 +51,25 @@ import java.util.logging.Logger;
  */
 public abstract class FileUnpacker
 {
+    /**
+     * The minimum size of the copy buffer.
+     */
+    private static final int MIN_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * The maximum size of the copy buffer.
+     */
+    private static final int MAX_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * The minimum file size to transfer between channels. Smaller files are copied faster via a buffer.
+     */
+    private static final long MIN_TRANSFER_SIZE = 64 * 1024;
+
+    /**
+     * The maximum no. of bytes transferred between channels at a time, so cancellation is checked periodically.
+     */
+    private static final long MAX_TRANSFER_SIZE = 8 * 1024 * 1024;
 
     /**
      * Determines if unpacking should be cancelled.
@@ -68,6 +96,21 @@ public abstract class FileUnpacker
      */
     private boolean queued;
 
+    /**
+     * The parsable file to replace variables in while copying. May be {@code null}.
+     */
+    private ParsableFile parsable;
+
+    /**
+     * The variable substitutor, used when a parsable file is set.
+     */
+    private VariableSubstitutor substitutor;
+
+    /**
+     * The throughput statistics to update. May be {@code null}.
+     */
+    private UnpackThroughput throughput;
+
     /**
      * The logger.
      */
@@ -108,100 +151,268 @@ public abstract class FileUnpacker
         return queued;
     }
 
+    /**
+     * Replaces variables in the file content as it is copied to the target.
+     * <p/>
+     * This avoids writing the file unchanged, and parsing it afterwards.
+     *
+     * @param parsable    the parsable file
+     * @param substitutor the variable substitutor
+     */
+    public void setParsable(ParsableFile parsable, VariableSubstitutor substitutor)
+    {
+        this.parsable = parsable;
+        this.substitutor = substitutor;
+    }
+
+    /**
+     * Sets the statistics to update with the throughput of copied files.
+     *
+     * @param throughput the throughput statistics. May be {@code null}
+     */
+    public void setThroughput(UnpackThroughput throughput)
+    {
+        this.throughput = throughput;
+    }
+
     /**
      * Copies an input stream to a target, setting its timestamp to that of the pack file.
      * <p/>
      * If the target is a blockable file, then a temporary file will be created, and the file queued.
+     * <p/>
+     * If a {@link #setParsable parsable file} has been set, variables are replaced in the content written.
+     * Otherwise, the target is preallocated to the file length, and the content transferred directly between channels
+     * if the stream is a file stream and the file isn't small, or copied via a buffer sized to the file.
+     * <p/>
+     * If the pack file has a checksum, the content read from the pack file stream is verified against it.
      *
      * @param file   the pack file
      * @param in     the pack file stream
      * @param target the file to write to
-     * @return the number of bytes actually copied
+     * @return the number of bytes actually read from the pack file stream
      * @throws InterruptedIOException if the copy operation is cancelled
-     * @throws IOException            for any I/O error
+     * @throws IOException            for any I/O error, or if the content doesn't match the checksum
      */
     protected long copy(PackFile file, InputStream in, File target) throws IOException
     {
-        OutputStream out = getTarget(file, target);
-        byte[] buffer = new byte[5120];
-        long bytesCopied = 0;
         long bytesToCopy = (file.isBackReference() ? file.getLinkedPackFile().length() : file.length());
         logger.fine("|- Copying to file system (size: " + bytesToCopy + " bytes)");
-        try
+        long start = System.nanoTime();
+        Checksum checksum = (file.getChecksum() != -1) ? FileChecksum.create() : null;
+        if (parsable != null)
         {
-            while (bytesCopied < bytesToCopy)
+            OutputStream out = getTarget(file, target);
+            try
             {
-                if (cancellable.isCancelled())
+                substitute((checksum != null) ? new CheckedInputStream(in, checksum) : in, out, bytesToCopy);
+            }
+            finally
+            {
+                IOUtils.closeQuietly(out);
+            }
+        }
+        else
+        {
+            File actual = getTargetFile(file, target);
+            FileUtils.forceMkdirParent(actual);
+            try (RandomAccessFile out = new RandomAccessFile(actual, "rw"))
+            {
+                // preallocate, so the file system can allocate contiguous space for large files
+                out.setLength(bytesToCopy);
+                FileChannel source = (bytesToCopy >= MIN_TRANSFER_SIZE) ? getChannel(in) : null;
+                if (source != null)
+                {
+                    transfer(source, out.getChannel(), bytesToCopy);
+                    if (checksum != null)
+                    {
+                        // the content bypassed this thread, so read it back
+                        FileChecksum.update(checksum, out.getChannel(), 0, bytesToCopy);
+                    }
+                }
+                else
                 {
-                    // operation cancelled
-                    throw new InterruptedIOException("Copy operation cancelled");
+                    copy(in, out.getChannel(), bytesToCopy, checksum);
                 }
-                bytesCopied = copy(file, buffer, in, out, bytesCopied);
             }
         }
-        finally
+        if (checksum != null)
         {
-            IOUtils.closeQuietly(out);
+            verify(file, checksum);
+        }
+        if (throughput != null)
+        {
+            throughput.add(bytesToCopy, System.nanoTime() - start);
         }
 
         postCopy(file);
 
-        return bytesCopied;
+        return bytesToCopy;
     }
 
     /**
-     * Invoked after copying is complete to set the last modified timestamp, and queue blockable files.
+     * Transfers bytes from a file channel to a target, starting at the channel's current position.
      *
-     * @param file the pack file meta-data
+     * @param source      the channel to read from
+     * @param target      the channel to write to
+     * @param bytesToCopy the no. of bytes to transfer
+     * @throws InterruptedIOException if the copy operation is cancelled
+     * @throws IOException            for any I/O error
      */
-    protected void postCopy(PackFile file)
+    private void transfer(FileChannel source, FileChannel target, long bytesToCopy) throws IOException
     {
-        setLastModified(file);
-
-        if (isBlockable(file))
+        long bytesCopied = 0;
+        while (bytesCopied < bytesToCopy)
         {
-            queue();
+            checkCancelled();
+            long count = Math.min(bytesToCopy - bytesCopied, MAX_TRANSFER_SIZE);
+            long transferred = target.transferFrom(source, bytesCopied, count);
+            if (transferred <= 0)
+            {
+                throw new IOException("Unexpected end of stream (installer corrupted?)");
+            }
+            bytesCopied += transferred;
         }
     }
 
     /**
-     * Copies from the input stream to the output stream.
+     * Copies bytes from an input stream to a target, via a buffer sized to the no. of bytes.
      *
-     * @param file        the pack file
-     * @param buffer      the buffer to use
      * @param in          the stream to read from
+     * @param target      the channel to write to
+     * @param bytesToCopy the no. of bytes to copy
+     * @param checksum    the checksum to update with the bytes copied. May be {@code null}
+     * @throws InterruptedIOException if the copy operation is cancelled
+     * @throws IOException            for any I/O error
+     */
+    private void copy(InputStream in, FileChannel target, long bytesToCopy, Checksum checksum) throws IOException
+    {
+        byte[] buffer = new byte[(int) Math.max(MIN_BUFFER_SIZE, Math.min(bytesToCopy, MAX_BUFFER_SIZE))];
+        long bytesCopied = 0;
+        while (bytesCopied < bytesToCopy)
+        {
+            checkCancelled();
+            int read = in.read(buffer, 0, (int) Math.min(bytesToCopy - bytesCopied, buffer.length));
+            if (read == -1)
+            {
+                throw new IOException("Unexpected end of stream (installer corrupted?)");
+            }
+            if (checksum != null)
+            {
+                checksum.update(buffer, 0, read);
+            }
+            ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+            while (data.hasRemaining())
+            {
+                target.write(data);
+            }
+            bytesCopied += read;
+        }
+    }
+
+    /**
+     * Verifies that the content of a pack file matches the checksum recorded when it was packed.
+     *
+     * @param file     the pack file
+     * @param checksum the checksum of the content read
+     * @throws IOException if the checksums don't match
+     */
+    static void verify(PackFile file, Checksum checksum) throws IOException
+    {
+        if (checksum.getValue() != file.getChecksum())
+        {
+            throw new IOException("Checksum mismatch for " + file.getTargetPath() + " (installer corrupted?)");
+        }
+    }
+
+    /**
+     * Throws an exception if the copy operation has been cancelled.
+     *
+     * @throws InterruptedIOException if the copy operation is cancelled
+     */
+    private void checkCancelled() throws InterruptedIOException
+    {
+        if (cancellable.isCancelled())
+        {
+            // operation cancelled
+            throw new InterruptedIOException("Copy operation cancelled");
+        }
+    }
+
+    /**
+     * Returns the file channel underlying a stream, if the stream reads a file.
+     * <p/>
+     * Reading the channel advances the stream.
+     *
+     * @param in the stream
+     * @return the file channel, or {@code null} if the stream doesn't read a file
+     */
+    private static FileChannel getChannel(InputStream in)
+    {
+        while (in instanceof NoCloseInputStream)
+        {
+            in = ((NoCloseInputStream) in).getInputStream();
+        }
+        return (in instanceof FileInputStream) ? ((FileInputStream) in).getChannel() : null;
+    }
+
+    /**
+     * Copies an input stream to an output stream, replacing variables.
+     *
+     * @param in          the pack file stream
      * @param out         the stream to write to
-     * @param bytesCopied the current no. of bytes copied
-     * @return the number of bytes actually copied
-     * @throws IOException for any I/O error
+     * @param bytesToCopy the no. of bytes to read from the pack file stream
+     * @return the number of bytes actually read
+     * @throws InterruptedIOException if the copy operation is cancelled
+     * @throws IOException            for any I/O error
      */
-    protected long copy(PackFile file, byte[] buffer, InputStream in, OutputStream out, long bytesCopied)
-            throws IOException
+    private long substitute(InputStream in, OutputStream out, long bytesToCopy) throws IOException
     {
-        int maxBytes = (int) Math.min(file.length() - bytesCopied, buffer.length);
-        int read = read(buffer, in, maxBytes);
-        if (read == -1)
+        logger.fine("|- Replacing variables in file " + parsable.getPath());
+        BoundedInputStream content = BoundedInputStream.builder()
+                .setInputStream(in)
+                .setMaxCount(bytesToCopy)
+                .setPropagateClose(false)
+                .get();
+        String encoding = parsable.getEncoding();
+        // (Use buffering because substitutor processes byte at a time)
+        Reader reader = new BufferedReader(encoding != null ? new InputStreamReader(content, encoding)
+                                                   : new InputStreamReader(content), 5120);
+        Writer writer = new BufferedWriter(encoding != null ? new OutputStreamWriter(out, encoding)
+                                                   : new OutputStreamWriter(out), 5120);
+        try
+        {
+            substitutor.substitute(reader, writer, parsable.getType());
+        }
+        catch (IOException exception)
+        {
+            throw exception;
+        }
+        catch (Exception exception)
+        {
+            throw new IOException("Failed to replace variables in " + parsable.getPath(), exception);
+        }
+        writer.flush();
+        checkCancelled();
+        if (content.getCount() != bytesToCopy)
         {
             throw new IOException("Unexpected end of stream (installer corrupted?)");
         }
-        out.write(buffer, 0, read);
-        bytesCopied += read;
-
-        return bytesCopied;
+        return bytesToCopy;
     }
 
     /**
-     * Reads up to <tt>maxBytes</tt> bytes to the specified buffer.
+     * Invoked after copying is complete to set the last modified timestamp, and queue blockable files.
      *
-     * @param buffer   the buffer
-     * @param in       the input stream
-     * @param maxBytes the maximum no. of bytes to read
-     * @return the no. of bytes read
-     * @throws IOException for any I/O error
+     * @param file the pack file meta-data
      */
-    protected int read(byte[] buffer, InputStream in, int maxBytes) throws IOException
+    protected void postCopy(PackFile file)
     {
-        return in.read(buffer, 0, maxBytes);
+        setLastModified(file);
+
+        if (isBlockable(file))
+        {
+            queue();
+        }
     }
 
     /**
@@ -215,21 +426,31 @@ public abstract class FileUnpacker
      * @throws IOException an I/O error occurred
      */
     protected OutputStream getTarget(PackFile file, File target) throws IOException
+    {
+        return FileUtils.openOutputStream(getTargetFile(file, target));
+    }
+
+    /**
+     * Returns the file to write to.
+     * <p/>
+     * If the target file is blockable, then a temporary file will be created and returned instead.
+     *
+     * @param file   the pack file meta-data
+     * @param target the requested target
+     * @return the actual target
+     * @throws IOException an I/O error occurred
+     */
+    protected File getTargetFile(PackFile file, File target) throws IOException
     {
         this.target = target;
-        OutputStream result;
         if (isBlockable(file))
         {
             // If target file might be blocked the output file must first refer to a temporary file, because
             // Windows Setup API doesn't work on streams but only on physical files
             tmpTarget = File.createTempFile("__FQ__", null, target.getParentFile());
-            result = FileUtils.openOutputStream(tmpTarget);
-        }
-        else
-        {
-            result = FileUtils.openOutputStream(target);
+            return tmpTarget;
         }
-        return result;
+        return target;
     }
 
     /**
@@ -2,32 +2,18 @@ package com.izforge.izpack.installer.unpacker;
 
 import com.google.inject.Inject;
 import com.izforge.izpack.api.data.InstallData;
-import com.izforge.izpack.api.exception.ResourceException;
-import com.izforge.izpack.api.exception.ResourceInterruptedException;
 import com.izforge.izpack.api.resource.Resources;
-import com.izforge.izpack.installer.web.WebRepositoryAccessor;
-import com.izforge.izpack.util.IoHelper;
-
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InterruptedIOException;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.util.logging.Logger;
+import com.izforge.izpack.installer.web.PackDownloadManager;
+import com.izforge.izpack.installer.web.WebAccessor;
 
 /**
  * {@link PackResources} implementation for the GUI-based installer.
  * <p/>
- * This supports both local and web-based pack resources.
+ * This supports both local and web-based pack resources. Web packs are downloaded using the {@link WebAccessor}
+ * dialogs to prompt for passwords, and for a proxy if the connection is refused.
  */
 public class GUIPackResources extends AbstractPackResources
 {
-    /**
-     * The logger.
-     */
-    private static final Logger logger = Logger.getLogger(GUIPackResources.class.getName());
-
     /**
      * Constructs a {@code GUIPackResources}.
      *
@@ -40,65 +26,17 @@ public class GUIPackResources extends AbstractPackResources
         super(resources, installData);
     }
 
+    /**
+     * Creates a handler that prompts for a proxy when a connection to the web pack server is refused.
+     * <p/>
+     * This also registers the {@link WebAccessor} password dialog as the default authenticator.
+     *
+     * @return a new handler
+     */
     @Override
-    protected InputStream getWebPackStream(String name, String webDirURL)
+    protected PackDownloadManager.ConnectionHandler createConnectionHandler()
     {
-        InputStream result;
-
-        InstallData installData = getInstallData();
-        String baseName = installData.getInfo().getInstallerBase();
-        File installerDir = new File(baseName).getParentFile();
-
-        baseName = baseName.substring(baseName.lastIndexOf(baseName.contains("\\") ? '\\' :'/') + 1);
-        String packFileName = baseName + ".pack-" + name + ".jar";
-        String path;
-
-        // Look first in same directory as primary jar, then download it if not found
-        File packLocalFile = new File(installerDir, packFileName);
-        if (packLocalFile.exists() && packLocalFile.canRead())
-        {
-            logger.info("Found local pack " + packLocalFile.getAbsolutePath());
-            try {
-
-                path = "jar:" + packLocalFile.toURI().toURL() + "!/packs/pack-" + name;
-            } catch(MalformedURLException exception) {
-                throw new ResourceException("Malformed URL", exception);
-            }
-        }
-        else
-        {
-            String packURL = webDirURL + "/" + baseName + ".pack-" + name + ".jar";
-            logger.info("Downloading remote pack " + packURL);
-            String tempFolder = IoHelper.translatePath(installData.getInfo().getUninstallerPath()
-                    + WEB_TEMP_SUB_PATH, installData.getVariables());
-            String tempFile;
-            try
-            {
-                tempFile = WebRepositoryAccessor.getCachedUrl(packURL, tempFolder);
-                packLocalFile = new File(tempFile);
-            }
-            catch (InterruptedIOException exception)
-            {
-                throw new ResourceInterruptedException("Retrieval of " + webDirURL + " interrupted", exception);
-            }
-            catch (IOException exception)
-            {
-                throw new ResourceException("Failed to read " + webDirURL, exception);
-            }
-
-            path = "jar:" + packLocalFile.getPath() + "!/packs/pack-" + name;
-        }
-
-        try
-        {
-            URL url = new URL(path);
-            result = url.openStream();
-        }
-        catch (IOException exception)
-        {
-            throw new ResourceException("Failed to read pack", exception);
-        }
-        return result;
+        final WebAccessor accessor = new WebAccessor(null);
+        return (url, exception) -> accessor.promptForProxy(exception);
     }
-
 }
@@ -0,0 +1,148 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.data.InstallData;
+import com.izforge.izpack.api.data.PackFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * The content of installed files, as recorded in {@link InstallData#INSTALLATION_INFORMATION}.
+ * <p/>
+ * For each file, the length, last-modification time and checksum of the pack file it was extracted from are recorded.
+ * A file whose length and last-modification time haven't changed since it was installed is assumed to still have
+ * the recorded content, so it can be compared with a pack file without being read.
+ */
+public class InstalledFiles
+{
+    /**
+     * The length, last-modification time and checksum of each file, keyed on path.
+     */
+    private final HashMap<String, long[]> files;
+
+    /**
+     * Constructs an empty <tt>InstalledFiles</tt>.
+     */
+    public InstalledFiles()
+    {
+        this(new HashMap<String, long[]>());
+    }
+
+    /**
+     * Constructs an <tt>InstalledFiles</tt>.
+     *
+     * @param files the length, last-modification time and checksum of each file, keyed on path
+     */
+    private InstalledFiles(HashMap<String, long[]> files)
+    {
+        this.files = files;
+    }
+
+    /**
+     * Records a file extracted from a pack file.
+     * <p/>
+     * Any previous record is removed if the pack file has no checksum or last-modification time, as the content of
+     * the file is no longer known.
+     *
+     * @param path the file path
+     * @param file the pack file
+     */
+    public void add(String path, PackFile file)
+    {
+        if (file.getChecksum() != -1 && file.lastModified() >= 0)
+        {
+            files.put(path, new long[]{file.length(), file.lastModified(), file.getChecksum()});
+        }
+        else
+        {
+            files.remove(path);
+        }
+    }
+
+    /**
+     * Removes the record of a file whose content differs from the pack file it was extracted from.
+     *
+     * @param path the file path
+     */
+    public void remove(String path)
+    {
+        files.remove(path);
+    }
+
+    /**
+     * Returns the recorded checksum of a file, if the file hasn't changed since it was recorded.
+     *
+     * @param path the file path
+     * @param file the file
+     * @return the checksum, or {@code -1} if the file isn't recorded, or has changed
+     */
+    public long getChecksum(String path, File file)
+    {
+        long[] record = files.get(path);
+        if (record != null && record[0] == file.length() && record[1] == file.lastModified())
+        {
+            return record[2];
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the no. of recorded files.
+     *
+     * @return the no. of recorded files
+     */
+    public int size()
+    {
+        return files.size();
+    }
+
+    /**
+     * Writes the records.
+     *
+     * @param out the stream to write to
+     * @throws IOException for any I/O error
+     */
+    public void write(ObjectOutputStream out) throws IOException
+    {
+        out.writeObject(files);
+    }
+
+    /**
+     * Reads records written by {@link #write}.
+     *
+     * @param in the stream to read from
+     * @return the records
+     * @throws IOException            for any I/O error
+     * @throws ClassNotFoundException if the records are invalid
+     */
+    public static InstalledFiles read(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        @SuppressWarnings("unchecked")
+        Map<String, long[]> files = (Map<String, long[]>) in.readObject();
+        return new InstalledFiles(new HashMap<String, long[]>(files));
+    }
+}
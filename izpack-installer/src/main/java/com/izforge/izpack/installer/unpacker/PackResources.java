@@ -23,7 +23,10 @@ package com.izforge.izpack.installer.unpacker;
 
 
 import java.io.InputStream;
+import java.util.List;
 
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.event.ProgressListener;
 import com.izforge.izpack.api.exception.ResourceException;
 import com.izforge.izpack.api.exception.ResourceInterruptedException;
 import com.izforge.izpack.api.exception.ResourceNotFoundException;
@@ -57,4 +60,17 @@ public interface PackResources
      * @throws ResourceException            for any other resource error
      */
     InputStream getInputStream(String name);
-}
\ No newline at end of file
+
+    /**
+     * Prepares the packs to be installed, so that they are available by the time they are requested.
+     * <p/>
+     * This is invoked when unpacking starts, after which the pack selection doesn't change. Web packs may be
+     * downloaded in the background, reporting their progress to the listener.
+     *
+     * @param packs    the packs to be installed
+     * @param listener the listener to notify of progress
+     */
+    default void prefetch(List<Pack> packs, ProgressListener listener)
+    {
+    }
+}
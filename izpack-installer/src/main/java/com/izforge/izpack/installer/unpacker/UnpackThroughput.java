@@ -0,0 +1,170 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.data.Pack;
+
+
+/**
+ * Collects the throughput of files copied by {@link FileUnpacker}s, by file size class.
+ * <p/>
+ * Small files are dominated by per-file overheads and large files by I/O bandwidth, so a single figure for all files
+ * would hide where time is spent.
+ */
+public class UnpackThroughput
+{
+    /**
+     * File size classes.
+     */
+    public enum SizeClass
+    {
+        SMALL(64 * 1024L, "< 64 KB"),
+        MEDIUM(64 * 1024 * 1024L, "< 64 MB"),
+        LARGE(Long.MAX_VALUE, ">= 64 MB");
+
+        /**
+         * The exclusive upper bound of the file sizes in the class.
+         */
+        private final long limit;
+
+        /**
+         * The display name.
+         */
+        private final String name;
+
+        SizeClass(long limit, String name)
+        {
+            this.limit = limit;
+            this.name = name;
+        }
+
+        /**
+         * Returns the size class of a file.
+         *
+         * @param length the file length
+         * @return the size class
+         */
+        public static SizeClass get(long length)
+        {
+            for (SizeClass sizeClass : values())
+            {
+                if (length < sizeClass.limit)
+                {
+                    return sizeClass;
+                }
+            }
+            return LARGE;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+
+    /**
+     * The no. of files copied, by size class.
+     */
+    private final long[] files = new long[SizeClass.values().length];
+
+    /**
+     * The no. of bytes copied, by size class.
+     */
+    private final long[] bytes = new long[SizeClass.values().length];
+
+    /**
+     * The time spent copying, in nanoseconds, by size class.
+     */
+    private final long[] nanos = new long[SizeClass.values().length];
+
+    /**
+     * Adds a copied file.
+     *
+     * @param length  the file length
+     * @param elapsed the time taken to copy the file, in nanoseconds
+     */
+    public synchronized void add(long length, long elapsed)
+    {
+        int index = SizeClass.get(length).ordinal();
+        files[index]++;
+        bytes[index] += length;
+        nanos[index] += elapsed;
+    }
+
+    /**
+     * Returns the no. of files copied in a size class.
+     *
+     * @param sizeClass the size class
+     * @return the no. of files
+     */
+    public synchronized long getFiles(SizeClass sizeClass)
+    {
+        return files[sizeClass.ordinal()];
+    }
+
+    /**
+     * Returns the no. of bytes copied in a size class.
+     *
+     * @param sizeClass the size class
+     * @return the no. of bytes
+     */
+    public synchronized long getBytes(SizeClass sizeClass)
+    {
+        return bytes[sizeClass.ordinal()];
+    }
+
+    /**
+     * Returns the throughput of a size class.
+     *
+     * @param sizeClass the size class
+     * @return the throughput in bytes per second, or {@code 0} if no time was spent copying files of the class
+     */
+    public synchronized long getBytesPerSecond(SizeClass sizeClass)
+    {
+        int index = sizeClass.ordinal();
+        return (nanos[index] > 0) ? (long) (bytes[index] / (nanos[index] / 1.0e9)) : 0;
+    }
+
+    /**
+     * Returns a summary of the throughput of each size class that files were copied in.
+     *
+     * @return the summary
+     */
+    @Override
+    public synchronized String toString()
+    {
+        StringBuilder result = new StringBuilder();
+        for (SizeClass sizeClass : SizeClass.values())
+        {
+            if (files[sizeClass.ordinal()] > 0)
+            {
+                if (result.length() > 0)
+                {
+                    result.append(", ");
+                }
+                result.append(sizeClass).append(": ").append(getFiles(sizeClass)).append(" files, ")
+                        .append(Pack.toByteUnitsString(getBytes(sizeClass))).append(" at ")
+                        .append(Pack.toByteUnitsString(getBytesPerSecond(sizeClass))).append("/s");
+            }
+        }
+        return result.toString();
+    }
+}
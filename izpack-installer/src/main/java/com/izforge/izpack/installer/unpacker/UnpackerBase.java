@@ -22,6 +22,7 @@
 
 package com.izforge.izpack.installer.unpacker;
 
+import com.izforge.izpack.api.data.Blockable;
 import com.izforge.izpack.api.data.ExecutableFile;
 import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.data.OverrideType;
@@ -29,6 +30,7 @@ import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.data.PackCompression;
 import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.api.data.PackInfo;
+import com.izforge.izpack.api.data.PackInfoFormat;
 import com.izforge.izpack.api.data.ParsableFile;
 import com.izforge.izpack.api.data.UpdateCheck;
 import com.izforge.izpack.api.data.Variables;
@@ -52,17 +54,20 @@ import com.izforge.izpack.installer.data.UninstallData;
 import com.izforge.izpack.installer.event.InstallerListeners;
 import com.izforge.izpack.installer.util.InstallPathHelper;
 import com.izforge.izpack.installer.util.PackHelper;
+import com.izforge.izpack.util.FileChecksum;
 import com.izforge.izpack.util.FileExecutor;
 import com.izforge.izpack.util.Housekeeper;
 import com.izforge.izpack.util.IoHelper;
 import com.izforge.izpack.util.LogUtils;
 import com.izforge.izpack.util.NoCloseInputStream;
 import com.izforge.izpack.util.PlatformModelMatcher;
+import com.izforge.izpack.util.StreamSupport;
 import com.izforge.izpack.util.file.DirectoryScanner;
 import com.izforge.izpack.util.file.GlobPatternMapper;
 import com.izforge.izpack.util.file.types.FileSet;
 import com.izforge.izpack.util.os.FileQueue;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -75,13 +80,17 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.Checksum;
 
 import static com.izforge.izpack.api.handler.Prompt.*;
 import static com.izforge.izpack.installer.bootstrap.Installer.INSTALLER_AUTO;
@@ -162,6 +171,16 @@ public abstract class UnpackerBase implements IUnpacker
      */
     private ProgressListener listener;
 
+    /**
+     * The throughput of files copied by file unpackers.
+     */
+    private final UnpackThroughput throughput = new UnpackThroughput();
+
+    /**
+     * The files installed by this and previous installations.
+     */
+    private InstalledFiles installedFiles = new InstalledFiles();
+
     /**
      * The prompt.
      */
@@ -205,6 +224,21 @@ public abstract class UnpackerBase implements IUnpacker
      */
     private Messages packMessages;
 
+    /**
+     * Writes small files concurrently, or {@code null} if files are unpacked serially.
+     */
+    private ConcurrentFileWriter writer;
+
+    /**
+     * The parsable files of the current pack that have variables replaced as they are extracted, keyed on path.
+     */
+    private final Map<File, ParsableFile> inlineParsables = new HashMap<File, ParsableFile>();
+
+    /**
+     * The parsable files of the current pack that have had variables replaced during extraction.
+     */
+    private final Set<ParsableFile> parsedParsables = new HashSet<ParsableFile>();
+
     /**
      * Constructs an <tt>UnpackerBase</tt>.
      *
@@ -303,21 +337,22 @@ public abstract class UnpackerBase implements IUnpacker
         logIntro();
 
         state = State.UNPACKING;
-        ObjectInputStream objIn = null;
+        InputStream in = null;
         try
         {
             FileQueue queue = queueFactory.isSupported() ? queueFactory.create() : null;
 
-            InputStream in = resources.getInputStream("packs.info");
-            objIn = new ObjectInputStream(in);
-            @SuppressWarnings("unchecked") List<PackInfo> packsInfo = (List<PackInfo>) objIn.readObject();
-            objIn.close();
+            in = resources.getInputStream("packs.info");
+            List<PackInfo> packsInfo = PackInfoFormat.read(in, resources::getInputStream);
+            in.close();
 
             selectedPacks = installData.getSelectedPacks();
 
             preUnpack(selectedPacks);
+            resources.prefetch(selectedPacks, listener);
             unpack(packsInfo, queue);
             postUnpack(selectedPacks, queue);
+            logger.info("Unpack throughput: " + throughput);
         }
         catch (Exception exception)
         {
@@ -374,7 +409,7 @@ public abstract class UnpackerBase implements IUnpacker
         {
             cleanup();
             logEpilog();
-            IOUtils.closeQuietly(objIn);
+            IOUtils.closeQuietly(in);
         }
     }
 
@@ -475,6 +510,7 @@ public abstract class UnpackerBase implements IUnpacker
             }
             installData.setInstallPath(installPath);
         }
+        installedFiles = readInstalledFiles(new File(installPath, InstallData.INSTALLATION_INFORMATION));
         listener.startAction("Unpacking", packs.size());
         listeners.beforePacks(packs, listener);
     }
@@ -488,6 +524,36 @@ public abstract class UnpackerBase implements IUnpacker
      * @throws InstallerException           for any error
      */
     protected void unpack(List<PackInfo> packs, FileQueue queue) throws InstallerException
+    {
+        int threads = installData.getInfo().getUnpackThreads();
+        if (threads > 1)
+        {
+            logger.fine("Unpacking files using " + threads + " writer threads");
+            writer = new ConcurrentFileWriter(threads);
+        }
+        try
+        {
+            unpackPacks(packs, queue);
+        }
+        finally
+        {
+            if (writer != null)
+            {
+                writer.close();
+                writer = null;
+            }
+        }
+    }
+
+    /**
+     * Unpacks the selected packs.
+     *
+     * @param packs the packs to unpack
+     * @param queue the file queue, or {@code null} if queuing is not supported
+     * @throws ResourceInterruptedException if unpacking is cancelled
+     * @throws InstallerException           for any error
+     */
+    private void unpackPacks(List<PackInfo> packs, FileQueue queue) throws InstallerException
     {
         int count = packs.size();
         for (int i = 0; i < count; i++)
@@ -535,20 +601,21 @@ public abstract class UnpackerBase implements IUnpacker
     {
         InputStream in = null;
         Pack pack = packInfo.getPack();
-        PackFile[] packFiles = packInfo.getPackFiles().toArray(new PackFile[]{});
+        List<PackFile> packFiles = packInfo.readPackFiles();
         try
         {
-            int len = packFiles.length;
+            int len = packFiles.size();
 
             String stepName = getStepName(pack);
             selectedPacks = installData.getSelectedPacks();
             listener.nextStep(stepName, selectedPacks.indexOf(pack) + 1, len);
 
             in = resources.getPackStream(pack.getName());
+            readInlineParsables(packInfo);
 
             for (int i = 0; i < len; i++)
             {
-                PackFile packFile = packFiles[i];
+                PackFile packFile = packFiles.get(i);
                 final boolean isDirectory = packFile.isDirectory();
                 logger.fine("Unpacking " + (isDirectory?"directory":"file") + " " + packFile.getTargetPath()
                         + " (backreference: " + packFile.isBackReference() + ")");
@@ -565,6 +632,13 @@ public abstract class UnpackerBase implements IUnpacker
                     }
                 }
             }
+            if (writer != null)
+            {
+                writer.flush();
+            }
+            // close the pack stream here rather than quietly, as a streamed web pack reports a failed download
+            // verification on close
+            in.close();
             readParsableFiles(packInfo, parsables);
             readExecutableFiles(packInfo, executables);
             readUpdateChecks(packInfo, updateChecks);
@@ -580,6 +654,8 @@ public abstract class UnpackerBase implements IUnpacker
         finally
         {
             IOUtils.closeQuietly(in);
+            inlineParsables.clear();
+            parsedParsables.clear();
         }
     }
 
@@ -642,8 +718,25 @@ public abstract class UnpackerBase implements IUnpacker
 
         listener.progress(fileNo, path);
 
+        if (writer != null && writer.isPending(target))
+        {
+            // wait for the previous version of the file to be written before deciding what to do with it
+            writer.flush();
+        }
+
+        if (isUpdate() && !inlineParsables.containsKey(target) && isUnchanged(packFile, path, target))
+        {
+            if (!packFile.isBackReference() && !pack.isLoose() && !packFile.isPack200Jar())
+            {
+                long size = packFile.size();
+                logger.fine("|- Unchanged - skipping pack stream by " + size + " bytes");
+                skip(packInputStream, size);
+            }
+            installedFiles.add(path, packFile);
+            listeners.afterFile(target, packFile, pack);
+        }
         // if this file exists and should not be overwritten, check what to do
-        if (target.exists() && (packFile.override() != OverrideType.OVERRIDE_TRUE) && !isOverwriteFile(packFile, target))
+        else if (target.exists() && (packFile.override() != OverrideType.OVERRIDE_TRUE) && !isOverwriteFile(packFile, target))
         {
             if (!packFile.isBackReference() && !pack.isLoose() && !packFile.isPack200Jar())
             {
@@ -655,7 +748,53 @@ public abstract class UnpackerBase implements IUnpacker
         {
             handleOverrideRename(packFile, target);
             extract(packFile, target, packInputStream, pack, queue);
+            if (inlineParsables.containsKey(target))
+            {
+                // the installed content depends on the variables
+                installedFiles.remove(path);
+            }
+            else
+            {
+                installedFiles.add(path, packFile);
+            }
+        }
+    }
+
+    /**
+     * Determines if the installation is an update, where files identical to those already installed are skipped
+     * rather than extracted again.
+     *
+     * @return {@code true} if the {@link InstallData#UPDATE_INSTALLATION} variable is {@code true}
+     */
+    protected boolean isUpdate()
+    {
+        return Boolean.parseBoolean(installData.getVariable(InstallData.UPDATE_INSTALLATION));
+    }
+
+    /**
+     * Determines if an existing file is unchanged by a pack file, and so needn't be extracted.
+     * <p/>
+     * If the file has the length and last-modification time recorded when it was installed, its recorded checksum
+     * is compared with that of the pack file. Otherwise, the file is read to determine if it is
+     * {@link #isIdentical identical}.
+     *
+     * @param pf   the pack file
+     * @param path the path of the file
+     * @param file the file to check
+     * @return {@code true} if the file is unchanged
+     */
+    protected boolean isUnchanged(PackFile pf, String path, File file)
+    {
+        if (pf.getChecksum() == -1 || !file.isFile() || file.length() != pf.length())
+        {
+            return false;
+        }
+        long checksum = installedFiles.getChecksum(path, file);
+        if (checksum != -1)
+        {
+            return checksum == pf.getChecksum();
         }
+        return isIdentical(pf, file);
     }
 
     /**
@@ -673,6 +812,17 @@ public abstract class UnpackerBase implements IUnpacker
     protected void extract(PackFile packFile, File target, InputStream packInputStream, Pack pack, FileQueue queue)
             throws IOException
     {
+        ParsableFile parsable = packFile.isPack200Jar() ? null : inlineParsables.get(target);
+        if (parsable == null && writer != null && writer.isSupported(packFile)
+                && isConcurrentWriteSupported(packFile, pack, queue))
+        {
+            // read the file on this thread, and leave creating and writing it to the writer threads
+            byte[] data = read(packFile, packInputStream);
+            checkInterrupt();
+            writer.write(packFile, target, data, () -> listeners.afterFile(target, packFile, pack));
+            return;
+        }
+
         InputStream packStream = null;
         try
         {
@@ -699,9 +849,18 @@ public abstract class UnpackerBase implements IUnpacker
             }
 
             unpacker = createFileUnpacker(packFile, pack, queue, cancellable);
+            unpacker.setThroughput(throughput);
+            if (parsable != null)
+            {
+                unpacker.setParsable(parsable, getVariableSubstitutor());
+            }
             logger.fine("|- Extracting file using " + unpacker.getClass().getName() + ")");
             unpacker.unpack(packFile, packStream, target);
             checkInterrupt();
+            if (parsable != null)
+            {
+                parsedParsables.add(parsable);
+            }
 
             if (!unpacker.isQueued())
             {
@@ -717,6 +876,52 @@ public abstract class UnpackerBase implements IUnpacker
         }
     }
 
+    /**
+     * Determines if a pack file may be written concurrently, when concurrent unpacking is enabled.
+     * <p/>
+     * This is limited to files read directly from the pack stream, which aren't queued.
+     *
+     * @param packFile the pack file
+     * @param pack     the pack that the pack file comes from
+     * @param queue    the file queue, or {@code null} if queuing is not supported
+     * @return {@code true} if the file may be written concurrently
+     */
+    protected boolean isConcurrentWriteSupported(PackFile packFile, Pack pack, FileQueue queue)
+    {
+        return !pack.isLoose() && !packFile.isBackReference() && !packFile.isPack200Jar()
+                && (queue == null || packFile.blockable() == Blockable.BLOCKABLE_NONE);
+    }
+
+    /**
+     * Reads the uncompressed content of a pack file from the pack stream into memory.
+     *
+     * @param packFile        the pack file
+     * @param packInputStream the pack stream, positioned at the start of the file
+     * @return the file content
+     * @throws IOException for any I/O error, or if the content doesn't match the pack file checksum
+     */
+    private byte[] read(PackFile packFile, InputStream packInputStream) throws IOException
+    {
+        PackCompression compressionFormat = installData.getInfo().getCompressionFormat();
+        InputStream segment = BoundedInputStream.builder()
+                .setInputStream(packInputStream)
+                .setMaxCount(packFile.size())
+                .setPropagateClose(false)
+                .get();
+        byte[] data = new byte[(int) packFile.length()];
+        InputStream content = StreamSupport.compressedInput(compressionFormat, segment);
+        IOUtils.readFully(content, data);
+        // position the pack stream at the next file
+        IOUtils.consume(segment);
+        if (packFile.getChecksum() != -1)
+        {
+            Checksum checksum = FileChecksum.create();
+            checksum.update(data, 0, data.length);
+            FileUnpacker.verify(packFile, checksum);
+        }
+        return data;
+    }
+
     /**
      * Skips a pack file.
      *
@@ -1227,6 +1432,8 @@ public abstract class UnpackerBase implements IUnpacker
         ObjectOutputStream oout = new ObjectOutputStream(fout);
         oout.writeObject(installedPacks);
         oout.writeObject(variables.getProperties());
+        // written last, so that readers of the packs and variables are unaffected
+        installedFiles.write(oout);
 
         logger.fine("Writing installation information finished");
         IOUtils.closeQuietly(oout);
@@ -1235,6 +1442,33 @@ public abstract class UnpackerBase implements IUnpacker
         uninstallData.addFile(installationInfo.getAbsolutePath(), true);
     }
 
+    /**
+     * Reads the files recorded by previous installations.
+     *
+     * @param installationInfo the installation information file
+     * @return the recorded files. These are empty if there is no installation information, or it predates
+     *         recording installed files
+     */
+    protected InstalledFiles readInstalledFiles(File installationInfo)
+    {
+        InstalledFiles result = new InstalledFiles();
+        if (installationInfo.isFile())
+        {
+            try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(installationInfo)))
+            {
+                in.readObject(); // the installed packs
+                in.readObject(); // the variables
+                result = InstalledFiles.read(in);
+                logger.fine("Found " + result.size() + " installed files");
+            }
+            catch (Exception exception)
+            {
+                logger.fine("No installed files recorded in " + installationInfo + ": " + exception);
+            }
+        }
+        return result;
+    }
+
     /**
      * Skips bytes in a stream.
      *
@@ -1244,7 +1478,22 @@ public abstract class UnpackerBase implements IUnpacker
      */
     protected void skip(InputStream stream, long bytes) throws IOException
     {
-        long skipped = stream.skip(bytes);
+        // Pack streams of compressed packs are stored uncompressed in the installer jar, so skipping is a seek.
+        // Streams may skip fewer bytes than requested (e.g. when buffered), so skip until done or at end of stream
+        long skipped = 0;
+        while (skipped < bytes)
+        {
+            long count = stream.skip(bytes - skipped);
+            if (count <= 0)
+            {
+                if (stream.read() == -1)
+                {
+                    break;
+                }
+                count = 1;
+            }
+            skipped += count;
+        }
         if (skipped != bytes)
         {
             throw new IOException("Expected to skip: " + bytes + " in stream but skipped: " + skipped);
@@ -1253,6 +1502,9 @@ public abstract class UnpackerBase implements IUnpacker
 
     /**
      * Determines if a file should be overwritten.
+     * <p/>
+     * Unless the pack file always overrides, a file that is {@link #isIdentical identical} to the pack file is not
+     * overwritten, and the user isn't asked.
      *
      * @param pf   the pack file
      * @param file the file to check
@@ -1268,6 +1520,9 @@ public abstract class UnpackerBase implements IUnpacker
             if (pf.override() == OverrideType.OVERRIDE_TRUE)
             {
                 result = true;
+            } else if (isIdentical(pf, file))
+            {
+                logger.fine("|- " + file + " is identical to the packed file - not overwriting");
             } else
             {
                 if (pf.override() == OverrideType.OVERRIDE_UPDATE)
@@ -1312,6 +1567,32 @@ public abstract class UnpackerBase implements IUnpacker
         return result;
     }
 
+    /**
+     * Determines if a file has the same content as a pack file, by comparing their lengths and checksums.
+     * <p/>
+     * Pack files without a checksum are never considered identical.
+     *
+     * @param pf   the pack file
+     * @param file the file to check
+     * @return {@code true} if the file is identical to the pack file
+     */
+    protected boolean isIdentical(PackFile pf, File file)
+    {
+        if (pf.getChecksum() == -1 || !file.isFile() || file.length() != pf.length())
+        {
+            return false;
+        }
+        try
+        {
+            return FileChecksum.getChecksum(file) == pf.getChecksum();
+        }
+        catch (IOException exception)
+        {
+            logger.log(Level.FINE, "Failed to compute the checksum of " + file, exception);
+            return false;
+        }
+    }
+
     /**
      * Renames a file, if it exists and the pack file defines how it should be handled.
      *
@@ -1352,8 +1633,30 @@ public abstract class UnpackerBase implements IUnpacker
     }
 
 
+    /**
+     * Determines the {@link ParsableFile parseable files} of a pack that can have variables replaced as they are
+     * extracted, rather than once the pack has been unpacked.
+     * <p/>
+     * Files with a condition are excluded, as the condition may depend on the state after the pack has been unpacked.
+     *
+     * @param packInfo the pack info for the current pack
+     */
+    private void readInlineParsables(PackInfo packInfo)
+    {
+        for (ParsableFile parsableFile : packInfo.getParsables())
+        {
+            if (!parsableFile.hasCondition() && matcher.matchesCurrentPlatform(parsableFile.getOsConstraints()))
+            {
+                File file = new File(IoHelper.translatePath(parsableFile.getPath(), variables));
+                inlineParsables.put(file, parsableFile);
+            }
+        }
+    }
+
     /**
      * Initializes {@link ParsableFile parseable files} according to the current environment.
+     * <p/>
+     * Files that had variables replaced during extraction are excluded.
      *
      * @param packInfo  the pack info fpor the current pack
      * @param parsables used to collect the read objects
@@ -1363,6 +1666,10 @@ public abstract class UnpackerBase implements IUnpacker
         for (ParsableFile parsableFile : packInfo.getParsables())
         {
             logger.fine("Unpacked parsable: " + parsableFile.toString());
+            if (parsedParsables.contains(parsableFile))
+            {
+                continue;
+            }
             if (!parsableFile.hasCondition() || isConditionTrue(parsableFile.getCondition()))
             {
                 String path = IoHelper.translatePath(parsableFile.getPath(), variables);
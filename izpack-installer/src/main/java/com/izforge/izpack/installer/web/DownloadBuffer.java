@@ -0,0 +1,440 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.web;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+
+/**
+ * Lets a download be read while it is in progress.
+ * <p/>
+ * The downloader writes each chunk to the download file before {@link #append appending} it to the buffer. The most
+ * recent chunks are held in a bounded ring buffer, so a reader keeping up with the download reads from memory. Older
+ * data has been spilled to the file, so a reader that falls behind, or starts after the download, reads it from disk.
+ * The file also allows an interrupted download to be resumed.
+ * <p/>
+ * Readers only see the end of the stream once the download has been {@link #complete completed}, so a download that
+ * fails verification is reported to them as an error.
+ * <p/>
+ * On completion, the download file is only renamed if no reader has it open, as an open file can't be renamed on
+ * Windows. Otherwise it is copied, and deleted when the last of its readers is closed.
+ */
+class DownloadBuffer
+{
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(DownloadBuffer.class.getName());
+
+    /**
+     * The ring buffer capacity.
+     */
+    private final int capacity;
+
+    /**
+     * The ring buffer, or {@code null} if it hasn't been allocated, or is no longer required.
+     */
+    private byte[] ring;
+
+    /**
+     * The file containing the downloaded data.
+     */
+    private File file;
+
+    /**
+     * The number of bytes downloaded.
+     */
+    private long written;
+
+    /**
+     * The position of the first byte held in the ring buffer. Bytes before it must be read from the file.
+     */
+    private long ringStart;
+
+    /**
+     * Determines if the download is complete.
+     */
+    private boolean complete;
+
+    /**
+     * The download failure, or {@code null} if the download hasn't failed.
+     */
+    private IOException failure;
+
+    /**
+     * The number of readers with a file open.
+     */
+    private int readers;
+
+    /**
+     * A file that was copied on completion, to be deleted once no reader has it open. May be {@code null}.
+     */
+    private File obsolete;
+
+    /**
+     * Constructs a <tt>DownloadBuffer</tt>.
+     *
+     * @param file     the file the data is downloaded to
+     * @param capacity the ring buffer capacity
+     */
+    DownloadBuffer(File file, int capacity)
+    {
+        this.file = file;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Invoked when the download starts, or restarts.
+     *
+     * @param offset the number of bytes already in the file
+     */
+    synchronized void reset(long offset)
+    {
+        written = offset;
+        ringStart = offset;
+        notifyAll();
+    }
+
+    /**
+     * Appends downloaded data.
+     * <p/>
+     * The data must already have been written to the file.
+     *
+     * @param buffer the data
+     * @param offset the offset of the data in the buffer
+     * @param length the length of the data
+     */
+    synchronized void append(byte[] buffer, int offset, int length)
+    {
+        if (ring == null)
+        {
+            ring = new byte[capacity];
+        }
+        // only the last capacity bytes can be held
+        int skip = Math.max(0, length - capacity);
+        long position = written + skip;
+        int remaining = length - skip;
+        int from = offset + skip;
+        while (remaining > 0)
+        {
+            int index = (int) (position % capacity);
+            int count = Math.min(remaining, capacity - index);
+            System.arraycopy(buffer, from, ring, index, count);
+            position += count;
+            from += count;
+            remaining -= count;
+        }
+        written += length;
+        ringStart = Math.max(ringStart, written - capacity);
+        notifyAll();
+    }
+
+    /**
+     * Invoked when the pack was already downloaded.
+     *
+     * @param file the file containing the pack
+     */
+    synchronized void cached(File file)
+    {
+        written = file.length();
+        completed(file);
+    }
+
+    /**
+     * Invoked when the download completes successfully.
+     * <p/>
+     * The download file is moved to the target file. If a reader has the download file open, it is copied instead,
+     * and deleted when no reader has it open. Subsequent reads from disk are made from the target file.
+     *
+     * @param target the file to move the downloaded data to
+     * @throws IOException if the download file cannot be moved or copied
+     */
+    void complete(File target) throws IOException
+    {
+        File source;
+        synchronized (this)
+        {
+            source = file;
+            if (source.equals(target))
+            {
+                completed(target);
+                return;
+            }
+            if (readers == 0)
+            {
+                // readers only open the file while holding the lock, so it can't be opened during the move
+                Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                completed(target);
+                return;
+            }
+        }
+        // copy outside of the lock so readers aren't blocked. Readers can still open the source, as it isn't removed
+        Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        synchronized (this)
+        {
+            obsolete = source;
+            completed(target);
+            if (readers == 0)
+            {
+                deleteObsolete();
+            }
+        }
+    }
+
+    /**
+     * Invoked when the download fails.
+     *
+     * @param exception the cause of the failure
+     */
+    synchronized void fail(IOException exception)
+    {
+        failure = exception;
+        notifyAll();
+    }
+
+    /**
+     * Determines if the download has failed.
+     *
+     * @return {@code true} if the download has failed
+     */
+    synchronized boolean isFailed()
+    {
+        return failure != null;
+    }
+
+    /**
+     * Marks the download as complete.
+     * <p/>
+     * The ring buffer is released, as all of the data is available in the file.
+     *
+     * @param file the file containing the downloaded data
+     */
+    private void completed(File file)
+    {
+        this.file = file;
+        complete = true;
+        ring = null;
+        ringStart = written;
+        notifyAll();
+    }
+
+    /**
+     * Deletes the file copied on completion, if any.
+     */
+    private void deleteObsolete()
+    {
+        if (obsolete != null)
+        {
+            if (!obsolete.delete() && obsolete.exists())
+            {
+                logger.warning("Failed to delete " + obsolete);
+            }
+            obsolete = null;
+        }
+    }
+
+    /**
+     * Returns a stream to read the download from the start.
+     *
+     * @param progress invoked periodically while the stream waits for data. May be {@code null}
+     * @param interval the interval between progress notifications, in milliseconds
+     * @return a new stream
+     */
+    InputStream newInputStream(Runnable progress, long interval)
+    {
+        return new BufferInputStream(progress, interval);
+    }
+
+    /**
+     * Reads the download, waiting for data as required.
+     */
+    private class BufferInputStream extends InputStream
+    {
+        /**
+         * Invoked while waiting for data. May be {@code null}.
+         */
+        private final Runnable progress;
+
+        /**
+         * The interval between progress notifications, in milliseconds.
+         */
+        private final long interval;
+
+        /**
+         * The position of the next byte to read.
+         */
+        private long position;
+
+        /**
+         * The file channel, opened on the first read from disk.
+         */
+        private FileChannel channel;
+
+        /**
+         * The file that the channel was opened on.
+         */
+        private File source;
+
+        /**
+         * The time of the last progress notification, in nanoseconds.
+         */
+        private long lastProgress = System.nanoTime();
+
+        /**
+         * Constructs a <tt>BufferInputStream</tt>.
+         *
+         * @param progress invoked while waiting for data. May be {@code null}
+         * @param interval the interval between progress notifications, in milliseconds
+         */
+        BufferInputStream(Runnable progress, long interval)
+        {
+            this.progress = progress;
+            this.interval = interval;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            byte[] b = new byte[1];
+            int read = read(b, 0, 1);
+            return (read == -1) ? -1 : (b[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if (len == 0)
+            {
+                return 0;
+            }
+            int count;
+            while (true)
+            {
+                synchronized (DownloadBuffer.this)
+                {
+                    if (failure != null)
+                    {
+                        throw new IOException(failure.getMessage(), failure);
+                    }
+                    if (position < written || complete)
+                    {
+                        if (position >= written)
+                        {
+                            return -1;
+                        }
+                        count = (int) Math.min(len, written - position);
+                        if (position >= ringStart)
+                        {
+                            int index = (int) (position % capacity);
+                            count = Math.min(count, capacity - index);
+                            System.arraycopy(ring, index, b, off, count);
+                            position += count;
+                            return count;
+                        }
+                        // spilled to disk
+                        count = (int) Math.min(count, ringStart - position);
+                        if (channel == null)
+                        {
+                            source = file;
+                            channel = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+                            ++readers;
+                        }
+                        break;
+                    }
+                    await();
+                }
+                notifyProgress();
+            }
+            int read = channel.read(ByteBuffer.wrap(b, off, count), position);
+            if (read <= 0)
+            {
+                throw new IOException("Unexpected end of " + source);
+            }
+            position += read;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (channel != null)
+            {
+                try
+                {
+                    channel.close();
+                }
+                finally
+                {
+                    channel = null;
+                    synchronized (DownloadBuffer.this)
+                    {
+                        if (--readers == 0)
+                        {
+                            deleteObsolete();
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Waits for data.
+         *
+         * @throws InterruptedIOException if the thread is interrupted
+         */
+        private void await() throws InterruptedIOException
+        {
+            try
+            {
+                DownloadBuffer.this.wait(interval);
+            }
+            catch (InterruptedException exception)
+            {
+                Thread.currentThread().interrupt();
+                InterruptedIOException result = new InterruptedIOException("Download interrupted");
+                result.initCause(exception);
+                throw result;
+            }
+        }
+
+        /**
+         * Notifies progress, if the progress interval has elapsed since the last notification.
+         */
+        private void notifyProgress()
+        {
+            long now = System.nanoTime();
+            if (progress != null && now - lastProgress >= TimeUnit.MILLISECONDS.toNanos(interval))
+            {
+                lastProgress = now;
+                progress.run();
+            }
+        }
+    }
+}
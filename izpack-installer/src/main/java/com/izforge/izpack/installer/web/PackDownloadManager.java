@@ -0,0 +1,668 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.web;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+
+/**
+ * Downloads web packs to a cache directory.
+ * <p/>
+ * Packs are downloaded concurrently, in the background. A partially downloaded pack is kept in the cache with a
+ * <tt>.part</tt> suffix, and the download is resumed using an HTTP <tt>Range</tt> request when the pack is next
+ * requested. Once complete, the pack is verified against its SHA-256 digest, if one is available.
+ * <p/>
+ * A pack may also be {@link #openStream streamed} while it downloads, so it can be extracted as it arrives.
+ * <p/>
+ * Connections time out if the server doesn't respond. If a connection is refused, a {@link ConnectionHandler} may be
+ * {@link #setConnectionHandler registered} to configure a proxy before it is retried.
+ */
+public class PackDownloadManager implements Closeable
+{
+    /**
+     * The default number of concurrent downloads.
+     */
+    public static final int DEFAULT_THREADS = 4;
+
+    /**
+     * The digest algorithm of pack digests.
+     */
+    static final String DIGEST_ALGORITHM = "SHA-256";
+
+    /**
+     * The suffix of partially downloaded packs.
+     */
+    static final String PART_SUFFIX = ".part";
+
+    /**
+     * The interval between progress notifications while waiting on a download, in milliseconds.
+     */
+    private static final long PROGRESS_INTERVAL = 250;
+
+    /**
+     * The size of the download buffer.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The default capacity of the ring buffer of each download.
+     */
+    private static final int DEFAULT_RING_SIZE = 1024 * 1024;
+
+    /**
+     * The connect timeout, in milliseconds.
+     */
+    private static final int CONNECT_TIMEOUT = 30000;
+
+    /**
+     * The read timeout, in milliseconds.
+     */
+    private static final int READ_TIMEOUT = 60000;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(PackDownloadManager.class.getName());
+
+    /**
+     * The cache directory.
+     */
+    private final File cacheDir;
+
+    /**
+     * The download executor.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The capacity of the ring buffer of each download.
+     */
+    private final int ringSize;
+
+    /**
+     * The downloads, keyed on file name.
+     */
+    private final Map<String, Download> downloads = new ConcurrentHashMap<String, Download>();
+
+    /**
+     * The number of bytes downloaded.
+     */
+    private final AtomicLong downloaded = new AtomicLong();
+
+    /**
+     * The number of bytes to download, where known.
+     */
+    private final AtomicLong total = new AtomicLong();
+
+    /**
+     * The time the first download started, in nanoseconds, or {@code 0} if no download has started.
+     */
+    private final AtomicLong started = new AtomicLong();
+
+    /**
+     * The connection handler. May be {@code null}.
+     */
+    private volatile ConnectionHandler handler;
+
+    /**
+     * The number of times the connection handler has requested a retry. Downloads whose connection failed before the
+     * last retry was requested are retried without consulting the handler again.
+     */
+    private int retries;
+
+    /**
+     * Determines if the connection handler declined to retry. If so, it isn't consulted again.
+     */
+    private boolean declined;
+
+    /**
+     * Constructs a <tt>PackDownloadManager</tt>.
+     *
+     * @param cacheDir the directory to download packs to
+     * @param threads  the maximum number of concurrent downloads
+     */
+    public PackDownloadManager(File cacheDir, int threads)
+    {
+        this(cacheDir, threads, DEFAULT_RING_SIZE);
+    }
+
+    /**
+     * Constructs a <tt>PackDownloadManager</tt>.
+     *
+     * @param cacheDir the directory to download packs to
+     * @param threads  the maximum number of concurrent downloads
+     * @param ringSize the capacity of the ring buffer of each download
+     */
+    PackDownloadManager(File cacheDir, int threads, int ringSize)
+    {
+        this.cacheDir = cacheDir;
+        this.ringSize = ringSize;
+        final AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "IzPack-PackDownload-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Registers a handler to be notified when a connection is refused.
+     *
+     * @param handler the handler. May be {@code null}
+     */
+    public void setConnectionHandler(ConnectionHandler handler)
+    {
+        this.handler = handler;
+    }
+
+    /**
+     * Starts downloading a pack in the background, if it isn't already being downloaded.
+     *
+     * @param url    the pack URL
+     * @param digest the hex encoded SHA-256 digest of the pack, or {@code null} if it is unknown
+     */
+    public void prefetch(URL url, String digest)
+    {
+        submit(url, digest);
+    }
+
+    /**
+     * Returns a downloaded pack, waiting for its download to complete if required.
+     *
+     * @param url      the pack URL
+     * @param digest   the hex encoded SHA-256 digest of the pack, or {@code null} if it is unknown
+     * @param progress invoked periodically while waiting. May be {@code null}
+     * @return the downloaded pack
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     * @throws IOException            if the pack cannot be downloaded, or doesn't match its digest
+     */
+    public File getFile(URL url, String digest, Runnable progress) throws IOException
+    {
+        Future<File> future = getDownload(url, digest).future;
+        try
+        {
+            while (true)
+            {
+                try
+                {
+                    return future.get(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+                }
+                catch (TimeoutException exception)
+                {
+                    if (progress != null)
+                    {
+                        progress.run();
+                    }
+                }
+            }
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            InterruptedIOException result = new InterruptedIOException("Download of " + url + " interrupted");
+            result.initCause(exception);
+            throw result;
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to download " + url, cause);
+        }
+    }
+
+    /**
+     * Returns a stream to a pack, which may still be downloading.
+     * <p/>
+     * The stream blocks until the data it requires has been downloaded. If the pack doesn't match its digest, the
+     * stream fails on reaching its end.
+     *
+     * @param url      the pack URL
+     * @param digest   the hex encoded SHA-256 digest of the pack, or {@code null} if it is unknown
+     * @param progress invoked periodically while the stream waits for data. May be {@code null}
+     * @return a stream to the pack
+     */
+    public InputStream openStream(URL url, String digest, Runnable progress)
+    {
+        return getDownload(url, digest).buffer.newInputStream(progress, PROGRESS_INTERVAL);
+    }
+
+    /**
+     * Returns the number of bytes downloaded.
+     *
+     * @return the number of bytes downloaded
+     */
+    public long getDownloaded()
+    {
+        return downloaded.get();
+    }
+
+    /**
+     * Returns the number of bytes to download.
+     * <p/>
+     * This only includes downloads whose length was reported by the server.
+     *
+     * @return the number of bytes to download
+     */
+    public long getTotal()
+    {
+        return total.get();
+    }
+
+    /**
+     * Returns the average download throughput.
+     *
+     * @return the throughput, in bytes per second
+     */
+    public long getBytesPerSecond()
+    {
+        long start = started.get();
+        long elapsed = System.nanoTime() - start;
+        if (start == 0 || elapsed <= 0)
+        {
+            return 0;
+        }
+        return (long) (downloaded.get() / (elapsed / 1.0e9));
+    }
+
+    /**
+     * Cancels any outstanding downloads.
+     * <p/>
+     * Partially downloaded packs are kept, so they may be resumed.
+     */
+    @Override
+    public void close()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the download of a pack, submitting it if the pack isn't downloading, or a previous download failed.
+     *
+     * @param url    the pack URL
+     * @param digest the hex encoded SHA-256 digest of the pack, or {@code null} if it is unknown
+     * @return the download
+     */
+    private Download getDownload(URL url, String digest)
+    {
+        Download download = submit(url, digest);
+        if (download.buffer.isFailed())
+        {
+            // retry
+            downloads.remove(getFileName(url), download);
+            download = submit(url, digest);
+        }
+        return download;
+    }
+
+    /**
+     * Submits a download, if the pack isn't already being downloaded.
+     *
+     * @param url    the pack URL
+     * @param digest the hex encoded SHA-256 digest of the pack, or {@code null} if it is unknown
+     * @return the download
+     */
+    private Download submit(final URL url, final String digest)
+    {
+        return downloads.computeIfAbsent(getFileName(url), name -> {
+            final DownloadBuffer buffer = new DownloadBuffer(new File(cacheDir, name + PART_SUFFIX), ringSize);
+            Future<File> future = executor.submit(() -> download(url, name, digest, buffer));
+            return new Download(buffer, future);
+        });
+    }
+
+    /**
+     * Downloads a pack, notifying the buffer of the outcome.
+     *
+     * @param url    the pack URL
+     * @param name   the file name to download to
+     * @param digest the hex encoded SHA-256 digest of the pack, or {@code null} if it is unknown
+     * @param buffer the buffer to append downloaded data to
+     * @return the downloaded file
+     * @throws IOException if the pack cannot be downloaded, or doesn't match its digest
+     */
+    private File download(URL url, String name, String digest, DownloadBuffer buffer) throws IOException
+    {
+        try
+        {
+            return downloadFile(url, name, digest, buffer);
+        }
+        catch (IOException exception)
+        {
+            buffer.fail(exception);
+            throw exception;
+        }
+        catch (RuntimeException exception)
+        {
+            buffer.fail(new IOException("Failed to download " + url, exception));
+            throw exception;
+        }
+    }
+
+    /**
+     * Downloads a pack, resuming any partial download, and completes the buffer.
+     *
+     * @param url    the pack URL
+     * @param name   the file name to download to
+     * @param digest the hex encoded SHA-256 digest of the pack, or {@code null} if it is unknown
+     * @param buffer the buffer to append downloaded data to
+     * @return the downloaded file
+     * @throws IOException if the pack cannot be downloaded, or doesn't match its digest
+     */
+    private File downloadFile(URL url, String name, String digest, DownloadBuffer buffer) throws IOException
+    {
+        File file = new File(cacheDir, name);
+        if (file.isFile() && digest != null && digest.equalsIgnoreCase(digest(file)))
+        {
+            logger.info("Using cached pack " + file);
+            buffer.cached(file);
+            return file;
+        }
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs())
+        {
+            throw new IOException("Failed to create directory " + cacheDir);
+        }
+        File part = new File(cacheDir, name + PART_SUFFIX);
+        MessageDigest md = createDigest();
+        long offset = part.isFile() ? part.length() : 0;
+
+        URLConnection connection = connect(url, offset);
+        int status = (connection instanceof HttpURLConnection)
+                ? ((HttpURLConnection) connection).getResponseCode() : HttpURLConnection.HTTP_OK;
+        if (status == 416)
+        {
+            // requested range not satisfiable: the partial download doesn't match the pack. Start again
+            ((HttpURLConnection) connection).disconnect();
+            if (!part.delete())
+            {
+                throw new IOException("Failed to delete " + part);
+            }
+            return downloadFile(url, name, digest, buffer);
+        }
+        if (status != HttpURLConnection.HTTP_OK && status != HttpURLConnection.HTTP_PARTIAL)
+        {
+            throw new IOException("Failed to download " + url + ": HTTP status " + status);
+        }
+        boolean resume = offset > 0 && status == HttpURLConnection.HTTP_PARTIAL;
+        if (resume)
+        {
+            logger.info("Resuming download of " + url + " at " + offset + " bytes");
+            update(md, part);
+        }
+        else
+        {
+            logger.info("Downloading remote pack " + url);
+            offset = 0;
+        }
+        buffer.reset(offset);
+        long length = connection.getContentLengthLong();
+        if (length >= 0)
+        {
+            total.addAndGet(length);
+        }
+        started.compareAndSet(0, System.nanoTime());
+
+        try (InputStream in = connection.getInputStream();
+             OutputStream out = new FileOutputStream(part, resume))
+        {
+            byte[] data = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(data)) != -1)
+            {
+                if (Thread.currentThread().isInterrupted())
+                {
+                    throw new InterruptedIOException("Download of " + url + " interrupted");
+                }
+                out.write(data, 0, read);
+                md.update(data, 0, read);
+                buffer.append(data, 0, read);
+                downloaded.addAndGet(read);
+            }
+        }
+
+        String actual = HexFormat.of().formatHex(md.digest());
+        if (digest != null && !digest.equalsIgnoreCase(actual))
+        {
+            if (!part.delete())
+            {
+                logger.warning("Failed to delete " + part);
+            }
+            throw new IOException("Checksum mismatch for " + url + ": expected " + digest + " but got " + actual);
+        }
+        // a reader may still have the partial download open, so let the buffer decide how to move it
+        buffer.complete(file);
+        return file;
+    }
+
+    /**
+     * Connects to a pack URL.
+     * <p/>
+     * If the connection is refused, the {@link ConnectionHandler} is consulted to determine if it should be retried.
+     *
+     * @param url    the pack URL
+     * @param offset the offset to request the pack from
+     * @return the connection
+     * @throws IOException if the connection fails
+     */
+    private URLConnection connect(URL url, long offset) throws IOException
+    {
+        while (true)
+        {
+            int attempt;
+            synchronized (this)
+            {
+                attempt = retries;
+            }
+            URLConnection connection = url.openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
+            if (offset > 0)
+            {
+                connection.setRequestProperty("Range", "bytes=" + offset + "-");
+            }
+            try
+            {
+                if (connection instanceof HttpURLConnection)
+                {
+                    ((HttpURLConnection) connection).getResponseCode();
+                }
+                else
+                {
+                    connection.connect();
+                }
+                return connection;
+            }
+            catch (ConnectException exception)
+            {
+                if (!retry(url, exception, attempt))
+                {
+                    throw exception;
+                }
+                logger.info("Retrying connection to " + url);
+            }
+        }
+    }
+
+    /**
+     * Determines if a refused connection should be retried.
+     * <p/>
+     * The handler is consulted at most once at a time, so that concurrent downloads that fail don't each prompt for
+     * a proxy.
+     *
+     * @param url       the pack URL
+     * @param exception the connection failure
+     * @param attempt   the number of retries requested when the connection was attempted
+     * @return {@code true} if the connection should be retried
+     */
+    private synchronized boolean retry(URL url, ConnectException exception, int attempt)
+    {
+        if (attempt != retries)
+        {
+            // the handler has requested a retry since the connection was attempted
+            return true;
+        }
+        ConnectionHandler current = handler;
+        if (current == null || declined || Thread.currentThread().isInterrupted())
+        {
+            return false;
+        }
+        if (current.retry(url, exception))
+        {
+            ++retries;
+            return true;
+        }
+        declined = true;
+        return false;
+    }
+
+    /**
+     * Returns the file name of a pack URL.
+     *
+     * @param url the URL
+     * @return the file name
+     */
+    private static String getFileName(URL url)
+    {
+        String path = url.getPath();
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Returns the hex encoded digest of a file.
+     *
+     * @param file the file
+     * @return the digest of the file
+     * @throws IOException if the file cannot be read
+     */
+    private static String digest(File file) throws IOException
+    {
+        MessageDigest md = createDigest();
+        update(md, file);
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    /**
+     * Updates a digest with the content of a file.
+     *
+     * @param md   the digest
+     * @param file the file
+     * @throws IOException if the file cannot be read
+     */
+    private static void update(MessageDigest md, File file) throws IOException
+    {
+        try (InputStream in = new FileInputStream(file))
+        {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                md.update(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Creates a digest to verify packs.
+     *
+     * @return a new digest
+     */
+    private static MessageDigest createDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException exception)
+        {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " is not supported", exception);
+        }
+    }
+
+    /**
+     * Handles refused connections.
+     */
+    public interface ConnectionHandler
+    {
+        /**
+         * Invoked when a connection to a pack URL is refused, for example as a proxy is required.
+         *
+         * @param url       the pack URL
+         * @param exception the connection failure
+         * @return {@code true} if the connection should be retried, {@code false} if the download should fail
+         */
+        boolean retry(URL url, ConnectException exception);
+    }
+
+    /**
+     * A pack download.
+     */
+    private static class Download
+    {
+        /**
+         * The buffer that the pack is downloaded through.
+         */
+        private final DownloadBuffer buffer;
+
+        /**
+         * The download task.
+         */
+        private final Future<File> future;
+
+        /**
+         * Constructs a <tt>Download</tt>.
+         *
+         * @param buffer the buffer that the pack is downloaded through
+         * @param future the download task
+         */
+        Download(DownloadBuffer buffer, Future<File> future)
+        {
+            this.buffer = buffer;
+            this.future = future;
+        }
+    }
+}
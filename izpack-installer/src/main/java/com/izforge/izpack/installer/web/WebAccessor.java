@@ -95,7 +95,6 @@ public class WebAccessor
     public InputStream openInputStream(URL url)
     {
         setUrl(url.toExternalForm());
-        OPEN_URL:
         while (true)
         {
             startOpening(url); // this starts a thread
@@ -133,53 +132,9 @@ public class WebAccessor
 
             // else (exception != null)
             // show proxy dialog until valid values or cancel
-            JPanel panel = getProxyPanel();
-            errorLabel.setText("Unable to connect: " + exception.getMessage());
-            while (true)
+            if (!promptForProxy(exception))
             {
-                int result = JOptionPane.showConfirmDialog(parent, panel, "Proxy Configuration",
-                        JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE);
-                if (result != JOptionPane.OK_OPTION) // canceled
-                {
-                    break OPEN_URL;
-                }
-
-                String host = null;
-                String port = null;
-
-                try
-                {
-                    InetAddress addr = InetAddress.getByName(hostField.getText());
-                    host = addr.getHostName();
-                }
-                catch (Exception x)
-                {
-                    errorLabel.setText("Unable to resolve Host");
-                    Toolkit.getDefaultToolkit().beep();
-                }
-
-                try
-                {
-                    if (host != null)
-                    {
-                        port = Integer.valueOf(portField.getText()).toString();
-                    }
-                }
-                catch (NumberFormatException x)
-                {
-                    errorLabel.setText("Invalid Port");
-                    Toolkit.getDefaultToolkit().beep();
-                }
-
-                if (host != null && port != null)
-                {
-                    // System.err.println ("Setting http proxy: "+ host
-                    // +":"+ port);
-                    System.getProperties().put("proxySet", "true");
-                    System.getProperties().put("proxyHost", host);
-                    System.getProperties().put("proxyPort", port);
-                    break;
-                }
+                break;
             }
         }
 
@@ -191,6 +146,67 @@ public class WebAccessor
         return iStream;
     }
 
+    /**
+     * Shows the proxy dialog until valid values are entered, or it is cancelled.
+     *
+     * @param exception the connection failure
+     * @return <tt>true</tt> if a proxy was specified, <tt>false</tt> if the dialog was cancelled
+     */
+    public synchronized boolean promptForProxy(Exception exception)
+    {
+        JPanel panel = getProxyPanel();
+        errorLabel.setText("Unable to connect: " + exception.getMessage());
+        while (true)
+        {
+            int result = JOptionPane.showConfirmDialog(parent, panel, "Proxy Configuration",
+                    JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE);
+            if (result != JOptionPane.OK_OPTION) // canceled
+            {
+                return false;
+            }
+
+            String host = null;
+            String port = null;
+
+            try
+            {
+                InetAddress addr = InetAddress.getByName(hostField.getText());
+                host = addr.getHostName();
+            }
+            catch (Exception x)
+            {
+                errorLabel.setText("Unable to resolve Host");
+                Toolkit.getDefaultToolkit().beep();
+            }
+
+            try
+            {
+                if (host != null)
+                {
+                    port = Integer.valueOf(portField.getText()).toString();
+                }
+            }
+            catch (NumberFormatException x)
+            {
+                errorLabel.setText("Invalid Port");
+                Toolkit.getDefaultToolkit().beep();
+            }
+
+            if (host != null && port != null)
+            {
+                System.getProperties().put("proxySet", "true");
+                System.getProperties().put("proxyHost", host);
+                System.getProperties().put("proxyPort", port);
+                // the properties read by the JDK's URL handlers
+                System.setProperty("http.proxyHost", host);
+                System.setProperty("http.proxyPort", port);
+                System.setProperty("https.proxyHost", host);
+                System.setProperty("https.proxyPort", port);
+                return true;
+            }
+        }
+    }
+
     private void startOpening(final URL url)
     {
         final WebAccessor webAccessor = this;
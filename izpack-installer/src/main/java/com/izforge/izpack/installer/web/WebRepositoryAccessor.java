@@ -57,7 +57,9 @@ public class WebRepositoryAccessor
      *
      * @param url the base URL
      * @return the url
+     * @deprecated use {@link PackDownloadManager}, which resumes and verifies downloads
      */
+    @Deprecated
     public static String getCachedUrl(String url, String tempFolder) throws IOException
     {
         byte[] raw = new byte[BUFFER_SIZE];
@@ -203,9 +203,7 @@ public class AutomatedInstallDataProviderTest
     {
         List<PackInfo> packsInfo = new ArrayList<PackInfo>();
         ByteArrayOutputStream stream = new ByteArrayOutputStream();
-        ObjectOutputStream objStream = new ObjectOutputStream(stream);
-        objStream.writeObject(packsInfo);
-        objStream.close();
+        PackInfoFormat.write(packsInfo, stream);
         return new ByteArrayInputStream(stream.toByteArray());
     }
 
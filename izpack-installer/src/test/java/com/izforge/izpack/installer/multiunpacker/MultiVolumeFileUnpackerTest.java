@@ -29,6 +29,7 @@ import com.izforge.izpack.api.data.XPackFile;
 import com.izforge.izpack.api.exception.InstallerException;
 import com.izforge.izpack.core.io.FileSpanningInputStream;
 import com.izforge.izpack.core.io.FileSpanningOutputStream;
+import com.izforge.izpack.core.io.VolumeIndex;
 import com.izforge.izpack.core.io.VolumeLocator;
 import com.izforge.izpack.installer.unpacker.AbstractFileUnpackerTest;
 import com.izforge.izpack.installer.unpacker.FileQueueFactory;
@@ -62,6 +63,11 @@ public class MultiVolumeFileUnpackerTest extends AbstractFileUnpackerTest
      */
     private int volumeCount;
 
+    /**
+     * The index of the blocks in the volumes.
+     */
+    private VolumeIndex index;
+
     /**
      * Verifies that the {@link VolumeLocator#getVolume(String, boolean)} method is invoked to prompt
      * for missing media.
@@ -93,7 +99,7 @@ public class MultiVolumeFileUnpackerTest extends AbstractFileUnpackerTest
             }
         };
 
-        FileSpanningInputStream stream = new FileSpanningInputStream(volume, volumeCount);
+        FileSpanningInputStream stream = new FileSpanningInputStream(volume, volumeCount, index);
         stream.setLocator(locator);
 
         FileQueue queue = new FileQueueFactory(Platforms.WINDOWS, getLibrarian()).create();
@@ -137,6 +143,7 @@ public class MultiVolumeFileUnpackerTest extends AbstractFileUnpackerTest
         // verify there is more than one volume
         out.close();
         volumeCount = out.getVolumes();
+        index = out.getIndex();
         assertTrue(volumeCount > 1);
         in.close();
         return source;
@@ -151,7 +158,7 @@ public class MultiVolumeFileUnpackerTest extends AbstractFileUnpackerTest
      */
     protected FileUnpacker createUnpacker(File sourceDir, FileQueue queue) throws IOException
     {
-        FileSpanningInputStream stream = new FileSpanningInputStream(volume, volumeCount);
+        FileSpanningInputStream stream = new FileSpanningInputStream(volume, volumeCount, index);
         return new MultiVolumeFileUnpacker(stream, getCancellable(), queue);
     }
 
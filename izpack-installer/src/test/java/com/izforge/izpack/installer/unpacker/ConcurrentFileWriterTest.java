@@ -0,0 +1,172 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Tests the {@link ConcurrentFileWriter} class.
+ */
+public class ConcurrentFileWriterTest
+{
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that files are written with their content and timestamps, and that completions are invoked in
+     * submission order.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testWrite() throws Exception
+    {
+        File targetDir = temporaryFolder.newFolder("target");
+        List<Integer> completed = new ArrayList<>();
+        try (ConcurrentFileWriter writer = new ConcurrentFileWriter(4))
+        {
+            for (int i = 0; i < 100; i++)
+            {
+                byte[] data = ("file " + i).getBytes(StandardCharsets.UTF_8);
+                PackFile packFile = createPackFile("source" + i + ".txt", data);
+                File target = new File(targetDir, "target" + i + ".txt");
+                int index = i;
+                writer.write(packFile, target, data, () -> completed.add(index));
+            }
+            writer.flush();
+        }
+
+        assertEquals(100, completed.size());
+        for (int i = 0; i < 100; i++)
+        {
+            assertEquals(i, (int) completed.get(i));
+            File target = new File(targetDir, "target" + i + ".txt");
+            File source = new File(temporaryFolder.getRoot(), "source" + i + ".txt");
+            assertArrayEquals(("file " + i).getBytes(StandardCharsets.UTF_8), Files.readAllBytes(target.toPath()));
+            assertEquals(source.lastModified(), target.lastModified());
+        }
+    }
+
+    /**
+     * Verifies that a target written twice ends up with the content of the last write.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testWriteSameTarget() throws Exception
+    {
+        File target = new File(temporaryFolder.getRoot(), "target.txt");
+        byte[] first = "first".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "second".getBytes(StandardCharsets.UTF_8);
+        List<String> completed = new ArrayList<String>();
+
+        // block the writer thread, so that each file is certain to be pending after it is submitted
+        CountDownLatch firstLatch = new CountDownLatch(1);
+        CountDownLatch secondLatch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.submit(() -> {
+            firstLatch.await();
+            return null;
+        });
+        try (ConcurrentFileWriter writer = new ConcurrentFileWriter(executor, 16))
+        {
+            writer.write(createPackFile("first.txt", first), target, first, () -> completed.add("first"));
+            assertTrue(writer.isPending(target));
+            assertTrue(completed.isEmpty());
+
+            executor.submit(() -> {
+                secondLatch.await();
+                return null;
+            });
+            firstLatch.countDown();
+
+            // the first file must be flushed before the second is submitted
+            writer.write(createPackFile("second.txt", second), target, second, () -> completed.add("second"));
+            assertEquals(Arrays.asList("first"), completed);
+            assertArrayEquals(first, Files.readAllBytes(target.toPath()));
+            assertTrue(writer.isPending(target));
+
+            secondLatch.countDown();
+            writer.flush();
+            assertFalse(writer.isPending(target));
+            assertEquals(Arrays.asList("first", "second"), completed);
+        }
+        assertArrayEquals(second, Files.readAllBytes(target.toPath()));
+    }
+
+    /**
+     * Verifies that a failure to write a file is reported.
+     *
+     * @throws Exception for any error
+     */
+    @Test(expected = IOException.class)
+    public void testWriteFailure() throws Exception
+    {
+        byte[] data = "data".getBytes(StandardCharsets.UTF_8);
+        File target = new File(temporaryFolder.getRoot(), "missing/target.txt");
+        try (ConcurrentFileWriter writer = new ConcurrentFileWriter(2))
+        {
+            writer.write(createPackFile("source.txt", data), target, data, () -> { });
+            writer.flush();
+        }
+    }
+
+    /**
+     * Creates a pack file for the supplied content.
+     *
+     * @param name the source file name
+     * @param data the file content
+     * @return a new pack file
+     * @throws IOException for any I/O error
+     */
+    private PackFile createPackFile(String name, byte[] data) throws IOException
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File source = new File(baseDir, name);
+        Files.write(source.toPath(), data);
+        return new PackFile(baseDir, source, name, null, OverrideType.OVERRIDE_TRUE, null, Blockable.BLOCKABLE_NONE,
+                            null);
+    }
+}
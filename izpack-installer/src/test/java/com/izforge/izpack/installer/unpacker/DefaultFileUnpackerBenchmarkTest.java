@@ -0,0 +1,199 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.util.NoCloseInputStream;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Benchmarks the {@link DefaultFileUnpacker} with 1 KB, 1 MB and 1 GB files.
+ * <p/>
+ * Each size is unpacked from a pack stream backed by a file, which is transferred between channels, and from a
+ * buffered stream, which is copied via a buffer. The 5 KB buffer copy previously used is measured for comparison.
+ */
+public class DefaultFileUnpackerBenchmarkTest
+{
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Runs the benchmark.
+     *
+     * @throws Exception for any error
+     */
+    @Ignore("This is a long running benchmark, requiring several GB of disk space. It should be run when making "
+                    + "changes to FileUnpacker")
+    @Test
+    public void testBenchmark() throws Exception
+    {
+        benchmark(1024, 10000);
+        benchmark(1024 * 1024, 200);
+        benchmark(1024 * 1024 * 1024, 1);
+    }
+
+    /**
+     * Benchmarks unpacking files of the specified size.
+     *
+     * @param size  the file size
+     * @param count the no. of files to unpack
+     * @throws Exception for any error
+     */
+    private void benchmark(int size, int count) throws Exception
+    {
+        File dir = temporaryFolder.newFolder();
+        File source = new File(dir, "source.bin");
+        File pack = new File(dir, "pack.bin");
+        writeRandom(source, size, 1);
+        writeRandom(pack, size, count);
+        PackFile file = new PackFile(dir, source, "target.bin", null, OverrideType.OVERRIDE_TRUE, null,
+                                     Blockable.BLOCKABLE_NONE, null);
+        File targetDir = new File(dir, "target");
+
+        for (int run = 0; run < 2; run++)
+        {
+            // the first run warms up
+            long channel = unpack(file, new FileInputStream(pack), targetDir, count);
+            long buffered = unpack(file, new BufferedInputStream(new FileInputStream(pack)), targetDir, count);
+            long legacy = legacyCopy(size, new BufferedInputStream(new FileInputStream(pack)), targetDir, count);
+            if (run == 1)
+            {
+                System.out.println(UnpackThroughput.SizeClass.get(size) + " (" + count + " x " + size + " bytes): "
+                                           + "channel=" + rate(size, count, channel)
+                                           + ", buffered=" + rate(size, count, buffered)
+                                           + ", legacy=" + rate(size, count, legacy));
+            }
+        }
+    }
+
+    /**
+     * Unpacks files from a pack stream.
+     *
+     * @param file      the pack file
+     * @param in        the pack stream
+     * @param targetDir the directory to unpack to
+     * @param count     the no. of files to unpack
+     * @return the elapsed time, in nanoseconds
+     * @throws Exception for any error
+     */
+    private long unpack(PackFile file, InputStream in, File targetDir, int count) throws Exception
+    {
+        Cancellable cancellable = () -> false;
+        long start = System.nanoTime();
+        try (InputStream packStream = in)
+        {
+            for (int i = 0; i < count; i++)
+            {
+                File target = new File(targetDir, "target" + i + ".bin");
+                new DefaultFileUnpacker(cancellable, null).unpack(file, new NoCloseInputStream(packStream), target);
+                assertEquals(file.length(), target.length());
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Copies files from a pack stream, the way files were unpacked before channels and adaptive buffers were used.
+     *
+     * @param size      the file size
+     * @param in        the pack stream
+     * @param targetDir the directory to unpack to
+     * @param count     the no. of files to unpack
+     * @return the elapsed time, in nanoseconds
+     * @throws IOException for any I/O error
+     */
+    private long legacyCopy(int size, InputStream in, File targetDir, int count) throws IOException
+    {
+        long start = System.nanoTime();
+        byte[] buffer = new byte[5120];
+        try (InputStream packStream = in)
+        {
+            for (int i = 0; i < count; i++)
+            {
+                try (OutputStream out = new FileOutputStream(new File(targetDir, "legacy" + i + ".bin")))
+                {
+                    long copied = 0;
+                    while (copied < size)
+                    {
+                        int read = packStream.read(buffer, 0, (int) Math.min(size - copied, buffer.length));
+                        out.write(buffer, 0, read);
+                        copied += read;
+                    }
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Writes random data to a file.
+     *
+     * @param file  the file
+     * @param size  the size of each block
+     * @param count the no. of blocks
+     * @throws IOException for any I/O error
+     */
+    private static void writeRandom(File file, int size, int count) throws IOException
+    {
+        Random random = new Random(size);
+        byte[] block = new byte[Math.min(size, 1024 * 1024)];
+        random.nextBytes(block);
+        try (OutputStream out = new FileOutputStream(file))
+        {
+            for (long written = 0, total = (long) size * count; written < total; written += block.length)
+            {
+                out.write(block, 0, (int) Math.min(block.length, total - written));
+            }
+        }
+    }
+
+    /**
+     * Formats a throughput.
+     *
+     * @param size    the file size
+     * @param count   the no. of files
+     * @param elapsed the elapsed time, in nanoseconds
+     * @return the formatted throughput
+     */
+    private static String rate(int size, int count, long elapsed)
+    {
+        return String.format("%.1f MB/s", ((double) size * count / (1024 * 1024)) / (elapsed / 1.0e9));
+    }
+}
@@ -22,10 +22,26 @@
 package com.izforge.izpack.installer.unpacker;
 
 
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.ParsableFile;
+import com.izforge.izpack.api.data.Variables;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import com.izforge.izpack.util.FileChecksum;
+import com.izforge.izpack.util.NoCloseInputStream;
 import com.izforge.izpack.util.os.FileQueue;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.junit.Test;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 
 /**
@@ -65,4 +81,143 @@ public class DefaultFileUnpackerTest extends AbstractFileUnpackerTest
         return new DefaultFileUnpacker(getCancellable(), queue);
     }
 
+    /**
+     * Verifies that variables are replaced in a parsable file as it is unpacked, and that only the file's bytes are
+     * read from the pack stream.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testUnpackParsable() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File source = new File(baseDir, "source.properties");
+        FileUtils.writeStringToFile(source, "name=${APP_NAME}\nversion=${APP_VER}\n", StandardCharsets.UTF_8);
+        File target = getTargetFile(baseDir);
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+
+        ByteArrayOutputStream pack = new ByteArrayOutputStream();
+        pack.write(FileUtils.readFileToByteArray(source));
+        pack.write("next".getBytes(StandardCharsets.UTF_8));
+        InputStream packStream = new ByteArrayInputStream(pack.toByteArray());
+
+        Variables variables = new DefaultVariables();
+        variables.set("APP_NAME", "Test");
+        variables.set("APP_VER", "1.0");
+        ParsableFile parsable = new ParsableFile(target.getPath(), SubstitutionType.TYPE_PLAIN,
+                                                 StandardCharsets.UTF_8.name(), null);
+
+        FileUnpacker unpacker = createUnpacker(baseDir, null);
+        unpacker.setParsable(parsable, new VariableSubstitutorImpl(variables));
+        unpacker.unpack(file, packStream, target);
+
+        assertEquals("name=Test\nversion=1.0\n", FileUtils.readFileToString(target, StandardCharsets.UTF_8));
+        assertEquals(source.lastModified(), target.lastModified());
+        assertEquals("next", IOUtils.toString(packStream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Verifies that a file is transferred directly from a file stream, reading only the file's bytes and verifying
+     * its checksum, and that an existing, longer target is replaced.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testUnpackFromFileStream() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File source = new File(baseDir, "source.bin");
+        byte[] data = new byte[100000];
+        new Random(1).nextBytes(data);
+        FileUtils.writeByteArrayToFile(source, data);
+        File target = getTargetFile(baseDir);
+        FileUtils.writeByteArrayToFile(target, new byte[200000]);
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+        file.setChecksum(FileChecksum.getChecksum(source));
+
+        File pack = new File(baseDir, "pack.bin");
+        FileUtils.writeByteArrayToFile(pack, data);
+        FileUtils.writeStringToFile(pack, "next", StandardCharsets.UTF_8, true);
+
+        UnpackThroughput throughput = new UnpackThroughput();
+        try (FileInputStream packStream = new FileInputStream(pack))
+        {
+            FileUnpacker unpacker = createUnpacker(baseDir, null);
+            unpacker.setThroughput(throughput);
+            unpacker.unpack(file, new NoCloseInputStream(packStream), target);
+            assertEquals("next", IOUtils.toString(packStream, StandardCharsets.UTF_8));
+        }
+
+        checkTarget(source, target);
+        assertEquals(1, throughput.getFiles(UnpackThroughput.SizeClass.MEDIUM));
+        assertEquals(data.length, throughput.getBytes(UnpackThroughput.SizeClass.MEDIUM));
+    }
+
+    /**
+     * Verifies that unpacking fails if the pack stream ends before the file does.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testTruncatedPackStream() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File source = createSourceFile(baseDir);
+        File target = getTargetFile(baseDir);
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+
+        FileUnpacker unpacker = createUnpacker(baseDir, null);
+        try
+        {
+            unpacker.unpack(file, new ByteArrayInputStream(new byte[2]), target);
+            fail("Expected IOException");
+        }
+        catch (IOException expected)
+        {
+            assertEquals("Unexpected end of stream (installer corrupted?)", expected.getMessage());
+        }
+    }
+
+    /**
+     * Verifies that unpacking fails with the file name if the content doesn't match the pack file checksum, whether
+     * it is copied via a buffer or transferred from a file stream.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testChecksumMismatch() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File source = new File(baseDir, "source.bin");
+        byte[] data = new byte[100000];
+        new Random(1).nextBytes(data);
+        FileUtils.writeByteArrayToFile(source, data);
+        File target = getTargetFile(baseDir);
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+        file.setChecksum(FileChecksum.getChecksum(source));
+
+        data[data.length / 2] ^= 1;
+        File pack = new File(baseDir, "pack.bin");
+        FileUtils.writeByteArrayToFile(pack, data);
+
+        String expected = "Checksum mismatch for " + file.getTargetPath() + " (installer corrupted?)";
+        try
+        {
+            createUnpacker(baseDir, null).unpack(file, new ByteArrayInputStream(data), target);
+            fail("Expected IOException");
+        }
+        catch (IOException exception)
+        {
+            assertEquals(expected, exception.getMessage());
+        }
+        try (FileInputStream packStream = new FileInputStream(pack))
+        {
+            createUnpacker(baseDir, null).unpack(file, packStream, target);
+            fail("Expected IOException");
+        }
+        catch (IOException exception)
+        {
+            assertEquals(expected, exception.getMessage());
+        }
+    }
 }
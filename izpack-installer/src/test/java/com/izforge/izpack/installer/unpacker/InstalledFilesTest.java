@@ -0,0 +1,100 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.util.FileChecksum;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Tests the {@link InstalledFiles} class.
+ */
+public class InstalledFilesTest
+{
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that the checksum of a recorded file is only returned while the file is unchanged, and that records
+     * can be written and read.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testRecordedChecksum() throws Exception
+    {
+        File dir = temporaryFolder.getRoot();
+        File source = new File(dir, "source.txt");
+        FileUtils.writeStringToFile(source, "content", StandardCharsets.UTF_8);
+        PackFile packFile = new PackFile(dir, source, "$INSTALL_PATH/target.txt", null, OverrideType.OVERRIDE_TRUE,
+                                         null, Blockable.BLOCKABLE_NONE, null);
+        packFile.setChecksum(FileChecksum.getChecksum(source));
+
+        File target = new File(dir, "target.txt");
+        FileUtils.copyFile(source, target);
+        String path = target.getPath();
+
+        InstalledFiles files = new InstalledFiles();
+        assertEquals(-1, files.getChecksum(path, target));
+        files.add(path, packFile);
+        assertEquals(packFile.getChecksum(), files.getChecksum(path, target));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+        {
+            files.write(out);
+        }
+        InstalledFiles read;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+        {
+            read = InstalledFiles.read(in);
+        }
+        assertEquals(1, read.size());
+        assertEquals(packFile.getChecksum(), read.getChecksum(path, target));
+
+        // a modified file must be read to determine its content
+        assertTrue(target.setLastModified(source.lastModified() - 10000));
+        assertEquals(-1, read.getChecksum(path, target));
+
+        // a file extracted without a checksum is no longer recorded
+        packFile.setChecksum(-1);
+        read.add(path, packFile);
+        assertEquals(0, read.size());
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.web;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Tests the {@link DownloadBuffer}.
+ */
+public class DownloadBufferTest
+{
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that a reader keeping up with the download reads it from the ring buffer, and that a reader that
+     * falls behind reads the spilled data from disk.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testRingAndSpill() throws Exception
+    {
+        File file = temporaryFolder.newFile("pack.jar.part");
+        DownloadBuffer buffer = new DownloadBuffer(file, 100);
+        byte[] data = createData(1000);
+
+        InputStream current = buffer.newInputStream(null, 10);
+        InputStream behind = buffer.newInputStream(null, 10);
+        byte[] read = new byte[data.length];
+        try (OutputStream out = new FileOutputStream(file))
+        {
+            buffer.reset(0);
+            for (int i = 0; i < data.length; i += 60)
+            {
+                int length = Math.min(60, data.length - i);
+                out.write(data, i, length);
+                buffer.append(data, i, length);
+                assertEquals(length, IOUtils.read(current, read, i, length));
+            }
+        }
+        assertArrayEquals(data, read);
+        buffer.complete(file);
+        assertEquals(-1, current.read());
+
+        // the ring only held the last 100 bytes, so the rest comes from disk
+        assertArrayEquals(data, IOUtils.toByteArray(behind));
+        current.close();
+        behind.close();
+    }
+
+    /**
+     * Verifies that a reader blocks until data is appended, and only sees the end of the stream on completion.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testReaderWaits() throws Exception
+    {
+        final File file = temporaryFolder.newFile("pack.jar.part");
+        final DownloadBuffer buffer = new DownloadBuffer(file, 64);
+        final byte[] data = createData(500);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            Future<byte[]> result = executor.submit(() -> {
+                try (InputStream in = buffer.newInputStream(null, 10))
+                {
+                    return IOUtils.toByteArray(in);
+                }
+            });
+            try (OutputStream out = new FileOutputStream(file))
+            {
+                buffer.reset(0);
+                for (int i = 0; i < data.length; i += 50)
+                {
+                    out.write(data, i, 50);
+                    buffer.append(data, i, 50);
+                    Thread.sleep(5);
+                }
+            }
+            Thread.sleep(50);
+            assertFalse(result.isDone());
+            buffer.complete(file);
+            assertArrayEquals(data, result.get(10, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Verifies that completing a download while a reader is still reading it from disk doesn't rename the file out
+     * from under the reader. The file is copied to the target instead, and deleted when the reader is closed.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCompleteWhileReadingFromDisk() throws Exception
+    {
+        File part = temporaryFolder.newFile("pack.jar.part");
+        File target = new File(temporaryFolder.getRoot(), "pack.jar");
+        DownloadBuffer buffer = new DownloadBuffer(part, 64);
+        byte[] data = createData(500);
+        try (OutputStream out = new FileOutputStream(part))
+        {
+            buffer.reset(0);
+            out.write(data);
+            buffer.append(data, 0, data.length);
+        }
+
+        InputStream in = buffer.newInputStream(null, 10);
+        byte[] read = new byte[data.length];
+        // the first 100 bytes have been spilled, so this opens the partial download
+        assertEquals(100, IOUtils.read(in, read, 0, 100));
+
+        buffer.complete(target);
+        assertTrue(part.exists());
+        assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+
+        // the reader continues from the partial download
+        assertEquals(data.length - 100, IOUtils.read(in, read, 100, data.length - 100));
+        assertEquals(-1, in.read());
+        assertArrayEquals(data, read);
+        in.close();
+        assertFalse(part.exists());
+
+        // new readers read the target
+        try (InputStream again = buffer.newInputStream(null, 10))
+        {
+            assertArrayEquals(data, IOUtils.toByteArray(again));
+        }
+        assertTrue(target.exists());
+    }
+
+    /**
+     * Verifies that completing a download that no reader has open renames it to the target.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCompleteMoves() throws Exception
+    {
+        File part = temporaryFolder.newFile("pack.jar.part");
+        File target = new File(temporaryFolder.getRoot(), "pack.jar");
+        DownloadBuffer buffer = new DownloadBuffer(part, 64);
+        byte[] data = createData(200);
+        try (OutputStream out = new FileOutputStream(part))
+        {
+            buffer.reset(0);
+            out.write(data);
+            buffer.append(data, 0, data.length);
+        }
+        buffer.complete(target);
+        assertFalse(part.exists());
+        try (InputStream in = buffer.newInputStream(null, 10))
+        {
+            assertArrayEquals(data, IOUtils.toByteArray(in));
+        }
+    }
+
+    /**
+     * Verifies that a resumed download is read from the start of the file.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testResume() throws Exception
+    {
+        File file = temporaryFolder.newFile("pack.jar.part");
+        DownloadBuffer buffer = new DownloadBuffer(file, 64);
+        byte[] data = createData(300);
+        try (OutputStream out = new FileOutputStream(file))
+        {
+            out.write(data, 0, 200);
+            buffer.reset(200);
+            out.write(data, 200, 100);
+            buffer.append(data, 200, 100);
+        }
+        buffer.complete(file);
+        try (InputStream in = buffer.newInputStream(null, 10))
+        {
+            assertArrayEquals(data, IOUtils.toByteArray(in));
+        }
+    }
+
+    /**
+     * Verifies that a failed download is reported to readers.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testFailure() throws Exception
+    {
+        File file = temporaryFolder.newFile("pack.jar.part");
+        DownloadBuffer buffer = new DownloadBuffer(file, 64);
+        byte[] data = createData(10);
+        buffer.reset(0);
+        buffer.append(data, 0, data.length);
+        buffer.fail(new IOException("Checksum mismatch"));
+        try (InputStream in = buffer.newInputStream(null, 10))
+        {
+            IOUtils.toByteArray(in);
+            fail("Expected IOException");
+        }
+        catch (IOException expected)
+        {
+            assertEquals("Checksum mismatch", expected.getMessage());
+        }
+    }
+
+    /**
+     * Creates random data.
+     *
+     * @param length the data length
+     * @return the data
+     */
+    private static byte[] createData(int length)
+    {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,468 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.web;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Tests the {@link PackDownloadManager} against a local HTTP server.
+ */
+public class PackDownloadManagerTest
+{
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The served content, keyed on path.
+     */
+    private final Map<String, byte[]> content = new ConcurrentHashMap<String, byte[]>();
+
+    /**
+     * The <tt>Range</tt> headers of the requests, or {@code ""} for requests without one.
+     */
+    private final List<String> ranges = new CopyOnWriteArrayList<String>();
+
+    /**
+     * The number of requests in progress.
+     */
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * The maximum number of concurrent requests.
+     */
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    /**
+     * The server.
+     */
+    private HttpServer server;
+
+    /**
+     * The cache directory.
+     */
+    private File cacheDir;
+
+    /**
+     * Starts the server.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        cacheDir = temporaryFolder.newFolder("IzpackWebTemp");
+    }
+
+    /**
+     * Stops the server.
+     */
+    @After
+    public void tearDown()
+    {
+        server.stop(0);
+    }
+
+    /**
+     * Verifies that a pack is downloaded and verified against its digest.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testDownload() throws Exception
+    {
+        byte[] data = serve("install.jar.pack-core.jar", 200000);
+        try (PackDownloadManager manager = new PackDownloadManager(cacheDir, 2))
+        {
+            File file = manager.getFile(getURL("install.jar.pack-core.jar"), digest(data), null);
+            assertEquals(new File(cacheDir, "install.jar.pack-core.jar"), file);
+            assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+            assertEquals(data.length, manager.getDownloaded());
+            assertEquals(data.length, manager.getTotal());
+        }
+        assertEquals(Arrays.asList(""), ranges);
+    }
+
+    /**
+     * Verifies that a partial download is resumed using a <tt>Range</tt> request.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testResume() throws Exception
+    {
+        byte[] data = serve("install.jar.pack-core.jar", 100000);
+        File part = new File(cacheDir, "install.jar.pack-core.jar" + PackDownloadManager.PART_SUFFIX);
+        Files.write(part.toPath(), Arrays.copyOf(data, 40000));
+
+        try (PackDownloadManager manager = new PackDownloadManager(cacheDir, 2))
+        {
+            File file = manager.getFile(getURL("install.jar.pack-core.jar"), digest(data), null);
+            assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+            assertEquals(60000, manager.getDownloaded());
+        }
+        assertEquals(Arrays.asList("bytes=40000-"), ranges);
+        assertFalse(part.exists());
+    }
+
+    /**
+     * Verifies that a download that doesn't match its digest fails, and is discarded so that it can be retried.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testChecksumMismatch() throws Exception
+    {
+        byte[] data = serve("install.jar.pack-core.jar", 1000);
+        URL url = getURL("install.jar.pack-core.jar");
+        try (PackDownloadManager manager = new PackDownloadManager(cacheDir, 2))
+        {
+            try
+            {
+                manager.getFile(url, digest(new byte[1]), null);
+                fail("Expected IOException");
+            }
+            catch (IOException expected)
+            {
+                assertTrue(expected.getMessage().contains("Checksum mismatch"));
+            }
+            assertFalse(new File(cacheDir, "install.jar.pack-core.jar").exists());
+            assertFalse(new File(cacheDir, "install.jar.pack-core.jar" + PackDownloadManager.PART_SUFFIX).exists());
+
+            // the failed download is retried
+            File file = manager.getFile(url, digest(data), null);
+            assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+        }
+    }
+
+    /**
+     * Verifies that a cached pack matching its digest isn't downloaded again.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCached() throws Exception
+    {
+        byte[] data = serve("install.jar.pack-core.jar", 1000);
+        Files.write(new File(cacheDir, "install.jar.pack-core.jar").toPath(), data);
+
+        try (PackDownloadManager manager = new PackDownloadManager(cacheDir, 2))
+        {
+            File file = manager.getFile(getURL("install.jar.pack-core.jar"), digest(data), null);
+            assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+            assertEquals(0, manager.getDownloaded());
+        }
+        assertTrue(ranges.isEmpty());
+    }
+
+    /**
+     * Verifies that prefetched packs are downloaded concurrently, and only once.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testPrefetch() throws Exception
+    {
+        int count = 4;
+        byte[][] data = new byte[count][];
+        for (int i = 0; i < count; i++)
+        {
+            data[i] = serve("install.jar.pack-" + i + ".jar", 300000);
+        }
+        try (PackDownloadManager manager = new PackDownloadManager(cacheDir, count))
+        {
+            for (int i = 0; i < count; i++)
+            {
+                manager.prefetch(getURL("install.jar.pack-" + i + ".jar"), digest(data[i]));
+            }
+            for (int i = 0; i < count; i++)
+            {
+                File file = manager.getFile(getURL("install.jar.pack-" + i + ".jar"), digest(data[i]), null);
+                assertArrayEquals(data[i], Files.readAllBytes(file.toPath()));
+            }
+            assertEquals(count * 300000L, manager.getDownloaded());
+        }
+        assertEquals(count, ranges.size());
+        assertTrue(maxActive.get() > 1);
+    }
+
+    /**
+     * Verifies that a pack can be read while it downloads, and that it is subsequently available from the cache.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testOpenStream() throws Exception
+    {
+        byte[] data = serve("install.jar.pack-core.jar", 500000);
+        URL url = getURL("install.jar.pack-core.jar");
+        try (PackDownloadManager manager = new PackDownloadManager(cacheDir, 2, 64 * 1024))
+        {
+            byte[] read = new byte[data.length];
+            try (InputStream in = manager.openStream(url, digest(data), null))
+            {
+                assertEquals(1000, IOUtils.read(in, read, 0, 1000));
+                assertTrue(manager.getDownloaded() < data.length);
+                assertEquals(data.length - 1000, IOUtils.read(in, read, 1000, data.length - 1000));
+                assertEquals(-1, in.read());
+            }
+            assertArrayEquals(data, read);
+
+            File file = manager.getFile(url, digest(data), null);
+            assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+        }
+        assertEquals(1, ranges.size());
+    }
+
+    /**
+     * Verifies that a streamed pack that doesn't match its digest fails at the end of the stream.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testOpenStreamChecksumMismatch() throws Exception
+    {
+        byte[] data = serve("install.jar.pack-core.jar", 100000);
+        try (PackDownloadManager manager = new PackDownloadManager(cacheDir, 2);
+             InputStream in = manager.openStream(getURL("install.jar.pack-core.jar"), digest(new byte[1]), null))
+        {
+            byte[] read = new byte[data.length];
+            assertEquals(data.length, IOUtils.read(in, read));
+            assertArrayEquals(data, read);
+            try
+            {
+                in.read();
+                fail("Expected IOException");
+            }
+            catch (IOException expected)
+            {
+                assertTrue(expected.getMessage().contains("Checksum mismatch"));
+            }
+        }
+    }
+
+    /**
+     * Verifies that a refused connection is retried if the connection handler requests it.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testConnectionRefusedRetried() throws Exception
+    {
+        byte[] data = serve("install.jar.pack-core.jar", 10000);
+        final URL url = getURL("install.jar.pack-core.jar");
+        final InetSocketAddress address = server.getAddress();
+        server.stop(0);
+
+        final AtomicInteger prompts = new AtomicInteger();
+        try (PackDownloadManager manager = new PackDownloadManager(cacheDir, 2))
+        {
+            manager.setConnectionHandler((failed, exception) -> {
+                assertEquals(url, failed);
+                prompts.incrementAndGet();
+                try
+                {
+                    // simulate configuring a proxy by restarting the server
+                    server = HttpServer.create(address, 0);
+                    server.createContext("/", this::handle);
+                    server.start();
+                }
+                catch (IOException error)
+                {
+                    throw new IllegalStateException(error);
+                }
+                return true;
+            });
+            File file = manager.getFile(url, digest(data), null);
+            assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+        }
+        assertEquals(1, prompts.get());
+    }
+
+    /**
+     * Verifies that a refused connection fails if the connection handler declines to retry it, and that the handler
+     * isn't consulted again.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testConnectionRefusedFails() throws Exception
+    {
+        serve("install.jar.pack-core.jar", 10000);
+        serve("install.jar.pack-docs.jar", 10000);
+        URL core = getURL("install.jar.pack-core.jar");
+        URL docs = getURL("install.jar.pack-docs.jar");
+        server.stop(0);
+
+        final AtomicInteger prompts = new AtomicInteger();
+        try (PackDownloadManager manager = new PackDownloadManager(cacheDir, 2))
+        {
+            manager.setConnectionHandler((failed, exception) -> {
+                prompts.incrementAndGet();
+                return false;
+            });
+            for (URL url : Arrays.asList(core, docs))
+            {
+                try
+                {
+                    manager.getFile(url, null, null);
+                    fail("Expected ConnectException");
+                }
+                catch (ConnectException expected)
+                {
+                    // expected
+                }
+            }
+        }
+        assertEquals(1, prompts.get());
+    }
+
+    /**
+     * Serves random content.
+     *
+     * @param name   the file name
+     * @param length the content length
+     * @return the content
+     */
+    private byte[] serve(String name, int length)
+    {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        content.put("/" + name, data);
+        return data;
+    }
+
+    /**
+     * Returns the URL of a served file.
+     *
+     * @param name the file name
+     * @return the URL
+     * @throws IOException if the URL is invalid
+     */
+    private URL getURL(String name) throws IOException
+    {
+        InetSocketAddress address = server.getAddress();
+        return new URL("http://" + address.getHostString() + ":" + address.getPort() + "/" + name);
+    }
+
+    /**
+     * Handles a request, supporting <tt>Range</tt> requests of the form <tt>bytes=N-</tt>.
+     * <p/>
+     * Responses are written slowly, so that concurrent requests overlap.
+     *
+     * @param exchange the exchange
+     * @throws IOException for any I/O error
+     */
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try
+        {
+            byte[] data = content.get(exchange.getRequestURI().getPath());
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            ranges.add(range != null ? range : "");
+            if (data == null)
+            {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            int offset = 0;
+            int status = 200;
+            if (range != null)
+            {
+                offset = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+                status = 206;
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + offset + "-" + (data.length - 1)
+                        + "/" + data.length);
+            }
+            exchange.sendResponseHeaders(status, data.length - offset);
+            try (OutputStream out = exchange.getResponseBody())
+            {
+                for (int i = offset; i < data.length; i += 50000)
+                {
+                    out.write(data, i, Math.min(50000, data.length - i));
+                    out.flush();
+                    Thread.sleep(20);
+                }
+            }
+            catch (InterruptedException exception)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        finally
+        {
+            active.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 digest of some data.
+     *
+     * @param data the data
+     * @return the digest
+     * @throws Exception for any error
+     */
+    private static String digest(byte[] data) throws Exception
+    {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+    }
+}
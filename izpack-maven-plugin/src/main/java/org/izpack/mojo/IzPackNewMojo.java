@@ -105,6 +105,13 @@ public class IzPackNewMojo extends AbstractMojo
     @Parameter( defaultValue = "-1" )
     private int comprLevel;
 
+    /**
+     * Directory of the build cache. When set, compressed pack files and Pack200 outputs are reused by subsequent
+     * builds if their sources haven't changed. Deactivated by default
+     */
+    @Parameter( property = "izpack.cacheDir" )
+    private File cacheDir;
+
     /**
      * Whether to automatically include project.url from Maven into
      * IzPack info header
@@ -257,8 +264,13 @@ public class IzPackNewMojo extends AbstractMojo
                 info.setAppURL(project.getUrl());
             }
         }
-        return new CompilerData(comprFormat, kind, installFile.getPath(), null, baseDir.getPath(), jarFile.getPath(),
-                                mkdirs, comprLevel, info);
+        CompilerData compilerData = new CompilerData(comprFormat, kind, installFile.getPath(), null,
+                                                     baseDir.getPath(), jarFile.getPath(), mkdirs, comprLevel, info);
+        if (cacheDir != null)
+        {
+            compilerData.setCacheDir(cacheDir.getPath());
+        }
+        return compilerData;
     }
 
     private Handler createLogHandler()
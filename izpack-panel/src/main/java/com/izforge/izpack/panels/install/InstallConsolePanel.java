@@ -25,7 +25,9 @@ import java.util.Properties;
 
 import com.google.inject.Inject;
 import com.izforge.izpack.api.data.InstallData;
+import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.event.ProgressListener;
+import com.izforge.izpack.core.handler.ProgressBus;
 import com.izforge.izpack.installer.console.AbstractConsolePanel;
 import com.izforge.izpack.installer.console.ConsolePanel;
 import com.izforge.izpack.installer.panel.PanelView;
@@ -39,6 +41,11 @@ import com.izforge.izpack.util.Console;
  */
 public class InstallConsolePanel extends AbstractConsolePanel implements ProgressListener
 {
+    /**
+     * The period between reports of the install rate, in milliseconds.
+     */
+    private static final long PROGRESS_PERIOD = 5000;
+
     /**
      * The unpacker.
      */
@@ -46,6 +53,11 @@ public class InstallConsolePanel extends AbstractConsolePanel implements Progres
 
     private int noOfPacks = 0;
 
+    /**
+     * Coalesces the progress reported by the unpacker. May be {@code null}.
+     */
+    private ProgressBus bus;
+
     @Inject
     public InstallConsolePanel(IUnpacker unpacker, PanelView<ConsolePanel> panel)
     {
@@ -55,7 +67,7 @@ public class InstallConsolePanel extends AbstractConsolePanel implements Progres
 
     public boolean run(InstallData installData, Properties properties)
     {
-        return run();
+        return run(installData);
     }
 
     /**
@@ -70,7 +82,7 @@ public class InstallConsolePanel extends AbstractConsolePanel implements Progres
     {
         printHeadLine(installData, console);
 
-        return run();
+        return run(installData);
     }
 
     @Override
@@ -89,7 +101,12 @@ public class InstallConsolePanel extends AbstractConsolePanel implements Progres
     @Override
     public void progress(int val, String msg)
     {
-
+        long remaining = (bus != null) ? bus.getRemainingTime() : -1;
+        if (remaining >= 0)
+        {
+            System.out.println("[ " + Pack.toByteUnitsString(Math.round(bus.getRate())) + "/s, "
+                                       + ProgressBus.formatTime(remaining) + " remaining ]");
+        }
     }
 
     @Override
@@ -135,9 +152,12 @@ public class InstallConsolePanel extends AbstractConsolePanel implements Progres
         // no-op
     }
 
-    private boolean run()
+    private boolean run(InstallData installData)
     {
-        unpacker.setProgressListener(this);
+        // the rate is printed at most once per period, rather than for each file
+        bus = new ProgressBus(this, Runnable::run, PROGRESS_PERIOD);
+        bus.setPacks(installData.getSelectedPacks());
+        unpacker.setProgressListener(bus);
         unpacker.run();
         return unpacker.getResult();
     }
@@ -26,9 +26,11 @@ import javax.swing.JProgressBar;
 import javax.swing.SwingUtilities;
 
 import com.google.inject.Inject;
+import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.data.Panel;
 import com.izforge.izpack.api.event.ProgressListener;
 import com.izforge.izpack.api.resource.Resources;
+import com.izforge.izpack.core.handler.ProgressBus;
 import com.izforge.izpack.gui.IzPanelLayout;
 import com.izforge.izpack.gui.LabelFactory;
 import com.izforge.izpack.gui.log.Log;
@@ -91,6 +93,18 @@ public class InstallPanel extends IzPanel implements ProgressListener
      */
     private int currentStep = 0;
 
+    /**
+     * The number of the pack being installed.
+     */
+    private int currentPack = 0;
+
+    /**
+     * Coalesces the progress reported by the unpacker, so the event queue isn't flooded with an update per file.
+     * The bus publishes to this panel on the event dispatch thread, so the panel's {@link ProgressListener} methods
+     * update the components directly.
+     */
+    private final ProgressBus bus;
+
     /**
      * Constructs an <tt>InstallPanel</tt>.
      *
@@ -104,6 +118,7 @@ public class InstallPanel extends IzPanel implements ProgressListener
     public InstallPanel(Panel panel, InstallerFrame parent, GUIInstallData installData, Resources resources, Log log)
     {
         super(panel, parent, installData, new IzPanelLayout(log), resources);
+        bus = new ProgressBus(this, SwingUtilities::invokeLater);
         this.tipLabel = LabelFactory.create(getI18nStringForClass("tip"), parent.getIcons().get(iconName), LEADING);
         add(this.tipLabel, IzPanelLayout.getDefaultConstraint(FULL_LINE_CONTROL_CONSTRAINT));
         packOpLabel = LabelFactory.create(" ", LEADING);
@@ -148,23 +163,16 @@ public class InstallPanel extends IzPanel implements ProgressListener
     public void startAction(String name, int noOfJobs)
     {
         this.noOfPacks = noOfJobs;
-        SwingUtilities.invokeLater(new Runnable()
+        parent.blockGUI();
+
+        // figure out how many packs there are to install
+        overallProgressBar.setMinimum(0);
+        overallProgressBar.setMaximum(noOfPacks);
+        if (noOfPacks == 1)
         {
-            @Override
-            public void run()
-            {
-                parent.blockGUI();
-
-                // figure out how many packs there are to install
-                overallProgressBar.setMinimum(0);
-                overallProgressBar.setMaximum(noOfPacks);
-                if (noOfPacks == 1)
-                {
-                    overallProgressBar.setIndeterminate(true);
-                }
-                overallProgressBar.setString("0 / " + Integer.toString(noOfPacks));
-            }
-        });
+            overallProgressBar.setIndeterminate(true);
+        }
+        overallProgressBar.setString("0 / " + Integer.toString(noOfPacks));
     }
 
     /**
@@ -173,54 +181,47 @@ public class InstallPanel extends IzPanel implements ProgressListener
     @Override
     public void stopAction()
     {
-        SwingUtilities.invokeLater(new Runnable()
+        parent.releaseGUI();
+        parent.lockPrevButton();
+
+        // With custom actions it is possible, that the current value
+        // is not max - 1. Therefore we use always max for both
+        // progress bars to signal finish state.
+        overallProgressBar.setValue(overallProgressBar.getMaximum());
+        int ppbMax = packProgressBar.getMaximum();
+        if (ppbMax < 1)
         {
-            @Override
-            public void run()
-            {
-                parent.releaseGUI();
-                parent.lockPrevButton();
-
-                // With custom actions it is possible, that the current value
-                // is not max - 1. Therefore we use always max for both
-                // progress bars to signal finish state.
-                overallProgressBar.setValue(overallProgressBar.getMaximum());
-                int ppbMax = packProgressBar.getMaximum();
-                if (ppbMax < 1)
-                {
-                    ppbMax = 1;
-                    packProgressBar.setMaximum(ppbMax);
-                }
-                packProgressBar.setValue(ppbMax);
-
-                if (installData.isInstallSuccess())
-                {
-                    packProgressBar.setString(getI18nStringForClass("finished"));
-                }
-                else
-                {
-                    packProgressBar.setString(getString("installer.error"));
-                }
-                packProgressBar.setEnabled(false);
-                String no_of_packs = Integer.toString(noOfPacks);
-                if (noOfPacks == 1)
-                {
-                    overallProgressBar.setIndeterminate(false);
-                }
-                overallProgressBar.setString(no_of_packs + " / " + no_of_packs);
-                overallProgressBar.setEnabled(false);
-                packOpLabel.setText(" ");
-                packOpLabel.setEnabled(false);
-                installData.setCanClose(true);
-                validated = true;
-                if (installData.isInstallSuccess() &&
-                        installData.getPanels().indexOf(InstallPanel.this) != (installData.getPanels().size() - 1))
-                {
-                    parent.unlockNextButton();
-                    parent.unlockQuitButton();
-                }
-            }
-        });
+            ppbMax = 1;
+            packProgressBar.setMaximum(ppbMax);
+        }
+        packProgressBar.setValue(ppbMax);
+
+        if (installData.isInstallSuccess())
+        {
+            packProgressBar.setString(getI18nStringForClass("finished"));
+        }
+        else
+        {
+            packProgressBar.setString(getString("installer.error"));
+        }
+        packProgressBar.setEnabled(false);
+        String no_of_packs = Integer.toString(noOfPacks);
+        if (noOfPacks == 1)
+        {
+            overallProgressBar.setIndeterminate(false);
+        }
+        overallProgressBar.setString(no_of_packs + " / " + no_of_packs);
+        overallProgressBar.setEnabled(false);
+        packOpLabel.setText(" ");
+        packOpLabel.setEnabled(false);
+        installData.setCanClose(true);
+        validated = true;
+        if (installData.isInstallSuccess() &&
+                installData.getPanels().indexOf(InstallPanel.this) != (installData.getPanels().size() - 1))
+        {
+            parent.unlockNextButton();
+            parent.unlockQuitButton();
+        }
     }
 
     /**
@@ -233,15 +234,9 @@ public class InstallPanel extends IzPanel implements ProgressListener
     public void progress(final int val, final String msg)
     {
         currentStep++;
-        SwingUtilities.invokeLater(new Runnable()
-        {
-            @Override
-            public void run()
-            {
-                packProgressBar.setValue(val + 1);
-                packOpLabel.setText(msg);
-            }
-        });
+        packProgressBar.setValue(val + 1);
+        packOpLabel.setText(msg);
+        overallProgressBar.setString(getOverallString());
     }
 
     /**
@@ -255,20 +250,13 @@ public class InstallPanel extends IzPanel implements ProgressListener
     public void nextStep(final String packName, final int stepno, final int max)
     {
         currentStep = 0;
-        SwingUtilities.invokeLater(new Runnable()
-        {
-            @Override
-            public void run()
-            {
-                packProgressBar.setValue(0);
-                packProgressBar.setMinimum(0);
-                packProgressBar.setMaximum(max);
-                packProgressBar.setString(packName);
-                overallProgressBar.setValue(stepno - 1);
-                overallProgressBar.setString(Integer.toString(stepno) + " / "
-                                                     + Integer.toString(noOfPacks));
-            }
-        });
+        packProgressBar.setValue(0);
+        packProgressBar.setMinimum(0);
+        packProgressBar.setMaximum(max);
+        packProgressBar.setString(packName);
+        overallProgressBar.setValue(stepno - 1);
+        currentPack = stepno;
+        overallProgressBar.setString(getOverallString());
     }
 
     /**
@@ -277,14 +265,7 @@ public class InstallPanel extends IzPanel implements ProgressListener
     @Override
     public void setSubStepNo(final int no_of_substeps)
     {
-        SwingUtilities.invokeLater(new Runnable()
-        {
-            @Override
-            public void run()
-            {
-                packProgressBar.setMaximum(no_of_substeps);
-            }
-        });
+        packProgressBar.setMaximum(no_of_substeps);
     }
 
     /**
@@ -339,7 +320,8 @@ public class InstallPanel extends IzPanel implements ProgressListener
         if (!validated)
         {
             // user is coming the InstallPanel first time we want to install the packages
-            parent.install(this);
+            bus.setPacks(installData.getSelectedPacks());
+            parent.install(bus);
         }
         else
         {
@@ -353,4 +335,21 @@ public class InstallPanel extends IzPanel implements ProgressListener
         }
     }
 
+    /**
+     * Returns the text of the overall progress bar.
+     *
+     * @return the pack number, and if it can be estimated, the install rate and remaining time
+     */
+    private String getOverallString()
+    {
+        String result = Integer.toString(currentPack) + " / " + Integer.toString(noOfPacks);
+        long remaining = bus.getRemainingTime();
+        if (remaining >= 0)
+        {
+            result += " (" + Pack.toByteUnitsString(Math.round(bus.getRate())) + "/s, "
+                    + ProgressBus.formatTime(remaining) + ")";
+        }
+        return result;
+    }
+
 }
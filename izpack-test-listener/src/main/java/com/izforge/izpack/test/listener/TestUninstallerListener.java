@@ -4,6 +4,7 @@ import com.izforge.izpack.api.event.AbstractUninstallerListener;
 import com.izforge.izpack.api.event.ProgressListener;
 import com.izforge.izpack.api.event.UninstallerListener;
 import com.izforge.izpack.api.exception.IzPackException;
+import com.izforge.izpack.core.io.InstallLogFormat;
 
 import java.io.*;
 import java.util.List;
@@ -224,7 +225,7 @@ public class TestUninstallerListener extends AbstractUninstallerListener
     }
 
     /**
-     * Determines the install path by reading te first entry of the <em>"/install.log"</em> resource.
+     * Determines the install path by reading the header of the <em>"/install.log"</em> resource.
      *
      * @return the install path or <tt>null</tt> if it cannot be found
      */
@@ -235,9 +236,8 @@ public class TestUninstallerListener extends AbstractUninstallerListener
         try
         {
             InputStream in = getClass().getResourceAsStream("/install.log");
-            InputStreamReader inReader = new InputStreamReader(in);
-            BufferedReader reader = new BufferedReader(inReader);
-            result = reader.readLine();
+            InstallLogFormat.Reader reader = new InstallLogFormat.Reader(in);
+            result = reader.getInstallPath();
             reader.close();
         }
         catch (IOException exception)
@@ -0,0 +1 @@
+echo $INSTALL_PATH
\ No newline at end of file
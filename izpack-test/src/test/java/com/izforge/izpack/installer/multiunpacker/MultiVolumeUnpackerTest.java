@@ -472,16 +472,14 @@ public class MultiVolumeUnpackerTest
      *
      * @param resources the resources
      * @return the pack meta-data
-     * @throws IOException            for any I/O error
-     * @throws ClassNotFoundException if the class of a serialized object cannot be found
+     * @throws IOException for any I/O error
      */
-    private List<Pack> getPacks(Resources resources) throws IOException, ClassNotFoundException
+    private List<Pack> getPacks(Resources resources) throws IOException
     {
         // We read the packs data
         InputStream in = resources.getInputStream("packs.info");
-        ObjectInputStream objIn = new ObjectInputStream(in);
-        List<PackInfo> packsInfo = (List<PackInfo>) objIn.readObject();
-        objIn.close();
+        List<PackInfo> packsInfo = PackInfoFormat.read(in, resources::getInputStream);
+        in.close();
         List<Pack> packs = new ArrayList<Pack>();
         for (PackInfo packInfo : packsInfo)
         {
@@ -22,10 +22,19 @@ package com.izforge.izpack.uninstaller;
 import static com.izforge.izpack.api.handler.Prompt.Type.ERROR;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -82,11 +91,26 @@ public class Destroyer implements Runnable
      */
     private boolean forceDelete;
 
+    /**
+     * True if installed files modified since installation should be kept.
+     */
+    private boolean keepModified;
+
     /**
      * Tracks the no. of files that couldn't be deleted.
      */
     private List<File> failed = new ArrayList<File>();
 
+    /**
+     * Tracks the installed files that were kept, as they were modified since installation.
+     */
+    private final List<File> kept = Collections.synchronizedList(new ArrayList<File>());
+
+    /**
+     * Deletes the files.
+     */
+    private final ParallelDeleter deleter = new ParallelDeleter();
+
     /**
      * The logger.
      */
@@ -140,6 +164,20 @@ public class Destroyer implements Runnable
         this.forceDelete = force;
     }
 
+    /**
+     * Determines if installed files that have been modified since installation should be kept.
+     * <p/>
+     * A file is modified if its size or checksum differs from that recorded in the installation log. Modified files
+     * are reported by {@link #getKept()}, rather than as failures. This is ignored if forced deletion is enabled.
+     * Defaults to <tt>false</tt>.
+     *
+     * @param keep if <tt>true</tt>, keep modified files
+     */
+    public void setKeepModified(boolean keep)
+    {
+        this.keepModified = keep;
+    }
+
     /**
      * Runs the destroyer.
      */
@@ -182,34 +220,76 @@ public class Destroyer implements Runnable
         return failed;
     }
 
+    /**
+     * Returns the installed files that were kept, as they were modified since installation.
+     *
+     * @return the files
+     * @see #setKeepModified(boolean)
+     */
+    public List<File> getKept()
+    {
+        synchronized (kept)
+        {
+            return new ArrayList<File>(kept);
+        }
+    }
+
     /**
      * Deletes installed files, runs any root scripts, and cleans up remaining files if required.
+     * <p/>
+     * If {@link #setKeepModified(boolean) enabled}, installed files that have been modified since installation are
+     * kept, unless forced deletion is enabled.
      *
      * @throws Exception for any error
      */
     private void destroy() throws Exception
     {
-        List<File> files = log.getInstalled();
+        final List<File> files = log.getInstalled();
+        final boolean keep = keepModified && !forceDelete;
         int size = files.size();
+        kept.clear();
         listeners.beforeDeletion(files, listener);
         if (listener != null)
         {
             listener.startAction("destroy", size);
         }
 
-        for (int i = 0; i < size; i++)
+        List<File> notDeleted = deleter.delete(files, new ParallelDeleter.Filter()
+        {
+            @Override
+            public boolean accept(File file)
+            {
+                if (keep && file instanceof InstallLog.InstalledFile && ((InstallLog.InstalledFile) file).isModified())
+                {
+                    logger.info("Keeping file modified since installation: " + file);
+                    kept.add(file);
+                    return false;
+                }
+                return true;
+            }
+        }, new ParallelDeleter.Listener()
         {
-            File file = files.get(i);
-            listeners.beforeDelete(file, listener);
+            private int count = 0;
 
-            delete(file);
+            @Override
+            public void beforeDelete(List<File> batch)
+            {
+                listeners.beforeDelete(batch, listener);
+            }
 
-            listeners.afterDelete(file, listener);
-            if (listener != null)
+            @Override
+            public void afterDelete(List<File> batch)
             {
-                listener.progress(i, file.getAbsolutePath());
+                listeners.afterDelete(batch, listener);
+                if (listener != null)
+                {
+                    for (File file : batch)
+                    {
+                        listener.progress(count++, file.getAbsolutePath());
+                    }
+                }
             }
-        }
+        });
 
         listeners.afterDeletion(files, listener);
 
@@ -218,14 +298,14 @@ public class Destroyer implements Runnable
         // We make a complementary cleanup
         if (listener != null)
         {
-            listener.progress(log.getInstalled().size(), "[ cleanups ]");
+            listener.progress(size, "[ cleanups ]");
         }
 
         File installPath = new File(log.getInstallPath());
         cleanup(installPath);
 
         // verify that the files no longer exist. Check this here, as the root scripts may have performed cleanup.
-        checkDeletion(files, installPath);
+        checkDeletion(notDeleted, installPath);
 
         if (listener != null)
         {
@@ -235,62 +315,81 @@ public class Destroyer implements Runnable
 
     /**
      * Verifies that the installed files have been deleted.
+     * <p/>
+     * Only the files that failed to be deleted are checked, as those that were deleted are already known not to exist.
+     * Kept files, and the directories containing them, are not failures.
      *
-     * @param files       the files to check
+     * @param files       the files that failed to be deleted
      * @param installPath the installation path
      */
     private void checkDeletion(List<File> files, File installPath)
     {
+        Set<File> keptPaths = new HashSet<File>();
+        for (File file : getKept())
+        {
+            // the file and its ancestors remain
+            File path = file.getAbsoluteFile();
+            while (path != null && keptPaths.add(path))
+            {
+                path = path.getParentFile();
+            }
+        }
         failed.clear();
         for (File f : files)
         {
-            if (f.exists())
+            if (!keptPaths.contains(f.getAbsoluteFile()) && f.exists())
             {
                 failed.add(f);
             }
         }
-        if (installPath.exists())
+        if (!keptPaths.contains(installPath.getAbsoluteFile()) && installPath.exists())
         {
             failed.add(installPath);
         }
     }
 
     /**
-     * Recursively deletes a directory tree.
+     * Deletes the directories of a tree, bottom-up. If forced deletion is enabled, the files are deleted too.
+     * <p/>
+     * Symbolic links are deleted, but not followed.
      *
-     * @param file the file to delete
+     * @param root the root of the tree
+     * @throws IOException for any I/O error
      */
-    private void cleanup(File file)
+    private void cleanup(File root) throws IOException
     {
-        if (file.isDirectory())
+        if (!root.isDirectory())
         {
-            File[] files = file.listFiles();
-            if (files != null)
+            return;
+        }
+        final List<File> files = new ArrayList<File>();
+        Files.walkFileTree(root.toPath(), new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
             {
-                for (File child : files)
+                if (forceDelete)
                 {
-                    cleanup(child);
+                    files.add(file.toFile());
                 }
+                return FileVisitResult.CONTINUE;
             }
-            delete(file);
-        }
-        else if (forceDelete)
-        {
-            delete(file);
-        }
-    }
 
-    /**
-     * Deletes a file.
-     *
-     * @param file the file to delete
-     */
-    private void delete(File file)
-    {
-        if (file.exists() && !file.delete())
-        {
-            logger.info("Failed to delete: " + file);
-        }
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exception)
+            {
+                logger.info("Failed to access: " + file + ": " + exception);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exception)
+            {
+                files.add(dir.toFile());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        deleter.delete(files, null);
     }
 
 }
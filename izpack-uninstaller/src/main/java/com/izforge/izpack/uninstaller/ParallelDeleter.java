@@ -0,0 +1,318 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.uninstaller;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.api.exception.IzPackException;
+
+
+/**
+ * Deletes files and directories concurrently.
+ * <p/>
+ * Files are grouped by depth, and each depth is deleted in turn, deepest first, so that a directory is only deleted
+ * once everything below it has been. Within a depth, files are ordered by parent directory and split into batches,
+ * which are deleted by a bounded pool of threads.
+ * <p/>
+ * The {@link Listener} is notified of each batch on the thread invoking {@link #delete}, so listeners need not be
+ * thread-safe.
+ */
+public class ParallelDeleter
+{
+
+    /**
+     * Listener for batch deletion events.
+     */
+    public interface Listener
+    {
+        /**
+         * Invoked before a batch of files is deleted.
+         *
+         * @param files the files that will be deleted
+         */
+        void beforeDelete(List<File> files);
+
+        /**
+         * Invoked after a batch of files is deleted.
+         *
+         * @param files the files that were deleted, or that failed to be deleted
+         */
+        void afterDelete(List<File> files);
+    }
+
+    /**
+     * Determines if a file may be deleted.
+     */
+    public interface Filter
+    {
+        /**
+         * Determines if a file may be deleted.
+         * <p/>
+         * This is invoked by the deletion threads, so must be thread-safe.
+         *
+         * @param file the file
+         * @return <tt>true</tt> if the file may be deleted, <tt>false</tt> if it must be retained
+         */
+        boolean accept(File file);
+    }
+
+    /**
+     * The default maximum no. of files in a batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * The no. of deletion threads.
+     */
+    private final int threads;
+
+    /**
+     * The maximum no. of files in a batch.
+     */
+    private final int batchSize;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(ParallelDeleter.class.getName());
+
+
+    /**
+     * Constructs a <tt>ParallelDeleter</tt> with a thread per processor, between 2 and 8 threads.
+     */
+    public ParallelDeleter()
+    {
+        this(Math.min(8, Math.max(2, Runtime.getRuntime().availableProcessors())), DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructs a <tt>ParallelDeleter</tt>.
+     *
+     * @param threads   the no. of deletion threads
+     * @param batchSize the maximum no. of files in a batch
+     */
+    public ParallelDeleter(int threads, int batchSize)
+    {
+        if (threads < 1 || batchSize < 1)
+        {
+            throw new IllegalArgumentException("Invalid threads or batch size");
+        }
+        this.threads = threads;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Deletes files and directories.
+     * <p/>
+     * Files that don't exist are treated as deleted. Non-empty directories are not deleted.
+     *
+     * @param files    the files to delete
+     * @param listener the listener to notify. May be {@code null}
+     * @return the files that couldn't be deleted
+     * @throws IzPackException if the listener throws an exception, or deletion is interrupted
+     */
+    public List<File> delete(List<File> files, Listener listener)
+    {
+        return delete(files, null, listener);
+    }
+
+    /**
+     * Deletes files and directories.
+     * <p/>
+     * Files that don't exist are treated as deleted. Non-empty directories, and files rejected by the filter, are not
+     * deleted.
+     *
+     * @param files    the files to delete
+     * @param filter   determines if a file may be deleted. May be {@code null}
+     * @param listener the listener to notify. May be {@code null}
+     * @return the files that couldn't be deleted
+     * @throws IzPackException if the listener throws an exception, or deletion is interrupted
+     */
+    public List<File> delete(List<File> files, Filter filter, Listener listener)
+    {
+        List<File> failed = Collections.synchronizedList(new ArrayList<File>());
+        if (files.isEmpty())
+        {
+            return failed;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "IzPack - Delete");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try
+        {
+            for (List<List<File>> level : getLevels(files).values())
+            {
+                delete(level, executor, filter, failed, listener);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        return new ArrayList<File>(failed);
+    }
+
+    /**
+     * Deletes the batches of a single depth, waiting for them to complete.
+     *
+     * @param batches  the batches
+     * @param executor the executor to delete with
+     * @param filter   determines if a file may be deleted. May be {@code null}
+     * @param failed   collects the files that couldn't be deleted
+     * @param listener the listener to notify. May be {@code null}
+     */
+    private void delete(List<List<File>> batches, ExecutorService executor, final Filter filter,
+                        final List<File> failed, Listener listener)
+    {
+        List<Future<?>> futures = new ArrayList<Future<?>>(batches.size());
+        for (final List<File> batch : batches)
+        {
+            if (listener != null)
+            {
+                listener.beforeDelete(batch);
+            }
+            futures.add(executor.submit(new Callable<Void>()
+            {
+                @Override
+                public Void call()
+                {
+                    for (File file : batch)
+                    {
+                        if ((filter != null && !filter.accept(file)) || !delete(file))
+                        {
+                            failed.add(file);
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (int i = 0; i < futures.size(); ++i)
+        {
+            try
+            {
+                futures.get(i).get();
+            }
+            catch (InterruptedException exception)
+            {
+                Thread.currentThread().interrupt();
+                throw new IzPackException("Interrupted while deleting files", exception);
+            }
+            catch (ExecutionException exception)
+            {
+                throw new IzPackException(exception.getCause());
+            }
+            if (listener != null)
+            {
+                listener.afterDelete(batches.get(i));
+            }
+        }
+    }
+
+    /**
+     * Deletes a file.
+     *
+     * @param file the file to delete
+     * @return <tt>true</tt> if the file was deleted or doesn't exist, <tt>false</tt> if it couldn't be deleted
+     */
+    private boolean delete(File file)
+    {
+        try
+        {
+            Files.deleteIfExists(file.toPath());
+            return true;
+        }
+        catch (IOException exception)
+        {
+            logger.info("Failed to delete: " + file + ": " + exception);
+        }
+        catch (InvalidPathException exception)
+        {
+            logger.info("Failed to delete: " + file + ": " + exception.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Groups files into batches, keyed on depth, deepest first.
+     *
+     * @param files the files
+     * @return the batches for each depth
+     */
+    private Map<Integer, List<List<File>>> getLevels(List<File> files)
+    {
+        Map<Integer, Map<File, List<File>>> byDepth
+                = new TreeMap<Integer, Map<File, List<File>>>(Collections.reverseOrder());
+        for (File file : files)
+        {
+            File absolute = file.getAbsoluteFile();
+            int depth = absolute.getPath().split("[/\\\\]+").length;
+            Map<File, List<File>> byParent = byDepth.get(depth);
+            if (byParent == null)
+            {
+                byParent = new LinkedHashMap<File, List<File>>();
+                byDepth.put(depth, byParent);
+            }
+            File parent = absolute.getParentFile();
+            List<File> children = byParent.get(parent);
+            if (children == null)
+            {
+                children = new ArrayList<File>();
+                byParent.put(parent, children);
+            }
+            children.add(file);
+        }
+
+        Map<Integer, List<List<File>>> result = new TreeMap<Integer, List<List<File>>>(Collections.reverseOrder());
+        for (Map.Entry<Integer, Map<File, List<File>>> entry : byDepth.entrySet())
+        {
+            // files with the same parent are adjacent, so batches share as few directories as possible
+            List<File> level = new ArrayList<File>();
+            for (List<File> children : entry.getValue().values())
+            {
+                level.addAll(children);
+            }
+            List<List<File>> batches = new ArrayList<List<File>>();
+            for (int i = 0; i < level.size(); i += batchSize)
+            {
+                batches.add(level.subList(i, Math.min(level.size(), i + batchSize)));
+            }
+            result.put(entry.getKey(), batches);
+        }
+        return result;
+    }
+}
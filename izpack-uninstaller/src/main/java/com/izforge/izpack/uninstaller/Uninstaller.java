@@ -148,14 +148,19 @@ public class Uninstaller
         {
             ConsoleUninstaller uninstaller = container.getComponent(ConsoleUninstaller.class);
             boolean force = false;
+            boolean keepModified = false;
             for (String arg : args)
             {
                 if (arg.equals("-f") || arg.equals("-force"))
                 {
                     force = true;
                 }
+                else if (arg.equals("-k") || arg.equals("-keep-modified"))
+                {
+                    keepModified = true;
+                }
             }
-            uninstaller.uninstall(force);
+            uninstaller.uninstall(force, keepModified);
         }
         catch (Exception err)
         {
@@ -185,6 +190,10 @@ public class Uninstaller
                         {
                             displayForceOption = false;
                         }
+                        else if (arg.equals("-k") || arg.equals("-keep-modified"))
+                        {
+                            container.getComponent(Destroyer.class).setKeepModified(true);
+                        }
                     }
 
                     UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -22,6 +22,7 @@ package com.izforge.izpack.uninstaller.console;
 
 import java.io.File;
 
+import com.izforge.izpack.core.handler.ProgressBus;
 import com.izforge.izpack.uninstaller.Destroyer;
 import com.izforge.izpack.uninstaller.event.DestroyerListener;
 import com.izforge.izpack.util.Console;
@@ -54,7 +55,8 @@ public class ConsoleUninstaller
     {
         this.destroyer = destroyer;
         this.console = console;
-        destroyer.setProgressListener(listener);
+        // report the latest file deleted at most 30 times a second, rather than every file
+        destroyer.setProgressListener(new ProgressBus(listener, Runnable::run));
     }
 
     /**
@@ -63,10 +65,30 @@ public class ConsoleUninstaller
      * @param force if {@code true}, force deletion of remaining files
      */
     public void uninstall(boolean force)
+    {
+        uninstall(force, false);
+    }
+
+    /**
+     * Performs uninstallation.
+     *
+     * @param force        if {@code true}, force deletion of remaining files
+     * @param keepModified if {@code true}, keep installed files modified since installation
+     */
+    public void uninstall(boolean force, boolean keepModified)
     {
         console.println("Force deletion: " + force);
         destroyer.setForceDelete(force);
+        destroyer.setKeepModified(keepModified);
         destroyer.run();
+        if (!destroyer.getKept().isEmpty())
+        {
+            console.println("The following files were modified since installation, and have been kept: ");
+            for (File file : destroyer.getKept())
+            {
+                console.println(file.getPath());
+            }
+        }
         if (!destroyer.getFailedToDelete().isEmpty())
         {
             console.println("WARNING: The following files could not be removed: ");
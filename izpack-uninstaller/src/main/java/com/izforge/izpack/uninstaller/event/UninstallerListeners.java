@@ -170,6 +170,48 @@ public class UninstallerListeners
         }
     }
 
+    /**
+     * Invoked before a batch of files is deleted.
+     * <p/>
+     * This notifies each listener whose {@link UninstallerListener#isFileListener()} returns <tt>true</tt> of each
+     * file, as per {@link #beforeDelete(File, ProgressListener)}.
+     *
+     * @param files    the files which will be deleted
+     * @param listener the progress listener
+     * @throws IzPackException if a listener throws an exception
+     */
+    public void beforeDelete(List<File> files, ProgressListener listener)
+    {
+        if (fileListener)
+        {
+            for (File file : files)
+            {
+                beforeDelete(file, listener);
+            }
+        }
+    }
+
+    /**
+     * Invoked after a batch of files is deleted.
+     * <p/>
+     * This notifies each listener whose {@link UninstallerListener#isFileListener()} returns <tt>true</tt> of each
+     * file, as per {@link #afterDelete(File, ProgressListener)}.
+     *
+     * @param files    the files which were deleted
+     * @param listener the progress listener
+     * @throws IzPackException if a listener throws an exception
+     */
+    public void afterDelete(List<File> files, ProgressListener listener)
+    {
+        if (fileListener)
+        {
+            for (File file : files)
+            {
+                afterDelete(file, listener);
+            }
+        }
+    }
+
     /**
      * Invoked after files are deleted.
      *
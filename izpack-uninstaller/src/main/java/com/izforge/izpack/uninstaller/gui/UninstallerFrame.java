@@ -50,10 +50,12 @@ import javax.swing.JPanel;
 import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 
 import com.google.inject.Inject;
 import com.izforge.izpack.api.resource.Messages;
+import com.izforge.izpack.core.handler.ProgressBus;
 import com.izforge.izpack.gui.ButtonFactory;
 import com.izforge.izpack.gui.GUIPrompt;
 import com.izforge.izpack.gui.IconsDatabase;
@@ -155,7 +157,8 @@ public class UninstallerFrame extends JFrame
         // Sets the frame icon
         setIconImage(icons.get("JFrameIcon").getImage());
 
-        destroyer.setProgressListener(new DestroyerListener()
+        // progress is coalesced, and published on the event dispatch thread
+        destroyer.setProgressListener(new ProgressBus(new DestroyerListener()
         {
             @Override
             public void startAction(String name, int steps)
@@ -175,7 +178,7 @@ public class UninstallerFrame extends JFrame
                 finished();
             }
 
-        });
+        }, SwingUtilities::invokeLater));
     }
 
     /**
@@ -404,32 +407,55 @@ public class UninstallerFrame extends JFrame
         targetDestroyCheckbox.setEnabled(false);
         destroyButton.setEnabled(false);
         releaseGUI();
+        List<File> kept = destroyer.getKept();
+        if (!kept.isEmpty())
+        {
+            showFiles(kept, "The following files were modified since installation, and have been kept:", null,
+                      "Uninstallation Information", JOptionPane.INFORMATION_MESSAGE);
+        }
         List<File> failedToDelete = destroyer.getFailedToDelete();
         if (!failedToDelete.isEmpty())
         {
-            StringBuilder buffer = new StringBuilder();
-            for (File f : failedToDelete)
-            {
-                buffer.append(f.getPath());
-                buffer.append('\n');
-            }
-            JTextArea textArea = new JTextArea();
-            textArea.setText(buffer.toString());
-            textArea.setRows(10);
-            textArea.setColumns(72);
-            textArea.setEditable(false);
-            JScrollPane pane = new JScrollPane(textArea);
-            BorderLayout layout = new BorderLayout();
-            layout.setHgap(8);
-            JPanel panel = new JPanel(layout);
-            JLabel label = new JLabel("The following files and/or directories could not be removed:");
-            panel.add(label, BorderLayout.NORTH);
-            panel.add(pane, BorderLayout.CENTER);
-            label = new JLabel("Directories cannot be removed if it is not empty. " +
-                    "Administrative privileges may be required to remove files.");
-            panel.add(label, BorderLayout.SOUTH);
-            JOptionPane.showMessageDialog(null, panel, "Uninstallation Warning", JOptionPane.WARNING_MESSAGE);
+            showFiles(failedToDelete, "The following files and/or directories could not be removed:",
+                      "Directories cannot be removed if it is not empty. "
+                              + "Administrative privileges may be required to remove files.",
+                      "Uninstallation Warning", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    /**
+     * Displays a list of files in a dialog.
+     *
+     * @param files  the files
+     * @param header the text above the files
+     * @param footer the text below the files. May be {@code null}
+     * @param title  the dialog title
+     * @param type   the message type
+     */
+    private void showFiles(List<File> files, String header, String footer, String title, int type)
+    {
+        StringBuilder buffer = new StringBuilder();
+        for (File f : files)
+        {
+            buffer.append(f.getPath());
+            buffer.append('\n');
+        }
+        JTextArea textArea = new JTextArea();
+        textArea.setText(buffer.toString());
+        textArea.setRows(10);
+        textArea.setColumns(72);
+        textArea.setEditable(false);
+        JScrollPane pane = new JScrollPane(textArea);
+        BorderLayout layout = new BorderLayout();
+        layout.setHgap(8);
+        JPanel panel = new JPanel(layout);
+        panel.add(new JLabel(header), BorderLayout.NORTH);
+        panel.add(pane, BorderLayout.CENTER);
+        if (footer != null)
+        {
+            panel.add(new JLabel(footer), BorderLayout.SOUTH);
         }
+        JOptionPane.showMessageDialog(null, panel, title, type);
     }
 
     /**
@@ -24,19 +24,25 @@ package com.izforge.izpack.uninstaller.resource;
 import com.google.inject.Inject;
 import com.izforge.izpack.api.exception.IzPackException;
 import com.izforge.izpack.api.resource.Resources;
+import com.izforge.izpack.core.io.InstallLogFormat;
+import com.izforge.izpack.util.FileChecksum;
 import org.apache.commons.io.IOUtils;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.TreeSet;
+import java.util.logging.Logger;
 
 
 /**
  * The installation log.
  * <p/>
- * This holds the installation path and the list of installed files.
+ * This holds the installation path and the list of installed files, read from the <em>install.log</em> resource
+ * written in the {@link InstallLogFormat}.
  *
  * @author Tim Anderson
  */
@@ -58,6 +64,11 @@ public class InstallLog
      */
     private final List<File> files;
 
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(InstallLog.class.getName());
+
 
     /**
      * Constructs an <tt>InstallLog</tt>.
@@ -69,13 +80,10 @@ public class InstallLog
     public InstallLog(Resources resources)
     {
         InputStream in = null;
-        InputStreamReader inReader = null;
         try
         {
             in = resources.getInputStream(INSTALL_LOG);
-            inReader = new InputStreamReader(in);
-            BufferedReader reader = new BufferedReader(inReader);
-
+            InstallLogFormat.Reader reader = new InstallLogFormat.Reader(in);
             installPath = getInstallPath(reader);
             files = getFiles(reader);
         }
@@ -85,7 +93,6 @@ public class InstallLog
         }
         finally
         {
-            IOUtils.closeQuietly(inReader);
             IOUtils.closeQuietly(in);
         }
     }
@@ -102,6 +109,8 @@ public class InstallLog
 
     /**
      * Returns the installed files, in leaf order.
+     * <p/>
+     * Each file is an {@link InstalledFile}.
      *
      * @return the installed files
      */
@@ -112,6 +121,8 @@ public class InstallLog
 
     /**
      * Helper to determine the installation path.
+     * <p/>
+     * This only reads the header of the <em>install.log</em> resource.
      *
      * @param resources used to locate the <em>install.log</em> resource
      * @throws IzPackException if the install path cannot be read
@@ -119,14 +130,12 @@ public class InstallLog
     public static String getInstallPath(Resources resources)
     {
         String installPath = null;
-        BufferedReader reader = null;
         InputStream in = null;
 
         try
         {
             in = resources.getInputStream(INSTALL_LOG);
-            reader = new BufferedReader(new InputStreamReader(in));
-            installPath = getInstallPath(reader);
+            installPath = getInstallPath(new InstallLogFormat.Reader(in));
         }
         catch (IOException exception)
         {
@@ -134,7 +143,6 @@ public class InstallLog
         }
         finally
         {
-            IOUtils.closeQuietly(reader);
             IOUtils.closeQuietly(in);
         }
         return installPath;
@@ -145,11 +153,11 @@ public class InstallLog
      *
      * @param reader the <em>install.log</em> reader
      * @return the install path
-     * @throws IOException if the install path is invalid, or an I/O error occurs
+     * @throws IOException if the install path is invalid
      */
-    private static String getInstallPath(BufferedReader reader) throws IOException
+    private static String getInstallPath(InstallLogFormat.Reader reader) throws IOException
     {
-        String path = reader.readLine();
+        String path = reader.getInstallPath();
         if (path == null || path.trim().isEmpty())
         {
             throw new IOException("Cannot determine installation path");
@@ -164,19 +172,97 @@ public class InstallLog
      * @return the installed files
      * @throws IOException for any I/O error
      */
-    private List<File> getFiles(BufferedReader reader) throws IOException
+    private List<File> getFiles(InstallLogFormat.Reader reader) throws IOException
     {
         TreeSet<File> files = new TreeSet<File>(Collections.reverseOrder());
-        String read = reader.readLine();
-        while (read != null)
+        InstallLogFormat.Entry entry;
+        while ((entry = reader.next()) != null)
         {
-            files.add(new File(read));
-            read = reader.readLine();
+            files.add(new InstalledFile(entry));
         }
 
         // We return it
         return new ArrayList<File>(files);
     }
 
+    /**
+     * An installed file, with its size and checksum at installation, if known.
+     */
+    public static class InstalledFile extends File
+    {
+        /**
+         * The file size, or {@code -1} if it is unknown.
+         */
+        private final long size;
+
+        /**
+         * The file checksum, or {@code -1} if it is unknown.
+         */
+        private final long checksum;
 
+        /**
+         * Constructs an <tt>InstalledFile</tt>.
+         *
+         * @param entry the install log entry
+         */
+        public InstalledFile(InstallLogFormat.Entry entry)
+        {
+            super(entry.getPath());
+            this.size = entry.getSize();
+            this.checksum = entry.getChecksum();
+        }
+
+        /**
+         * Returns the size of the file when it was installed.
+         *
+         * @return the file size, or {@code -1} if it is unknown
+         */
+        public long getSize()
+        {
+            return size;
+        }
+
+        /**
+         * Returns the CRC-32C checksum of the file when it was installed.
+         *
+         * @return the file checksum, or {@code -1} if it is unknown
+         */
+        public long getChecksum()
+        {
+            return checksum;
+        }
+
+        /**
+         * Determines if the file has been modified since it was installed.
+         * <p/>
+         * This compares the size, and if known, the checksum. A file whose size and checksum weren't recorded, or that
+         * no longer exists, isn't considered modified.
+         *
+         * @return <tt>true</tt> if the file has been modified
+         */
+        public boolean isModified()
+        {
+            if ((size == -1 && checksum == -1) || !isFile())
+            {
+                return false;
+            }
+            if (size != -1 && length() != size)
+            {
+                return true;
+            }
+            if (checksum != -1)
+            {
+                try
+                {
+                    return FileChecksum.getChecksum(this) != checksum;
+                }
+                catch (IOException exception)
+                {
+                    logger.warning("Failed to determine checksum of " + this + ": " + exception.getMessage());
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
 }
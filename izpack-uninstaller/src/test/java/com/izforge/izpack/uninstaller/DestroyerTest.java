@@ -0,0 +1,152 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.uninstaller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import com.izforge.izpack.api.handler.Prompt;
+import com.izforge.izpack.core.io.InstallLogFormat;
+import com.izforge.izpack.uninstaller.event.UninstallerListeners;
+import com.izforge.izpack.uninstaller.resource.Executables;
+import com.izforge.izpack.uninstaller.resource.InstallLog;
+import com.izforge.izpack.uninstaller.resource.RootScripts;
+
+
+/**
+ * Tests the {@link Destroyer}.
+ */
+public class DestroyerTest
+{
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The installation directory.
+     */
+    private File installPath;
+
+    /**
+     * A file that is unchanged since installation.
+     */
+    private File unchanged;
+
+    /**
+     * A file that has been modified since installation.
+     */
+    private File modified;
+
+    /**
+     * The destroyer.
+     */
+    private Destroyer destroyer;
+
+
+    /**
+     * Sets up the test case.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        installPath = temporaryFolder.newFolder("app");
+        File dir = new File(installPath, "conf");
+        assertTrue(dir.mkdir());
+        unchanged = new File(installPath, "unchanged.txt");
+        modified = new File(dir, "modified.txt");
+        FileUtils.writeStringToFile(unchanged, "unchanged");
+        FileUtils.writeStringToFile(modified, "modified since installation");
+
+        List<File> files = new ArrayList<File>();
+        files.add(new InstallLog.InstalledFile(new InstallLogFormat.Entry(unchanged.getPath(), 9, -1)));
+        files.add(new InstallLog.InstalledFile(new InstallLogFormat.Entry(modified.getPath(), 8, -1)));
+        files.add(new InstallLog.InstalledFile(new InstallLogFormat.Entry(dir.getPath(), -1, -1)));
+        files.add(new InstallLog.InstalledFile(new InstallLogFormat.Entry(installPath.getPath(), -1, -1)));
+        Collections.sort(files, Collections.reverseOrder());
+
+        InstallLog log = Mockito.mock(InstallLog.class);
+        when(log.getInstalled()).thenReturn(files);
+        when(log.getInstallPath()).thenReturn(installPath.getPath());
+        Executables executables = Mockito.mock(Executables.class);
+        when(executables.run()).thenReturn(true);
+        Prompt prompt = Mockito.mock(Prompt.class);
+        destroyer = new Destroyer(log, new UninstallerListeners(prompt), executables,
+                                  Mockito.mock(RootScripts.class), prompt);
+    }
+
+    /**
+     * Verifies that modified files are deleted by default.
+     */
+    @Test
+    public void testDeleteModified()
+    {
+        destroyer.run();
+        assertFalse(installPath.exists());
+        assertTrue(destroyer.getKept().isEmpty());
+        assertTrue(destroyer.getFailedToDelete().isEmpty());
+    }
+
+    /**
+     * Verifies that modified files are kept if requested, and are not reported as failures.
+     */
+    @Test
+    public void testKeepModified()
+    {
+        destroyer.setKeepModified(true);
+        destroyer.run();
+        assertFalse(unchanged.exists());
+        assertTrue(modified.exists());
+        assertEquals(Collections.singletonList(modified), destroyer.getKept());
+        assertTrue(destroyer.getFailedToDelete().isEmpty());
+    }
+
+    /**
+     * Verifies that forced deletion overrides keeping modified files.
+     */
+    @Test
+    public void testForceDeleteModified()
+    {
+        destroyer.setKeepModified(true);
+        destroyer.setForceDelete(true);
+        destroyer.run();
+        assertFalse(installPath.exists());
+        assertTrue(destroyer.getKept().isEmpty());
+        assertTrue(destroyer.getFailedToDelete().isEmpty());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.uninstaller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests the {@link ParallelDeleter}.
+ */
+public class ParallelDeleterTest
+{
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that a tree is deleted bottom-up, and that the listener is notified before and after each file is
+     * deleted.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testDelete() throws Exception
+    {
+        File root = temporaryFolder.newFolder("root");
+        final List<File> files = new ArrayList<File>();
+        files.add(root);
+        for (int i = 0; i < 5; ++i)
+        {
+            File dir = new File(root, "dir" + i);
+            File sub = new File(dir, "sub");
+            assertTrue(sub.mkdirs());
+            files.add(dir);
+            files.add(sub);
+            for (int j = 0; j < 10; ++j)
+            {
+                File file1 = new File(dir, "file" + j);
+                File file2 = new File(sub, "file" + j);
+                assertTrue(file1.createNewFile());
+                assertTrue(file2.createNewFile());
+                files.add(file1);
+                files.add(file2);
+            }
+        }
+        files.add(new File(root, "missing"));
+        Collections.shuffle(files);
+
+        final Set<File> before = new HashSet<File>();
+        final Set<File> after = new HashSet<File>();
+        ParallelDeleter deleter = new ParallelDeleter(4, 3);
+        List<File> failed = deleter.delete(files, new ParallelDeleter.Listener()
+        {
+            @Override
+            public void beforeDelete(List<File> batch)
+            {
+                assertTrue(batch.size() <= 3);
+                for (File file : batch)
+                {
+                    // a directory is only deleted once its children have been
+                    File[] children = file.listFiles();
+                    assertTrue(children == null || children.length == 0);
+                    assertTrue(before.add(file));
+                }
+            }
+
+            @Override
+            public void afterDelete(List<File> batch)
+            {
+                for (File file : batch)
+                {
+                    assertTrue(before.contains(file));
+                    assertFalse(file.exists());
+                    assertTrue(after.add(file));
+                }
+            }
+        });
+
+        assertTrue(failed.isEmpty());
+        assertEquals(files.size(), after.size());
+        assertFalse(root.exists());
+    }
+
+    /**
+     * Verifies that files that can't be deleted are returned.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testFailed() throws Exception
+    {
+        File dir = temporaryFolder.newFolder("dir");
+        File file = new File(dir, "file");
+        assertTrue(file.createNewFile());
+
+        // the directory isn't empty, as its file isn't being deleted
+        List<File> failed = new ParallelDeleter().delete(Collections.singletonList(dir), null);
+        assertEquals(Collections.singletonList(dir), failed);
+        assertTrue(file.exists());
+    }
+}
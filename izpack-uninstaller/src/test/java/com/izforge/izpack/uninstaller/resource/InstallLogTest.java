@@ -23,19 +23,25 @@ package com.izforge.izpack.uninstaller.resource;
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.List;
 
-import org.apache.commons.io.input.ReaderInputStream;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 
 import com.izforge.izpack.api.resource.Resources;
+import com.izforge.izpack.core.io.InstallLogFormat;
 
 /**
  * Tests the {@link InstallLog} class.
@@ -45,6 +51,12 @@ import com.izforge.izpack.api.resource.Resources;
 public class InstallLogTest
 {
 
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     /**
      * The resources.
      */
@@ -60,14 +72,16 @@ public class InstallLogTest
     public void setUp() throws IOException
     {
         // set up a mock resource
-        String installLog = "myapp\n"
-                + "myapp/dir2/dir3\n"
-                + "myapp/dir2/dir3/file2\n"
-                + "myapp/dir2/file1\n"
-                + "myapp/dir1\n";
-        StringReader reader = new StringReader(installLog);
+        ByteArrayOutputStream installLog = new ByteArrayOutputStream();
+        InstallLogFormat.Writer writer = new InstallLogFormat.Writer(installLog, "myapp", true, false);
+        writer.add("myapp/dir2/dir3");
+        writer.add("myapp/dir2/dir3/file2", 10, -1);
+        writer.add("myapp/dir2/file1", 20, -1);
+        writer.add("myapp/dir1");
+        writer.close();
         resources = Mockito.mock(Resources.class);
-        when(resources.getInputStream("install.log")).thenReturn(new ReaderInputStream(reader));
+        when(resources.getInputStream("install.log")).thenReturn(
+                new ByteArrayInputStream(installLog.toByteArray()));
     }
 
     /**
@@ -104,4 +118,25 @@ public class InstallLogTest
         assertEquals(new File("myapp/dir1"), installed.get(3));
     }
 
+    /**
+     * Tests the {@link InstallLog.InstalledFile#isModified()} method.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testModified() throws IOException
+    {
+        File file = temporaryFolder.newFile("file");
+        FileUtils.writeStringToFile(file, "0123456789");
+        String path = file.getPath();
+
+        assertFalse(new InstallLog.InstalledFile(new InstallLogFormat.Entry(path, -1, -1)).isModified());
+        assertFalse(new InstallLog.InstalledFile(new InstallLogFormat.Entry(path, 10, -1)).isModified());
+        assertTrue(new InstallLog.InstalledFile(new InstallLogFormat.Entry(path, 9, -1)).isModified());
+
+        // files that no longer exist aren't modified
+        assertTrue(file.delete());
+        assertFalse(new InstallLog.InstalledFile(new InstallLogFormat.Entry(path, 9, -1)).isModified());
+    }
+
 }
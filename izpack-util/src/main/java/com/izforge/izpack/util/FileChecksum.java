@@ -0,0 +1,104 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+
+/**
+ * Computes the checksums of file content recorded by the compiler and verified by the installer.
+ * <p/>
+ * The checksum is CRC-32C, which the JVM computes with hardware support where available, so it can be computed while
+ * files are compressed and unpacked without limiting throughput.
+ */
+public final class FileChecksum
+{
+    /**
+     * The size of the buffer used to read files.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private FileChecksum()
+    {
+    }
+
+    /**
+     * Creates a new checksum.
+     *
+     * @return a new checksum
+     */
+    public static Checksum create()
+    {
+        return new CRC32C();
+    }
+
+    /**
+     * Computes the checksum of a file.
+     *
+     * @param file the file
+     * @return the checksum
+     * @throws IOException for any I/O error
+     */
+    public static long getChecksum(File file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            Checksum checksum = create();
+            update(checksum, channel, 0, channel.size());
+            return checksum.getValue();
+        }
+    }
+
+    /**
+     * Updates a checksum with a region of a file channel.
+     * <p/>
+     * The channel position is not changed.
+     *
+     * @param checksum the checksum to update
+     * @param channel  the channel to read
+     * @param position the position of the region
+     * @param length   the length of the region
+     * @throws IOException if the region cannot be read
+     */
+    public static void update(Checksum checksum, FileChannel channel, long position, long length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) Math.min(BUFFER_SIZE, Math.max(1, length)));
+        long end = position + length;
+        while (position < end)
+        {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read == -1)
+            {
+                throw new IOException("Unexpected end of file");
+            }
+            buffer.flip();
+            checksum.update(buffer);
+            position += read;
+        }
+    }
+}
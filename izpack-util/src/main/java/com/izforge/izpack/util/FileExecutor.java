@@ -30,6 +30,7 @@ import java.io.InputStreamReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
@@ -37,6 +38,7 @@ import java.util.logging.Logger;
 
 import com.izforge.izpack.api.handler.AbstractUIHandler;
 import com.izforge.izpack.api.data.ExecutableFile;
+import com.izforge.izpack.util.file.FilePermissions;
 
 /**
  * Executes a bunch of files. This class is intended to do a system dependent installation
@@ -294,6 +296,28 @@ public class FileExecutor
         return exitStatus;
     }
 
+    /**
+     * Makes the binary files for the current platform executable by everyone.
+     * <p/>
+     * Permissions are set in-process where possible, with a single <tt>chmod</tt> invocation for any remaining files.
+     *
+     * @param matcher the platform-model matcher
+     * @return the paths of the files that couldn't be made executable
+     */
+    private List<String> setExecutable(PlatformModelMatcher matcher)
+    {
+        FilePermissions permissions = new FilePermissions();
+        for (ExecutableFile efile : files)
+        {
+            if (ExecutableFile.BIN == efile.type && matcher.matchesCurrentPlatform(efile.osList))
+            {
+                logger.fine("Making file executable (setting executable flag): " + efile.path);
+                permissions.setExecutable(new File(efile.path));
+            }
+        }
+        return permissions.flush();
+    }
+
     /**
      * Executes files specified at construction time.
      *
@@ -306,10 +330,9 @@ public class FileExecutor
     {
         int exitStatus = 0;
         String[] output = new String[2];
-        // String permissions = (System.getProperty("user.name").equals("root"))
-        // ? "a+x" : "u+x";
-        String permissions = "a+x";
         boolean isUnix = matcher.getCurrentPlatform().isA(UNIX);
+        List<String> notExecutable = (currentStage != ExecutableFile.UNINSTALL && isUnix)
+                ? setExecutable(matcher) : Collections.<String>emptyList();
 
         // loop through all executables
         Iterator<ExecutableFile> efileIterator = this.files.iterator();
@@ -330,15 +353,17 @@ public class FileExecutor
 
             if (ExecutableFile.BIN == efile.type && currentStage != ExecutableFile.UNINSTALL && isUnix)
             {
-                // fix executable permission for unix systems
-                logger.fine("Making file executable (setting executable flag)");
-                String[] params = {"/bin/chmod", permissions, file.toString()};
-                exitStatus = executeCommand(params, output);
-                if (exitStatus != 0)
+                // the executable permission was set by setExecutable(), unless the file was created since
+                if (notExecutable.contains(file.getAbsolutePath()))
                 {
-                    handler.emitWarning("file execution error", "Error executing \n" + params[0]
-                            + " " + params[1] + " " + params[2]);
-                    continue;
+                    FilePermissions permissions = new FilePermissions();
+                    permissions.setExecutable(file);
+                    if (!permissions.flush().isEmpty())
+                    {
+                        exitStatus = -1;
+                        handler.emitWarning("file execution error", "Error executing \nchmod a+x " + file);
+                        continue;
+                    }
                 }
             }
 
@@ -16,4 +16,14 @@ public class NoCloseInputStream extends FilterInputStream
     public void doClose() throws IOException {
         super.close();
     }
+
+    /**
+     * Returns the underlying stream.
+     *
+     * @return the underlying stream
+     */
+    public InputStream getInputStream()
+    {
+        return in;
+    }
 }
@@ -0,0 +1,299 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.compress;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.archivers.zip.ZipMethod;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * A {@link JarOutputStream} that writes via a commons-compress {@link ZipArchiveOutputStream}.
+ * <p/>
+ * This behaves like a {@link JarOutputStream}, but can also copy entries from another zip without decompressing and
+ * recompressing them. See {@link #copyEntry}.
+ */
+public class ZipArchiveJarOutputStream extends JarOutputStream
+{
+    /**
+     * The archive that entries are written to.
+     */
+    private final ZipArchiveOutputStream archive;
+
+    /**
+     * The names of the entries written so far, to detect duplicates.
+     */
+    private final Set<String> names = new HashSet<String>();
+
+    /**
+     * Determines if an entry is open.
+     */
+    private boolean open;
+
+    /**
+     * Determines if the archive has been finished.
+     */
+    private boolean finished;
+
+    /**
+     * Constructs a <tt>ZipArchiveJarOutputStream</tt>.
+     *
+     * @param file the file to write to
+     * @throws IOException for any I/O error
+     */
+    public ZipArchiveJarOutputStream(Path file) throws IOException
+    {
+        super(OutputStream.nullOutputStream());
+        archive = new ZipArchiveOutputStream(file);
+    }
+
+    /**
+     * Sets the compression level for subsequent deflated entries.
+     *
+     * @param level the compression level (0-9)
+     */
+    @Override
+    public void setLevel(int level)
+    {
+        archive.setLevel(level);
+    }
+
+    /**
+     * Sets the default compression method for subsequent entries.
+     *
+     * @param method the compression method
+     */
+    @Override
+    public void setMethod(int method)
+    {
+        archive.setMethod(method);
+    }
+
+    /**
+     * Sets the zip file comment.
+     *
+     * @param comment the comment. May be {@code null}
+     */
+    @Override
+    public void setComment(String comment)
+    {
+        archive.setComment(comment);
+    }
+
+    /**
+     * Begins writing a new entry, closing the current entry if one is open.
+     *
+     * @param entry the entry to write
+     * @throws ZipException if an entry with the same name has already been written
+     * @throws IOException  for any I/O error
+     */
+    @Override
+    public void putNextEntry(ZipEntry entry) throws IOException
+    {
+        closeEntry();
+        addName(entry.getName());
+        archive.putArchiveEntry(toArchiveEntry(entry));
+        open = true;
+    }
+
+    /**
+     * Closes the current entry, if one is open.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void closeEntry() throws IOException
+    {
+        if (open)
+        {
+            open = false;
+            archive.closeArchiveEntry();
+        }
+    }
+
+    /**
+     * Copies an entry from a zip file.
+     * <p/>
+     * Stored and deflated entries are copied as is, without decompressing them. Other entries are decompressed, and
+     * recompressed using the current compression method and level.
+     *
+     * @param zipFile the zip file to copy from
+     * @param entry   the entry to copy
+     * @param name    the name of the copied entry
+     * @param time    the last modified time of the copied entry, or {@code -1} if it isn't set
+     * @throws ZipException if an entry with the same name has already been written
+     * @throws IOException  for any I/O error
+     */
+    public void copyEntry(ZipFile zipFile, ZipArchiveEntry entry, String name, long time) throws IOException
+    {
+        int method = entry.getMethod();
+        if ((method == ZipMethod.STORED.getCode() || method == ZipMethod.DEFLATED.getCode())
+                && !entry.getGeneralPurposeBit().usesEncryption() && entry.getCrc() != -1 && entry.getSize() != -1
+                && entry.getCompressedSize() != -1)
+        {
+            ZipArchiveEntry copy = new ZipArchiveEntry(name);
+            copy.setMethod(method);
+            copy.setCrc(entry.getCrc());
+            copy.setSize(entry.getSize());
+            copy.setCompressedSize(entry.getCompressedSize());
+            if (time != -1)
+            {
+                copy.setTime(time);
+            }
+            closeEntry();
+            addName(name);
+            try (InputStream raw = zipFile.getRawInputStream(entry))
+            {
+                archive.addRawArchiveEntry(copy, raw);
+            }
+        }
+        else
+        {
+            ZipEntry copy = new ZipEntry(name);
+            if (time != -1)
+            {
+                copy.setTime(time);
+            }
+            putNextEntry(copy);
+            try (InputStream in = zipFile.getInputStream(entry))
+            {
+                in.transferTo(this);
+            }
+            closeEntry();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+        archive.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        archive.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        archive.flush();
+    }
+
+    /**
+     * Finishes writing the archive, without closing the underlying file.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void finish() throws IOException
+    {
+        if (!finished)
+        {
+            closeEntry();
+            finished = true;
+            archive.finish();
+        }
+    }
+
+    /**
+     * Finishes writing the archive, and closes the underlying file.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            finish();
+        }
+        finally
+        {
+            archive.close();
+            super.close();
+        }
+    }
+
+    /**
+     * Converts a {@link ZipEntry} to a {@link ZipArchiveEntry}, leaving unset attributes to the archive defaults.
+     *
+     * @param entry the entry to convert
+     * @return the converted entry
+     */
+    private static ZipArchiveEntry toArchiveEntry(ZipEntry entry)
+    {
+        ZipArchiveEntry result = new ZipArchiveEntry(entry.getName());
+        if (entry.getMethod() != -1)
+        {
+            result.setMethod(entry.getMethod());
+        }
+        if (entry.getTime() != -1)
+        {
+            result.setTime(entry.getTime());
+        }
+        if (entry.getSize() != -1)
+        {
+            result.setSize(entry.getSize());
+        }
+        if (entry.getCrc() != -1)
+        {
+            result.setCrc(entry.getCrc());
+        }
+        if (entry.getMethod() == ZipEntry.STORED && entry.getCompressedSize() != -1)
+        {
+            result.setCompressedSize(entry.getCompressedSize());
+        }
+        if (entry.getExtra() != null)
+        {
+            result.setExtra(entry.getExtra());
+        }
+        if (entry.getComment() != null)
+        {
+            result.setComment(entry.getComment());
+        }
+        return result;
+    }
+
+    /**
+     * Registers the name of an entry about to be written.
+     *
+     * @param name the entry name
+     * @throws ZipException if an entry with the same name has already been written
+     */
+    private void addName(String name) throws ZipException
+    {
+        if (!names.add(name))
+        {
+            throw new ZipException("duplicate entry: " + name);
+        }
+    }
+}
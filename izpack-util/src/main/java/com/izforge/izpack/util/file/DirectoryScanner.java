@@ -733,6 +733,29 @@ public class DirectoryScanner
         return everythingIncluded;
     }
 
+    /**
+     * Test whether or not a path is included and not excluded by the patterns,
+     * without scanning the base directory. This allows the patterns to be
+     * applied to paths that don't exist in the file system, such as the
+     * entries of an archive. Selectors are not applied.
+     *
+     * @param name The path relative to the base directory. Both '/' and '\'
+     *             are accepted as separators. Must not be <code>null</code>.
+     * @return <code>true</code> when the path is included and not excluded,
+     *         or <code>false</code> otherwise.
+     */
+    public synchronized boolean isIncludedPath(String name)
+    {
+        if (includes == null || excludes == null)
+        {
+            includes = (includes == null) ? new String[]{"**"} : includes;
+            excludes = (excludes == null) ? new String[0] : excludes;
+            areNonPatternSetsReady = false;
+        }
+        name = name.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+        return isIncluded(name) && !isExcluded(name);
+    }
+
     /**
      * Scan the base directory for files which match at least one include
      * pattern and don't match any exclude patterns. If there are selectors
@@ -0,0 +1,290 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.file;
+
+import com.izforge.izpack.util.FileExecutor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Sets the POSIX permissions and ownership of files.
+ * <p/>
+ * Changes are made in-process via {@link PosixFileAttributeView}. Where that isn't possible, i.e. the file system
+ * doesn't support POSIX attributes, or the mode includes the setuid, setgid or sticky bits, the change is queued and
+ * made by {@link #flush()}, using a single <tt>chmod</tt> or <tt>chown</tt> invocation for many files.
+ * <p/>
+ * This class is thread-safe.
+ */
+public class FilePermissions
+{
+    /**
+     * The maximum no. of characters of paths passed to a single command.
+     */
+    private static final int MAX_ARGUMENTS_LENGTH = 32 * 1024;
+
+    /**
+     * The permission bits that can be set via {@link PosixFilePermission}.
+     */
+    private static final int PERMISSION_BITS = 0777;
+
+    /**
+     * The mode passed to <tt>chmod</tt> to make a file executable.
+     */
+    private static final String EXECUTABLE = "a+x";
+
+    /**
+     * The permissions granting execute access to everyone.
+     */
+    private static final Set<PosixFilePermission> EXECUTE = EnumSet.of(
+            PosixFilePermission.OWNER_EXECUTE, PosixFilePermission.GROUP_EXECUTE,
+            PosixFilePermission.OTHERS_EXECUTE);
+
+    /**
+     * The paths waiting for <tt>chmod</tt>, keyed on mode.
+     */
+    private final Map<String, List<String>> pendingModes = new LinkedHashMap<String, List<String>>();
+
+    /**
+     * The paths waiting for <tt>chown</tt>, keyed on owner.
+     */
+    private final Map<String, List<String>> pendingOwners = new LinkedHashMap<String, List<String>>();
+
+    /**
+     * The paths that couldn't be changed.
+     */
+    private final List<String> failed = new ArrayList<String>();
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(FilePermissions.class.getName());
+
+    /**
+     * Sets the permissions of a file.
+     *
+     * @param file the file
+     * @param mode the octal mode, as accepted by <tt>chmod</tt>
+     */
+    public synchronized void setPermissions(File file, int mode)
+    {
+        if ((mode & ~PERMISSION_BITS) == 0)
+        {
+            try
+            {
+                Files.setPosixFilePermissions(file.toPath(), toPermissions(mode));
+                return;
+            }
+            catch (UnsupportedOperationException exception)
+            {
+                logger.fine("POSIX permissions not supported for " + file + ", deferring to chmod");
+            }
+            catch (IOException exception)
+            {
+                logger.log(Level.FINE, "Failed to set permissions of " + file + ", deferring to chmod", exception);
+            }
+        }
+        queue(pendingModes, Integer.toOctalString(mode), file);
+    }
+
+    /**
+     * Makes a file executable by everyone, as per <tt>chmod a+x</tt>.
+     *
+     * @param file the file
+     */
+    public synchronized void setExecutable(File file)
+    {
+        Path path = file.toPath();
+        try
+        {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path);
+            if (!permissions.containsAll(EXECUTE))
+            {
+                permissions.addAll(EXECUTE);
+                Files.setPosixFilePermissions(path, permissions);
+            }
+            return;
+        }
+        catch (UnsupportedOperationException exception)
+        {
+            logger.fine("POSIX permissions not supported for " + file + ", deferring to chmod");
+        }
+        catch (IOException exception)
+        {
+            logger.log(Level.FINE, "Failed to make " + file + " executable, deferring to chmod", exception);
+        }
+        queue(pendingModes, EXECUTABLE, file);
+    }
+
+    /**
+     * Sets the owner and/or group of a file.
+     *
+     * @param file  the file
+     * @param owner the owner name. May be {@code null} to leave the owner unchanged
+     * @param group the group name. May be {@code null} to leave the group unchanged
+     */
+    public synchronized void setOwner(File file, String owner, String group)
+    {
+        if (owner == null && group == null)
+        {
+            return;
+        }
+        Path path = file.toPath();
+        PosixFileAttributeView view = Files.getFileAttributeView(path, PosixFileAttributeView.class);
+        if (view != null)
+        {
+            try
+            {
+                UserPrincipalLookupService lookup = path.getFileSystem().getUserPrincipalLookupService();
+                if (owner != null)
+                {
+                    view.setOwner(lookup.lookupPrincipalByName(owner));
+                }
+                if (group != null)
+                {
+                    view.setGroup(lookup.lookupPrincipalByGroupName(group));
+                }
+                return;
+            }
+            catch (UnsupportedOperationException exception)
+            {
+                logger.fine("Ownership not supported for " + file + ", deferring to chown");
+            }
+            catch (IOException exception)
+            {
+                logger.log(Level.FINE, "Failed to set ownership of " + file + ", deferring to chown", exception);
+            }
+        }
+        String spec = (owner != null) ? owner : "";
+        if (group != null)
+        {
+            spec += ":" + group;
+        }
+        queue(pendingOwners, spec, file);
+    }
+
+    /**
+     * Makes the queued changes, invoking <tt>chmod</tt> and <tt>chown</tt> once for each batch of files.
+     *
+     * @return the paths of the files whose permissions or ownership couldn't be changed, since the last flush
+     */
+    public synchronized List<String> flush()
+    {
+        execute("chmod", pendingModes);
+        execute("chown", pendingOwners);
+        List<String> result = new ArrayList<String>(failed);
+        failed.clear();
+        return result;
+    }
+
+    /**
+     * Converts an octal mode to permissions.
+     *
+     * @param mode the mode. Only the permission bits are used
+     * @return the corresponding permissions
+     */
+    public static Set<PosixFilePermission> toPermissions(int mode)
+    {
+        Set<PosixFilePermission> result = EnumSet.noneOf(PosixFilePermission.class);
+        // the permissions are declared from OWNER_READ (0400) to OTHERS_EXECUTE (0001)
+        PosixFilePermission[] permissions = PosixFilePermission.values();
+        for (int i = 0; i < permissions.length; ++i)
+        {
+            if ((mode & (1 << (permissions.length - 1 - i))) != 0)
+            {
+                result.add(permissions[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Queues a file for a command.
+     *
+     * @param pending  the pending paths, keyed on the command argument
+     * @param argument the command argument
+     * @param file     the file
+     */
+    private void queue(Map<String, List<String>> pending, String argument, File file)
+    {
+        List<String> paths = pending.get(argument);
+        if (paths == null)
+        {
+            paths = new ArrayList<String>();
+            pending.put(argument, paths);
+        }
+        paths.add(file.getAbsolutePath());
+    }
+
+    /**
+     * Executes a command for the pending paths, batching as many paths as possible in each invocation.
+     *
+     * @param command the command
+     * @param pending the pending paths, keyed on the command argument. This is cleared
+     */
+    private void execute(String command, Map<String, List<String>> pending)
+    {
+        FileExecutor executor = new FileExecutor();
+        for (Map.Entry<String, List<String>> entry : pending.entrySet())
+        {
+            List<String> paths = entry.getValue();
+            int start = 0;
+            while (start < paths.size())
+            {
+                int end = start;
+                int length = 0;
+                while (end < paths.size() && (end == start || length + paths.get(end).length() < MAX_ARGUMENTS_LENGTH))
+                {
+                    length += paths.get(end).length() + 1;
+                    ++end;
+                }
+                List<String> batch = paths.subList(start, end);
+                List<String> params = new ArrayList<String>(batch.size() + 2);
+                params.add(command);
+                params.add(entry.getKey());
+                params.addAll(batch);
+                String[] output = new String[2];
+                int status = executor.executeCommand(params.toArray(new String[params.size()]), output);
+                if (status != 0)
+                {
+                    logger.warning(command + " " + entry.getKey() + " failed for " + batch.size() + " files: "
+                                           + output[1]);
+                    failed.addAll(batch);
+                }
+                start = end;
+            }
+        }
+        pending.clear();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests the {@link FilePermissions} class.
+ */
+public class FilePermissionsTest
+{
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Skips the tests if POSIX attributes aren't supported.
+     */
+    @Before
+    public void setUp()
+    {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+    }
+
+    /**
+     * Verifies that octal modes are converted to the corresponding permissions.
+     */
+    @Test
+    public void testToPermissions()
+    {
+        assertEquals(PosixFilePermissions.fromString("rwxr-x---"), FilePermissions.toPermissions(0750));
+        assertEquals(PosixFilePermissions.fromString("rw-r--r--"), FilePermissions.toPermissions(0644));
+        assertEquals(PosixFilePermissions.fromString("--x--x--x"), FilePermissions.toPermissions(04111));
+    }
+
+    /**
+     * Verifies that permissions are set in-process, and that modes that can't be set in-process are set by
+     * {@link FilePermissions#flush()}.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSetPermissions() throws Exception
+    {
+        File file1 = temporaryFolder.newFile("file1");
+        File file2 = temporaryFolder.newFile("file2");
+        File dir = temporaryFolder.newFolder("dir");
+        FilePermissions permissions = new FilePermissions();
+
+        permissions.setPermissions(file1, 0640);
+        permissions.setPermissions(dir, 0750);
+        assertEquals("rw-r-----", getPermissions(file1));
+        assertEquals("rwxr-x---", getPermissions(dir));
+
+        // the sticky bit can only be set via chmod
+        permissions.setPermissions(file2, 01644);
+        List<String> failed = permissions.flush();
+        assertTrue(failed.isEmpty());
+        assertEquals(01644, (Integer) Files.getAttribute(file2.toPath(), "unix:mode") & 07777);
+    }
+
+    /**
+     * Verifies that {@link FilePermissions#setExecutable(File)} adds execute permissions, and that files that can't be
+     * changed are reported by {@link FilePermissions#flush()}.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSetExecutable() throws Exception
+    {
+        File file = temporaryFolder.newFile("file");
+        File missing = new File(temporaryFolder.getRoot(), "missing");
+        Files.setPosixFilePermissions(file.toPath(), PosixFilePermissions.fromString("rw-r-----"));
+        FilePermissions permissions = new FilePermissions();
+
+        permissions.setExecutable(file);
+        assertEquals("rwxr-x--x", getPermissions(file));
+
+        permissions.setExecutable(missing);
+        List<String> failed = permissions.flush();
+        assertEquals(1, failed.size());
+        assertEquals(missing.getAbsolutePath(), failed.get(0));
+        assertTrue(permissions.flush().isEmpty());
+    }
+
+    /**
+     * Verifies that the ownership of a file can be set to its current owner and group.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSetOwner() throws Exception
+    {
+        File file = temporaryFolder.newFile("file");
+        PosixFileAttributeView view = Files.getFileAttributeView(file.toPath(), PosixFileAttributeView.class);
+        String owner = view.readAttributes().owner().getName();
+        String group = view.readAttributes().group().getName();
+
+        FilePermissions permissions = new FilePermissions();
+        permissions.setOwner(file, owner, group);
+        assertTrue(permissions.flush().isEmpty());
+        assertEquals(owner, view.readAttributes().owner().getName());
+        assertEquals(group, view.readAttributes().group().getName());
+    }
+
+    /**
+     * Returns the permissions of a file.
+     *
+     * @param file the file
+     * @return the permissions, in <tt>ls</tt> format
+     * @throws Exception for any error
+     */
+    private static String getPermissions(File file) throws Exception
+    {
+        Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(file.toPath());
+        return PosixFilePermissions.toString(permissions);
+    }
+}